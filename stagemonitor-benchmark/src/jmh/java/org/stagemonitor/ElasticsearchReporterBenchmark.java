@@ -0,0 +1,162 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.metrics.metrics2.ElasticsearchReporter;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.util.DiskSpool;
+import org.stagemonitor.core.util.HttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Measures the cost of rendering the _bulk request of a report of 100,000 metrics.
+ * <p/>
+ * The request body is written to an {@link OutputStream} which discards it. Run with <code>-prof gc</code> to see
+ * the garbage which is generated per report.
+ */
+@State(Scope.Benchmark)
+public class ElasticsearchReporterBenchmark {
+
+	private static final int METRICS = 100000;
+
+	private final Map<MetricName, Gauge> gauges = new HashMap<MetricName, Gauge>();
+	private final Map<MetricName, Counter> counters = new HashMap<MetricName, Counter>();
+	private final Map<MetricName, Histogram> histograms = Collections.emptyMap();
+	private final Map<MetricName, Meter> meters = new HashMap<MetricName, Meter>();
+	private final Map<MetricName, Timer> timers = new HashMap<MetricName, Timer>();
+	private ElasticsearchClient elasticsearchClient;
+	private ElasticsearchReporter reporter;
+
+	@Setup
+	public void setUp() {
+		final CorePlugin corePlugin = new CorePlugin() {
+			@Override
+			public String getElasticsearchUrl() {
+				return "http://localhost:9200";
+			}
+
+			@Override
+			public Collection<String> getElasticsearchUrls() {
+				return Collections.singletonList(getElasticsearchUrl());
+			}
+
+			@Override
+			public boolean isElasticsearchGzip() {
+				return false;
+			}
+
+			@Override
+			public boolean isInternalMonitoringActive() {
+				return false;
+			}
+
+			@Override
+			public int getThreadPoolQueueCapacityLimit() {
+				return 1000;
+			}
+
+			@Override
+			public ElasticsearchClient getElasticsearchClient() {
+				return elasticsearchClient;
+			}
+
+			@Override
+			public boolean isOnlyLogElasticsearchMetricReports() {
+				return false;
+			}
+
+			@Override
+			public DiskSpool getSpool(String name) {
+				return null;
+			}
+		};
+		final DiscardingHttpClient httpClient = new DiscardingHttpClient();
+		elasticsearchClient = new ElasticsearchClient(corePlugin, httpClient, 0);
+		final Map<String, String> globalTags = new HashMap<String, String>();
+		globalTags.put("application", "My Application");
+		globalTags.put("host", "localhost");
+		globalTags.put("instance", "production");
+		reporter = ElasticsearchReporter.forRegistry(new Metric2Registry(), corePlugin)
+				.globalTags(globalTags)
+				.convertDurationsTo(TimeUnit.MILLISECONDS)
+				.httpClient(httpClient)
+				.build();
+
+		for (int i = 0; i < METRICS * 4 / 10; i++) {
+			final Counter counter = new Counter();
+			counter.inc(i);
+			counters.put(name("request_count").tag("request_name", "Request " + i).tag("layer", "All").build(), counter);
+			final double value = i * 1.5;
+			gauges.put(name("jvm_memory_pools").tag("memory_pool", "Pool " + i).type("used").build(), new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return value;
+				}
+			});
+		}
+		for (int i = 0; i < METRICS / 10; i++) {
+			final Meter meter = new Meter();
+			meter.mark(i);
+			meters.put(name("error_rate").tag("request_name", "Request " + i).tag("layer", "All").build(), meter);
+			final Timer timer = new Timer();
+			timer.update(i, TimeUnit.MICROSECONDS);
+			timers.put(name("response_time").tag("request_name", "Request " + i).tag("layer", "All").build(), timer);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		elasticsearchClient.close();
+	}
+
+	@Benchmark
+	public void report() {
+		reporter.reportMetrics(gauges, counters, histograms, meters, timers);
+	}
+
+	private static class DiscardingHttpClient extends HttpClient {
+
+		private final OutputStream nullOutputStream = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+
+		@Override
+		public <T> T send(String method, String url, Map<String, String> headerFields,
+						  OutputStreamHandler outputStreamHandler, ResponseHandler<T> responseHandler) {
+			try {
+				outputStreamHandler.withHttpURLConnection(nullOutputStream);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.stagemonitor;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.stagemonitor.core.util.HttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Measures the requests per second the {@link HttpClient} is able to send to an in-process Jetty server which stands
+ * in for Elasticsearch or InfluxDB.
+ * <p/>
+ * The bulk benchmark sends a bulk request with 1000 metric documents, with and without gzip compression. The number of
+ * bytes the server has received per request is printed on tear down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HttpClientBenchmark {
+
+	private static final Map<String, String> DOCUMENT = Collections.singletonMap("foo", "bar");
+
+	@Param({"false", "true"})
+	private boolean gzip;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong receivedBytes = new AtomicLong();
+	private HttpClient httpClient;
+	private Server server;
+	private String url;
+	private byte[] bulk;
+
+	@Setup
+	public void setUp() throws Exception {
+		httpClient = new HttpClient(gzip);
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("{\"index\":{\"_index\":\"stagemonitor-metrics-2017.01.01\",\"_type\":\"metrics\"}}\n");
+			sb.append("{\"@timestamp\":1483228800000,\"name\":\"response_time\",\"request_name\":\"Request ")
+					.append(i % 20).append("\",\"count\":").append(i).append(",\"mean\":").append(i * 1.5).append("}\n");
+		}
+		bulk = sb.toString().getBytes("UTF-8");
+		server = new Server(0);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+				baseRequest.setHandled(true);
+				final byte[] buffer = new byte[8192];
+				long bytes = 0;
+				for (int read = request.getInputStream().read(buffer); read != -1; read = request.getInputStream().read(buffer)) {
+					bytes += read;
+				}
+				requests.incrementAndGet();
+				receivedBytes.addAndGet(bytes);
+				response.getWriter().print("{\"errors\":false}");
+			}
+		});
+		server.start();
+		url = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/_bulk";
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		server.stop();
+		System.out.println("gzip=" + gzip + ": " + receivedBytes.get() / Math.max(1, requests.get()) + " bytes/request");
+	}
+
+	@Benchmark
+	public int sequential() {
+		return httpClient.sendAsJson("POST", url, DOCUMENT);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public int concurrent() {
+		return httpClient.sendAsJson("POST", url, DOCUMENT);
+	}
+
+	@Benchmark
+	public int bulk() {
+		return httpClient.send("POST", url, null, new HttpClient.OutputStreamHandler() {
+			@Override
+			public void withHttpURLConnection(OutputStream os) throws IOException {
+				os.write(bulk);
+				os.close();
+			}
+		});
+	}
+
+}
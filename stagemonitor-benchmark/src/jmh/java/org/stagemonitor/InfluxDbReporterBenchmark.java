@@ -0,0 +1,120 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.metrics.metrics2.InfluxDbReporter;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.util.DiskSpool;
+import org.stagemonitor.core.util.HttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Measures the cost of encoding a report of 50,000 counters and gauges in the InfluxDB line protocol.
+ * <p/>
+ * The request bodies are written to an {@link OutputStream} which discards them. Run with <code>-prof gc</code> to see
+ * the garbage which is generated per report.
+ */
+@State(Scope.Benchmark)
+public class InfluxDbReporterBenchmark {
+
+	private static final int METRICS = 50000;
+
+	private final Map<MetricName, Gauge> gauges = new HashMap<MetricName, Gauge>();
+	private final Map<MetricName, Counter> counters = new HashMap<MetricName, Counter>();
+	private final Map<MetricName, Histogram> histograms = Collections.emptyMap();
+	private final Map<MetricName, Meter> meters = Collections.emptyMap();
+	private final Map<MetricName, Timer> timers = Collections.emptyMap();
+	private InfluxDbReporter reporter;
+
+	@Setup
+	public void setUp() {
+		final CorePlugin corePlugin = new CorePlugin() {
+			@Override
+			public String getInfluxDbUrl() {
+				return "http://localhost:8086";
+			}
+
+			@Override
+			public String getInfluxDbDb() {
+				return "stagemonitor";
+			}
+
+			@Override
+			public boolean isInfluxDbGzip() {
+				return false;
+			}
+
+			@Override
+			public DiskSpool getSpool(String name) {
+				return null;
+			}
+		};
+		final Map<String, String> globalTags = new HashMap<String, String>();
+		globalTags.put("application", "My Application");
+		globalTags.put("host", "localhost");
+		globalTags.put("instance", "production");
+		reporter = InfluxDbReporter.forRegistry(new Metric2Registry(), corePlugin)
+				.globalTags(globalTags)
+				.httpClient(new DiscardingHttpClient())
+				.build();
+
+		for (int i = 0; i < METRICS / 2; i++) {
+			final Counter counter = new Counter();
+			counter.inc(i);
+			counters.put(name("request_count").tag("request_name", "Request " + i).tag("layer", "All").build(), counter);
+			final double value = i * 1.5;
+			gauges.put(name("jvm_memory_pools").tag("memory_pool", "Pool " + i).type("used").build(), new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return value;
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	public void report() {
+		reporter.reportMetrics(gauges, counters, histograms, meters, timers);
+	}
+
+	private static class DiscardingHttpClient extends HttpClient {
+
+		private final OutputStream nullOutputStream = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+
+		@Override
+		public int send(String method, String url, Map<String, String> headerFields, OutputStreamHandler outputStreamHandler) {
+			try {
+				outputStreamHandler.withHttpURLConnection(nullOutputStream);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return 204;
+		}
+	}
+
+}
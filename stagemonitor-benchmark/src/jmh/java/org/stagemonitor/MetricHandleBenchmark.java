@@ -0,0 +1,48 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.metrics.annotations.MetricHandleRegistry;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Compares how a method annotated with {@link com.codahale.metrics.annotation.Timed} resolves its timer: by building
+ * the metric name and looking it up in the registry or via the {@link org.stagemonitor.core.metrics.metrics2.MetricHandle}
+ * whose id is embedded into the instrumented method.
+ */
+@State(Scope.Benchmark)
+public class MetricHandleBenchmark {
+
+	private static final MetricName.MetricNameTemplate metricNameTemplate = name("timer").templateFor("signature");
+	private static final String SIGNATURE = "VetController#showVetList";
+
+	private final Metric2Registry registry = new Metric2Registry();
+	private int handleId;
+
+	@Setup
+	public void setUp() {
+		// a realistic number of other metrics
+		for (int i = 0; i < 1000; i++) {
+			registry.timer(metricNameTemplate.build("Controller#method" + i));
+		}
+		handleId = MetricHandleRegistry.register(metricNameTemplate.build(SIGNATURE));
+	}
+
+	@Benchmark
+	public Timer lookup() {
+		return registry.timer(metricNameTemplate.build(SIGNATURE));
+	}
+
+	@Benchmark
+	public Timer handle() {
+		return MetricHandleRegistry.getHandle(handleId).timer(registry);
+	}
+
+}
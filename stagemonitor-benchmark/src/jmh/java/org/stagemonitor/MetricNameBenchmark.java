@@ -25,6 +25,14 @@ public class MetricNameBenchmark {
 			.templateFor("request_name");
 	private static final MetricName.MetricNameTemplate externalRequestTemplate = name("external_request_response_time")
 			.templateFor("type", "signature", "method");
+	private static final MetricName.MetricNameTemplate throughputTemplate = name("request_throughput")
+			.templateFor("request_name", "http_code");
+	private static final String[] VALUES = new String[100];
+	static {
+		for (int i = 0; i < VALUES.length; i++) {
+			VALUES[i] = Integer.toString(i);
+		}
+	}
 
 	private List<MetricName> names = new ArrayList<>();
 
@@ -569,6 +577,26 @@ public class MetricNameBenchmark {
 		return externalRequestTemplate.build(s, s, s);
 	}
 
+	/**
+	 * Looks up cached names with two values without creating the values. Run with <code>-prof gc</code> to verify
+	 * that a lookup does not allocate.
+	 */
+	@Benchmark
+	public MetricName lookupMetricTemplateTwoValues() {
+		i++;
+		return throughputTemplate.build(VALUES[i % 100], VALUES[i % 7]);
+	}
+
+	/**
+	 * Looks up cached names with three values without creating the values. Run with <code>-prof gc</code> to verify
+	 * that a lookup does not allocate.
+	 */
+	@Benchmark
+	public MetricName lookupMetricTemplateThreeValues() {
+		i++;
+		return externalRequestTemplate.build(VALUES[i % 3], VALUES[i % 100], VALUES[i % 5]);
+	}
+
 	@Benchmark
 	public MetricName buildMetricNameMultipleValues() {
 		i++;
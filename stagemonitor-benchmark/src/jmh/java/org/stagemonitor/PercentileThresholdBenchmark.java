@@ -0,0 +1,65 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.metrics.MetricUtils;
+import org.stagemonitor.core.metrics.PercentileThresholdTracker;
+import org.stagemonitor.core.metrics.PercentileTrackingTimer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per request cost of deciding whether a request was faster than a percentile of all requests.
+ * <p/>
+ * The cost of {@link MetricUtils#isFasterThanXPercentOfAllRequests} grows with the size of the reservoir, while
+ * the cost of {@link PercentileThresholdTracker#isFasterThanXPercentOfAllRequests} should be the same for all sizes.
+ */
+@State(Scope.Benchmark)
+public class PercentileThresholdBenchmark {
+
+	private static final double PERCENTILE = 0.85;
+
+	@Param({"128", "1028", "16384"})
+	private int reservoirSize;
+
+	private Timer timer;
+	private PercentileThresholdTracker percentileThresholdTracker;
+	private long[] executionTimes;
+	private int i;
+
+	@Setup
+	public void setUp() {
+		timer = new PercentileTrackingTimer(new SlidingWindowReservoir(reservoirSize));
+		final Random random = new Random(42);
+		for (int j = 0; j < reservoirSize; j++) {
+			timer.update(random.nextInt(1000), TimeUnit.MILLISECONDS);
+		}
+		executionTimes = new long[1024];
+		for (int j = 0; j < executionTimes.length; j++) {
+			executionTimes[j] = TimeUnit.MILLISECONDS.toNanos(random.nextInt(1000));
+		}
+		percentileThresholdTracker = new PercentileThresholdTracker(10, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	public boolean snapshot() {
+		return MetricUtils.isFasterThanXPercentOfAllRequests(nextExecutionTime(), PERCENTILE, timer);
+	}
+
+	@Benchmark
+	public boolean percentileThresholdTracker() {
+		return percentileThresholdTracker.isFasterThanXPercentOfAllRequests(nextExecutionTime(), PERCENTILE, timer);
+	}
+
+	private long nextExecutionTime() {
+		return executionTimes[i++ & (executionTimes.length - 1)];
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.prometheus.StagemonitorPrometheusCollector;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.prometheus.client.Collector;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Measures the latency of a Prometheus scrape of a registry with 50,000 metrics.
+ * <p/>
+ * <code>collect</code> takes a snapshot for each scrape, <code>collectWithSnapshotInterval</code> returns the
+ * snapshot which has been taken by a previous scrape within the same interval.
+ */
+@State(Scope.Benchmark)
+public class PrometheusCollectorBenchmark {
+
+	private static final int METRICS = 50000;
+
+	private StagemonitorPrometheusCollector collector;
+	private StagemonitorPrometheusCollector collectorWithSnapshotInterval;
+
+	@Setup
+	public void setUp() {
+		final Metric2Registry registry = new Metric2Registry();
+		for (int i = 0; i < METRICS * 4 / 10; i++) {
+			registry.counter(name("request_count").tag("request_name", "Request " + i).tag("layer", "All").build()).inc(i);
+			final double value = i * 1.5;
+			registry.register(name("jvm_memory_pools").tag("memory_pool", "Pool " + i).type("used").build(), new Gauge<Double>() {
+				@Override
+				public Double getValue() {
+					return value;
+				}
+			});
+		}
+		for (int i = 0; i < METRICS / 10; i++) {
+			registry.meter(name("error_rate").tag("request_name", "Request " + i).tag("layer", "All").build()).mark(i);
+			final Timer timer = registry.timer(name("response_time").tag("request_name", "Request " + i).tag("layer", "All").build());
+			for (int j = 0; j < 10; j++) {
+				timer.update(i + j, TimeUnit.MICROSECONDS);
+			}
+		}
+		collector = new StagemonitorPrometheusCollector(registry);
+		collectorWithSnapshotInterval = new StagemonitorPrometheusCollector(registry, 1, TimeUnit.MINUTES);
+	}
+
+	@Benchmark
+	public List<Collector.MetricFamilySamples> collect() {
+		return collector.collect();
+	}
+
+	@Benchmark
+	public List<Collector.MetricFamilySamples> collectWithSnapshotInterval() {
+		return collectorWithSnapshotInterval.collect();
+	}
+
+}
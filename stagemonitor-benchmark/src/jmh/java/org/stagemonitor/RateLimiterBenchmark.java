@@ -0,0 +1,42 @@
+package org.stagemonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.stagemonitor.tracing.utils.RateLimiter;
+
+/**
+ * Measures the cost of {@link RateLimiter#checkCredit(double)} when it is called by many request threads at once.
+ * <p/>
+ * With a rate of 1000000 per second nearly all calls are admitted and update the shared state, with a rate of 100 per
+ * second nearly all calls are rejected without updating it.
+ */
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+	@Param({"100", "1000000"})
+	private double creditsPerSecond;
+
+	private RateLimiter rateLimiter;
+
+	@Setup
+	public void setUp() {
+		rateLimiter = new RateLimiter(creditsPerSecond, Math.max(creditsPerSecond, 1));
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean checkCreditSingleThread() {
+		return rateLimiter.checkCredit(1.0);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public boolean checkCredit64Threads() {
+		return rateLimiter.checkCredit(1.0);
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.stagemonitor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.tracing.reporter.ReadbackSpan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import io.opentracing.tag.Tags;
+
+/**
+ * Measures setting the tags of a {@link ReadbackSpan} with 50 tags and serializing the span to JSON, which nests the
+ * dotted tag keys.
+ */
+@State(Scope.Benchmark)
+public class ReadbackSpanBenchmark {
+
+	private static final int TAGS = 50;
+
+	private final String[] keys = new String[TAGS];
+	private final Object[] values = new Object[TAGS];
+	private ReadbackSpan span;
+	private ByteArrayOutputStream os;
+	private JsonGenerator jsonGenerator;
+
+	@Setup
+	public void setUp() throws IOException {
+		final String[] wellKnownKeys = {
+				Tags.SPAN_KIND.getKey(), Tags.HTTP_URL.getKey(), Tags.HTTP_STATUS.getKey(), Tags.PEER_HOST_IPV4.getKey(),
+				Tags.PEER_PORT.getKey(), "method", "type", "duration_cpu", "duration_cpu_ms", "http.referring_site",
+				"bytes_written", "session_id", "username"
+		};
+		for (int i = 0; i < TAGS; i++) {
+			if (i < wellKnownKeys.length) {
+				keys[i] = wellKnownKeys[i];
+			} else if (i % 3 == 0) {
+				keys[i] = "http.headers.header_" + i;
+			} else if (i % 3 == 1) {
+				keys[i] = "external_requests.type_" + i + ".count";
+			} else {
+				keys[i] = "tag_" + i;
+			}
+			values[i] = i % 2 == 0 ? "value " + i : (Object) i;
+		}
+		span = createSpan();
+		os = new ByteArrayOutputStream(16 * 1024);
+		jsonGenerator = JsonUtils.getMapper().getFactory().createGenerator(os);
+		jsonGenerator.setRootValueSeparator(null);
+	}
+
+	private ReadbackSpan createSpan() {
+		final ReadbackSpan readbackSpan = new ReadbackSpan();
+		readbackSpan.setName("GET /index");
+		readbackSpan.setDuration(1000);
+		readbackSpan.setTimestamp("2017-01-01T00:00:00.000+0000");
+		readbackSpan.setId("1");
+		readbackSpan.setTraceId("2");
+		readbackSpan.setParentId("3");
+		for (int i = 0; i < TAGS; i++) {
+			readbackSpan.setTag(keys[i], values[i]);
+		}
+		return readbackSpan;
+	}
+
+	@Benchmark
+	public ReadbackSpan setTags() {
+		return createSpan();
+	}
+
+	@Benchmark
+	public int serialize() throws IOException {
+		os.reset();
+		jsonGenerator.writeObject(span);
+		jsonGenerator.flush();
+		return os.size();
+	}
+
+}
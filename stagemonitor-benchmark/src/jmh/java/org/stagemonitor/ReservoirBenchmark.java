@@ -0,0 +1,52 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.stagemonitor.core.metrics.ReservoirType;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of recording a duration and of creating a snapshot with the different {@link ReservoirType}s
+ */
+@State(Scope.Benchmark)
+public class ReservoirBenchmark {
+
+	@Param({"EXPONENTIALLY_DECAYING", "HDR_HISTOGRAM"})
+	private ReservoirType reservoirType;
+
+	private Reservoir reservoir;
+
+	@Setup
+	public void setUp() {
+		reservoir = reservoirType.createTimerReservoir(0, TimeUnit.SECONDS);
+		for (int i = 0; i < 10000; i++) {
+			reservoir.update(randomDuration());
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void update() {
+		reservoir.update(randomDuration());
+	}
+
+	@Benchmark
+	public Snapshot snapshot() {
+		reservoir.update(randomDuration());
+		return reservoir.getSnapshot();
+	}
+
+	private static long randomDuration() {
+		return ThreadLocalRandom.current().nextLong(TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.SECONDS.toNanos(1));
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.stagemonitor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.stagemonitor.core.metrics.metrics2.Metric2Filter;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.metrics.metrics2.ScheduledMetrics2Reporter;
+
+import java.util.Map;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Measures the overhead of collecting the metrics of a registry with 100,000 metrics for a report.
+ * <p/>
+ * <code>getMetricsByType</code> scans the registry once per type of metric, <code>report</code> traverses the
+ * registry once with a {@link org.stagemonitor.core.metrics.metrics2.Metric2Visitor}.
+ */
+@State(Scope.Benchmark)
+public class ScheduledReporterBenchmark {
+
+	private static final int METRICS = 100000;
+
+	private final Metric2Registry registry = new Metric2Registry();
+	private ScheduledMetrics2Reporter reporter;
+	private Blackhole blackhole;
+
+	@Setup
+	public void setUp(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		for (int i = 0; i < METRICS / 5; i++) {
+			final MetricName name = name("metric").tag("request_name", "Request " + i).tag("layer", "All").build();
+			registry.register(name.withTag("type", "gauge"), new Gauge<Integer>() {
+				@Override
+				public Integer getValue() {
+					return 1;
+				}
+			});
+			registry.counter(name.withTag("type", "counter"));
+			registry.histogram(name.withTag("type", "histogram"));
+			registry.meter(name.withTag("type", "meter"));
+			registry.timer(name.withTag("type", "timer"));
+		}
+		reporter = new ScheduledMetrics2Reporter(new ScheduledMetrics2Reporter.Builder(registry, "benchmark") {
+			@Override
+			public ScheduledMetrics2Reporter build() {
+				return null;
+			}
+		}) {
+			@Override
+			public void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
+									  Map<MetricName, Histogram> histograms, Map<MetricName, Meter> meters,
+									  Map<MetricName, Timer> timers) {
+				consume(gauges, counters, histograms, meters, timers);
+			}
+		};
+	}
+
+	@Benchmark
+	public void getMetricsByType() {
+		consume(registry.getGauges(Metric2Filter.ALL),
+				registry.getCounters(Metric2Filter.ALL),
+				registry.getHistograms(Metric2Filter.ALL),
+				registry.getMeters(Metric2Filter.ALL),
+				registry.getTimers(Metric2Filter.ALL));
+	}
+
+	@Benchmark
+	public void report() {
+		reporter.report();
+	}
+
+	private void consume(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
+						 Map<MetricName, Histogram> histograms, Map<MetricName, Meter> meters,
+						 Map<MetricName, Timer> timers) {
+		blackhole.consume(gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size());
+	}
+
+}
@@ -0,0 +1,79 @@
+package org.stagemonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.configuration.ConfigurationOptionProvider;
+import org.stagemonitor.configuration.ConfigurationRegistry;
+import org.stagemonitor.configuration.source.ConfigurationSource;
+import org.stagemonitor.configuration.source.SimpleSource;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.tracing.SpanContextInformation;
+import org.stagemonitor.tracing.TracingPlugin;
+import org.stagemonitor.tracing.reporter.ReportingSpanEventListener;
+import org.stagemonitor.tracing.sampling.SamplePriorityDeterminingSpanEventListener;
+import org.stagemonitor.tracing.utils.SpanUtils;
+import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
+import org.stagemonitor.tracing.wrapper.SpanWrappingTracer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import io.opentracing.NoopTracerFactory;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * Measures the overhead of the span event listeners of stagemonitor for the whole lifecycle of a server span which
+ * executes an external request.
+ * <p/>
+ * This includes creating and accessing the {@link SpanContextInformation} of both spans. <code>setTags</code> measures
+ * a span with a few typical tags, each of which is dispatched to the span event listeners.
+ */
+@State(Scope.Benchmark)
+public class SpanLifecycleBenchmark {
+
+	private SpanWrappingTracer tracer;
+
+	@Setup
+	public void setUp() {
+		final ConfigurationRegistry configuration = new ConfigurationRegistry(
+				Arrays.<ConfigurationOptionProvider>asList(new CorePlugin(), new TracingPlugin()),
+				Collections.<ConfigurationSource>singletonList(new SimpleSource()), null);
+		tracer = TracingPlugin.createSpanWrappingTracer(NoopTracerFactory.create(), configuration, new Metric2Registry(),
+				Collections.<SpanEventListenerFactory>emptyList(),
+				new SamplePriorityDeterminingSpanEventListener(configuration), new ReportingSpanEventListener(configuration));
+	}
+
+	@Benchmark
+	public SpanContextInformation spanLifecycle() {
+		final Span serverSpan = tracer.buildSpan("GET /index")
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+				.start();
+		final Span clientSpan = tracer.buildSpan("SELECT * FROM users")
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+				.withTag(SpanUtils.OPERATION_TYPE, "jdbc")
+				.start();
+		clientSpan.finish();
+		serverSpan.finish();
+		return SpanContextInformation.forSpan(serverSpan);
+	}
+
+	@Benchmark
+	public Span setTags() {
+		final Span span = tracer.buildSpan("GET /index")
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+				.start();
+		span.setTag(Tags.HTTP_URL.getKey(), "/index");
+		span.setTag(Tags.HTTP_METHOD.getKey(), "GET");
+		span.setTag(Tags.HTTP_STATUS.getKey(), 200);
+		span.setTag("http.referring_site", "localhost");
+		span.setTag("http.client_ip", "127.0.0.1");
+		span.setTag(Tags.ERROR.getKey(), false);
+		span.finish();
+		return span;
+	}
+
+}
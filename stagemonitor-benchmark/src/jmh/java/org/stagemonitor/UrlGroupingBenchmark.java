@@ -0,0 +1,75 @@
+package org.stagemonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.stagemonitor.web.monitor.UrlGrouping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Measures grouping request URIs with 200 patterns configured in <code>stagemonitor.groupUrls</code>.
+ * <p/>
+ * <code>replaceAll</code> applies each pattern to each URI, just as the request name was determined before
+ * {@link UrlGrouping} existed.
+ */
+@State(Scope.Benchmark)
+public class UrlGroupingBenchmark {
+
+	private static final int PATTERNS = 200;
+
+	private final Map<Pattern, String> groupUrls = new LinkedHashMap<Pattern, String>();
+	private final String[] uris = new String[100];
+	private UrlGrouping urlGrouping;
+	private UrlGrouping uncachedUrlGrouping;
+
+	@Setup
+	public void setUp() {
+		groupUrls.put(Pattern.compile("(.*).js$"), "*.js");
+		groupUrls.put(Pattern.compile("(.*).css$"), "*.css");
+		for (int i = groupUrls.size(); i < PATTERNS; i++) {
+			groupUrls.put(Pattern.compile("^/api/resource" + i + "/\\d+"), "/api/resource" + i + "/{id}");
+		}
+		for (int i = 0; i < uris.length; i++) {
+			if (i % 4 == 0) {
+				uris[i] = "/api/resource" + (i * 2) + "/" + i;
+			} else if (i % 4 == 1) {
+				uris[i] = "/static/script" + i + ".js";
+			} else {
+				uris[i] = "/shop/category" + i + "/products";
+			}
+		}
+		urlGrouping = new UrlGrouping(groupUrls, UrlGrouping.DEFAULT_MAX_CACHED_URIS);
+		uncachedUrlGrouping = new UrlGrouping(groupUrls, 0);
+	}
+
+	@Benchmark
+	public void replaceAll(Blackhole bh) {
+		for (String uri : uris) {
+			String groupedUri = uri;
+			for (Map.Entry<Pattern, String> entry : groupUrls.entrySet()) {
+				groupedUri = entry.getKey().matcher(groupedUri).replaceAll(entry.getValue());
+			}
+			bh.consume(groupedUri);
+		}
+	}
+
+	@Benchmark
+	public void urlGrouping(Blackhole bh) {
+		for (String uri : uris) {
+			bh.consume(urlGrouping.group(uri));
+		}
+	}
+
+	@Benchmark
+	public void urlGroupingUncached(Blackhole bh) {
+		for (String uri : uris) {
+			bh.consume(uncachedUrlGrouping.group(uri));
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package org.stagemonitor.benchmark.profiler;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The call tree is recorded in the per thread arrays of the call tree arena
+ */
+@Fork(jvmArgsAppend = {"-Dstagemonitor.profiler.callTreeArena=true", "-Dstagemonitor.profiler.objectPooling=false"})
+public class ArenaCallTreeBenchmark extends CallTreeBenchmark {
+}
@@ -0,0 +1,62 @@
+package org.stagemonitor.benchmark.profiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.stagemonitor.tracing.profiler.CallStackElement;
+import org.stagemonitor.tracing.profiler.Profiler;
+
+/**
+ * Measures the cost of recording a call tree with {@link Profiler#start(String)} and {@link Profiler#stop()}.
+ * <p/>
+ * The call tree implementation is determined when {@link Profiler} is initialized. That's why the different
+ * implementations are compared by subclasses which are forked with different system properties.
+ * Run with <code>profilers = ['gc']</code> to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public abstract class CallTreeBenchmark {
+
+	private final ClassManualProfiling classManualProfiling = new ClassManualProfiling();
+
+	@Param({"1000"})
+	private int iterations = 1000;
+
+	/**
+	 * Profiles a request whose call tree is not reported, for example because the request was faster than the
+	 * configured percentile
+	 */
+	@Benchmark
+	public long profile() {
+		final CallStackElement root = recordCallTree();
+		final long executionTime = root.getExecutionTime();
+		Profiler.clearMethodCallParent();
+		root.recycle();
+		return executionTime;
+	}
+
+	/**
+	 * Profiles a request whose call tree is reported
+	 */
+	@Benchmark
+	public int profileAndMaterialize() {
+		final CallStackElement root = Profiler.materializeCallTree(recordCallTree());
+		final int children = root.getChildren().size();
+		Profiler.clearMethodCallParent();
+		root.recycle();
+		return children;
+	}
+
+	private CallStackElement recordCallTree() {
+		final int innerIterations = iterations;
+		final CallStackElement root = Profiler.activateProfiling("root");
+		for (int i = 0; i < innerIterations; i++) {
+			classManualProfiling.method1();
+		}
+		Profiler.stop();
+		return root;
+	}
+
+}
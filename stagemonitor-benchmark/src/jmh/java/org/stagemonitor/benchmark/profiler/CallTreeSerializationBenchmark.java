@@ -0,0 +1,87 @@
+package org.stagemonitor.benchmark.profiler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.tracing.profiler.CallStackElement;
+import org.stagemonitor.tracing.profiler.CallTreeTagValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compares converting the call tree to Strings before adding it to the span with streaming the call tree into the
+ * {@link JsonGenerator} of the reporter.
+ * <p/>
+ * Run with <code>profilers = ['gc']</code> to compare the heap churn.
+ */
+@State(Scope.Thread)
+public class CallTreeSerializationBenchmark {
+
+	@Param({"10000"})
+	private int nodes = 10000;
+
+	private CallStackElement callTree;
+	private JsonGenerator jsonGenerator;
+
+	@Setup
+	public void setUp() throws IOException {
+		callTree = CallStackElement.create(null, "GET /benchmark", 0);
+		CallStackElement parent = callTree;
+		for (int i = 1; i < nodes; i++) {
+			final CallStackElement child = CallStackElement.create(parent,
+					"public void org.stagemonitor.benchmark.profiler.ClassToProfile.method" + i + "()", i * 1000L);
+			if (i % 10 == 0) {
+				parent = callTree;
+			} else if (i % 3 == 0) {
+				parent = child;
+			}
+		}
+		callTree.setExecutionTime(nodes * 1000L);
+		jsonGenerator = JsonUtils.getMapper().getFactory().createGenerator(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		jsonGenerator.close();
+	}
+
+	/**
+	 * The call tree tags are created as Strings and then written to the reporter
+	 */
+	@Benchmark
+	public void strings() throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeStringField("call_tree_json", JsonUtils.toJson(callTree));
+		jsonGenerator.writeStringField("call_tree_ascii", callTree.toString(true));
+		jsonGenerator.writeEndObject();
+		jsonGenerator.flush();
+	}
+
+	/**
+	 * The call tree tags are streamed into the reporter
+	 */
+	@Benchmark
+	public void streaming() throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeObjectField("call_tree_json", CallTreeTagValue.json(callTree));
+		jsonGenerator.writeObjectField("call_tree_ascii", CallTreeTagValue.ascii(callTree));
+		jsonGenerator.writeEndObject();
+		jsonGenerator.flush();
+	}
+
+}
@@ -1,11 +1,25 @@
 package org.stagemonitor.benchmark.profiler;
 
 import org.stagemonitor.tracing.profiler.Profiler;
+import org.stagemonitor.tracing.profiler.SignatureRegistry;
 
+/**
+ * Calls the profiler just like the methods instrumented by the ProfilingTransformer
+ */
 public class ClassManualProfiling {
 
+	private static final int METHOD1 = SignatureRegistry.register("public int ClassToProfile.method1()");
+	private static final int METHOD2 = SignatureRegistry.register("public int ClassToProfile.method2(int i)");
+	private static final int METHOD3 = SignatureRegistry.register("public int ClassToProfile.method3()");
+	private static final int METHOD4 = SignatureRegistry.register("public int ClassToProfile.method4()");
+	private static final int METHOD5 = SignatureRegistry.register("public int ClassToProfile.method5()");
+	private static final int METHOD6 = SignatureRegistry.register("public int ClassToProfile.method6()");
+	private static final int METHOD7 = SignatureRegistry.register("public int ClassToProfile.method7()");
+	private static final int METHOD8 = SignatureRegistry.register("public int ClassToProfile.method8()");
+	private static final int METHOD9 = SignatureRegistry.register("public int ClassToProfile.method9()");
+
 	public int method1() {
-		Profiler.start("public int ClassToProfile.method1()");
+		Profiler.start(METHOD1);
 		try {
 			return method2(1) + method3() + method5();
 		} finally {
@@ -14,7 +28,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method2(int i) {
-		Profiler.start("public int ClassToProfile.method2(int i)");
+		Profiler.start(METHOD2);
 		try {
 			return 1 + i;
 		} finally {
@@ -23,7 +37,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method3() {
-		Profiler.start("public int ClassToProfile.method3()");
+		Profiler.start(METHOD3);
 		try {
 			return method4();
 		} finally {
@@ -32,7 +46,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method4() {
-		Profiler.start("public int ClassToProfile.method4()");
+		Profiler.start(METHOD4);
 		try {
 			return 4;
 		} finally {
@@ -41,7 +55,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method5() {
-		Profiler.start("public int ClassToProfile.method5()");
+		Profiler.start(METHOD5);
 		try {
 			return method6() + method7();
 		} finally {
@@ -50,7 +64,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method6() {
-		Profiler.start("public int ClassToProfile.method6()");
+		Profiler.start(METHOD6);
 		try {
 			return 6;
 		} finally {
@@ -59,7 +73,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method7() {
-		Profiler.start("public int ClassToProfile.method7()");
+		Profiler.start(METHOD7);
 		try {
 			return method8();
 		} finally {
@@ -68,7 +82,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method8() {
-		Profiler.start("public int ClassToProfile.method8()");
+		Profiler.start(METHOD8);
 		try {
 			return method9();
 		} finally {
@@ -77,7 +91,7 @@ public class ClassManualProfiling {
 	}
 
 	private int method9() {
-		Profiler.start("public int ClassToProfile.method9()");
+		Profiler.start(METHOD9);
 		try {
 			return 9;
 		} finally {
@@ -0,0 +1,11 @@
+package org.stagemonitor.benchmark.profiler;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The call tree is recorded as linked {@link org.stagemonitor.tracing.profiler.CallStackElement}s which are taken from
+ * the global object pool
+ */
+@Fork(jvmArgsAppend = {"-Dstagemonitor.profiler.callTreeArena=false", "-Dstagemonitor.profiler.objectPooling=true"})
+public class LinkedCallTreeBenchmark extends CallTreeBenchmark {
+}
@@ -0,0 +1,11 @@
+package org.stagemonitor.benchmark.profiler;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The call tree is recorded as linked {@link org.stagemonitor.tracing.profiler.CallStackElement}s which are
+ * allocated for each method call
+ */
+@Fork(jvmArgsAppend = {"-Dstagemonitor.profiler.callTreeArena=false", "-Dstagemonitor.profiler.objectPooling=false"})
+public class LinkedCallTreeWithoutPoolingBenchmark extends CallTreeBenchmark {
+}
@@ -19,6 +19,7 @@ import org.stagemonitor.core.grafana.GrafanaClient;
 import org.stagemonitor.core.metrics.MetricNameFilter;
 import org.stagemonitor.core.metrics.MetricsAggregationReporter;
 import org.stagemonitor.core.metrics.MetricsWithCountFilter;
+import org.stagemonitor.core.metrics.ReservoirType;
 import org.stagemonitor.core.metrics.SortedTableLogReporter;
 import org.stagemonitor.core.metrics.metrics2.AndMetric2Filter;
 import org.stagemonitor.core.metrics.metrics2.ElasticsearchReporter;
@@ -28,11 +29,13 @@ import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
 import org.stagemonitor.core.metrics.metrics2.MetricNameValueConverter;
 import org.stagemonitor.core.metrics.metrics2.ScheduledMetrics2Reporter;
+import org.stagemonitor.core.util.DiskSpool;
 import org.stagemonitor.core.util.HttpClient;
 import org.stagemonitor.util.IOUtils;
 import org.stagemonitor.util.StringUtils;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -41,6 +44,8 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -97,6 +102,16 @@ public class CorePlugin extends StagemonitorPlugin {
 			.defaultValue(30)
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<Integer> aggregationMaxSizeKb = ConfigurationOption.integerOption()
+			.key("stagemonitor.reporting.aggregation.maxSizeKb")
+			.dynamic(false)
+			.label("Metrics aggregation memory limit (KB)")
+			.description("The maximum amount of memory in kilobytes which is used to store the aggregated values of " +
+					"gauges, histograms and timers for the report on server shutdown. " +
+					"If the limit is reached, metrics which are created from then on are not included in the report.")
+			.defaultValue(8192)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
 	private final ConfigurationOption<Boolean> reportingJmx = ConfigurationOption.booleanOption()
 			.key("stagemonitor.reporting.jmx")
 			.dynamic(false)
@@ -105,6 +120,42 @@ public class CorePlugin extends StagemonitorPlugin {
 			.defaultValue(false)
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<Boolean> mirrorMetricsToDropwizardRegistry = ConfigurationOption.booleanOption()
+			.key("stagemonitor.metrics.mirrorToDropwizardRegistry")
+			.dynamic(false)
+			.label("Mirror metrics to the Dropwizard registry")
+			.description("Whether or not to register each metric at the Dropwizard MetricRegistry named 'stagemonitor' " +
+					"(see SharedMetricRegistries) as well. When disabled, each metric is only stored once, which " +
+					"reduces memory usage and the cost of registering metrics. The Graphite and JMX reporters then " +
+					"use a read-only view which is computed on demand. Disable this if you don't access the " +
+					"'stagemonitor' Dropwizard registry directly.")
+			.defaultValue(true)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<ReservoirType> reservoirType = ConfigurationOption.enumOption(ReservoirType.class)
+			.key("stagemonitor.metrics.reservoir")
+			.dynamic(false)
+			.label("Reservoir of timers and histograms")
+			.description("The reservoir determines which values of timers and histograms are kept to compute the " +
+					"percentiles. " +
+					ReservoirType.EXPONENTIALLY_DECAYING + ": keeps a sample of 1028 values which is biased " +
+					"towards the last five minutes (the Dropwizard default). " +
+					ReservoirType.HDR_HISTOGRAM + ": records all values of the snapshot interval (see '" +
+					"stagemonitor.metrics.reservoir.snapshotInterval') in a HdrHistogram with a precision of two " +
+					"significant digits. This has a fixed memory footprint, lock-free updates and cheap snapshots.")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.buildWithDefault(ReservoirType.EXPONENTIALLY_DECAYING);
+	private final ConfigurationOption<Integer> reservoirSnapshotInterval = ConfigurationOption.integerOption()
+			.key("stagemonitor.metrics.reservoir.snapshotInterval")
+			.dynamic(false)
+			.label("Snapshot interval of the reservoir (sec)")
+			.description("Only applies to the " + ReservoirType.HDR_HISTOGRAM + " reservoir. The percentiles of " +
+					"timers and histograms are computed from the values which have been recorded in the last " +
+					"completed interval. All reporters which report in the same interval get the same values. " +
+					"This should be equal to the reporting interval.")
+			.defaultValue(60)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
 	private final ConfigurationOption<Integer> reportingIntervalGraphite = ConfigurationOption.integerOption()
 			.key("stagemonitor.reporting.interval.graphite")
 			.dynamic(false)
@@ -153,6 +204,52 @@ public class CorePlugin extends StagemonitorPlugin {
 			.tags(METRICS_STORE, "influx-db")
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<Boolean> influxDbGzip = ConfigurationOption.booleanOption()
+			.key("stagemonitor.reporting.influxdb.gzip")
+			.dynamic(false)
+			.label("Compress InfluxDB requests")
+			.description("If set to true, the metrics are compressed with gzip while they are sent to InfluxDB. " +
+					"This saves network bandwidth at the cost of some CPU time.")
+			.defaultValue(false)
+			.tags(METRICS_STORE, "influx-db")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<String> spoolDirectory = ConfigurationOption.stringOption()
+			.key("stagemonitor.reporting.spool.directory")
+			.dynamic(false)
+			.label("Spool directory")
+			.description("If set, the metrics and spans which could not be sent to Elasticsearch or InfluxDB " +
+					"because they are not available are stored in memory mapped files in this directory. " +
+					"Once the backend is available again, they are sent at a limited rate " +
+					"(see 'stagemonitor.reporting.spool.maxBatchesPerDrain'). As the files are outside the heap, " +
+					"the heap usage does not grow during long outages. The spooled data also survives restarts. " +
+					"Note that each application instance needs its own directory.")
+			.defaultValue(null)
+			.tags(METRICS_STORE, "reporting")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Integer> spoolSizeMb = ConfigurationOption.integerOption()
+			.key("stagemonitor.reporting.spool.sizeMb")
+			.dynamic(false)
+			.label("Spool size (MB)")
+			.description("The size of each spool file in megabytes. There is a spool file per backend " +
+					"(for example one for the Elasticsearch metrics and one for the spans). " +
+					"If a spool file is full, new data is dropped. " +
+					"Changing the size discards the data which is currently spooled.")
+			.defaultValue(64)
+			.tags(METRICS_STORE, "reporting")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Integer> spoolMaxBatchesPerDrain = ConfigurationOption.integerOption()
+			.key("stagemonitor.reporting.spool.maxBatchesPerDrain")
+			.dynamic(false)
+			.label("Max spooled batches per report")
+			.description("The maximum number of spooled batches (for example _bulk requests) which are sent " +
+					"after each successful report. This limits the load on a backend which has just recovered.")
+			.defaultValue(5)
+			.tags(METRICS_STORE, "reporting")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
 	private final ConfigurationOption<Integer> reportingIntervalInfluxDb = ConfigurationOption.integerOption()
 			.key("stagemonitor.reporting.interval.influxdb")
 			.dynamic(false)
@@ -264,6 +361,16 @@ public class CorePlugin extends StagemonitorPlugin {
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.tags(ELASTICSEARCH)
 			.build();
+	private final ConfigurationOption<Boolean> elasticsearchGzip = ConfigurationOption.booleanOption()
+			.key("stagemonitor.elasticsearch.gzip")
+			.dynamic(false)
+			.label("Compress Elasticsearch requests")
+			.description("If set to true, the requests to Elasticsearch, like the metrics and spans, are compressed " +
+					"with gzip while they are sent. This saves network bandwidth at the cost of some CPU time.")
+			.defaultValue(false)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.tags(ELASTICSEARCH)
+			.build();
 	private final ConfigurationOption<Collection<String>> elasticsearchConfigurationSourceProfiles = ConfigurationOption.stringsOption()
 			.key("stagemonitor.elasticsearch.configurationSourceProfiles")
 			.dynamic(false)
@@ -447,6 +554,7 @@ public class CorePlugin extends StagemonitorPlugin {
 	private IndexSelector indexSelector = new IndexSelector(new Clock.UserTimeClock());
 	private Metric2Registry metricRegistry;
 	private AtomicInteger accessesToElasticsearchUrl = new AtomicInteger();
+	private final ConcurrentMap<String, DiskSpool> spools = new ConcurrentHashMap<String, DiskSpool>();
 
 	public CorePlugin() {
 	}
@@ -458,6 +566,8 @@ public class CorePlugin extends StagemonitorPlugin {
 	@Override
 	public void initializePlugin(InitArguments initArguments) {
 		this.metricRegistry = initArguments.getMetricRegistry();
+		metricRegistry.setDropwizardMirroring(isMirrorMetricsToDropwizardRegistry());
+		metricRegistry.setReservoirType(getReservoirType(), getReservoirSnapshotInterval(), TimeUnit.SECONDS);
 		final Integer reloadInterval = getReloadConfigurationInterval();
 		if (reloadInterval > 0) {
 			initArguments.getConfiguration().scheduleReloadAtRate(reloadInterval, TimeUnit.SECONDS);
@@ -511,7 +621,10 @@ public class CorePlugin extends StagemonitorPlugin {
 	private void registerAggregationReporter(Metric2Registry metricRegistry,
 											 List<ScheduledMetrics2Reporter> onShutdownReporters, long reportingInterval) {
 		if (reportingInterval > 0) {
-			aggregationReporter = MetricsAggregationReporter.forRegistry(metricRegistry).onShutdownReporters(onShutdownReporters).build();
+			aggregationReporter = MetricsAggregationReporter.forRegistry(metricRegistry)
+					.onShutdownReporters(onShutdownReporters)
+					.maxSizeBytes(getAggregationMaxSizeKb() * 1024L)
+					.build();
 			aggregationReporter.start(reportingInterval, TimeUnit.SECONDS);
 			aggregationReporter.report();
 			reporters.add(aggregationReporter);
@@ -617,6 +730,13 @@ public class CorePlugin extends StagemonitorPlugin {
 		if (elasticsearchClient != null) {
 			elasticsearchClient.close();
 		}
+		for (DiskSpool spool : spools.values()) {
+			try {
+				spool.close();
+			} catch (IOException e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
 		if (grafanaClient != null) {
 			grafanaClient.close();
 		}
@@ -632,11 +752,43 @@ public class CorePlugin extends StagemonitorPlugin {
 
 	public ElasticsearchClient getElasticsearchClient() {
 		if (elasticsearchClient == null) {
-			elasticsearchClient = new ElasticsearchClient(this, new HttpClient(), elasticsearchAvailabilityCheckPeriodSec.getValue());
+			elasticsearchClient = new ElasticsearchClient(this, new HttpClient(isElasticsearchGzip()), elasticsearchAvailabilityCheckPeriodSec.getValue());
 		}
 		return elasticsearchClient;
 	}
 
+	/**
+	 * Returns the spool for the data which could not be sent to a backend
+	 *
+	 * @param name the name of the spool file
+	 * @return the spool or <code>null</code>, if spooling is disabled or the spool file could not be created
+	 */
+	public DiskSpool getSpool(String name) {
+		final String directory = spoolDirectory.getValue();
+		if (StringUtils.isEmpty(directory)) {
+			return null;
+		}
+		synchronized (spools) {
+			DiskSpool spool = spools.get(name);
+			if (spool == null) {
+				final long capacity = spoolSizeMb.getValue() * 1024L * 1024;
+				if (capacity <= 0 || capacity > DiskSpool.MAX_CAPACITY) {
+					logger.warn("Not creating spool {} as {} has to be between 1 and {}", name, spoolSizeMb.getKey(),
+							DiskSpool.MAX_CAPACITY / (1024 * 1024));
+					return null;
+				}
+				try {
+					spool = new DiskSpool(new File(directory, name + ".spool"), (int) capacity,
+							spoolMaxBatchesPerDrain.getValue());
+					spools.put(name, spool);
+				} catch (IOException e) {
+					logger.warn("Could not create spool " + name + ", continuing without spooling: " + e.getMessage(), e);
+				}
+			}
+			return spool;
+		}
+	}
+
 	public GrafanaClient getGrafanaClient() {
 		if (grafanaClient == null) {
 			grafanaClient = new GrafanaClient(this, new HttpClient());
@@ -685,6 +837,22 @@ public class CorePlugin extends StagemonitorPlugin {
 		return reportingIntervalAggregation.getValue();
 	}
 
+	public int getAggregationMaxSizeKb() {
+		return aggregationMaxSizeKb.getValue();
+	}
+
+	public boolean isMirrorMetricsToDropwizardRegistry() {
+		return mirrorMetricsToDropwizardRegistry.getValue();
+	}
+
+	public ReservoirType getReservoirType() {
+		return reservoirType.getValue();
+	}
+
+	public int getReservoirSnapshotInterval() {
+		return reservoirSnapshotInterval.getValue();
+	}
+
 	public boolean isReportToJMX() {
 		return reportingJmx.getValue();
 	}
@@ -779,6 +947,14 @@ public class CorePlugin extends StagemonitorPlugin {
 		return influxDbDb.getValue();
 	}
 
+	public boolean isInfluxDbGzip() {
+		return influxDbGzip.getValue();
+	}
+
+	public boolean isElasticsearchGzip() {
+		return elasticsearchGzip.getValue();
+	}
+
 	public boolean isReportToElasticsearch() {
 		return !getElasticsearchUrls().isEmpty() && reportingIntervalElasticsearch.getValue() > 0;
 	}
@@ -151,16 +151,29 @@ public final class Stagemonitor {
 				logger.warn(e.getMessage(), e);
 			}
 		}
+		StagemonitorPlugin corePlugin = null;
 		for (StagemonitorPlugin plugin : plugins) {
-			try {
-				plugin.onShutDown();
-			} catch (Exception e) {
-				logger.warn(e.getMessage(), e);
+			if (plugin instanceof CorePlugin) {
+				corePlugin = plugin;
+			} else {
+				shutDownPlugin(plugin);
 			}
 		}
+		// the other plugins may still send data via the Elasticsearch client and the spools of the core plugin
+		if (corePlugin != null) {
+			shutDownPlugin(corePlugin);
+		}
 		configuration.close();
 	}
 
+	private static void shutDownPlugin(StagemonitorPlugin plugin) {
+		try {
+			plugin.onShutDown();
+		} catch (Exception e) {
+			logger.warn(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * @deprecated use {@link #getMetric2Registry()}
 	 */
@@ -13,6 +13,7 @@ import org.stagemonitor.core.pool.JavaThreadPoolMetricsCollectorImpl;
 import org.stagemonitor.core.pool.PooledResourceMetricsRegisterer;
 import org.stagemonitor.core.util.CompletedFuture;
 import org.stagemonitor.core.util.DateUtils;
+import org.stagemonitor.core.util.DiskSpool;
 import org.stagemonitor.core.util.ExecutorUtils;
 import org.stagemonitor.core.util.HttpClient;
 import org.stagemonitor.util.IOUtils;
@@ -115,13 +116,24 @@ public class ElasticsearchClient {
 		if (!isElasticsearchAvailable()) {
 			return;
 		}
+		sendAsJsonAsync("POST", "/" + index + "/" + type, toDocument(document));
+	}
+
+	/**
+	 * Converts an object to a JSON document which can be indexed.
+	 * <p/>
+	 * As Elasticsearch does not allow dots in property names, they are replaced with <code>_(dot)_</code>.
+	 *
+	 * @param document the object to convert
+	 * @return the JSON document
+	 */
+	public static ObjectNode toDocument(Object document) {
 		final ObjectNode json = JsonUtils.toObjectNode(document);
 		removeDisallowedCharsFromPropertyNames(json);
-
-		sendAsJsonAsync("POST", "/" + index + "/" + type, json);
+		return json;
 	}
 
-	private void removeDisallowedCharsFromPropertyNames(ObjectNode json) {
+	private static void removeDisallowedCharsFromPropertyNames(ObjectNode json) {
 		final Iterator<String> fieldNames = json.fieldNames();
 		List<String> toRemove = new LinkedList<String>();
 		Map<String, JsonNode> newProperties = new HashMap<String, JsonNode>();
@@ -228,11 +240,18 @@ public class ElasticsearchClient {
 		}
 	}
 
-	public void sendBulk(String endpoint, HttpClient.OutputStreamHandler outputStreamHandler) {
+	/**
+	 * Sends a _bulk request
+	 *
+	 * @return <code>false</code>, if Elasticsearch is not available or the request should be retried later
+	 * (see {@link BulkErrorReportingResponseHandler})
+	 */
+	public boolean sendBulk(String endpoint, HttpClient.OutputStreamHandler outputStreamHandler) {
 		if (!isElasticsearchAvailable()) {
-			return;
+			return false;
 		}
-		httpClient.send("POST", corePlugin.getElasticsearchUrl() + endpoint + "/_bulk", null, outputStreamHandler, new BulkErrorReportingResponseHandler());
+		return Boolean.TRUE.equals(httpClient.send("POST", corePlugin.getElasticsearchUrl() + endpoint + "/_bulk", null,
+				outputStreamHandler, new BulkErrorReportingResponseHandler()));
 	}
 
 	public void deleteIndices(String indexPattern) {
@@ -333,7 +352,13 @@ public class ElasticsearchClient {
 		return !corePlugin.getElasticsearchUrls().isEmpty() && elasticsearchAvailable.get();
 	}
 
-	public static class BulkErrorReportingResponseHandler implements HttpClient.ResponseHandler<Void> {
+	/**
+	 * Logs the errors of a _bulk request.
+	 * <p/>
+	 * Returns <code>false</code> if the request should be retried later, because Elasticsearch is unavailable or
+	 * overloaded (see {@link DiskSpool#isRetryable(Integer)}).
+	 */
+	public static class BulkErrorReportingResponseHandler implements HttpClient.ResponseHandler<Boolean> {
 
 		private static final int MAX_BULK_ERROR_LOG_SIZE = 256;
 		private static final String ERROR_PREFIX = "Error(s) while sending a _bulk request to elasticsearch: {}";
@@ -341,10 +366,15 @@ public class ElasticsearchClient {
 		private static final Logger logger = LoggerFactory.getLogger(BulkErrorReportingResponseHandler.class);
 
 		@Override
-		public Void handleResponse(InputStream is, Integer statusCode, IOException e) throws IOException {
+		public Boolean handleResponse(InputStream is, Integer statusCode, IOException e) throws IOException {
 			if (is == null) {
 				logger.warn(e.getMessage(), e);
-				return null;
+				return false;
+			}
+			if (DiskSpool.isRetryable(statusCode)) {
+				logger.warn("Elasticsearch responded with status code {} to a _bulk request", statusCode);
+				IOUtils.consumeAndClose(is);
+				return false;
 			}
 			final JsonNode bulkResponse = JsonUtils.getMapper().readTree(is);
 			final JsonNode errors = bulkResponse.get("errors");
@@ -353,7 +383,7 @@ public class ElasticsearchClient {
 			} else if (bulkResponse.get("error") != null) {
 				logger.warn(ERROR_PREFIX, bulkResponse);
 			}
-			return null;
+			return !DiskSpool.isRetryable(statusCode);
 		}
 
 		private String reportBulkErrors(JsonNode items) {
@@ -16,6 +16,11 @@ public class AggregatedGauge implements Gauge<Double> {
 		add(gauge);
 	}
 
+	AggregatedGauge(double aggregatedNumberValue, int count) {
+		this.aggregatedNumberValue = aggregatedNumberValue;
+		this.count = count;
+	}
+
 	@Override
 	public Double getValue() {
 		return aggregatedNumberValue;
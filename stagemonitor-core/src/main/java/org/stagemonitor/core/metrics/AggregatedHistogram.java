@@ -5,17 +5,18 @@ import com.codahale.metrics.SlidingWindowReservoir;
 import com.codahale.metrics.Snapshot;
 
 /**
- * An extension of histogram that aggregates multiple snapshots of a histogram to a single value for each metric.
+ * An extension of histogram that exposes the values which have been aggregated by the
+ * {@link MetricsAggregationReporter}.
  */
 class AggregatedHistogram extends Histogram {
 
-	private long count;
-	private AggregatedSnapshot snapshot;
+	private final long count;
+	private final Snapshot snapshot;
 
-	public AggregatedHistogram(Histogram histogram) {
+	AggregatedHistogram(long count, Snapshot snapshot) {
 		super(new SlidingWindowReservoir(0));
-		snapshot = new AggregatedSnapshot(histogram.getSnapshot());
-		add(histogram);
+		this.count = count;
+		this.snapshot = snapshot;
 	}
 
 	@Override
@@ -35,9 +36,4 @@ class AggregatedHistogram extends Histogram {
 	public Snapshot getSnapshot() {
 		return snapshot;
 	}
-
-	public void add(Histogram histogram) {
-		this.count = histogram.getCount();
-		snapshot.add(histogram.getSnapshot());
-	}
 }
@@ -4,28 +4,25 @@ import com.codahale.metrics.Snapshot;
 
 import java.io.OutputStream;
 
+/**
+ * A snapshot of the values which have been aggregated by the {@link MetricsAggregationReporter}
+ */
 class AggregatedSnapshot extends Snapshot {
-	private int addCount = 0;
-	private long max, min;
-	private double mean, stdDev, median, p75, p95, p98, p99, p999;
-
-	AggregatedSnapshot(Snapshot snapshot) {
-		this.max = snapshot.getMax();
-		this.min = snapshot.getMin();
-	}
-
-	public void add(Snapshot snapshot) {
-		max = Math.max(max, snapshot.getMax());
-		min = Math.min(min, snapshot.getMin());
-		mean = MetricsAggregationReporter.computeMovingAverage(mean, addCount, snapshot.getMean());
-		stdDev = MetricsAggregationReporter.computeMovingAverage(stdDev, addCount, snapshot.getStdDev());
-		median = MetricsAggregationReporter.computeMovingAverage(median, addCount, snapshot.getMedian());
-		p75 = MetricsAggregationReporter.computeMovingAverage(p75, addCount, snapshot.get75thPercentile());
-		p95 = MetricsAggregationReporter.computeMovingAverage(p95, addCount, snapshot.get95thPercentile());
-		p98 = MetricsAggregationReporter.computeMovingAverage(p98, addCount, snapshot.get98thPercentile());
-		p99 = MetricsAggregationReporter.computeMovingAverage(p99, addCount, snapshot.get99thPercentile());
-		p999 = MetricsAggregationReporter.computeMovingAverage(p999, addCount, snapshot.get999thPercentile());
-		addCount++;
+	private final long max, min;
+	private final double mean, stdDev, median, p75, p95, p98, p99, p999;
+
+	AggregatedSnapshot(long min, long max, double mean, double stdDev, double median, double p75, double p95,
+					   double p98, double p99, double p999) {
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.stdDev = stdDev;
+		this.median = median;
+		this.p75 = p75;
+		this.p95 = p95;
+		this.p98 = p98;
+		this.p99 = p99;
+		this.p999 = p999;
 	}
 
 	@Override
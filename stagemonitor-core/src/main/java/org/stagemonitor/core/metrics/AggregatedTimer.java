@@ -7,23 +7,18 @@ import com.codahale.metrics.Timer;
 import java.util.concurrent.TimeUnit;
 
 /**
- * An extension of timer that aggregates multiple snapshots of a timer to a single value for each metric.
+ * An extension of timer that exposes the values which have been aggregated by the {@link MetricsAggregationReporter}.
  */
 class AggregatedTimer extends Timer {
-	private long count;
-	private double rate;
-	private AggregatedSnapshot snapshot;
+	private final long count;
+	private final double rate;
+	private final Snapshot snapshot;
 
-	AggregatedTimer(Timer timer) {
+	AggregatedTimer(long count, double rate, Snapshot snapshot) {
 		super(new SlidingWindowReservoir(0));
-		this.snapshot = new AggregatedSnapshot(timer.getSnapshot());
-		add(timer);
-	}
-
-	public void add(Timer timer) {
-		count = timer.getCount();
-		rate = timer.getMeanRate();
-		snapshot.add(timer.getSnapshot());
+		this.count = count;
+		this.rate = rate;
+		this.snapshot = snapshot;
 	}
 
 	@Override
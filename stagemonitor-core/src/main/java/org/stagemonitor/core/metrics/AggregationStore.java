@@ -0,0 +1,106 @@
+package org.stagemonitor.core.metrics;
+
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores a fixed number of <code>double</code> values per metric in fixed-size primitive arrays.
+ * <p/>
+ * Each metric gets a slot of <code>stride</code> values. The slots are allocated in chunks of {@link #CHUNK_SLOTS}
+ * slots, so at most one chunk is allocated but not used. This is much more compact than keeping a
+ * {@link com.codahale.metrics.Timer} or {@link com.codahale.metrics.Histogram} object per metric.
+ * <p/>
+ * This class is not thread safe.
+ */
+class AggregationStore {
+
+	static final int CHUNK_SLOTS = 256;
+	/**
+	 * The estimated number of bytes which are needed to find the slot of a metric by its name: the entry of the
+	 * {@link HashMap} (32 bytes), the boxed slot (16 bytes) and the references in the hash table and in the list of
+	 * names (about 16 bytes, including unused capacity)
+	 */
+	static final int INDEX_BYTES_PER_SLOT = 64;
+
+	private final int stride;
+	private final Map<MetricName, Integer> slots = new HashMap<MetricName, Integer>();
+	private final List<MetricName> names = new ArrayList<MetricName>();
+	private final List<double[]> chunks = new ArrayList<double[]>();
+
+	/**
+	 * @param stride the number of values per metric
+	 */
+	AggregationStore(int stride) {
+		this.stride = stride;
+	}
+
+	/**
+	 * @return the slot of the metric or -1, if the metric has not been added yet
+	 */
+	int getSlot(MetricName name) {
+		final Integer slot = slots.get(name);
+		return slot != null ? slot : -1;
+	}
+
+	/**
+	 * Adds a new metric whose values are initialized with <code>0</code>
+	 *
+	 * @return the slot of the new metric
+	 */
+	int addSlot(MetricName name) {
+		final int slot = slots.size();
+		if (slot == chunks.size() * CHUNK_SLOTS) {
+			chunks.add(new double[CHUNK_SLOTS * stride]);
+		}
+		names.add(name);
+		slots.put(name, slot);
+		return slot;
+	}
+
+	double get(int slot, int field) {
+		return chunks.get(slot / CHUNK_SLOTS)[(slot % CHUNK_SLOTS) * stride + field];
+	}
+
+	void set(int slot, int field, double value) {
+		chunks.get(slot / CHUNK_SLOTS)[(slot % CHUNK_SLOTS) * stride + field] = value;
+	}
+
+	MetricName getName(int slot) {
+		return names.get(slot);
+	}
+
+	/**
+	 * @return the number of metrics
+	 */
+	int size() {
+		return slots.size();
+	}
+
+	/**
+	 * @return the number of bytes which are needed to store the values of one metric
+	 */
+	int getBytesPerSlot() {
+		return stride * 8;
+	}
+
+	/**
+	 * @return the number of bytes which are needed to store one more metric, which includes the size of a chunk if a
+	 * new chunk has to be allocated
+	 */
+	int getBytesForNextSlot() {
+		final int chunkBytes = size() == chunks.size() * CHUNK_SLOTS ? CHUNK_SLOTS * getBytesPerSlot() : 0;
+		return chunkBytes + INDEX_BYTES_PER_SLOT;
+	}
+
+	/**
+	 * @return the number of bytes which are allocated for the values and the index of the metrics
+	 */
+	long getAllocatedBytes() {
+		return (long) chunks.size() * CHUNK_SLOTS * getBytesPerSlot() + (long) size() * INDEX_BYTES_PER_SLOT;
+	}
+
+}
@@ -0,0 +1,206 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reservoir} which records all values in a HdrHistogram instead of keeping a sample of the values.
+ * <p/>
+ * Recording a value is lock-free and does not allocate. The memory usage of the reservoir is fixed and does not
+ * depend on the number of recorded values. In contrast to the {@link com.codahale.metrics.ExponentiallyDecayingReservoir},
+ * creating a {@link Snapshot} does not copy and sort the values, it just swaps the histogram of the current interval.
+ * <p/>
+ * The values are recorded in intervals. A {@link Snapshot} contains the values of the last completed interval, so
+ * that multiple reporters which call {@link #getSnapshot()} in the same interval get the same snapshot. A new interval
+ * is started by the first call to {@link #getSnapshot()} after the snapshot interval has elapsed. As reporters are not
+ * scheduled exactly, a new interval is already started after half of the snapshot interval. Otherwise, a report which
+ * is slightly early would get the snapshot of the previous report again. Values are recorded
+ * with two significant digits, so the percentiles have a relative error of at most 1%.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+	private static final int NUMBER_OF_SIGNIFICANT_DIGITS = 2;
+
+	private final Recorder recorder;
+	private final long highestTrackableValue;
+	/**
+	 * Half of the snapshot interval, see class comment
+	 */
+	private final long minIntervalNanos;
+	private final Clock clock;
+	private volatile long intervalStart;
+	private volatile HdrSnapshot snapshot = new HdrSnapshot(null);
+
+	/**
+	 * Creates a reservoir which automatically resizes to track values of any magnitude
+	 *
+	 * @param snapshotInterval the interval after which {@link #getSnapshot()} starts a new interval
+	 * @param timeUnit         the unit of the snapshot interval
+	 */
+	public HdrHistogramReservoir(long snapshotInterval, TimeUnit timeUnit) {
+		this(snapshotInterval, timeUnit, Clock.defaultClock());
+	}
+
+	HdrHistogramReservoir(long snapshotInterval, TimeUnit timeUnit, Clock clock) {
+		this(new Recorder(NUMBER_OF_SIGNIFICANT_DIGITS), Long.MAX_VALUE, snapshotInterval, timeUnit, clock);
+	}
+
+	/**
+	 * Creates a reservoir with a fixed value range
+	 *
+	 * @param lowestDiscernibleValue the smallest value which can be distinguished from 0
+	 * @param highestTrackableValue  the highest value which can be tracked, higher values are recorded as this value
+	 * @param snapshotInterval       the interval after which {@link #getSnapshot()} starts a new interval
+	 * @param timeUnit               the unit of the snapshot interval
+	 */
+	public HdrHistogramReservoir(long lowestDiscernibleValue, long highestTrackableValue, long snapshotInterval, TimeUnit timeUnit) {
+		this(new Recorder(lowestDiscernibleValue, highestTrackableValue, NUMBER_OF_SIGNIFICANT_DIGITS),
+				highestTrackableValue, snapshotInterval, timeUnit, Clock.defaultClock());
+	}
+
+	private HdrHistogramReservoir(Recorder recorder, long highestTrackableValue, long snapshotInterval, TimeUnit timeUnit, Clock clock) {
+		this.recorder = recorder;
+		this.highestTrackableValue = highestTrackableValue;
+		this.minIntervalNanos = timeUnit.toNanos(snapshotInterval) / 2;
+		this.clock = clock;
+		this.intervalStart = clock.getTick();
+	}
+
+	/**
+	 * Creates a reservoir for durations in nanoseconds with a resolution of a microsecond
+	 * and durations of up to one hour
+	 *
+	 * @param snapshotInterval the interval after which {@link #getSnapshot()} starts a new interval
+	 * @param timeUnit         the unit of the snapshot interval
+	 * @return a reservoir for {@link com.codahale.metrics.Timer}s
+	 */
+	public static HdrHistogramReservoir forTimer(long snapshotInterval, TimeUnit timeUnit) {
+		return new HdrHistogramReservoir(TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.HOURS.toNanos(1), snapshotInterval, timeUnit);
+	}
+
+	@Override
+	public int size() {
+		return snapshot.size();
+	}
+
+	@Override
+	public void update(long value) {
+		recorder.recordValue(Math.max(0, Math.min(value, highestTrackableValue)));
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		if (clock.getTick() - intervalStart >= minIntervalNanos) {
+			startNewInterval();
+		}
+		return snapshot;
+	}
+
+	private synchronized void startNewInterval() {
+		final long now = clock.getTick();
+		// another thread might have started the interval in the meantime
+		if (now - intervalStart >= minIntervalNanos) {
+			intervalStart = now;
+			// the previous histogram can't be recycled as it might still be referenced by a snapshot
+			snapshot = new HdrSnapshot(recorder.getIntervalHistogram());
+		}
+	}
+
+	private static class HdrSnapshot extends Snapshot {
+
+		private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+		private final AbstractHistogram histogram;
+
+		private HdrSnapshot(AbstractHistogram histogram) {
+			this.histogram = histogram;
+		}
+
+		@Override
+		public double getValue(double quantile) {
+			if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+				throw new IllegalArgumentException(quantile + " is not in [0..1]");
+			}
+			if (isEmpty()) {
+				return 0;
+			}
+			return histogram.getValueAtPercentile(quantile * 100);
+		}
+
+		/**
+		 * Returns all values of the interval, which are rounded to the precision of the histogram.
+		 * <p/>
+		 * Note that this creates an array with one element per recorded value. Use the percentiles instead, if possible.
+		 */
+		@Override
+		public long[] getValues() {
+			final long[] values = new long[size()];
+			if (isEmpty()) {
+				return values;
+			}
+			int i = 0;
+			for (HistogramIterationValue value : histogram.recordedValues()) {
+				final long highestEquivalentValue = histogram.highestEquivalentValue(value.getValueIteratedTo());
+				for (long count = 0; count < value.getCountAddedInThisIterationStep() && i < values.length; count++) {
+					values[i++] = highestEquivalentValue;
+				}
+			}
+			return values;
+		}
+
+		@Override
+		public int size() {
+			if (isEmpty()) {
+				return 0;
+			}
+			return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+		}
+
+		@Override
+		public long getMax() {
+			return isEmpty() ? 0 : histogram.getMaxValue();
+		}
+
+		@Override
+		public double getMean() {
+			return isEmpty() ? 0 : histogram.getMean();
+		}
+
+		@Override
+		public long getMin() {
+			return isEmpty() ? 0 : histogram.getMinValue();
+		}
+
+		@Override
+		public double getStdDev() {
+			return isEmpty() ? 0 : histogram.getStdDeviation();
+		}
+
+		@Override
+		public void dump(OutputStream output) {
+			final PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8));
+			try {
+				for (long value : getValues()) {
+					out.printf("%d%n", value);
+				}
+			} finally {
+				out.close();
+			}
+		}
+
+		private boolean isEmpty() {
+			return histogram == null || histogram.getTotalCount() == 0;
+		}
+	}
+}
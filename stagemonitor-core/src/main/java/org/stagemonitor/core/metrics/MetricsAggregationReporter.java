@@ -9,6 +9,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,17 +20,44 @@ import org.stagemonitor.core.metrics.metrics2.ScheduledMetrics2Reporter;
 /**
  * The MetricsAggregationReporter computes aggregated values of all the metrics and hands them over to a list of other
  * reporters on server shutdown.
+ * <p/>
+ * The aggregated values of gauges, histograms and timers are kept in {@link AggregationStore}s, which only need a few
+ * primitive values per metric. The memory which is used for these values and for the index of the metric names is
+ * limited by {@link Builder#maxSizeBytes(long)}. If the limit is reached, metrics which have not been aggregated
+ * before are not included in the report.
  */
 public class MetricsAggregationReporter extends ScheduledMetrics2Reporter {
 
+	private static final int GAUGE_AVERAGE = 0;
+	private static final int GAUGE_SAMPLES = 1;
+	private static final int GAUGE_FIELDS = 2;
+
+	private static final int COUNT = 0;
+	private static final int RATE = 1;
+	private static final int MIN = 2;
+	private static final int MAX = 3;
+	private static final int MEAN = 4;
+	private static final int STD_DEV = 5;
+	private static final int P50 = 6;
+	private static final int P75 = 7;
+	private static final int P95 = 8;
+	private static final int P98 = 9;
+	private static final int P99 = 10;
+	private static final int P999 = 11;
+	private static final int SNAPSHOTS = 12;
+	private static final int SNAPSHOT_FIELDS = 13;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final List<ScheduledMetrics2Reporter> onShutdownReporters;
-	private Map<MetricName, Gauge> aggregatedGauges = new HashMap<MetricName, Gauge>();
+	private final long maxSizeBytes;
+	private final AggregationStore aggregatedGauges = new AggregationStore(GAUGE_FIELDS);
+	private final AggregationStore aggregatedHistograms = new AggregationStore(SNAPSHOT_FIELDS);
+	private final AggregationStore aggregatedTimers = new AggregationStore(SNAPSHOT_FIELDS);
+	private final Map<MetricName, Gauge> nonNumericGauges = new HashMap<MetricName, Gauge>();
 	private Map<MetricName, Counter> counters = new HashMap<MetricName, Counter>();
-	private Map<MetricName, Histogram> aggregatedHistograms = new HashMap<MetricName, Histogram>();
 	private Map<MetricName, Meter> meters = new HashMap<MetricName, Meter>();
-	private Map<MetricName, Timer> aggregatedTimers = new HashMap<MetricName, Timer>();
+	private boolean maxSizeReached;
 
 	public static Builder forRegistry(Metric2Registry registry) {
 		return new Builder(registry);
@@ -38,56 +66,128 @@ public class MetricsAggregationReporter extends ScheduledMetrics2Reporter {
 	public MetricsAggregationReporter(Builder builder) {
 		super(builder);
 		this.onShutdownReporters = builder.getOnShutdownReporters();
+		this.maxSizeBytes = builder.getMaxSizeBytes();
 	}
 
 	@Override
-	public void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters, Map<MetricName, Histogram> histograms,
-							  Map<MetricName, Meter> meters, Map<MetricName, Timer> timers) {
+	public synchronized void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters, Map<MetricName, Histogram> histograms,
+										   Map<MetricName, Meter> meters, Map<MetricName, Timer> timers) {
 
 		for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
-			if (entry.getValue().getValue() instanceof Number) {
-				final Gauge<Number> gauge = (Gauge<Number>) entry.getValue();
-				if (aggregatedGauges.containsKey(entry.getKey())) {
-					((AggregatedGauge) aggregatedGauges.get(entry.getKey())).add(gauge);
-				} else {
-					aggregatedGauges.put(entry.getKey(), new AggregatedGauge(gauge));
+			final Object value = entry.getValue().getValue();
+			if (value instanceof Number) {
+				final int slot = getOrAddSlot(aggregatedGauges, entry.getKey());
+				if (slot >= 0) {
+					addToAverage(aggregatedGauges, slot, GAUGE_AVERAGE, GAUGE_SAMPLES, ((Number) value).doubleValue());
+					aggregatedGauges.set(slot, GAUGE_SAMPLES, aggregatedGauges.get(slot, GAUGE_SAMPLES) + 1);
 				}
 			} else {
-				aggregatedGauges.put(entry.getKey(), entry.getValue());
+				nonNumericGauges.put(entry.getKey(), entry.getValue());
 			}
 		}
-		this.counters = counters;
+		this.counters = new HashMap<MetricName, Counter>(counters);
 		for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
-			if (aggregatedHistograms.containsKey(entry.getKey())) {
-				((AggregatedHistogram) aggregatedHistograms.get(entry.getKey())).add(entry.getValue());
-			} else {
-				aggregatedHistograms.put(entry.getKey(), new AggregatedHistogram(entry.getValue()));
+			final int slot = getOrAddSlot(aggregatedHistograms, entry.getKey());
+			if (slot >= 0) {
+				aggregatedHistograms.set(slot, COUNT, entry.getValue().getCount());
+				addSnapshot(aggregatedHistograms, slot, entry.getValue().getSnapshot());
 			}
 		}
-		this.meters = meters;
+		this.meters = new HashMap<MetricName, Meter>(meters);
 		for (Map.Entry<MetricName, Timer> entry : timers.entrySet()) {
-			if (aggregatedTimers.containsKey(entry.getKey())) {
-				((AggregatedTimer) aggregatedTimers.get(entry.getKey())).add(entry.getValue());
-			} else {
-				aggregatedTimers.put(entry.getKey(), new AggregatedTimer(entry.getValue()));
+			final int slot = getOrAddSlot(aggregatedTimers, entry.getKey());
+			if (slot >= 0) {
+				aggregatedTimers.set(slot, COUNT, entry.getValue().getCount());
+				aggregatedTimers.set(slot, RATE, entry.getValue().getMeanRate());
+				addSnapshot(aggregatedTimers, slot, entry.getValue().getSnapshot());
 			}
 		}
 	}
 
+	/**
+	 * @return the slot of the metric or -1, if the metric is new and the memory limit has been reached
+	 */
+	private int getOrAddSlot(AggregationStore store, MetricName name) {
+		final int slot = store.getSlot(name);
+		if (slot >= 0) {
+			return slot;
+		}
+		if (getAllocatedBytes() + store.getBytesForNextSlot() > maxSizeBytes) {
+			if (!maxSizeReached) {
+				maxSizeReached = true;
+				logger.warn("The metrics aggregation has reached its memory limit of {} KB. " +
+						"Metrics which are created from now on are not included in the aggregated report.", maxSizeBytes / 1024);
+			}
+			return -1;
+		}
+		return store.addSlot(name);
+	}
+
+	private long getAllocatedBytes() {
+		return aggregatedGauges.getAllocatedBytes() + aggregatedHistograms.getAllocatedBytes() + aggregatedTimers.getAllocatedBytes();
+	}
+
+	private static void addSnapshot(AggregationStore store, int slot, Snapshot snapshot) {
+		final double snapshots = store.get(slot, SNAPSHOTS);
+		if (snapshots == 0) {
+			store.set(slot, MIN, snapshot.getMin());
+			store.set(slot, MAX, snapshot.getMax());
+		} else {
+			store.set(slot, MIN, Math.min(store.get(slot, MIN), snapshot.getMin()));
+			store.set(slot, MAX, Math.max(store.get(slot, MAX), snapshot.getMax()));
+		}
+		addToAverage(store, slot, MEAN, SNAPSHOTS, snapshot.getMean());
+		addToAverage(store, slot, STD_DEV, SNAPSHOTS, snapshot.getStdDev());
+		addToAverage(store, slot, P50, SNAPSHOTS, snapshot.getMedian());
+		addToAverage(store, slot, P75, SNAPSHOTS, snapshot.get75thPercentile());
+		addToAverage(store, slot, P95, SNAPSHOTS, snapshot.get95thPercentile());
+		addToAverage(store, slot, P98, SNAPSHOTS, snapshot.get98thPercentile());
+		addToAverage(store, slot, P99, SNAPSHOTS, snapshot.get99thPercentile());
+		addToAverage(store, slot, P999, SNAPSHOTS, snapshot.get999thPercentile());
+		store.set(slot, SNAPSHOTS, snapshots + 1);
+	}
+
+	private static void addToAverage(AggregationStore store, int slot, int field, int countField, double value) {
+		store.set(slot, field, computeMovingAverage(store.get(slot, field), (int) store.get(slot, countField), value));
+	}
+
 	/**
 	 * Should be called just before the server is shutting down.
 	 * The aggregated metrics are then reported by the {@link #onShutdownReporters}
 	 */
-	public void onShutDown() {
+	public synchronized void onShutDown() {
+		final Map<MetricName, Gauge> gauges = new HashMap<MetricName, Gauge>();
+		for (int slot = 0; slot < aggregatedGauges.size(); slot++) {
+			gauges.put(aggregatedGauges.getName(slot), new AggregatedGauge(aggregatedGauges.get(slot, GAUGE_AVERAGE),
+					(int) aggregatedGauges.get(slot, GAUGE_SAMPLES)));
+		}
+		gauges.putAll(nonNumericGauges);
+		final Map<MetricName, Histogram> histograms = new HashMap<MetricName, Histogram>();
+		for (int slot = 0; slot < aggregatedHistograms.size(); slot++) {
+			histograms.put(aggregatedHistograms.getName(slot),
+					new AggregatedHistogram((long) aggregatedHistograms.get(slot, COUNT), getSnapshot(aggregatedHistograms, slot)));
+		}
+		final Map<MetricName, Timer> timers = new HashMap<MetricName, Timer>();
+		for (int slot = 0; slot < aggregatedTimers.size(); slot++) {
+			timers.put(aggregatedTimers.getName(slot), new AggregatedTimer((long) aggregatedTimers.get(slot, COUNT),
+					aggregatedTimers.get(slot, RATE), getSnapshot(aggregatedTimers, slot)));
+		}
+
 		for (ScheduledMetrics2Reporter onShutdownReporter : onShutdownReporters) {
 			try {
-				onShutdownReporter.reportMetrics(aggregatedGauges, counters, aggregatedHistograms, meters, aggregatedTimers);
+				onShutdownReporter.reportMetrics(gauges, counters, histograms, meters, timers);
 			} catch (RuntimeException e) {
 				logger.warn(e.getMessage() + " (this exception was ignored)", e);
 			}
 		}
 	}
 
+	private static AggregatedSnapshot getSnapshot(AggregationStore store, int slot) {
+		return new AggregatedSnapshot((long) store.get(slot, MIN), (long) store.get(slot, MAX), store.get(slot, MEAN),
+				store.get(slot, STD_DEV), store.get(slot, P50), store.get(slot, P75), store.get(slot, P95),
+				store.get(slot, P98), store.get(slot, P99), store.get(slot, P999));
+	}
+
 	/**
 	 * Computes the average without storing all measurements
 	 *
@@ -102,6 +202,7 @@ public class MetricsAggregationReporter extends ScheduledMetrics2Reporter {
 
 	public static class Builder extends ScheduledMetrics2Reporter.Builder<MetricsAggregationReporter, Builder> {
 		private final List<ScheduledMetrics2Reporter> onShutdownReporters = new LinkedList<ScheduledMetrics2Reporter>();
+		private long maxSizeBytes = 8 * 1024 * 1024;
 
 		/**
 		 * @param registry the registry to report
@@ -119,6 +220,22 @@ public class MetricsAggregationReporter extends ScheduledMetrics2Reporter {
 			return this;
 		}
 
+		public long getMaxSizeBytes() {
+			return maxSizeBytes;
+		}
+
+		/**
+		 * Limits the memory which is used to store the aggregated values of gauges, histograms and timers, including the
+		 * estimated overhead of looking up the values by metric name.
+		 *
+		 * @param maxSizeBytes the maximum number of bytes
+		 * @return {@code this}
+		 */
+		public Builder maxSizeBytes(long maxSizeBytes) {
+			this.maxSizeBytes = maxSizeBytes;
+			return this;
+		}
+
 		@Override
 		public MetricsAggregationReporter build() {
 			return new MetricsAggregationReporter(this);
@@ -0,0 +1,122 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.Timer;
+
+import org.stagemonitor.core.instrument.WeakConcurrentMap;
+import org.stagemonitor.core.util.ExecutorUtils;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers the same question as {@link MetricUtils#isFasterThanXPercentOfAllRequests(long, double, Timer)} without
+ * creating a {@link Timer#getSnapshot()} for each request.
+ * <p/>
+ * Creating a snapshot copies and sorts the whole reservoir of the timer. Instead, the value of the percentile is
+ * cached per timer and only recomputed in the background once the recomputation interval has elapsed. That way, the
+ * per request check is just a comparison with a volatile long, regardless of the size of the reservoir.
+ * <p/>
+ * The percentile is only computed by the requesting thread if there is no value for the timer and percentile yet.
+ * <p/>
+ * The value is stored in the {@link PercentileTrackingTimer} itself. Only other timers need a lookup in a map.
+ */
+public class PercentileThresholdTracker {
+
+	private static final ThreadPoolExecutor recomputationPool = ExecutorUtils
+			.createSingleThreadDeamonPool("percentile-threshold-recomputation", 1000);
+
+	private final WeakConcurrentMap<Timer, Threshold> thresholds = new WeakConcurrentMap
+			.WithInlinedExpunction<Timer, Threshold>();
+	private final long recomputationIntervalNanos;
+
+	/**
+	 * @param recomputationInterval the interval after which the percentile is computed again
+	 * @param timeUnit              the unit of the interval
+	 */
+	public PercentileThresholdTracker(long recomputationInterval, TimeUnit timeUnit) {
+		this.recomputationIntervalNanos = timeUnit.toNanos(recomputationInterval);
+	}
+
+	public boolean isFasterThanXPercentOfAllRequests(long executionTimeNanos, double percentileLimit, Timer timer) {
+		boolean faster = true;
+		if (percentileLimit > 0) {
+			if (percentileLimit >= 1) {
+				faster = false;
+			} else if (executionTimeNanos < getThreshold(timer, percentileLimit)) {
+				faster = false;
+			}
+		}
+		return faster;
+	}
+
+	/**
+	 * Returns the value of the percentile of the timer, rounded up to the next nanosecond.
+	 * <p/>
+	 * The value may be up to one recomputation interval old.
+	 */
+	long getThreshold(Timer timer, double percentile) {
+		Threshold threshold = getCachedThreshold(timer);
+		if (threshold == null || threshold.percentile != percentile) {
+			// the percentile limit is dynamic, so it might have changed since the last computation
+			threshold = new Threshold(timer, percentile);
+			cacheThreshold(timer, threshold);
+		} else if (System.nanoTime() - threshold.computedAt >= recomputationIntervalNanos) {
+			threshold.scheduleRecomputation();
+		}
+		return threshold.value;
+	}
+
+	private Threshold getCachedThreshold(Timer timer) {
+		if (timer instanceof PercentileTrackingTimer) {
+			return ((PercentileTrackingTimer) timer).threshold;
+		}
+		return thresholds.get(timer);
+	}
+
+	private void cacheThreshold(Timer timer, Threshold threshold) {
+		if (timer instanceof PercentileTrackingTimer) {
+			((PercentileTrackingTimer) timer).threshold = threshold;
+		} else {
+			thresholds.put(timer, threshold);
+		}
+	}
+
+	static class Threshold implements Runnable {
+
+		private final Timer timer;
+		private final double percentile;
+		private final AtomicBoolean recomputationScheduled = new AtomicBoolean();
+		private volatile long value;
+		private volatile long computedAt;
+
+		private Threshold(Timer timer, double percentile) {
+			this.timer = timer;
+			this.percentile = percentile;
+			run();
+		}
+
+		private void scheduleRecomputation() {
+			if (recomputationScheduled.compareAndSet(false, true)) {
+				try {
+					recomputationPool.execute(this);
+				} catch (RejectedExecutionException e) {
+					// try again on the next request
+					recomputationScheduled.set(false);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				// as the execution times are longs, executionTime < percentile is equal to executionTime < ceil(percentile)
+				value = (long) Math.ceil(timer.getSnapshot().getValue(percentile));
+				computedAt = System.nanoTime();
+			} finally {
+				recomputationScheduled.set(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
+
+/**
+ * A {@link Timer} which holds the percentile threshold of a {@link PercentileThresholdTracker}, so that the threshold
+ * can be accessed without a map lookup.
+ * <p/>
+ * The timers of the {@link org.stagemonitor.core.metrics.metrics2.Metric2Registry} are instances of this class.
+ */
+public class PercentileTrackingTimer extends Timer {
+
+	volatile PercentileThresholdTracker.Threshold threshold;
+
+	public PercentileTrackingTimer(Reservoir reservoir) {
+		super(reservoir);
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Reservoir;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type of {@link Reservoir} which is used for {@link com.codahale.metrics.Timer}s and
+ * {@link com.codahale.metrics.Histogram}s created by the {@link org.stagemonitor.core.metrics.metrics2.Metric2Registry}
+ */
+public enum ReservoirType {
+
+	/**
+	 * Keeps a sample of 1028 values which is biased towards the last five minutes.
+	 * <p/>
+	 * This is the default of Dropwizard Metrics.
+	 */
+	EXPONENTIALLY_DECAYING {
+		@Override
+		public Reservoir createTimerReservoir(long snapshotInterval, TimeUnit timeUnit) {
+			return new ExponentiallyDecayingReservoir();
+		}
+
+		@Override
+		public Reservoir createHistogramReservoir(long snapshotInterval, TimeUnit timeUnit) {
+			return new ExponentiallyDecayingReservoir();
+		}
+	},
+
+	/**
+	 * Records all values of a snapshot interval with fixed memory usage and lock-free updates
+	 *
+	 * @see HdrHistogramReservoir
+	 */
+	HDR_HISTOGRAM {
+		@Override
+		public Reservoir createTimerReservoir(long snapshotInterval, TimeUnit timeUnit) {
+			return HdrHistogramReservoir.forTimer(snapshotInterval, timeUnit);
+		}
+
+		@Override
+		public Reservoir createHistogramReservoir(long snapshotInterval, TimeUnit timeUnit) {
+			return new HdrHistogramReservoir(snapshotInterval, timeUnit);
+		}
+	};
+
+	/**
+	 * Creates a reservoir for durations in nanoseconds
+	 *
+	 * @param snapshotInterval the interval of the snapshots, if supported by the reservoir
+	 * @param timeUnit         the unit of the snapshot interval
+	 * @return a new reservoir
+	 */
+	public abstract Reservoir createTimerReservoir(long snapshotInterval, TimeUnit timeUnit);
+
+	/**
+	 * Creates a reservoir for arbitrary non-negative values
+	 *
+	 * @param snapshotInterval the interval of the snapshots, if supported by the reservoir
+	 * @param timeUnit         the unit of the snapshot interval
+	 * @return a new reservoir
+	 */
+	public abstract Reservoir createHistogramReservoir(long snapshotInterval, TimeUnit timeUnit);
+}
@@ -34,9 +34,9 @@ public class ExceptionMeteredTransformer extends StagemonitorByteBuddyTransforme
 	}
 
 	@Advice.OnMethodExit(onThrowable = Exception.class, inline = false)
-	public static void meterException(@ExceptionMeteredSignature String signature, @MeterExceptionsFor Class<? extends Exception> cause, @Advice.Thrown Throwable e) {
+	public static void meterException(@ExceptionMeteredSignature int meterHandleId, @MeterExceptionsFor Class<? extends Exception> cause, @Advice.Thrown Throwable e) {
 		if (e != null && cause.isInstance(e)) {
-			Stagemonitor.getMetric2Registry().meter(getMetricName(signature)).mark();
+			MetricHandleRegistry.getHandle(meterHandleId).meter(Stagemonitor.getMetric2Registry()).mark();
 		}
 	}
 
@@ -50,6 +50,9 @@ public class ExceptionMeteredTransformer extends StagemonitorByteBuddyTransforme
 				new ExceptionMeteredTransformer.MeterExceptionsForDynamicValue());
 	}
 
+	/**
+	 * Resolves to the id of the {@link MetricHandleRegistry} handle of the exception meter of the instrumented method
+	 */
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target(ElementType.PARAMETER)
 	protected @interface ExceptionMeteredSignature {
@@ -57,6 +60,15 @@ public class ExceptionMeteredTransformer extends StagemonitorByteBuddyTransforme
 
 	public static class ExceptionMeteredSignatureDynamicValue extends MetricAnnotationSignatureDynamicValue<ExceptionMeteredSignature> {
 
+		@Override
+		protected Object doResolve(TypeDescription instrumentedType,
+								   MethodDescription instrumentedMethod,
+								   ParameterDescription.InDefinedShape target,
+								   AnnotationDescription.Loadable<ExceptionMeteredSignature> annotation,
+								   Assigner assigner, boolean initialized) {
+			return MetricHandleRegistry.register(getMetricName(getRequestName(instrumentedMethod)));
+		}
+
 		@Override
 		protected NamingParameters getNamingParameters(MethodDescription instrumentedMethod) {
 			final ExceptionMetered exceptionMetered = instrumentedMethod.getDeclaredAnnotations().ofType(ExceptionMetered.class).loadSilent();
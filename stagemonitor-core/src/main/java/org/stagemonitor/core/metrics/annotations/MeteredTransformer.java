@@ -3,7 +3,11 @@ package org.stagemonitor.core.metrics.annotations;
 import com.codahale.metrics.annotation.Metered;
 
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.method.ParameterDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import org.stagemonitor.core.Stagemonitor;
@@ -33,8 +37,8 @@ public class MeteredTransformer extends StagemonitorByteBuddyTransformer {
 	}
 
 	@Advice.OnMethodEnter
-	public static void meter(@MeteredSignature String signature) {
-		Stagemonitor.getMetric2Registry().meter(metricNameTemplate.build(signature)).mark();
+	public static void meter(@MeteredSignature int meterHandleId) {
+		MetricHandleRegistry.getHandle(meterHandleId).meter(Stagemonitor.getMetric2Registry()).mark();
 	}
 
 	@Override
@@ -42,6 +46,9 @@ public class MeteredTransformer extends StagemonitorByteBuddyTransformer {
 		return Collections.<StagemonitorDynamicValue<?>>singletonList(new MeteredSignatureDynamicValue());
 	}
 
+	/**
+	 * Resolves to the id of the {@link MetricHandleRegistry} handle of the meter of the instrumented method
+	 */
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target(ElementType.PARAMETER)
 	public @interface MeteredSignature {
@@ -49,6 +56,15 @@ public class MeteredTransformer extends StagemonitorByteBuddyTransformer {
 
 	public static class MeteredSignatureDynamicValue extends MetricAnnotationSignatureDynamicValue<MeteredSignature> {
 
+		@Override
+		protected Object doResolve(TypeDescription instrumentedType,
+								   MethodDescription instrumentedMethod,
+								   ParameterDescription.InDefinedShape target,
+								   AnnotationDescription.Loadable<MeteredSignature> annotation,
+								   Assigner assigner, boolean initialized) {
+			return MetricHandleRegistry.register(metricNameTemplate.build(getRequestName(instrumentedMethod)));
+		}
+
 		@Override
 		protected NamingParameters getNamingParameters(MethodDescription instrumentedMethod) {
 			final Metered metered = instrumentedMethod.getDeclaredAnnotations().ofType(Metered.class).loadSilent();
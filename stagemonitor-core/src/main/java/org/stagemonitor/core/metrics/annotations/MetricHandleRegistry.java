@@ -0,0 +1,70 @@
+package org.stagemonitor.core.metrics.annotations;
+
+import org.stagemonitor.core.metrics.metrics2.MetricHandle;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns a stable id to the metric of each method which is annotated with a metric annotation like
+ * {@link com.codahale.metrics.annotation.Timed}.
+ * <p/>
+ * The ids are assigned when a method is instrumented and are embedded as constants into the instrumented method.
+ * That way, the instrumented method resolves its metric via an array access and a {@link MetricHandle} instead of
+ * building the {@link MetricName} and looking up the metric in the registry on each invocation.
+ */
+public final class MetricHandleRegistry {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private static final ConcurrentMap<MetricName, Integer> handleIds = new ConcurrentHashMap<MetricName, Integer>();
+	private static volatile MetricHandle[] handles = new MetricHandle[INITIAL_CAPACITY];
+	private static int size;
+
+	private MetricHandleRegistry() {
+	}
+
+	/**
+	 * Returns the id of the handle for the metric name and registers it if it is not registered yet.
+	 * <p/>
+	 * This method should only be called when a method is instrumented as registered handles are never removed.
+	 *
+	 * @param metricName the name of the metric
+	 * @return the id of the handle
+	 */
+	public static int register(MetricName metricName) {
+		final Integer handleId = handleIds.get(metricName);
+		if (handleId != null) {
+			return handleId;
+		}
+		synchronized (MetricHandleRegistry.class) {
+			final Integer existingHandleId = handleIds.get(metricName);
+			if (existingHandleId != null) {
+				return existingHandleId;
+			}
+			MetricHandle[] currentHandles = handles;
+			if (size == currentHandles.length) {
+				currentHandles = Arrays.copyOf(currentHandles, size * 2);
+			}
+			final int newHandleId = size++;
+			currentHandles[newHandleId] = new MetricHandle(metricName);
+			// the volatile write publishes the new entry to threads which resolve the handle
+			handles = currentHandles;
+			handleIds.put(metricName, newHandleId);
+			return newHandleId;
+		}
+	}
+
+	/**
+	 * Resolves the id which has been returned by {@link #register(MetricName)}
+	 *
+	 * @param handleId the id of the handle
+	 * @return the handle
+	 */
+	public static MetricHandle getHandle(int handleId) {
+		return handles[handleId];
+	}
+
+}
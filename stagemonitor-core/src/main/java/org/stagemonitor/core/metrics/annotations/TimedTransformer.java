@@ -4,7 +4,11 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.annotation.Timed;
 
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.method.ParameterDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import org.stagemonitor.core.Stagemonitor;
@@ -39,8 +43,8 @@ public class TimedTransformer extends StagemonitorByteBuddyTransformer {
 	}
 
 	@Advice.OnMethodEnter
-	public static Timer.Context startTimer(@TimedSignature String signature) {
-		return Stagemonitor.getMetric2Registry().timer(getTimerName(signature)).time();
+	public static Timer.Context startTimer(@TimedSignature int timerHandleId) {
+		return MetricHandleRegistry.getHandle(timerHandleId).timer(Stagemonitor.getMetric2Registry()).time();
 	}
 
 	public static MetricName getTimerName(String signature) {
@@ -52,6 +56,9 @@ public class TimedTransformer extends StagemonitorByteBuddyTransformer {
 		timer.stop();
 	}
 
+	/**
+	 * Resolves to the id of the {@link MetricHandleRegistry} handle of the timer of the instrumented method
+	 */
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target(ElementType.PARAMETER)
 	public @interface TimedSignature {
@@ -59,6 +66,15 @@ public class TimedTransformer extends StagemonitorByteBuddyTransformer {
 
 	public static class TimedSignatureDynamicValue extends MetricAnnotationSignatureDynamicValue<TimedSignature> {
 
+		@Override
+		protected Object doResolve(TypeDescription instrumentedType,
+								   MethodDescription instrumentedMethod,
+								   ParameterDescription.InDefinedShape target,
+								   AnnotationDescription.Loadable<TimedSignature> annotation,
+								   Assigner assigner, boolean initialized) {
+			return MetricHandleRegistry.register(getTimerName(getRequestName(instrumentedMethod)));
+		}
+
 		@Override
 		protected NamingParameters getNamingParameters(MethodDescription instrumentedMethod) {
 			if (instrumentedMethod.getDeclaredAnnotations().isAnnotationPresent(Timed.class)) {
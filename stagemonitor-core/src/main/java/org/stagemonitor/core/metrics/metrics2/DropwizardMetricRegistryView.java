@@ -0,0 +1,222 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A read-only {@link MetricRegistry} which is backed by a {@link Metric2Registry}.
+ * <p/>
+ * This is used when the {@link Metric2Registry} does not mirror its metrics to a Dropwizard {@link MetricRegistry}
+ * (see {@link Metric2Registry#setDropwizardMirroring(boolean)}). Instead of storing every metric twice, the graphite
+ * names are only computed when a reporter, like the Graphite reporter, reads the metrics or when there are listeners,
+ * like the JMX reporter.
+ */
+class DropwizardMetricRegistryView extends MetricRegistry {
+
+	private final Metric2Registry metric2Registry;
+	private final List<MetricRegistryListener> listeners = new CopyOnWriteArrayList<MetricRegistryListener>();
+
+	DropwizardMetricRegistryView(Metric2Registry metric2Registry) {
+		this.metric2Registry = metric2Registry;
+	}
+
+	void onMetricAdded(MetricName name, Metric metric) {
+		if (!listeners.isEmpty()) {
+			final String graphiteName = name.toGraphiteName();
+			for (MetricRegistryListener listener : listeners) {
+				notifyListenerOfAddedMetric(listener, graphiteName, metric);
+			}
+		}
+	}
+
+	void onMetricRemoved(MetricName name, Metric metric) {
+		if (!listeners.isEmpty()) {
+			final String graphiteName = name.toGraphiteName();
+			for (MetricRegistryListener listener : listeners) {
+				notifyListenerOfRemovedMetric(listener, graphiteName, metric);
+			}
+		}
+	}
+
+	@Override
+	public void addListener(MetricRegistryListener listener) {
+		listeners.add(listener);
+		for (Map.Entry<MetricName, Metric> entry : metric2Registry.getMetrics().entrySet()) {
+			notifyListenerOfAddedMetric(listener, entry.getKey().toGraphiteName(), entry.getValue());
+		}
+	}
+
+	@Override
+	public void removeListener(MetricRegistryListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public SortedSet<String> getNames() {
+		final TreeSet<String> names = new TreeSet<String>();
+		for (MetricName name : metric2Registry.getMetrics().keySet()) {
+			names.add(name.toGraphiteName());
+		}
+		return Collections.unmodifiableSortedSet(names);
+	}
+
+	@Override
+	public Map<String, Metric> getMetrics() {
+		return getMetrics(Metric.class, MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Gauge> getGauges() {
+		return getGauges(MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Gauge> getGauges(MetricFilter filter) {
+		return getMetrics(Gauge.class, filter);
+	}
+
+	@Override
+	public SortedMap<String, Counter> getCounters() {
+		return getCounters(MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Counter> getCounters(MetricFilter filter) {
+		return getMetrics(Counter.class, filter);
+	}
+
+	@Override
+	public SortedMap<String, Histogram> getHistograms() {
+		return getHistograms(MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Histogram> getHistograms(MetricFilter filter) {
+		return getMetrics(Histogram.class, filter);
+	}
+
+	@Override
+	public SortedMap<String, Meter> getMeters() {
+		return getMeters(MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Meter> getMeters(MetricFilter filter) {
+		return getMetrics(Meter.class, filter);
+	}
+
+	@Override
+	public SortedMap<String, Timer> getTimers() {
+		return getTimers(MetricFilter.ALL);
+	}
+
+	@Override
+	public SortedMap<String, Timer> getTimers(MetricFilter filter) {
+		return getMetrics(Timer.class, filter);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Metric> SortedMap<String, T> getMetrics(Class<T> klass, MetricFilter filter) {
+		final TreeMap<String, T> metrics = new TreeMap<String, T>();
+		for (Map.Entry<MetricName, Metric> entry : metric2Registry.getMetrics().entrySet()) {
+			// check the type first so that graphite names are only created for the requested metrics
+			if (klass.isInstance(entry.getValue())) {
+				final String graphiteName = entry.getKey().toGraphiteName();
+				if (filter.matches(graphiteName, entry.getValue())) {
+					metrics.put(graphiteName, (T) entry.getValue());
+				}
+			}
+		}
+		return Collections.unmodifiableSortedMap(metrics);
+	}
+
+	@Override
+	public <T extends Metric> T register(String name, T metric) {
+		throw readOnly();
+	}
+
+	@Override
+	public void registerAll(MetricSet metrics) {
+		throw readOnly();
+	}
+
+	@Override
+	public Counter counter(String name) {
+		throw readOnly();
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		throw readOnly();
+	}
+
+	@Override
+	public Meter meter(String name) {
+		throw readOnly();
+	}
+
+	@Override
+	public Timer timer(String name) {
+		throw readOnly();
+	}
+
+	@Override
+	public boolean remove(String name) {
+		throw readOnly();
+	}
+
+	@Override
+	public void removeMatching(MetricFilter filter) {
+		throw readOnly();
+	}
+
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("This view of the Metric2Registry is read-only. " +
+				"Register metrics at the Metric2Registry instead.");
+	}
+
+	private static void notifyListenerOfAddedMetric(MetricRegistryListener listener, String name, Metric metric) {
+		if (metric instanceof Gauge) {
+			listener.onGaugeAdded(name, (Gauge<?>) metric);
+		} else if (metric instanceof Counter) {
+			listener.onCounterAdded(name, (Counter) metric);
+		} else if (metric instanceof Histogram) {
+			listener.onHistogramAdded(name, (Histogram) metric);
+		} else if (metric instanceof Meter) {
+			listener.onMeterAdded(name, (Meter) metric);
+		} else if (metric instanceof Timer) {
+			listener.onTimerAdded(name, (Timer) metric);
+		}
+	}
+
+	private static void notifyListenerOfRemovedMetric(MetricRegistryListener listener, String name, Metric metric) {
+		if (metric instanceof Gauge) {
+			listener.onGaugeRemoved(name);
+		} else if (metric instanceof Counter) {
+			listener.onCounterRemoved(name);
+		} else if (metric instanceof Histogram) {
+			listener.onHistogramRemoved(name);
+		} else if (metric instanceof Meter) {
+			listener.onMeterRemoved(name);
+		} else if (metric instanceof Timer) {
+			listener.onTimerRemoved(name);
+		}
+	}
+}
@@ -8,11 +8,15 @@ import com.codahale.metrics.Metric;
 import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.util.DiskSpool;
 import org.stagemonitor.core.util.HttpClient;
 import org.stagemonitor.core.util.JsonUtils;
 import org.stagemonitor.util.StringUtils;
@@ -21,6 +25,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
@@ -34,12 +40,26 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final Logger elasticsearchMetricsLogger;
 
-	private final Map<String, String> globalTags;
 	private final CorePlugin corePlugin;
 	private final HttpClient httpClient;
 	private final JsonFactory jfactory = new JsonFactory();
+	private final ConcurrentMap<MetricName, SerializableString> nameAndTagsCache = new ConcurrentHashMap<MetricName, SerializableString>();
+	/**
+	 * The {@link Metric2Registry#getRemovals()} when the {@link #nameAndTagsCache} has last been cleaned up
+	 */
+	private volatile long removals;
+	private final String globalTagsJson;
+	private volatile SerializedString bulkAction;
 	private final Metric2RegistryModule metric2RegistryModule;
 	private final ElasticsearchClient elasticsearchClient;
+	private final DiskSpool spool;
+	private final DiskSpool.BatchSender bulkSender = new DiskSpool.BatchSender() {
+		@Override
+		public boolean send(HttpClient.OutputStreamHandler batch) {
+			return Boolean.TRUE.equals(httpClient.send("POST", corePlugin.getElasticsearchUrl() + "/_bulk", null,
+					batch, new ElasticsearchClient.BulkErrorReportingResponseHandler()));
+		}
+	};
 
 	public static ElasticsearchReporter.Builder forRegistry(Metric2Registry registry, CorePlugin corePlugin) {
 		return new Builder(registry, corePlugin);
@@ -48,12 +68,18 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 	private ElasticsearchReporter(Builder builder) {
 		super(builder);
 		this.elasticsearchMetricsLogger = builder.getElasticsearchMetricsLogger();
-		this.globalTags = builder.getGlobalTags();
+		final StringBuilder globalTagsJson = new StringBuilder();
+		for (Map.Entry<String, String> entry : builder.getGlobalTags().entrySet()) {
+			appendField(globalTagsJson, entry.getKey(), entry.getValue());
+		}
+		this.globalTagsJson = globalTagsJson.toString();
 		this.httpClient = builder.getHttpClient();
 		this.jfactory.setCodec(JsonUtils.getMapper());
+		this.jfactory.setRootValueSeparator(null);
 		this.metric2RegistryModule = new Metric2RegistryModule(builder.getRateUnit(), builder.getDurationUnit());
 		this.corePlugin = builder.getCorePlugin();
 		this.elasticsearchClient = corePlugin.getElasticsearchClient();
+		this.spool = corePlugin.getSpool("elasticsearch-metrics");
 	}
 
 	@Override
@@ -69,11 +95,19 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 		final MetricsOutputStreamHandler metricsOutputStreamHandler = new MetricsOutputStreamHandler(gauges, counters, histograms, meters, timers, timestamp);
 		if (!corePlugin.isOnlyLogElasticsearchMetricReports()) {
 			if (!elasticsearchClient.isElasticsearchAvailable()) {
+				appendToSpool(metricsOutputStreamHandler);
 				return;
 			}
 
-			httpClient.send("POST", corePlugin.getElasticsearchUrl() + "/_bulk", null,
-					metricsOutputStreamHandler, new ElasticsearchClient.BulkErrorReportingResponseHandler());
+			if (spool != null) {
+				try {
+					spool.sendOrAppend(bulkSender, metricsOutputStreamHandler);
+				} catch (IOException e) {
+					logger.warn(e.getMessage(), e);
+				}
+			} else {
+				bulkSender.send(metricsOutputStreamHandler);
+			}
 		} else {
 			try {
 				final ByteArrayOutputStream os = new ByteArrayOutputStream();
@@ -86,42 +120,112 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 		time.stop();
 	}
 
+	private void appendToSpool(MetricsOutputStreamHandler metricsOutputStreamHandler) {
+		if (spool != null) {
+			try {
+				spool.append(metricsOutputStreamHandler);
+			} catch (IOException e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
+	}
+
 	public void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
 							  Map<MetricName, Histogram> histograms, final Map<MetricName, Meter> meters,
 							  Map<MetricName, Timer> timers, OutputStream os, byte[] bulkActionBytes, long timestamp) throws IOException {
 
-		reportMetric(gauges, timestamp, metric2RegistryModule.getValueWriter(Gauge.class), os, bulkActionBytes);
-		reportMetric(counters, timestamp, metric2RegistryModule.getValueWriter(Counter.class), os, bulkActionBytes);
-		reportMetric(histograms, timestamp, metric2RegistryModule.getValueWriter(Histogram.class), os, bulkActionBytes);
-		reportMetric(meters, timestamp, metric2RegistryModule.getValueWriter(Meter.class), os, bulkActionBytes);
-		reportMetric(timers, timestamp, metric2RegistryModule.getValueWriter(Timer.class), os, bulkActionBytes);
+		final JsonGenerator jg = jfactory.createGenerator(os);
+		reportMetrics(gauges, counters, histograms, meters, timers, jg, new SerializedString(new String(bulkActionBytes, "UTF-8")), timestamp);
+		jg.flush();
+	}
+
+	/**
+	 * Writes all metrics with a single {@link JsonGenerator}.
+	 * <p/>
+	 * The bulk action line only changes once a day and the name and tags of a metric only change with the
+	 * {@link MetricName}. That's why they are not rendered for each report but written as pre-encoded raw values.
+	 */
+	private void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
+							   Map<MetricName, Histogram> histograms, final Map<MetricName, Meter> meters,
+							   Map<MetricName, Timer> timers, JsonGenerator jg, SerializableString bulkAction, long timestamp) throws IOException {
+
+		evictRemovedMetrics();
+		reportMetric(gauges, timestamp, metric2RegistryModule.getValueWriter(Gauge.class), jg, bulkAction);
+		reportMetric(counters, timestamp, metric2RegistryModule.getValueWriter(Counter.class), jg, bulkAction);
+		reportMetric(histograms, timestamp, metric2RegistryModule.getValueWriter(Histogram.class), jg, bulkAction);
+		reportMetric(meters, timestamp, metric2RegistryModule.getValueWriter(Meter.class), jg, bulkAction);
+		reportMetric(timers, timestamp, metric2RegistryModule.getValueWriter(Timer.class), jg, bulkAction);
 	}
 
 	private <T extends Metric> void reportMetric(Map<MetricName, T> metrics, long timestamp, Metric2RegistryModule.ValueWriter<T> valueWriter,
-												 OutputStream os, byte[] bulkActionBytes) throws IOException {
+												 JsonGenerator jg, SerializableString bulkAction) throws IOException {
 
 		for (Map.Entry<MetricName, T> entry : metrics.entrySet()) {
-			os.write(bulkActionBytes);
-			final JsonGenerator jg = jfactory.createGenerator(os);
+			jg.writeRaw(bulkAction);
 			jg.writeStartObject();
-			MetricName metricName = entry.getKey();
 			jg.writeNumberField("@timestamp", timestamp);
-			jg.writeStringField("name", metricName.getName());
-			writeMap(jg, metricName.getTags());
-			writeMap(jg, globalTags);
+			jg.writeRaw(getNameAndTags(entry.getKey()));
 			valueWriter.writeValues(entry.getValue(), jg);
 			jg.writeEndObject();
-			jg.flush();
-			os.write('\n');
+			jg.writeRaw('\n');
 		}
 	}
 
-	private void writeMap(JsonGenerator jg, Map<String, String> map) throws IOException {
-		for (Map.Entry<String, String> entry : map.entrySet()) {
-			jg.writeObjectField(entry.getKey(), entry.getValue());
+	/**
+	 * Returns the name, the tags and the global tags of a metric as JSON fields which can be appended to the
+	 * <code>@timestamp</code> field, for example <code>,"name":"cpu_usage","core":"1","app":"test"</code>
+	 */
+	private SerializableString getNameAndTags(MetricName metricName) {
+		SerializableString nameAndTags = nameAndTagsCache.get(metricName);
+		if (nameAndTags == null) {
+			final StringBuilder sb = new StringBuilder(globalTagsJson.length() + 64);
+			appendField(sb, "name", metricName.getName());
+			for (Map.Entry<String, String> entry : metricName.getTags().entrySet()) {
+				appendField(sb, entry.getKey(), entry.getValue());
+			}
+			sb.append(globalTagsJson);
+			nameAndTags = new SerializedString(sb.toString());
+			nameAndTagsCache.put(metricName, nameAndTags);
+		}
+		return nameAndTags;
+	}
+
+	/**
+	 * Removes the cached names and tags of the metrics which have been removed from the registry, so that the cache
+	 * does not grow indefinitely if metrics with changing names are registered and removed.
+	 */
+	private void evictRemovedMetrics() {
+		final long removals = registry.getRemovals();
+		if (removals != this.removals) {
+			this.removals = removals;
+			nameAndTagsCache.keySet().retainAll(registry.getNames());
 		}
 	}
 
+	int getNameAndTagsCacheSize() {
+		return nameAndTagsCache.size();
+	}
+
+	private static void appendField(StringBuilder sb, String key, String value) {
+		final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+		sb.append(",\"").append(encoder.quoteAsString(key)).append("\":");
+		if (value == null) {
+			sb.append("null");
+		} else {
+			sb.append('"').append(encoder.quoteAsString(value)).append('"');
+		}
+	}
+
+	private SerializableString getBulkAction() {
+		final String index = STAGEMONITOR_METRICS_INDEX_PREFIX + StringUtils.getLogstashStyleDate();
+		SerializedString bulkAction = this.bulkAction;
+		if (bulkAction == null || !bulkAction.getValue().contains(index)) {
+			bulkAction = new SerializedString(ElasticsearchClient.getBulkHeader("index", index, METRICS_TYPE));
+			this.bulkAction = bulkAction;
+		}
+		return bulkAction;
+	}
+
 	private class MetricsOutputStreamHandler implements HttpClient.OutputStreamHandler {
 		private final Map<MetricName, Gauge> gauges;
 		private final Map<MetricName, Counter> counters;
@@ -141,21 +245,22 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 
 		@Override
 		public void withHttpURLConnection(OutputStream os) throws IOException {
-			String bulkAction = ElasticsearchClient.getBulkHeader("index", STAGEMONITOR_METRICS_INDEX_PREFIX + StringUtils.getLogstashStyleDate(), METRICS_TYPE);
-			byte[] bulkActionBytes = bulkAction.getBytes("UTF-8");
-			reportMetrics(gauges, counters, histograms, meters, timers, os, bulkActionBytes, timestamp);
+			final JsonGenerator jg = jfactory.createGenerator(os);
+			reportMetrics(gauges, counters, histograms, meters, timers, jg, getBulkAction(), timestamp);
+			jg.flush();
 			os.close();
 		}
 	}
 
 	public static class Builder extends ScheduledMetrics2Reporter.Builder<ElasticsearchReporter, Builder> {
-		private HttpClient httpClient = new HttpClient();
+		private HttpClient httpClient;
 		private Logger elasticsearchMetricsLogger = LoggerFactory.getLogger(ES_METRICS_LOGGER);
 		private final CorePlugin corePlugin;
 
 		private Builder(Metric2Registry registry, CorePlugin corePlugin) {
 			super(registry, "stagemonitor-elasticsearch-reporter");
 			this.corePlugin = corePlugin;
+			this.httpClient = new HttpClient(corePlugin.isElasticsearchGzip());
 		}
 
 		@Override
@@ -0,0 +1,328 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes metrics in the InfluxDB line protocol directly into a reusable byte buffer.
+ * <p/>
+ * The escaped measurement name and tags of each {@link MetricName} are encoded once and then cached, along with their
+ * String representation, which is used for example by the {@link org.stagemonitor.core.metrics.SortedTableLogReporter}
+ * when it is first needed. Numbers are
+ * formatted with a reusable {@link StringBuilder}, which does not allocate. So, apart from the values of the metrics
+ * themselves, encoding a report does not generate garbage once the buffer has grown to the size of a batch.
+ * <p/>
+ * A line consists of the measurement, the tags, the fields and the timestamp:
+ * <pre>measurement,tag=value field=1.0,other_field=2i 1465839830100</pre>
+ * This class is not thread safe.
+ */
+public class InfluxDbLineProtocolWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final ConcurrentMap<MetricName, MeasurementAndTags> measurementAndTagsCache = new ConcurrentHashMap<MetricName, MeasurementAndTags>();
+
+	private final byte[] globalTags;
+	private final StringBuilder numberBuilder = new StringBuilder(32);
+	private byte[] buffer;
+	private int position;
+	private int lineStart;
+	private int lines;
+	private boolean firstField;
+
+	/**
+	 * @param globalTags the tags which are added to each line
+	 */
+	public InfluxDbLineProtocolWriter(Map<String, String> globalTags) {
+		this.buffer = new byte[64 * 1024];
+		appendTags(globalTags);
+		this.globalTags = Arrays.copyOf(buffer, position);
+		position = 0;
+	}
+
+	/**
+	 * Returns the escaped measurement name and tags of the provided metric name (the tags are sorted by key)
+	 */
+	public static String getMeasurementAndTags(MetricName metricName) {
+		return getCachedMeasurementAndTags(metricName).getString();
+	}
+
+	private static MeasurementAndTags getCachedMeasurementAndTags(MetricName metricName) {
+		MeasurementAndTags measurementAndTags = measurementAndTagsCache.get(metricName);
+		if (measurementAndTags == null) {
+			final InfluxDbLineProtocolWriter writer = new InfluxDbLineProtocolWriter(metricName.getName().length() * 2 + 64);
+			writer.appendEscaped(metricName.getName());
+			writer.appendTags(metricName.getTags());
+			measurementAndTags = new MeasurementAndTags(Arrays.copyOf(writer.buffer, writer.position));
+			measurementAndTagsCache.put(metricName, measurementAndTags);
+		}
+		return measurementAndTags;
+	}
+
+	private InfluxDbLineProtocolWriter(int initialCapacity) {
+		this.buffer = new byte[initialCapacity];
+		this.globalTags = new byte[0];
+	}
+
+	/**
+	 * Starts a new line with the measurement name, the tags of the metric name and the global tags
+	 */
+	public void startLine(MetricName metricName) {
+		lineStart = position;
+		append(getCachedMeasurementAndTags(metricName).bytes);
+		append(globalTags);
+		firstField = true;
+	}
+
+	/**
+	 * Adds a field with a floating point value. Non-finite values are omitted as InfluxDB does not support them.
+	 */
+	public void field(String key, double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+		startField(key);
+		numberBuilder.setLength(0);
+		numberBuilder.append(value);
+		appendNumber();
+	}
+
+	/**
+	 * Adds a field with a value which is converted to a float by InfluxDB
+	 */
+	public void field(String key, long value) {
+		startField(key);
+		numberBuilder.setLength(0);
+		numberBuilder.append(value);
+		appendNumber();
+	}
+
+	/**
+	 * Adds a field with an integer value
+	 */
+	public void integerField(String key, long value) {
+		field(key, value);
+		ensureCapacity(1);
+		buffer[position++] = 'i';
+	}
+
+	public void field(String key, boolean value) {
+		startField(key);
+		appendAscii(value ? "true" : "false");
+	}
+
+	/**
+	 * Adds a field with a string value. Double quotes in the value are escaped.
+	 */
+	public void field(String key, String value) {
+		startField(key);
+		ensureCapacity(1);
+		buffer[position++] = '"';
+		appendUtf8(value, true);
+		ensureCapacity(1);
+		buffer[position++] = '"';
+	}
+
+	/**
+	 * Adds a field with the value of a gauge
+	 *
+	 * @return <code>false</code>, if the value is <code>null</code> or not a finite number, in which case no field
+	 * has been added
+	 */
+	public boolean gaugeField(Object value) {
+		if (value == null) {
+			return false;
+		}
+		if (value instanceof Double || value instanceof Float) {
+			final double doubleValue = ((Number) value).doubleValue();
+			if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+				return false;
+			}
+			startField("value");
+			numberBuilder.setLength(0);
+			if (value instanceof Float) {
+				numberBuilder.append(((Float) value).floatValue());
+			} else {
+				numberBuilder.append(doubleValue);
+			}
+			appendNumber();
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			field("value", ((Number) value).longValue());
+		} else if (value instanceof Number) {
+			final String number = value.toString();
+			if (number.equals("NaN") || number.contains("Infinity")) {
+				return false;
+			}
+			startField("value");
+			numberBuilder.setLength(0);
+			numberBuilder.append(number);
+			appendNumber();
+		} else if (value instanceof Boolean) {
+			field("value_boolean", ((Boolean) value).booleanValue());
+		} else {
+			field("value_string", String.valueOf(value));
+		}
+		return true;
+	}
+
+	/**
+	 * Completes the line
+	 */
+	public void endLine(long timestamp) {
+		ensureCapacity(1);
+		buffer[position++] = ' ';
+		numberBuilder.setLength(0);
+		numberBuilder.append(timestamp);
+		appendNumber();
+		ensureCapacity(1);
+		buffer[position++] = '\n';
+		lines++;
+	}
+
+	/**
+	 * Removes the current line
+	 */
+	public void abortLine() {
+		position = lineStart;
+	}
+
+	/**
+	 * @return the number of completed lines
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * Writes all completed lines to the output stream
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+		os.write(buffer, 0, position);
+	}
+
+	/**
+	 * Removes all lines, but keeps the buffer
+	 */
+	public void reset() {
+		position = 0;
+		lineStart = 0;
+		lines = 0;
+	}
+
+	private void startField(String key) {
+		ensureCapacity(key.length() + 2);
+		buffer[position++] = (byte) (firstField ? ' ' : ',');
+		firstField = false;
+		appendAscii(key);
+		buffer[position++] = '=';
+	}
+
+	private void appendTags(Map<String, String> tags) {
+		for (String key : new TreeSet<String>(tags.keySet())) {
+			ensureCapacity(1);
+			buffer[position++] = ',';
+			appendEscaped(key);
+			ensureCapacity(1);
+			buffer[position++] = '=';
+			appendEscaped(tags.get(key));
+		}
+	}
+
+	private void appendEscaped(String s) {
+		appendUtf8(s, false);
+	}
+
+	/**
+	 * InfluxDB wants the exponent to be in lower case
+	 */
+	private void appendNumber() {
+		final int length = numberBuilder.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			final char c = numberBuilder.charAt(i);
+			buffer[position++] = (byte) (c == 'E' ? 'e' : c);
+		}
+	}
+
+	private void appendAscii(String s) {
+		final int length = s.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			buffer[position++] = (byte) s.charAt(i);
+		}
+	}
+
+	/**
+	 * Encodes the string with UTF-8 and escapes it on the fly
+	 *
+	 * @param s           the string to append
+	 * @param fieldValue  if <code>true</code>, double quotes are escaped (string field values),
+	 *                    otherwise spaces and commas are escaped (measurement names, tag keys and tag values)
+	 */
+	private void appendUtf8(String s, boolean fieldValue) {
+		final int length = s.length();
+		// worst case: each char is escaped or encoded as three bytes
+		ensureCapacity(length * 3);
+		for (int i = 0; i < length; i++) {
+			final char c = s.charAt(i);
+			if (c < 0x80) {
+				if (fieldValue ? c == '"' : c == ' ' || c == ',') {
+					buffer[position++] = '\\';
+				}
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				buffer[position++] = '?';
+			} else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private void append(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	private void ensureCapacity(int additionalBytes) {
+		if (position + additionalBytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additionalBytes));
+		}
+	}
+
+
+	private static class MeasurementAndTags {
+		private final byte[] bytes;
+		private volatile String string;
+
+		private MeasurementAndTags(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		private String getString() {
+			String string = this.string;
+			if (string == null) {
+				// decoding the same bytes concurrently yields equal strings, so there is no need to synchronize
+				string = new String(bytes, UTF_8);
+				this.string = string;
+			}
+			return string;
+		}
+	}
+}
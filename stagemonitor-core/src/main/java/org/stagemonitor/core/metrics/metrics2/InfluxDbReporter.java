@@ -8,27 +8,41 @@ import com.codahale.metrics.Metered;
 import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.util.DiskSpool;
 import org.stagemonitor.core.util.HttpClient;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 public class InfluxDbReporter extends ScheduledMetrics2Reporter {
 
 	private static final int MAX_BATCH_SIZE = 5000;
-	private static final Map<MetricName, String> metricNameToInfluxDBFormatCache = new ConcurrentHashMap<MetricName, String>();
 	private static final MetricName reportingTimeMetricName = name("reporting_time").tag("reporter", "influxdb").build();
 
-	private List<String> batchLines = new ArrayList<String>(MAX_BATCH_SIZE);
-	private final String globalTags;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final InfluxDbLineProtocolWriter writer;
 	private HttpClient httpClient;
 	private final CorePlugin corePlugin;
+	private final DiskSpool spool;
+	private final HttpClient.OutputStreamHandler batch = new HttpClient.OutputStreamHandler() {
+		@Override
+		public void withHttpURLConnection(OutputStream os) throws IOException {
+			writer.writeTo(os);
+			os.flush();
+		}
+	};
+	private final DiskSpool.BatchSender writeSender = new DiskSpool.BatchSender() {
+		@Override
+		public boolean send(HttpClient.OutputStreamHandler batch) {
+			return !DiskSpool.isRetryable(httpClient.send("POST", getWriteUrl(), null, batch));
+		}
+	};
 
 	public static Builder forRegistry(Metric2Registry registry, CorePlugin corePlugin) {
 		return new Builder(registry, corePlugin);
@@ -36,9 +50,10 @@ public class InfluxDbReporter extends ScheduledMetrics2Reporter {
 
 	private InfluxDbReporter(Builder builder) {
 		super(builder);
-		this.globalTags = getInfluxDbTags(builder.getGlobalTags());
+		this.writer = new InfluxDbLineProtocolWriter(builder.getGlobalTags());
 		this.httpClient = builder.getHttpClient();
 		this.corePlugin = builder.getCorePlugin();
+		this.spool = corePlugin.getSpool("influxdb");
 	}
 
 	@Override
@@ -61,151 +76,122 @@ public class InfluxDbReporter extends ScheduledMetrics2Reporter {
 
 	private void reportGauges(Map<MetricName, Gauge> gauges, long timestamp) {
 		for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
-			final String value = getGaugeValueForInfluxDb(entry.getValue().getValue());
-			if (value != null) {
-				reportLine(getInfluxDbLineProtocolString(entry.getKey()), value, timestamp);
+			writer.startLine(entry.getKey());
+			if (writer.gaugeField(entry.getValue().getValue())) {
+				endLine(timestamp);
+			} else {
+				writer.abortLine();
 			}
 		}
 	}
 
 	private void reportCounter(Map<MetricName, Counter> counters, long timestamp) {
 		for (Map.Entry<MetricName, Counter> entry : counters.entrySet()) {
-			final Counter counter = entry.getValue();
-			reportLine(getInfluxDbLineProtocolString(entry.getKey()),
-					"count=" + getIntegerValue(counter.getCount()), timestamp);
+			writer.startLine(entry.getKey());
+			writer.integerField("count", entry.getValue().getCount());
+			endLine(timestamp);
 		}
 	}
 
 	private void reportHistograms(Map<MetricName, Histogram> histograms, long timestamp) {
 		for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
 			final Histogram hist = entry.getValue();
-			final Snapshot snapshot = hist.getSnapshot();
-			reportLine(getInfluxDbLineProtocolString(entry.getKey()),
-					"count=" + getIntegerValue(hist.getCount()) + ","
-							+ reportHistogramSnapshot(snapshot), timestamp);
+			writer.startLine(entry.getKey());
+			writer.integerField("count", hist.getCount());
+			reportHistogramSnapshot(hist.getSnapshot());
+			endLine(timestamp);
 		}
 	}
 
 	private void reportMeters(Map<MetricName, Meter> meters, long timestamp) {
 		for (Map.Entry<MetricName, Meter> entry : meters.entrySet()) {
-			final Meter meter = entry.getValue();
-			reportLine(getInfluxDbLineProtocolString(entry.getKey()), reportMetered(meter), timestamp);
+			writer.startLine(entry.getKey());
+			reportMetered(entry.getValue());
+			endLine(timestamp);
 		}
 	}
 
 	private void reportTimers(Map<MetricName, Timer> timers, long timestamp) {
 		for (Map.Entry<MetricName, Timer> entry : timers.entrySet()) {
 			final Timer timer = entry.getValue();
-			final Snapshot snapshot = timer.getSnapshot();
-			reportLine(getInfluxDbLineProtocolString(entry.getKey()),
-					reportMetered(timer) + ","
-							+ reportTimerSnapshot(snapshot), timestamp);
-		}
-	}
-
-	private String reportTimerSnapshot(Snapshot snapshot) {
-		return "min=" + getDuration(snapshot.getMin()) + ","
-				+ "max=" + getDuration(snapshot.getMax()) + ","
-				+ "mean=" + getDuration(snapshot.getMean()) + ","
-				+ "p50=" + getDuration(snapshot.getMedian()) + ","
-				+ "std=" + getDuration(snapshot.getStdDev()) + ","
-				+ "p25=" + getDuration(snapshot.getValue(0.25)) + ","
-				+ "p75=" + getDuration(snapshot.get75thPercentile()) + ","
-				+ "p95=" + getDuration(snapshot.get95thPercentile()) + ","
-				+ "p98=" + getDuration(snapshot.get98thPercentile()) + ","
-				+ "p99=" + getDuration(snapshot.get99thPercentile()) + ","
-				+ "p999=" + getDuration(snapshot.get999thPercentile());
-	}
-	
-	private String reportHistogramSnapshot(Snapshot snapshot) {
-		return "min=" + snapshot.getMin() + ","
-				+ "max=" + snapshot.getMax() + ","
-				+ "mean=" + snapshot.getMean() + ","
-				+ "p50=" + snapshot.getMedian() + ","
-				+ "std=" + snapshot.getStdDev() + ","
-				+ "p25=" + snapshot.getValue(0.25) + ","
-				+ "p75=" + snapshot.get75thPercentile() + ","
-				+ "p95=" + snapshot.get95thPercentile() + ","
-				+ "p98=" + snapshot.get98thPercentile() + ","
-				+ "p99=" + snapshot.get99thPercentile() + ","
-				+ "p999=" + snapshot.get999thPercentile();
-	}
-
-	private String reportMetered(Metered metered) {
-		return "count=" + getIntegerValue(metered.getCount()) + ","
-				+ "m1_rate=" + getRate(metered.getOneMinuteRate()) + ","
-				+ "m5_rate=" + getRate(metered.getFiveMinuteRate()) + ","
-				+ "m15_rate=" + getRate(metered.getFifteenMinuteRate()) + ","
-				+ "mean_rate=" + getRate(metered.getMeanRate());
-	}
-
-	private void reportLine(String nameAndTags, String fields, long timestamp) {
-		if (batchLines.size() >= MAX_BATCH_SIZE) {
+			writer.startLine(entry.getKey());
+			reportMetered(timer);
+			reportTimerSnapshot(timer.getSnapshot());
+			endLine(timestamp);
+		}
+	}
+
+	private void reportTimerSnapshot(Snapshot snapshot) {
+		writer.field("min", convertDuration(snapshot.getMin()));
+		writer.field("max", convertDuration(snapshot.getMax()));
+		writer.field("mean", convertDuration(snapshot.getMean()));
+		writer.field("p50", convertDuration(snapshot.getMedian()));
+		writer.field("std", convertDuration(snapshot.getStdDev()));
+		writer.field("p25", convertDuration(snapshot.getValue(0.25)));
+		writer.field("p75", convertDuration(snapshot.get75thPercentile()));
+		writer.field("p95", convertDuration(snapshot.get95thPercentile()));
+		writer.field("p98", convertDuration(snapshot.get98thPercentile()));
+		writer.field("p99", convertDuration(snapshot.get99thPercentile()));
+		writer.field("p999", convertDuration(snapshot.get999thPercentile()));
+	}
+
+	private void reportHistogramSnapshot(Snapshot snapshot) {
+		writer.field("min", snapshot.getMin());
+		writer.field("max", snapshot.getMax());
+		writer.field("mean", snapshot.getMean());
+		writer.field("p50", snapshot.getMedian());
+		writer.field("std", snapshot.getStdDev());
+		writer.field("p25", snapshot.getValue(0.25));
+		writer.field("p75", snapshot.get75thPercentile());
+		writer.field("p95", snapshot.get95thPercentile());
+		writer.field("p98", snapshot.get98thPercentile());
+		writer.field("p99", snapshot.get99thPercentile());
+		writer.field("p999", snapshot.get999thPercentile());
+	}
+
+	private void reportMetered(Metered metered) {
+		writer.integerField("count", metered.getCount());
+		writer.field("m1_rate", convertRate(metered.getOneMinuteRate()));
+		writer.field("m5_rate", convertRate(metered.getFiveMinuteRate()));
+		writer.field("m15_rate", convertRate(metered.getFifteenMinuteRate()));
+		writer.field("mean_rate", convertRate(metered.getMeanRate()));
+	}
+
+	private void endLine(long timestamp) {
+		writer.endLine(timestamp);
+		if (writer.getLines() >= MAX_BATCH_SIZE) {
 			flush();
 		}
-		batchLines.add(nameAndTags + globalTags + ' ' + fields + ' ' + timestamp);
 	}
 
 	private void flush() {
-		httpClient.send("POST", corePlugin.getInfluxDbUrl() + "/write?precision=ms&db=" + corePlugin.getInfluxDbDb(), batchLines);
-		batchLines = new ArrayList<String>(MAX_BATCH_SIZE);
-	}
-
-	private String getGaugeValueForInfluxDb(Object value) {
-		if (value == null) {
-			return null;
-		}
-		if (value instanceof Number) {
-			final String floatValue = getFloatValue(value);
-			if (floatValue == null) {
-				return null;
+		if (writer.getLines() == 0) {
+			return;
+		}
+		if (spool != null) {
+			try {
+				spool.sendOrAppend(writeSender, batch);
+			} catch (IOException e) {
+				logger.warn(e.getMessage(), e);
 			}
-			return "value=" + floatValue;
-		} else if (value instanceof Boolean) {
-			return "value_boolean=" + value.toString();
-		} else {
-			return "value_string=" + getStringValue(String.valueOf(value));
-		}
-	}
-
-	private String getIntegerValue(Object integer) {
-		return integer.toString() + "i";
-	}
-
-	private String getDuration(double duration) {
-		return getFloatValue(convertDuration(duration));
-	}
-
-	private String getRate(double rate) {
-		return getFloatValue(convertRate(rate));
-	}
-
-	private String getFloatValue(Object number) {
-		String result = number.toString();
-		if (result.equals("NaN") || result.contains("Infinity")) {
-			return null;
 		} else {
-			// InfluxDB wants the exponent to be in lower case
-			return result.replace('E', 'e');
+			httpClient.send("POST", getWriteUrl(), null, batch);
 		}
+		writer.reset();
 	}
 
-	private String getStringValue(String value) {
-		final String s = value;
-		if (s.indexOf('"') == -1) {
-			return new StringBuilder(s.length() + 2).append('"').append(s).append('"').toString();
-		} else {
-			return new StringBuilder(s.length() + 6).append('"').append(s.replace("\"", "\\\"")).append('"').toString();
-		}
+	private String getWriteUrl() {
+		return corePlugin.getInfluxDbUrl() + "/write?precision=ms&db=" + corePlugin.getInfluxDbDb();
 	}
 
 	public static class Builder extends ScheduledMetrics2Reporter.Builder<InfluxDbReporter, Builder> {
-		private HttpClient httpClient = new HttpClient();
+		private HttpClient httpClient;
 		private final CorePlugin corePlugin;
 
 		private Builder(Metric2Registry registry, CorePlugin corePlugin) {
 			super(registry, "stagemonitor-influxdb-reporter");
 			this.corePlugin = corePlugin;
+			this.httpClient = new HttpClient(corePlugin.isInfluxDbGzip());
 		}
 
 		public HttpClient getHttpClient() {
@@ -228,33 +214,6 @@ public class InfluxDbReporter extends ScheduledMetrics2Reporter {
 	}
 
 	public static String getInfluxDbLineProtocolString(MetricName metricName) {
-		String influxDbString = metricNameToInfluxDBFormatCache.get(metricName);
-		if (influxDbString == null) {
-			final StringBuilder sb = new StringBuilder(metricName.getName().length() + metricName.getTagKeys().size() * 16 + metricName.getTagKeys().size());
-			sb.append(escapeForInfluxDB(metricName.getName()));
-			appendTags(sb, metricName.getTags());
-			influxDbString = sb.toString();
-			metricNameToInfluxDBFormatCache.put(metricName, influxDbString);
-		}
-		return influxDbString;
-	}
-
-	private static String getInfluxDbTags(Map<String, String> tags) {
-		final StringBuilder sb = new StringBuilder();
-		appendTags(sb, tags);
-		return sb.toString();
-	}
-
-	private static void appendTags(StringBuilder sb, Map<String, String> tags) {
-		for (String key : new TreeSet<String>(tags.keySet())) {
-			sb.append(',').append(escapeForInfluxDB(key)).append('=').append(escapeForInfluxDB(tags.get(key)));
-		}
-	}
-
-	private static String escapeForInfluxDB(String s) {
-		if (s.indexOf(',') != -1 || s.indexOf(' ') != -1) {
-			return s.replace(" ", "\\ ").replace(",", "\\,");
-		}
-		return s;
+		return InfluxDbLineProtocolWriter.getMeasurementAndTags(metricName);
 	}
 }
@@ -7,9 +7,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
@@ -18,6 +19,8 @@ import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
 import com.codahale.metrics.Timer;
+import org.stagemonitor.core.metrics.PercentileTrackingTimer;
+import org.stagemonitor.core.metrics.ReservoirType;
 
 /**
  * A metrics registry that does not use a simple dotted metric name but a key-value pair for the metric identity
@@ -32,6 +35,19 @@ public class Metric2Registry implements Metric2Set {
 	// Metrics listener and reporting patterns.
 	private final MetricRegistry metricRegistry;
 
+	// A read-only view which is used instead of the legacy registry
+	// if the metrics are not mirrored
+	private final DropwizardMetricRegistryView metricRegistryView = new DropwizardMetricRegistryView(this);
+	private volatile boolean dropwizardMirroring = true;
+
+	/**
+	 * Incremented whenever a metric is removed, so that cached references to metrics can be invalidated
+	 */
+	private final AtomicLong removals = new AtomicLong();
+
+	private volatile ReservoirType reservoirType = ReservoirType.EXPONENTIALLY_DECAYING;
+	private volatile long snapshotIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+
 	public Metric2Registry() {
 		this(new MetricRegistry());
 	}
@@ -58,11 +74,13 @@ public class Metric2Registry implements Metric2Set {
 			if (existing != null) {
 				throw new IllegalArgumentException("A metric named " + name + " already exists");
 			}
-			else {
+			else if (dropwizardMirroring) {
 				// This is a new metric - we have to register the Metric with
 				// the legacy Dropwizard Metric registry as
 				// well to support existing reports and listeners
 				metricRegistry.register(name.toGraphiteName(), metric);
+			} else {
+				metricRegistryView.onMetricAdded(name, metric);
 			}
 		}
 		return metric;
@@ -97,8 +115,7 @@ public class Metric2Registry implements Metric2Set {
 	 * @param metric the metric
 	 */
 	public void registerNewMetrics(MetricName name, Metric metric) {
-		final Set<MetricName> registeredNames = getNames();
-		if (!registeredNames.contains(name)) {
+		if (!metrics.containsKey(name)) {
 			try {
 				register(name, metric);
 			} catch (IllegalArgumentException e){/* exception due to race condition*/}
@@ -158,14 +175,30 @@ public class Metric2Registry implements Metric2Set {
 	public boolean remove(MetricName name) {
 		final Metric metric = metrics.remove(name);
 		if (metric != null) {
-			// We have to unregister the Metric with the legacy Dropwizard Metric registry as
-			// well to support existing reports and listeners
-			metricRegistry.remove(name.toGraphiteName());
+			removals.incrementAndGet();
+			if (dropwizardMirroring) {
+				// We have to unregister the Metric with the legacy Dropwizard Metric registry as
+				// well to support existing reports and listeners
+				metricRegistry.remove(name.toGraphiteName());
+			} else {
+				metricRegistryView.onMetricRemoved(name, metric);
+			}
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the number of metrics which have been removed from this registry.
+	 * <p/>
+	 * A reference to a metric which has been obtained when this number had the same value as now is still registered.
+	 *
+	 * @return the number of removed metrics
+	 */
+	public long getRemovals() {
+		return removals.get();
+	}
+
 	/**
 	 * Returns a set of the names of all the metrics in the registry.
 	 *
@@ -272,6 +305,36 @@ public class Metric2Registry implements Metric2Set {
 		return getMetrics(Timer.class, filter);
 	}
 
+	/**
+	 * Visits all metrics which match the given filter in a single pass over the registry.
+	 * <p/>
+	 * In contrast to {@link #getGauges(Metric2Filter)} and the like, this method does not create intermediate maps and
+	 * only traverses the registry once for all types of metrics.
+	 *
+	 * @param filter  the metric filter to match
+	 * @param visitor the visitor, which is invoked for each metric that matches the filter
+	 */
+	public void accept(Metric2Filter filter, Metric2Visitor visitor) {
+		for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+			final MetricName name = entry.getKey();
+			final Metric metric = entry.getValue();
+			if (!filter.matches(name, metric)) {
+				continue;
+			}
+			if (metric instanceof Gauge) {
+				visitor.visitGauge(name, (Gauge) metric);
+			} else if (metric instanceof Counter) {
+				visitor.visitCounter(name, (Counter) metric);
+			} else if (metric instanceof Histogram) {
+				visitor.visitHistogram(name, (Histogram) metric);
+			} else if (metric instanceof Meter) {
+				visitor.visitMeter(name, (Meter) metric);
+			} else if (metric instanceof Timer) {
+				visitor.visitTimer(name, (Timer) metric);
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private <T extends Metric> T getOrAdd(MetricName name, MetricBuilder<T> builder) {
 		final Metric metric = metrics.get(name);
@@ -279,7 +342,7 @@ public class Metric2Registry implements Metric2Set {
 			return (T) metric;
 		} else if (metric == null) {
 			try {
-				return register(name, builder.newMetric());
+				return register(name, builder.newMetric(this));
 			} catch (IllegalArgumentException e) {
 				final Metric added = metrics.get(name);
 				if (builder.isInstance(added)) {
@@ -349,7 +412,7 @@ public class Metric2Registry implements Metric2Set {
 	private interface MetricBuilder<T extends Metric> {
 		MetricBuilder<Counter> COUNTERS = new MetricBuilder<Counter>() {
 			@Override
-			public Counter newMetric() {
+			public Counter newMetric(Metric2Registry registry) {
 				return new Counter();
 			}
 
@@ -361,8 +424,8 @@ public class Metric2Registry implements Metric2Set {
 
 		MetricBuilder<Histogram> HISTOGRAMS = new MetricBuilder<Histogram>() {
 			@Override
-			public Histogram newMetric() {
-				return new Histogram(new ExponentiallyDecayingReservoir());
+			public Histogram newMetric(Metric2Registry registry) {
+				return new Histogram(registry.reservoirType.createHistogramReservoir(registry.snapshotIntervalNanos, TimeUnit.NANOSECONDS));
 			}
 
 			@Override
@@ -373,7 +436,7 @@ public class Metric2Registry implements Metric2Set {
 
 		MetricBuilder<Meter> METERS = new MetricBuilder<Meter>() {
 			@Override
-			public Meter newMetric() {
+			public Meter newMetric(Metric2Registry registry) {
 				return new Meter();
 			}
 
@@ -385,8 +448,8 @@ public class Metric2Registry implements Metric2Set {
 
 		MetricBuilder<Timer> TIMERS = new MetricBuilder<Timer>() {
 			@Override
-			public Timer newMetric() {
-				return new Timer();
+			public Timer newMetric(Metric2Registry registry) {
+				return new PercentileTrackingTimer(registry.reservoirType.createTimerReservoir(registry.snapshotIntervalNanos, TimeUnit.NANOSECONDS));
 			}
 
 			@Override
@@ -395,18 +458,74 @@ public class Metric2Registry implements Metric2Set {
 			}
 		};
 
-		T newMetric();
+		T newMetric(Metric2Registry registry);
 
 		boolean isInstance(Metric metric);
 	}
 
 	/**
-	 * Returns the wrapped legacy {@link MetricRegistry}
+	 * Returns the wrapped legacy {@link MetricRegistry} or, if the metrics are not mirrored, a read-only view of this
+	 * registry which computes the graphite names on demand
 	 *
 	 * @return the wrapped legacy {@link MetricRegistry}
+	 * @see #setDropwizardMirroring(boolean)
 	 */
 	public MetricRegistry getMetricRegistry() {
-		return metricRegistry;
+		return dropwizardMirroring ? metricRegistry : metricRegistryView;
+	}
+
+	/**
+	 * Sets whether the metrics are also registered at the wrapped legacy {@link MetricRegistry}.
+	 * <p/>
+	 * Mirroring the metrics means that each metric is stored twice and that a graphite name is created for each
+	 * registration and removal. If mirroring is disabled, {@link #getMetricRegistry()} returns a read-only view which
+	 * is computed on demand instead. The metrics which have already been mirrored are moved accordingly.
+	 * <p/>
+	 * This should be set while initializing, before reporters are registered at the legacy {@link MetricRegistry}.
+	 *
+	 * @param dropwizardMirroring whether the metrics should be mirrored (the default)
+	 */
+	public synchronized void setDropwizardMirroring(boolean dropwizardMirroring) {
+		if (this.dropwizardMirroring == dropwizardMirroring) {
+			return;
+		}
+		this.dropwizardMirroring = dropwizardMirroring;
+		for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+			final String graphiteName = entry.getKey().toGraphiteName();
+			if (dropwizardMirroring) {
+				try {
+					metricRegistry.register(graphiteName, entry.getValue());
+				} catch (IllegalArgumentException e) {
+					// the graphite name is already in use
+				}
+			} else if (metricRegistry.getMetrics().get(graphiteName) == entry.getValue()) {
+				// don't remove metrics which have been registered directly at the legacy registry
+				metricRegistry.remove(graphiteName);
+			}
+		}
+	}
+
+	public boolean isDropwizardMirroring() {
+		return dropwizardMirroring;
+	}
+
+	/**
+	 * Sets the type of {@link com.codahale.metrics.Reservoir} which is used for timers and histograms which are
+	 * created by {@link #timer(MetricName)} and {@link #histogram(MetricName)} from now on.
+	 * <p/>
+	 * Already existing timers and histograms are not affected.
+	 *
+	 * @param reservoirType    the type of the reservoir
+	 * @param snapshotInterval the interval of the snapshots, if supported by the reservoir type
+	 * @param timeUnit         the unit of the snapshot interval
+	 */
+	public void setReservoirType(ReservoirType reservoirType, long snapshotInterval, TimeUnit timeUnit) {
+		this.snapshotIntervalNanos = timeUnit.toNanos(snapshotInterval);
+		this.reservoirType = reservoirType;
+	}
+
+	public ReservoirType getReservoirType() {
+		return reservoirType;
 	}
 
 }
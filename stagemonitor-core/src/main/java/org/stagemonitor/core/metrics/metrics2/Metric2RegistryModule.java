@@ -135,7 +135,7 @@ public class Metric2RegistryModule extends Module {
 
 	private class CounterValueWriter implements ValueWriter<Counter> {
 		public void writeValues(Counter counter, JsonGenerator jg) throws IOException {
-			jg.writeObjectField("count", counter.getCount());
+			jg.writeNumberField("count", counter.getCount());
 		}
 	}
 
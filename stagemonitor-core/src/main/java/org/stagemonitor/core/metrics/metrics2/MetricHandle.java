@@ -0,0 +1,75 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+
+/**
+ * A reference to the metric with a specific name which is only looked up once.
+ * <p/>
+ * Looking up a metric in the {@link Metric2Registry} requires a hash map lookup. A {@link MetricHandle} remembers the
+ * metric after the first lookup and only looks it up again if the metric might have been removed from the registry in
+ * the meantime (see {@link Metric2Registry#getRemovals()}) or if a different registry is used.
+ */
+public class MetricHandle {
+
+	private final MetricName name;
+	/**
+	 * The fields of {@link Resolved} are final, so it is safe to publish it without synchronization. In the worst case,
+	 * another thread looks up the metric again.
+	 */
+	private Resolved resolved;
+
+	public MetricHandle(MetricName name) {
+		this.name = name;
+	}
+
+	public MetricName getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the {@link Timer} with the name of this handle, like {@link Metric2Registry#timer(MetricName)}
+	 */
+	public Timer timer(Metric2Registry registry) {
+		final Resolved resolved = this.resolved;
+		if (resolved != null && resolved.isValid(registry)) {
+			return (Timer) resolved.metric;
+		}
+		// read the number of removals before the lookup so that a concurrent removal invalidates the result
+		final long removals = registry.getRemovals();
+		final Timer timer = registry.timer(name);
+		this.resolved = new Resolved(registry, removals, timer);
+		return timer;
+	}
+
+	/**
+	 * Returns the {@link Meter} with the name of this handle, like {@link Metric2Registry#meter(MetricName)}
+	 */
+	public Meter meter(Metric2Registry registry) {
+		final Resolved resolved = this.resolved;
+		if (resolved != null && resolved.isValid(registry)) {
+			return (Meter) resolved.metric;
+		}
+		final long removals = registry.getRemovals();
+		final Meter meter = registry.meter(name);
+		this.resolved = new Resolved(registry, removals, meter);
+		return meter;
+	}
+
+	private static class Resolved {
+		private final Metric2Registry registry;
+		private final long removals;
+		private final Metric metric;
+
+		private Resolved(Metric2Registry registry, long removals, Metric metric) {
+			this.registry = registry;
+			this.removals = removals;
+			this.metric = metric;
+		}
+
+		private boolean isValid(Metric2Registry registry) {
+			return this.registry == registry && removals == registry.getRemovals();
+		}
+	}
+}
@@ -35,6 +35,9 @@ public class MetricName {
 	@JsonIgnore
 	private int hashCode;
 
+	@JsonIgnore
+	private String graphiteName;
+
 	private final String name;
 
 	// The insertion order is important for the correctness of #toGraphiteName
@@ -105,11 +108,14 @@ public class MetricName {
 	 * @return A graphite compliant name
 	 */
 	public String toGraphiteName() {
-		StringBuilder sb = new StringBuilder(GraphiteSanitizer.sanitizeGraphiteMetricSegment(name));
-		for (String value : tags.values()) {
-			sb.append('.').append(GraphiteSanitizer.sanitizeGraphiteMetricSegment(value));
+		if (graphiteName == null) {
+			StringBuilder sb = new StringBuilder(GraphiteSanitizer.sanitizeGraphiteMetricSegment(name));
+			for (String value : tags.values()) {
+				sb.append('.').append(GraphiteSanitizer.sanitizeGraphiteMetricSegment(value));
+			}
+			graphiteName = sb.toString();
 		}
-		return sb.toString();
+		return graphiteName;
 	}
 
 	/**
@@ -165,7 +171,17 @@ public class MetricName {
 	 * </pre>
 	 */
 	public static class MetricNameTemplate {
-		private final ConcurrentMap<Object, MetricName> metricNameCache = new ConcurrentHashMap<Object, MetricName>();
+		/**
+		 * The key for <code>null</code> values, as {@link ConcurrentHashMap} does not support <code>null</code> keys
+		 */
+		private static final Object NULL_VALUE = new Object();
+
+		/**
+		 * For templates with two or three keys, the cache is hierarchical: the first value maps to a nested cache
+		 * which maps the second value to either the {@link MetricName} or to another nested cache for the third value.
+		 * That way, looking up a cached {@link MetricName} does not allocate.
+		 */
+		private final ConcurrentMap<Object, Object> metricNameCache = new ConcurrentHashMap<Object, Object>();
 		private final MetricName template;
 		private final String key;
 		private final List<String> keys;
@@ -195,7 +211,7 @@ public class MetricName {
 			if (key == null) {
 				throw new IllegalArgumentException("Size of key does not match size of values");
 			}
-			MetricName metricName = metricNameCache.get(value);
+			MetricName metricName = (MetricName) metricNameCache.get(value);
 			if (metricName == null) {
 				metricName = template.withTag(key, value);
 				metricNameCache.put(value, metricName);
@@ -203,6 +219,40 @@ public class MetricName {
 			return metricName;
 		}
 
+		/**
+		 * Creates a new or reused {@link MetricName} according to the {@link #template} with the given two
+		 * {@link #keys} and the provided values without allocating if the {@link MetricName} is cached
+		 *
+		 * @see #build(String...)
+		 */
+		public MetricName build(String value1, String value2) {
+			checkNumberOfValues(2);
+			final ConcurrentMap<Object, Object> cache = getNestedCache(metricNameCache, value1);
+			MetricName metricName = (MetricName) cache.get(cacheKey(value2));
+			if (metricName == null) {
+				metricName = buildMetricName(value1, value2);
+				cache.put(cacheKey(value2), metricName);
+			}
+			return metricName;
+		}
+
+		/**
+		 * Creates a new or reused {@link MetricName} according to the {@link #template} with the given three
+		 * {@link #keys} and the provided values without allocating if the {@link MetricName} is cached
+		 *
+		 * @see #build(String...)
+		 */
+		public MetricName build(String value1, String value2, String value3) {
+			checkNumberOfValues(3);
+			final ConcurrentMap<Object, Object> cache = getNestedCache(getNestedCache(metricNameCache, value1), value2);
+			MetricName metricName = (MetricName) cache.get(cacheKey(value3));
+			if (metricName == null) {
+				metricName = buildMetricName(value1, value2, value3);
+				cache.put(cacheKey(value3), metricName);
+			}
+			return metricName;
+		}
+
 		/**
 		 * Creates a new or reused {@link MetricName} according to the {@link #template} with the given {@link #keys}
 		 * and the provided values
@@ -214,21 +264,52 @@ public class MetricName {
 		 *                                  MetricNameTemplate#MetricNameTemplate(MetricName, String)}
 		 */
 		public MetricName build(String... values) {
-			if (keys == null || keys.size() != values.length) {
-				throw new IllegalArgumentException("Size of key does not match size of values");
+			checkNumberOfValues(values.length);
+			if (values.length == 2) {
+				return build(values[0], values[1]);
+			} else if (values.length == 3) {
+				return build(values[0], values[1], values[2]);
 			}
 			List<String> valuesList = Arrays.asList(values);
-			MetricName metricName = metricNameCache.get(valuesList);
+			MetricName metricName = (MetricName) metricNameCache.get(valuesList);
 			if (metricName == null) {
-				Builder builder = name(template.name).tags(template.tags);
-				for (int i = 0; i < keys.size(); i++) {
-					builder.tag(keys.get(i), valuesList.get(i));
-				}
-				metricName = builder.build();
+				metricName = buildMetricName(values);
 				metricNameCache.put(valuesList, metricName);
 			}
 			return metricName;
 		}
+
+		private void checkNumberOfValues(int numberOfValues) {
+			if (keys == null || keys.size() != numberOfValues) {
+				throw new IllegalArgumentException("Size of key does not match size of values");
+			}
+		}
+
+		private MetricName buildMetricName(String... values) {
+			Builder builder = name(template.name).tags(template.tags);
+			for (int i = 0; i < keys.size(); i++) {
+				builder.tag(keys.get(i), values[i]);
+			}
+			return builder.build();
+		}
+
+		@SuppressWarnings("unchecked")
+		private static ConcurrentMap<Object, Object> getNestedCache(ConcurrentMap<Object, Object> cache, String value) {
+			final Object cacheKey = cacheKey(value);
+			ConcurrentMap<Object, Object> nestedCache = (ConcurrentMap<Object, Object>) cache.get(cacheKey);
+			if (nestedCache == null) {
+				nestedCache = new ConcurrentHashMap<Object, Object>();
+				final Object existingCache = cache.putIfAbsent(cacheKey, nestedCache);
+				if (existingCache != null) {
+					nestedCache = (ConcurrentMap<Object, Object>) existingCache;
+				}
+			}
+			return nestedCache;
+		}
+
+		private static Object cacheKey(String value) {
+			return value != null ? value : NULL_VALUE;
+		}
 	}
 
 	public static class Builder {
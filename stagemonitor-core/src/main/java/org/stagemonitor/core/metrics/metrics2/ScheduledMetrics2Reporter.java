@@ -1,6 +1,7 @@
 package org.stagemonitor.core.metrics.metrics2;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedMap;
@@ -29,6 +30,7 @@ public abstract class ScheduledMetrics2Reporter extends ScheduledReporter {
 	protected final Metric2Registry registry;
 	private final Metric2Filter filter;
 	private final ScheduledExecutorService executor;
+	private final MetricsByType metricsByType = new MetricsByType();
 	protected Clock clock;
 	private boolean started;
 
@@ -40,19 +42,34 @@ public abstract class ScheduledMetrics2Reporter extends ScheduledReporter {
 		this.clock = builder.getClock();
 	}
 
+	/**
+	 * Collects the metrics in a single pass over the registry and reports them.
+	 * <p/>
+	 * The maps which are handed to {@link #reportMetrics(Map, Map, Map, Map, Map)} are reused for each report.
+	 */
 	@Override
 	public void report() {
-		reportMetrics(
-				registry.getGauges(filter),
-				registry.getCounters(filter),
-				registry.getHistograms(filter),
-				registry.getMeters(filter),
-				registry.getTimers(filter)
-		);
+		synchronized (metricsByType) {
+			registry.accept(filter, metricsByType);
+			try {
+				reportMetrics(
+						metricsByType.gaugesView,
+						metricsByType.countersView,
+						metricsByType.histogramsView,
+						metricsByType.metersView,
+						metricsByType.timersView
+				);
+			} finally {
+				metricsByType.clear();
+			}
+		}
 	}
 
 	/**
 	 * Called periodically by the polling thread. Subclasses should report all the given metrics.
+	 * <p/>
+	 * The maps are only valid during the invocation of this method. Implementations which want to hold on to the
+	 * metrics have to copy them.
 	 *
 	 * @param gauges     all of the gauges in the registry
 	 * @param counters   all of the counters in the registry
@@ -119,6 +136,55 @@ public abstract class ScheduledMetrics2Reporter extends ScheduledReporter {
 		return periodInMS - (currentTimestamp % periodInMS);
 	}
 
+	/**
+	 * Sorts the metrics of a registry by their type into maps which are cleared, but not discarded, after each report
+	 */
+	private static class MetricsByType implements Metric2Visitor {
+		private final Map<MetricName, Gauge> gauges = new HashMap<MetricName, Gauge>();
+		private final Map<MetricName, Counter> counters = new HashMap<MetricName, Counter>();
+		private final Map<MetricName, Histogram> histograms = new HashMap<MetricName, Histogram>();
+		private final Map<MetricName, Meter> meters = new HashMap<MetricName, Meter>();
+		private final Map<MetricName, Timer> timers = new HashMap<MetricName, Timer>();
+		private final Map<MetricName, Gauge> gaugesView = Collections.unmodifiableMap(gauges);
+		private final Map<MetricName, Counter> countersView = Collections.unmodifiableMap(counters);
+		private final Map<MetricName, Histogram> histogramsView = Collections.unmodifiableMap(histograms);
+		private final Map<MetricName, Meter> metersView = Collections.unmodifiableMap(meters);
+		private final Map<MetricName, Timer> timersView = Collections.unmodifiableMap(timers);
+
+		@Override
+		public void visitGauge(MetricName name, Gauge gauge) {
+			gauges.put(name, gauge);
+		}
+
+		@Override
+		public void visitCounter(MetricName name, Counter counter) {
+			counters.put(name, counter);
+		}
+
+		@Override
+		public void visitHistogram(MetricName name, Histogram histogram) {
+			histograms.put(name, histogram);
+		}
+
+		@Override
+		public void visitMeter(MetricName name, Meter meter) {
+			meters.put(name, meter);
+		}
+
+		@Override
+		public void visitTimer(MetricName name, Timer timer) {
+			timers.put(name, timer);
+		}
+
+		private void clear() {
+			gauges.clear();
+			counters.clear();
+			histograms.clear();
+			meters.clear();
+			timers.clear();
+		}
+	}
+
 	public abstract static class Builder<R extends ScheduledMetrics2Reporter, B extends Builder> {
 		private final Metric2Registry registry;
 		private final ScheduledExecutorService executor;
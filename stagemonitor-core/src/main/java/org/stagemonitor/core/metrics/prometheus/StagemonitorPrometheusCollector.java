@@ -3,9 +3,15 @@ package org.stagemonitor.core.metrics.prometheus;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
@@ -51,22 +57,52 @@ import org.stagemonitor.core.metrics.metrics2.MetricName;
  */
 public class StagemonitorPrometheusCollector extends Collector {
 	private static final Logger logger = LoggerFactory.getLogger(StagemonitorPrometheusCollector.class);
+	private static final String[] QUANTILES = {"0.5", "0.75", "0.95", "0.98", "0.99", "0.999"};
 	private Metric2Registry registry;
+	private final long snapshotIntervalMillis;
+	private final Clock clock;
+	private final ConcurrentMap<MetricName, Exposition> expositions = new ConcurrentHashMap<MetricName, Exposition>();
+	private final AtomicLong generation = new AtomicLong();
+	private List<MetricFamilySamples> samples;
+	private long samplesTimestamp;
 
 	/**
 	 * @param registry a metric registry to export in prometheus.
 	 */
 	public StagemonitorPrometheusCollector(Metric2Registry registry) {
+		this(registry, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a collector which takes a snapshot of the registry at most once per interval.
+	 * <p/>
+	 * All scrapes within the interval get the same samples. That way, multiple Prometheus servers scraping the same
+	 * endpoint don't multiply the cost of collecting the metrics. The interval should be aligned with the scrape
+	 * interval.
+	 *
+	 * @param registry         a metric registry to export in prometheus.
+	 * @param snapshotInterval the maximum age of the samples which are returned by {@link #collect()}.
+	 *                         If <code>0</code>, a new snapshot is taken for each scrape.
+	 * @param unit             the unit of <code>snapshotInterval</code>
+	 */
+	public StagemonitorPrometheusCollector(Metric2Registry registry, long snapshotInterval, TimeUnit unit) {
+		this(registry, unit.toMillis(snapshotInterval), Clock.defaultClock());
+	}
+
+	StagemonitorPrometheusCollector(Metric2Registry registry, long snapshotIntervalMillis, Clock clock) {
 		this.registry = registry;
+		this.snapshotIntervalMillis = snapshotIntervalMillis;
+		this.clock = clock;
 	}
 
 	/**
 	 * Export counter as prometheus counter.
 	 */
-	MetricFamilySamples fromCounter(MetricName name, Counter counter) {
-		MetricFamilySamples.Sample sample = new MetricFamilySamples.Sample(name.getName(), name.getTagKeys(), name.getTagValues(),
+	MetricFamilySamples fromCounter(MetricName name, Counter counter, long generation) {
+		final Exposition exposition = getExposition(name, counter, generation);
+		MetricFamilySamples.Sample sample = new MetricFamilySamples.Sample(exposition.name, exposition.labelNames, exposition.labelValues,
 				(double) counter.getCount());
-		return new MetricFamilySamples(name.getName(), Type.GAUGE, getHelpMessage(name, counter), Collections.singletonList(sample));
+		return new MetricFamilySamples(exposition.name, Type.GAUGE, exposition.help, Collections.singletonList(sample));
 	}
 
 	private static String getHelpMessage(MetricName metricName, Metric metric) {
@@ -77,7 +113,7 @@ public class StagemonitorPrometheusCollector extends Collector {
 	/**
 	 * Export gauge as a prometheus gauge.
 	 */
-	MetricFamilySamples fromGauge(MetricName name, Gauge gauge) {
+	MetricFamilySamples fromGauge(MetricName name, Gauge gauge, long generation) {
 		Object obj = gauge.getValue();
 		double value;
 		if (obj instanceof Number) {
@@ -85,36 +121,39 @@ public class StagemonitorPrometheusCollector extends Collector {
 		} else if (obj instanceof Boolean) {
 			value = ((Boolean) obj) ? 1 : 0;
 		} else {
-			logger.debug("Invalid type for Gauge {}: {}", name, obj.getClass().getName());
+			if (obj != null) {
+				logger.debug("Invalid type for Gauge {}: {}", name, obj.getClass().getName());
+			}
 			return null;
 		}
-		MetricFamilySamples.Sample sample = new MetricFamilySamples.Sample(name.getName(), name.getTagKeys(), name.getTagValues(), value);
-		return new MetricFamilySamples(name.getName(), Type.GAUGE, getHelpMessage(name, gauge), Collections.singletonList(sample));
+		final Exposition exposition = getExposition(name, gauge, generation);
+		MetricFamilySamples.Sample sample = new MetricFamilySamples.Sample(exposition.name, exposition.labelNames, exposition.labelValues, value);
+		return new MetricFamilySamples(exposition.name, Type.GAUGE, exposition.help, Collections.singletonList(sample));
 	}
 
 	/**
 	 * Export a histogram snapshot as a prometheus SUMMARY.
 	 *
-	 * @param name     metric name.
-	 * @param snapshot the histogram snapshot.
-	 * @param count    the total sample count for this snapshot.
-	 * @param factor   a factor to apply to histogram values.
+	 * @param exposition the cached names and labels of the metric.
+	 * @param snapshot   the histogram snapshot.
+	 * @param count      the total sample count for this snapshot.
 	 */
-	MetricFamilySamples fromSnapshotAndCount(MetricName name, Snapshot snapshot, long count, String helpMessage) {
-		List<String> labelKeys = addToList(name.getTagKeys(), "quantile");
+	MetricFamilySamples fromSnapshotAndCount(Exposition exposition, Snapshot snapshot, long count) {
+		final List<String> labelNames = exposition.quantileLabelNames;
+		final List<List<String>> labelValues = exposition.quantileLabelValues;
 		List<MetricFamilySamples.Sample> samples = Arrays.asList(
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.5"), snapshot.getMedian()),
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.75"), snapshot.get75thPercentile()),
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.95"), snapshot.get95thPercentile()),
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.98"), snapshot.get98thPercentile()),
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.99"), snapshot.get99thPercentile()),
-				new MetricFamilySamples.Sample(name.getName(), labelKeys, addToList(name.getTagValues(), "0.999"), snapshot.get999thPercentile()),
-				new MetricFamilySamples.Sample(name.getName() + "_count", name.getTagKeys(), name.getTagValues(), count)
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(0), snapshot.getMedian()),
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(1), snapshot.get75thPercentile()),
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(2), snapshot.get95thPercentile()),
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(3), snapshot.get98thPercentile()),
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(4), snapshot.get99thPercentile()),
+				new MetricFamilySamples.Sample(exposition.name, labelNames, labelValues.get(5), snapshot.get999thPercentile()),
+				new MetricFamilySamples.Sample(exposition.countName, exposition.labelNames, exposition.labelValues, count)
 		);
-		return new MetricFamilySamples(name.getName(), Type.SUMMARY, helpMessage, samples);
+		return new MetricFamilySamples(exposition.name, Type.SUMMARY, exposition.help, samples);
 	}
 
-	private List<String> addToList(List<String> list, String additional) {
+	private static List<String> addToList(List<String> list, String additional) {
 		final List<String> newList = new ArrayList<String>(list);
 		newList.add(additional);
 		return newList;
@@ -123,49 +162,132 @@ public class StagemonitorPrometheusCollector extends Collector {
 	/**
 	 * Convert histogram snapshot.
 	 */
-	MetricFamilySamples fromHistogram(MetricName name, Histogram histogram) {
-		return fromSnapshotAndCount(name, histogram.getSnapshot(), histogram.getCount(),
-				getHelpMessage(name, histogram));
+	MetricFamilySamples fromHistogram(MetricName name, Histogram histogram, long generation) {
+		return fromSnapshotAndCount(getExposition(name, histogram, generation), histogram.getSnapshot(), histogram.getCount());
 	}
 
 	/**
 	 * Export dropwizard Timer as a histogram. Use TIME_UNIT as time unit.
 	 */
-	MetricFamilySamples fromTimer(MetricName name, Timer timer) {
-		return fromSnapshotAndCount(name, timer.getSnapshot(), timer.getCount(),
-				getHelpMessage(name, timer));
+	MetricFamilySamples fromTimer(MetricName name, Timer timer, long generation) {
+		return fromSnapshotAndCount(getExposition(name, timer, generation), timer.getSnapshot(), timer.getCount());
 	}
 
 	/**
 	 * Export a Meter as as prometheus COUNTER.
 	 */
-	MetricFamilySamples fromMeter(MetricName name, Meter meter) {
-		return new MetricFamilySamples(name.getName() + "_total", Type.COUNTER, getHelpMessage(name, meter),
-				Collections.singletonList(new MetricFamilySamples.Sample(name.getName() + "_total", name.getTagKeys(),
-						name.getTagValues(), meter.getCount())));
+	MetricFamilySamples fromMeter(MetricName name, Meter meter, long generation) {
+		final Exposition exposition = getExposition(name, meter, generation);
+		final String totalName = exposition.totalName;
+		return new MetricFamilySamples(totalName, Type.COUNTER, exposition.help,
+				Collections.singletonList(new MetricFamilySamples.Sample(totalName, exposition.labelNames,
+						exposition.labelValues, meter.getCount())));
 	}
 
+	/**
+	 * Returns the samples of all metrics.
+	 * <p/>
+	 * If this collector has been created with a snapshot interval, the samples are only collected if the last
+	 * snapshot is older than the interval. Concurrent scrapes wait for the scrape which takes the snapshot.
+	 */
 	@Override
 	public List<MetricFamilySamples> collect() {
+		if (snapshotIntervalMillis <= 0) {
+			return collectSamples();
+		}
+		synchronized (this) {
+			final long now = clock.getTime();
+			if (samples == null || now - samplesTimestamp >= snapshotIntervalMillis) {
+				samples = Collections.unmodifiableList(collectSamples());
+				samplesTimestamp = now;
+			}
+			return samples;
+		}
+	}
+
+	private List<MetricFamilySamples> collectSamples() {
+		final long generation = this.generation.incrementAndGet();
 		ArrayList<MetricFamilySamples> mfSamples = new ArrayList<MetricFamilySamples>(registry.getMetrics().size());
 		for (SortedMap.Entry<MetricName, Gauge> entry : registry.getGauges().entrySet()) {
-			final MetricFamilySamples metricFamilySamples = fromGauge(entry.getKey(), entry.getValue());
+			final MetricFamilySamples metricFamilySamples = fromGauge(entry.getKey(), entry.getValue(), generation);
 			if (metricFamilySamples != null) {
 				mfSamples.add(metricFamilySamples);
 			}
 		}
 		for (SortedMap.Entry<MetricName, Counter> entry : registry.getCounters().entrySet()) {
-			mfSamples.add(fromCounter(entry.getKey(), entry.getValue()));
+			mfSamples.add(fromCounter(entry.getKey(), entry.getValue(), generation));
 		}
 		for (SortedMap.Entry<MetricName, Histogram> entry : registry.getHistograms().entrySet()) {
-			mfSamples.add(fromHistogram(entry.getKey(), entry.getValue()));
+			mfSamples.add(fromHistogram(entry.getKey(), entry.getValue(), generation));
 		}
 		for (SortedMap.Entry<MetricName, Timer> entry : registry.getTimers().entrySet()) {
-			mfSamples.add(fromTimer(entry.getKey(), entry.getValue()));
+			mfSamples.add(fromTimer(entry.getKey(), entry.getValue(), generation));
 		}
 		for (SortedMap.Entry<MetricName, Meter> entry : registry.getMeters().entrySet()) {
-			mfSamples.add(fromMeter(entry.getKey(), entry.getValue()));
+			mfSamples.add(fromMeter(entry.getKey(), entry.getValue(), generation));
 		}
+		removeStaleExpositions(generation);
 		return mfSamples;
 	}
+
+	private Exposition getExposition(MetricName name, Metric metric, long generation) {
+		Exposition exposition = expositions.get(name);
+		if (exposition == null || exposition.metricClass != metric.getClass()) {
+			exposition = new Exposition(name, metric);
+			expositions.put(name, exposition);
+		}
+		exposition.generation = generation;
+		return exposition;
+	}
+
+	/**
+	 * Removes the cached expositions of metrics which have been removed from the registry
+	 */
+	private void removeStaleExpositions(long generation) {
+		if (expositions.size() <= registry.getMetrics().size()) {
+			return;
+		}
+		for (Iterator<Exposition> iterator = expositions.values().iterator(); iterator.hasNext(); ) {
+			if (iterator.next().generation < generation) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * The names, labels and help message of a metric which don't change from scrape to scrape
+	 */
+	static class Exposition {
+		private final Class<?> metricClass;
+		private final String name;
+		private final String help;
+		private final List<String> labelNames;
+		private final List<String> labelValues;
+		private final List<String> quantileLabelNames;
+		private final List<List<String>> quantileLabelValues;
+		private final String countName;
+		private final String totalName;
+		private volatile long generation;
+
+		private Exposition(MetricName metricName, Metric metric) {
+			this.metricClass = metric.getClass();
+			this.name = metricName.getName();
+			this.help = getHelpMessage(metricName, metric);
+			this.labelNames = Collections.unmodifiableList(metricName.getTagKeys());
+			this.labelValues = Collections.unmodifiableList(metricName.getTagValues());
+			if (metric instanceof Histogram || metric instanceof Timer) {
+				quantileLabelNames = Collections.unmodifiableList(addToList(labelNames, "quantile"));
+				final List<List<String>> values = new ArrayList<List<String>>(QUANTILES.length);
+				for (String quantile : QUANTILES) {
+					values.add(Collections.unmodifiableList(addToList(labelValues, quantile)));
+				}
+				quantileLabelValues = values;
+			} else {
+				quantileLabelNames = null;
+				quantileLabelValues = null;
+			}
+			this.countName = name + "_count";
+			this.totalName = name + "_total";
+		}
+	}
 }
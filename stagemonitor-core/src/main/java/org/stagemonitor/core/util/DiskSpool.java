@@ -0,0 +1,396 @@
+package org.stagemonitor.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * A bounded FIFO of batches (for example the body of a _bulk request) which is stored in a memory mapped file.
+ * <p/>
+ * Reporters append the batches they could not send to the spool while the backend is unavailable and drain the spool
+ * once the backend is available again. As the batches are stored outside of the heap, the heap usage stays constant
+ * regardless of how long an outage lasts. The batches are written directly into the file, so they don't have to be
+ * materialized in memory. Only while draining, the batch which is currently sent is copied into the heap. If the
+ * spool is full, new batches are dropped.
+ * <p/>
+ * The file is a ring buffer with a small header which contains the read and write position. The write position is
+ * only updated after a batch has been written completely. So after a restart, or even after the JVM has crashed, the
+ * spool contains all batches which have been appended completely and not yet been drained.
+ * <p/>
+ * Batches are delivered at least once: a batch is only removed after it has been sent successfully. If a drain is
+ * interrupted by a restart, the batch which has been in flight is sent again.
+ * <p/>
+ * A spool file can only be used by one spool at a time. This is ensured with a file lock, so that multiple JVMs which
+ * are configured with the same spool directory don't overwrite each other's batches.
+ */
+public class DiskSpool implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DiskSpool.class);
+
+	private static final int MAGIC = 0x73706f6f; // "spoo"
+	private static final int VERSION = 1;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int READ_POSITION_OFFSET = 16;
+	private static final int WRITE_POSITION_OFFSET = 24;
+	private static final int HEADER_SIZE = 32;
+	/**
+	 * The maximum capacity of a spool, as a file can't be mapped into memory if it is larger than 2 GB
+	 */
+	public static final long MAX_CAPACITY = Integer.MAX_VALUE - HEADER_SIZE;
+	private static final int LENGTH_SIZE = 4;
+
+	private final File file;
+	private final int capacity;
+	private final int maxBatchesPerDrain;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer buffer;
+	private final Object drainLock = new Object();
+	// the positions are absolute, the offset in the file is position % capacity
+	private long readPosition;
+	private long writePosition;
+	private int batches;
+	private long droppedBatches;
+	private boolean full;
+	private boolean closed;
+
+	/**
+	 * @param file               the spool file, which is created if it does not exist yet
+	 * @param capacity           the maximum number of bytes the spool can hold
+	 * @param maxBatchesPerDrain the maximum number of batches which are sent by one invocation of
+	 *                           {@link #drain(BatchSender)}
+	 * @throws IOException if the spool file can't be created or if it is already used by another spool
+	 */
+	public DiskSpool(File file, int capacity, int maxBatchesPerDrain) throws IOException {
+		this.file = file;
+		this.capacity = capacity;
+		this.maxBatchesPerDrain = maxBatchesPerDrain;
+		final File parent = file.getAbsoluteFile().getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Could not create directory " + parent);
+		}
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			lock(randomAccessFile.getChannel());
+			buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+		if (!restore()) {
+			readPosition = 0;
+			writePosition = 0;
+			batches = 0;
+			buffer.putInt(MAGIC_OFFSET, MAGIC);
+			buffer.putInt(VERSION_OFFSET, VERSION);
+			buffer.putInt(CAPACITY_OFFSET, capacity);
+			buffer.putLong(READ_POSITION_OFFSET, readPosition);
+			buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+		} else if (batches > 0) {
+			logger.info("Restored {} batches ({} bytes) from spool {}", batches, getUsedBytes(), file);
+		}
+	}
+
+	/**
+	 * Locks the spool file. The lock is released when the file is closed.
+	 */
+	private void lock(FileChannel channel) throws IOException {
+		final FileLock lock;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// the lock is held by another spool in this JVM
+			throw new IOException("The spool file " + file + " is already in use");
+		}
+		if (lock == null) {
+			throw new IOException("The spool file " + file + " is already in use by another process. " +
+					"Configure a different spool directory for each JVM.");
+		}
+	}
+
+	/**
+	 * Reads the header of an existing spool and validates the batches between the read and the write position
+	 *
+	 * @return <code>true</code>, if the spool file contains a valid spool
+	 */
+	private boolean restore() {
+		if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+			return false;
+		}
+		if (buffer.getInt(CAPACITY_OFFSET) != capacity) {
+			logger.warn("Discarding spool {} as its capacity has changed", file);
+			return false;
+		}
+		readPosition = buffer.getLong(READ_POSITION_OFFSET);
+		writePosition = buffer.getLong(WRITE_POSITION_OFFSET);
+		if (readPosition < 0 || readPosition > writePosition || writePosition - readPosition > capacity) {
+			logger.warn("Discarding corrupt spool {}", file);
+			return false;
+		}
+		batches = 0;
+		long position = readPosition;
+		while (position < writePosition && writePosition - position >= LENGTH_SIZE && getLength(position) >= 0) {
+			position += LENGTH_SIZE + getLength(position);
+			batches++;
+		}
+		if (position != writePosition) {
+			logger.warn("Discarding corrupt spool {}", file);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Appends a batch to the spool
+	 *
+	 * @param batch writes the batch to the provided {@link OutputStream}
+	 * @return <code>false</code>, if the batch has been dropped because the spool is full
+	 */
+	public synchronized boolean append(HttpClient.OutputStreamHandler batch) throws IOException {
+		if (closed) {
+			return false;
+		}
+		final SpoolOutputStream os = new SpoolOutputStream(writePosition + LENGTH_SIZE);
+		try {
+			batch.withHttpURLConnection(os);
+		} catch (SpoolFullException e) {
+			droppedBatches++;
+			if (!full) {
+				full = true;
+				logger.warn("The spool {} is full. Batches are dropped until it has been drained.", file);
+			}
+			return false;
+		}
+		full = false;
+		putInt(writePosition, (int) (os.position - writePosition - LENGTH_SIZE));
+		writePosition = os.position;
+		batches++;
+		// the batch is only visible after a restart once the write position has been updated
+		buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+		return true;
+	}
+
+	/**
+	 * Sends up to <code>maxBatchesPerDrain</code> of the oldest batches.
+	 * <p/>
+	 * Sending stops as soon as a batch could not be sent. That batch remains in the spool.
+	 * <p/>
+	 * The batches are copied out of the spool before they are sent, so that appending to the spool is not blocked while
+	 * a batch is sent.
+	 *
+	 * @param sender sends a batch to the backend
+	 * @return the number of batches which have been sent
+	 */
+	public int drain(BatchSender sender) {
+		synchronized (drainLock) {
+			int sent = 0;
+			while (sent < maxBatchesPerDrain) {
+				final byte[] batch = copyOldestBatch();
+				if (batch == null || !sender.send(new BatchOutputStreamHandler(batch))) {
+					break;
+				}
+				// only drain removes batches, so the oldest batch is still the one which has just been sent
+				removeOldest();
+				sent++;
+			}
+			if (sent > 0) {
+				logger.debug("Sent {} batches from spool {}, {} remaining", sent, file, getBatches());
+			}
+			return sent;
+		}
+	}
+
+	/**
+	 * Sends the batch and, if that succeeded, drains the spool. If the batch could not be sent, it is appended to the
+	 * spool.
+	 *
+	 * @param sender sends a batch to the backend
+	 * @param batch  the batch to send
+	 * @return <code>false</code>, if the batch could neither be sent nor spooled
+	 */
+	public boolean sendOrAppend(BatchSender sender, HttpClient.OutputStreamHandler batch) throws IOException {
+		if (sender.send(batch)) {
+			drain(sender);
+			return true;
+		}
+		return append(batch);
+	}
+
+	/**
+	 * @return a copy of the oldest batch or <code>null</code>, if the spool is empty or closed
+	 */
+	private synchronized byte[] copyOldestBatch() {
+		if (closed || batches == 0) {
+			return null;
+		}
+		final byte[] batch = new byte[getLength(readPosition)];
+		get(readPosition + LENGTH_SIZE, batch, batch.length);
+		return batch;
+	}
+
+	private synchronized void removeOldest() {
+		if (closed) {
+			// the batch is sent again after a restart
+			return;
+		}
+		readPosition += LENGTH_SIZE + getLength(readPosition);
+		batches--;
+		buffer.putLong(READ_POSITION_OFFSET, readPosition);
+	}
+
+	public synchronized int getBatches() {
+		return batches;
+	}
+
+	public synchronized long getUsedBytes() {
+		return writePosition - readPosition;
+	}
+
+	public synchronized long getDroppedBatches() {
+		return droppedBatches;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Writes the spool to the disk and closes the file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			buffer.force();
+			randomAccessFile.close();
+		}
+	}
+
+	private int offset(long position) {
+		return HEADER_SIZE + (int) (position % capacity);
+	}
+
+	private int getLength(long position) {
+		int length = 0;
+		for (int i = 0; i < LENGTH_SIZE; i++) {
+			length = (length << 8) | (buffer.get(offset(position + i)) & 0xFF);
+		}
+		return length;
+	}
+
+	private void putInt(long position, int value) {
+		for (int i = 0; i < LENGTH_SIZE; i++) {
+			buffer.put(offset(position + i), (byte) (value >>> (24 - 8 * i)));
+		}
+	}
+
+	private void put(long position, byte[] bytes, int off, int len) {
+		final int offset = offset(position);
+		final int untilEnd = Math.min(len, HEADER_SIZE + capacity - offset);
+		buffer.position(offset);
+		buffer.put(bytes, off, untilEnd);
+		if (untilEnd < len) {
+			buffer.position(HEADER_SIZE);
+			buffer.put(bytes, off + untilEnd, len - untilEnd);
+		}
+	}
+
+	private void get(long position, byte[] bytes, int len) {
+		final int offset = offset(position);
+		final int untilEnd = Math.min(len, HEADER_SIZE + capacity - offset);
+		buffer.position(offset);
+		buffer.get(bytes, 0, untilEnd);
+		if (untilEnd < len) {
+			buffer.position(HEADER_SIZE);
+			buffer.get(bytes, untilEnd, len - untilEnd);
+		}
+	}
+
+	/**
+	 * Sends a batch to the backend
+	 */
+	public interface BatchSender {
+		/**
+		 * @return <code>true</code>, if the batch has been delivered to the backend, <code>false</code> if it should be
+		 * retried later
+		 */
+		boolean send(HttpClient.OutputStreamHandler batch);
+	}
+
+	/**
+	 * Determines whether a request should be retried later, because the backend is (temporarily) unavailable
+	 *
+	 * @param statusCode the status code of the response or <code>null</code> or -1 if no response has been received
+	 * @return <code>true</code> if there was no response, the backend is overloaded or there was a server error
+	 */
+	public static boolean isRetryable(Integer statusCode) {
+		return statusCode == null || statusCode < 0 || statusCode == 429 || statusCode >= 500;
+	}
+
+	private static class BatchOutputStreamHandler implements HttpClient.OutputStreamHandler {
+
+		private final byte[] batch;
+
+		private BatchOutputStreamHandler(byte[] batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void withHttpURLConnection(OutputStream os) throws IOException {
+			os.write(batch);
+			os.close();
+		}
+	}
+
+	/**
+	 * Writes directly into the ring buffer. Must only be used while holding the lock of the spool.
+	 */
+	private class SpoolOutputStream extends OutputStream {
+
+		private long position;
+
+		private SpoolOutputStream(long position) {
+			this.position = position;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			ensureCapacity(1);
+			buffer.put(offset(position++), (byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ensureCapacity(len);
+			put(position, b, off, len);
+			position += len;
+		}
+
+		private void ensureCapacity(int len) throws SpoolFullException {
+			if (position + len - readPosition > capacity) {
+				throw new SpoolFullException();
+			}
+		}
+
+		@Override
+		public void close() {
+			// the batch is committed by DiskSpool#append
+		}
+	}
+
+	private static class SpoolFullException extends IOException {
+		private SpoolFullException() {
+			super("The spool is full");
+		}
+	}
+}
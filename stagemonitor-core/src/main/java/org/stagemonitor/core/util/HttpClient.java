@@ -14,18 +14,70 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.bind.DatatypeConverter;
 
 // TODO create HttpRequest POJO
 // method, url, headers, outputStreamHandler, responseHandler
 // builder methods logErrors(int... excludedStatusCodes)
+/**
+ * Sends HTTP requests via {@link HttpURLConnection}s.
+ * <p/>
+ * The JDK keeps the connections alive and pools them per target host. A connection is returned to the pool, once the
+ * response has been read completely, and is evicted after being idle for a few seconds (see the
+ * <code>Keep-Alive</code> response header). However, the pool only retains <code>http.maxConnections</code> (default
+ * 5) idle connections per host. If there are more concurrent requests, the surplus connections are closed after each
+ * request and new connections have to be opened for the next requests. That's why the number of in-flight requests
+ * per host is limited to the size of the pool. This limit is shared by all instances of this class, as the
+ * Elasticsearch client, the reporters and the alerters all send requests to the same hosts.
+ * <p/>
+ * Request bodies can optionally be compressed with gzip. The body is compressed while it is written and streamed to
+ * the server in chunks, so that neither the uncompressed nor the compressed body has to be buffered in memory.
+ */
 public class HttpClient {
 
 	private static final long CONNECT_TIMEOUT_SEC = 5;
 	private static final long READ_TIMEOUT_SEC = 15;
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+	private static final int MAX_CONNECTIONS_PER_HOST = getMaxConnectionsPerHost(System.getProperty("http.maxConnections"));
+	private static final ConcurrentMap<String, Semaphore> inFlightRequestsPerHost = new ConcurrentHashMap<String, Semaphore>();
+	private static final int GZIP_BUFFER_SIZE = 8192;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final boolean gzipRequests;
+
+	public HttpClient() {
+		this(false);
+	}
+
+	/**
+	 * Just like the JDK, falls back to the default if <code>http.maxConnections</code> is not a positive number
+	 */
+	static int getMaxConnectionsPerHost(String maxConnections) {
+		if (maxConnections != null) {
+			try {
+				final int value = Integer.parseInt(maxConnections);
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	}
+
+	/**
+	 * @param gzipRequests whether request bodies should be compressed with gzip
+	 *                     (the server has to support the <code>Content-Encoding: gzip</code> header)
+	 */
+	public HttpClient(boolean gzipRequests) {
+		this.gzipRequests = gzipRequests;
+	}
 
 	public int send(final String method, final String url) {
 		return send(method, url, null, null);
@@ -81,8 +133,15 @@ public class HttpClient {
 
 		HttpURLConnection connection = null;
 		InputStream inputStream = null;
+		Semaphore inFlightRequests = null;
 		try {
 			URL parsedUrl = new URL(url);
+			inFlightRequests = acquireInFlightRequest(parsedUrl);
+			if (inFlightRequests == null) {
+				logger.warn("Error sending {} request to url {}: there are already {} in-flight requests to this host",
+						method, url, MAX_CONNECTIONS_PER_HOST);
+				return null;
+			}
 			connection = (HttpURLConnection) parsedUrl.openConnection();
 			if (parsedUrl.getUserInfo() != null) {
 				String basicAuth = "Basic " + DatatypeConverter.printBase64Binary(parsedUrl.getUserInfo().getBytes());
@@ -99,7 +158,7 @@ public class HttpClient {
 			}
 
 			if (outputStreamHandler != null) {
-				outputStreamHandler.withHttpURLConnection(connection.getOutputStream());
+				streamRequestBody(connection, outputStreamHandler);
 			}
 
 			inputStream = connection.getInputStream();
@@ -123,12 +182,64 @@ public class HttpClient {
 				logger.warn("Error sending {} request to url {}: {}", method, url, e.getMessage(), e);
 			}
 
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			return null;
 		} finally {
 			IOUtils.closeQuietly(inputStream);
+			if (inFlightRequests != null) {
+				inFlightRequests.release();
+			}
 		}
 	}
 
+	/**
+	 * Waits until the number of in-flight requests to the host of the url is below {@link #MAX_CONNECTIONS_PER_HOST}
+	 *
+	 * @return the semaphore which has to be released after the request, or <code>null</code> if the connect timeout
+	 * has elapsed
+	 */
+	private static Semaphore acquireInFlightRequest(URL url) throws InterruptedException {
+		final String host = getHost(url);
+		Semaphore inFlightRequests = inFlightRequestsPerHost.get(host);
+		if (inFlightRequests == null) {
+			inFlightRequestsPerHost.putIfAbsent(host, new Semaphore(MAX_CONNECTIONS_PER_HOST));
+			inFlightRequests = inFlightRequestsPerHost.get(host);
+		}
+		if (inFlightRequests.tryAcquire(CONNECT_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+			return inFlightRequests;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the scheme, host and port of the url. If the url does not contain a port, the default port of the scheme is
+	 * used, so that <code>http://es</code> and <code>http://es:80</code> are the same host.
+	 */
+	static String getHost(URL url) {
+		final int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+		return url.getProtocol() + "://" + url.getHost() + ":" + port;
+	}
+
+	private void streamRequestBody(HttpURLConnection connection, OutputStreamHandler outputStreamHandler) throws IOException {
+		if (gzipRequests) {
+			connection.setRequestProperty("Content-Encoding", "gzip");
+			// don't buffer the compressed body
+			connection.setChunkedStreamingMode(0);
+			final GZIPOutputStream os = new GZIPOutputStream(connection.getOutputStream(), GZIP_BUFFER_SIZE);
+			outputStreamHandler.withHttpURLConnection(os);
+			// most handlers close the stream themselves, closing it again is a no-op
+			os.close();
+		} else {
+			outputStreamHandler.withHttpURLConnection(connection.getOutputStream());
+		}
+	}
+
+	public boolean isGzipRequests() {
+		return gzipRequests;
+	}
+
 	private Integer getResponseCodeIfPossible(HttpURLConnection connection) {
 		try {
 			return connection.getResponseCode();
@@ -0,0 +1,129 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import org.junit.Test;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+public class HdrHistogramReservoirTest {
+
+	@Test
+	public void testSnapshotContainsValuesOfLastInterval() throws Exception {
+		final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(0, TimeUnit.SECONDS);
+		for (int i = 1; i <= 1000; i++) {
+			reservoir.update(i);
+		}
+
+		final Snapshot snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.size()).isEqualTo(1000);
+		assertThat(reservoir.size()).isEqualTo(1000);
+		assertThat(snapshot.getMin()).isEqualTo(1);
+		assertThat((double) snapshot.getMax()).isEqualTo(1000, within(10d));
+		assertThat(snapshot.getMean()).isEqualTo(500.5, within(5d));
+		assertThat(snapshot.getMedian()).isEqualTo(500, within(5d));
+		assertThat(snapshot.get99thPercentile()).isEqualTo(990, within(10d));
+		assertThat(snapshot.getValues()).hasSize(1000);
+
+		// the values are reset for each interval
+		reservoir.update(42);
+		assertThat(reservoir.getSnapshot().size()).isEqualTo(1);
+		assertThat(reservoir.getSnapshot().size()).isZero();
+	}
+
+	@Test
+	public void testSnapshotIsSharedWithinInterval() throws Exception {
+		final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1, TimeUnit.HOURS);
+		reservoir.update(42);
+
+		// the first interval has not been completed yet
+		assertThat(reservoir.getSnapshot().size()).isZero();
+		assertThat(reservoir.getSnapshot()).isSameAs(reservoir.getSnapshot());
+	}
+
+	@Test
+	public void testSlightlyEarlyReportGetsNewSnapshot() throws Exception {
+		final ManualClock clock = new ManualClock();
+		final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1, TimeUnit.MINUTES, clock);
+
+		reservoir.update(1);
+		clock.advance(TimeUnit.SECONDS.toNanos(60));
+		final Snapshot firstInterval = reservoir.getSnapshot();
+		assertThat(firstInterval.size()).isEqualTo(1);
+
+		// a second reporter in the same interval gets the same snapshot
+		clock.advance(TimeUnit.SECONDS.toNanos(1));
+		assertThat(reservoir.getSnapshot()).isSameAs(firstInterval);
+
+		reservoir.update(2);
+		reservoir.update(3);
+		// the next report is scheduled slightly earlier than a full interval after the previous one
+		clock.advance(TimeUnit.SECONDS.toNanos(58));
+		final Snapshot secondInterval = reservoir.getSnapshot();
+		assertThat(secondInterval).isNotSameAs(firstInterval);
+		assertThat(secondInterval.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void testEmptySnapshot() throws Exception {
+		final Snapshot snapshot = new HdrHistogramReservoir(0, TimeUnit.SECONDS).getSnapshot();
+		assertThat(snapshot.size()).isZero();
+		assertThat(snapshot.getMin()).isZero();
+		assertThat(snapshot.getMax()).isZero();
+		assertThat(snapshot.getMean()).isZero();
+		assertThat(snapshot.getStdDev()).isZero();
+		assertThat(snapshot.get99thPercentile()).isZero();
+		assertThat(snapshot.getValues()).isEmpty();
+	}
+
+	@Test
+	public void testTimerReservoirClampsValues() throws Exception {
+		final HdrHistogramReservoir reservoir = HdrHistogramReservoir.forTimer(0, TimeUnit.SECONDS);
+		reservoir.update(-1);
+		reservoir.update(TimeUnit.DAYS.toNanos(1));
+
+		final Snapshot snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.size()).isEqualTo(2);
+		assertThat(snapshot.getMin()).isZero();
+		assertThat((double) snapshot.getMax()).isEqualTo(TimeUnit.HOURS.toNanos(1), within(TimeUnit.HOURS.toNanos(1) * 0.01));
+	}
+
+	@Test
+	public void testRegistryUsesReservoirType() throws Exception {
+		final Metric2Registry registry = new Metric2Registry();
+		registry.setReservoirType(ReservoirType.HDR_HISTOGRAM, 0, TimeUnit.SECONDS);
+
+		final Timer timer = registry.timer(name("timer").build());
+		timer.update(1, TimeUnit.MILLISECONDS);
+		timer.update(3, TimeUnit.MILLISECONDS);
+		final Histogram histogram = registry.histogram(name("histogram").build());
+		histogram.update(Long.MAX_VALUE / 2);
+
+		assertThat(timer.getSnapshot().getMean()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2), within(20_000d));
+		assertThat(timer.getCount()).isEqualTo(2);
+		assertThat(histogram.getSnapshot().getMax()).isGreaterThanOrEqualTo(Long.MAX_VALUE / 2);
+	}
+
+	private static class ManualClock extends Clock {
+
+		private long tick;
+
+		@Override
+		public long getTick() {
+			return tick;
+		}
+
+		private void advance(long nanos) {
+			tick += nanos;
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package org.stagemonitor.core.metrics;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.counter;
@@ -12,6 +14,8 @@ import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.timer;
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
@@ -23,8 +27,11 @@ import com.codahale.metrics.Timer;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.metrics.metrics2.ScheduledMetrics2Reporter;
 
 public class MetricsAggregationReporterTest {
 
@@ -184,4 +191,34 @@ public class MetricsAggregationReporterTest {
 				"timer1 |         4 |      8.00 |      1.00 |     33.00 |     10.00 |     12.00 |     14.00 |     16.00 |     18.00 |     20.00 |     22.00 |      6.00 |      6.00 |      6.00 |      6.00 | second        | nanoseconds\n\n\n");
 
 	}
+
+	@Test
+	public void testMemoryLimit() throws Exception {
+		final ScheduledMetrics2Reporter onShutdownReporter = mock(ScheduledMetrics2Reporter.class);
+		// enough memory for one chunk of timers
+		reporter = MetricsAggregationReporter.forRegistry(new Metric2Registry())
+				.addOnShutdownReporter(onShutdownReporter)
+				.maxSizeBytes(AggregationStore.CHUNK_SLOTS * (13 * 8 + AggregationStore.INDEX_BYTES_PER_SLOT))
+				.build();
+
+		final Map<MetricName, Timer> timers = new HashMap<MetricName, Timer>();
+		for (int i = 0; i <= AggregationStore.CHUNK_SLOTS; i++) {
+			timers.put(name("timer").tag("i", Integer.toString(i)).build(),
+					timer(1L, 2.0, 3.0, 4.0, 5.0, snapshot(4, 11L, 2L, 5.0, 6.0, 7.0, 8.0, 9.0, 10.0, 11.0)));
+		}
+		reporter.reportMetrics(MetricsReporterTestHelper.map(), MetricsReporterTestHelper.map(),
+				MetricsReporterTestHelper.map(), MetricsReporterTestHelper.map(), timers);
+		reporter.reportMetrics(MetricsReporterTestHelper.map(), MetricsReporterTestHelper.map(),
+				MetricsReporterTestHelper.map(), MetricsReporterTestHelper.map(), timers);
+
+		reporter.onShutDown();
+
+		final ArgumentCaptor<Map> aggregatedTimers = ArgumentCaptor.forClass(Map.class);
+		verify(onShutdownReporter).reportMetrics(anyMap(), anyMap(), anyMap(), anyMap(), aggregatedTimers.capture());
+		assertEquals(AggregationStore.CHUNK_SLOTS, aggregatedTimers.getValue().size());
+		for (Object timer : aggregatedTimers.getValue().values()) {
+			assertEquals(2, ((Timer) timer).getSnapshot().getMin());
+			assertEquals(6.0, ((Timer) timer).getSnapshot().getMedian(), 0);
+		}
+	}
 }
@@ -0,0 +1,89 @@
+package org.stagemonitor.core.metrics;
+
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PercentileThresholdTrackerTest {
+
+	private Timer timer;
+
+	@Before
+	public void setUp() {
+		timer = new Timer(new SlidingWindowReservoir(100));
+		for (int i = 1; i <= 100; i++) {
+			timer.update(i, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Test
+	public void testPercentileLimits() {
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(1, TimeUnit.HOURS);
+		assertTrue(tracker.isFasterThanXPercentOfAllRequests(1, 0, timer));
+		assertFalse(tracker.isFasterThanXPercentOfAllRequests(1000, 1, timer));
+	}
+
+	@Test
+	public void testSameResultAsSnapshot() {
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(1, TimeUnit.HOURS);
+		for (double percentile : new double[]{0.1, 0.5, 0.85, 0.99}) {
+			for (long executionTime = 0; executionTime <= 101; executionTime++) {
+				assertEquals(MetricUtils.isFasterThanXPercentOfAllRequests(executionTime, percentile, timer),
+						tracker.isFasterThanXPercentOfAllRequests(executionTime, percentile, timer));
+			}
+		}
+	}
+
+	@Test
+	public void testThresholdIsCachedUntilRecomputationInterval() {
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(1, TimeUnit.HOURS);
+		assertEquals(51, tracker.getThreshold(timer, 0.5));
+		for (int i = 0; i < 100; i++) {
+			timer.update(1000, TimeUnit.NANOSECONDS);
+		}
+		assertEquals(51, tracker.getThreshold(timer, 0.5));
+	}
+
+	@Test
+	public void testChangedPercentileIsComputedImmediately() {
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(1, TimeUnit.HOURS);
+		assertEquals(51, tracker.getThreshold(timer, 0.5));
+		assertEquals(91, tracker.getThreshold(timer, 0.9));
+	}
+
+	@Test
+	public void testThresholdIsStoredInPercentileTrackingTimer() {
+		final PercentileTrackingTimer percentileTrackingTimer = new PercentileTrackingTimer(new SlidingWindowReservoir(100));
+		for (int i = 1; i <= 100; i++) {
+			percentileTrackingTimer.update(i, TimeUnit.NANOSECONDS);
+		}
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(1, TimeUnit.HOURS);
+		assertEquals(51, tracker.getThreshold(percentileTrackingTimer, 0.5));
+		assertNotNull(percentileTrackingTimer.threshold);
+		assertEquals(91, tracker.getThreshold(percentileTrackingTimer, 0.9));
+	}
+
+	@Test
+	public void testRecomputeInBackground() throws Exception {
+		final PercentileThresholdTracker tracker = new PercentileThresholdTracker(0, TimeUnit.NANOSECONDS);
+		assertEquals(51, tracker.getThreshold(timer, 0.5));
+		for (int i = 0; i < 100; i++) {
+			timer.update(1000, TimeUnit.NANOSECONDS);
+		}
+		long threshold = tracker.getThreshold(timer, 0.5);
+		for (int i = 0; i < 100 && threshold != 1000; i++) {
+			Thread.sleep(10);
+			threshold = tracker.getThreshold(timer, 0.5);
+		}
+		assertEquals(1000, threshold);
+	}
+}
@@ -0,0 +1,32 @@
+package org.stagemonitor.core.metrics.annotations;
+
+import org.junit.Test;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+public class MetricHandleRegistryTest {
+
+	@Test
+	public void testRegister() {
+		final MetricName metricName = name("timer").tag("signature", "MetricHandleRegistryTest#testRegister").build();
+		final int id = MetricHandleRegistry.register(metricName);
+		assertEquals(id, MetricHandleRegistry.register(name("timer").tag("signature", "MetricHandleRegistryTest#testRegister").build()));
+		assertNotEquals(id, MetricHandleRegistry.register(name("rate").tag("signature", "MetricHandleRegistryTest#testRegister").build()));
+		assertEquals(metricName, MetricHandleRegistry.getHandle(id).getName());
+	}
+
+	@Test
+	public void testRegisterMoreThanInitialCapacity() {
+		final int[] ids = new int[1000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = MetricHandleRegistry.register(name("timer").tag("signature", "MetricHandleRegistryTest#method" + i).build());
+		}
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(name("timer").tag("signature", "MetricHandleRegistryTest#method" + i).build(),
+					MetricHandleRegistry.getHandle(ids[i]).getName());
+		}
+	}
+}
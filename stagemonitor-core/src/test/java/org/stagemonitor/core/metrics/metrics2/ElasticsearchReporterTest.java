@@ -134,6 +134,19 @@ public class ElasticsearchReporterTest {
 				"{\"@timestamp\":200,\"name\":\"test\",\"app\":\"test\",\"value\":1.0}\n", StringUtils.getLogstashStyleDate())));
 	}
 
+	@Test
+	public void testCachedNameAndTagsOfRemovedMetricsAreEvicted() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			final MetricName metricName = name("test").tag("id", Integer.toString(i)).build();
+			registry.counter(metricName).inc();
+			elasticsearchReporter.report();
+			registry.remove(metricName);
+		}
+		elasticsearchReporter.report();
+
+		assertEquals(0, elasticsearchReporter.getNameAndTagsCacheSize());
+	}
+
 	@Test
 	public void testReportGauges() throws Exception {
 		elasticsearchReporter.reportMetrics(
@@ -322,6 +335,42 @@ public class ElasticsearchReporterTest {
 						.add("std", 500.0 * DURATION_FACTOR),
 				asMap(out));
 	}
+
+	@Test
+	public void testReportMultipleMetricsWithEscapedTags() throws Exception {
+		final MetricName metricName = name("request_count").tag("request_name", "GET \"/foo\\bar\" \u00e4").build();
+		for (int i = 0; i < 2; i++) {
+			out.reset();
+			elasticsearchReporter.reportMetrics(
+					metricNameMap(Gauge.class),
+					metricNameMap(metricName, counter(i), name("other").build(), counter(42)),
+					metricNameMap(Histogram.class),
+					metricNameMap(Meter.class),
+					metricNameMap(Timer.class));
+
+			final String[] lines = new String(out.toByteArray(), "UTF-8").split("\n");
+			assertEquals(4, lines.length);
+			assertEquals(lines[0], lines[2]);
+			final Map<Object, Map<String, Object>> documentsByName = new TreeMap<Object, Map<String, Object>>();
+			for (String document : new String[]{lines[1], lines[3]}) {
+				documentsByName.put(asMap(document).get("name"), asMap(document));
+			}
+			assertEquals(
+					map("@timestamp", timestamp, Object.class)
+							.add("name", "request_count")
+							.add("request_name", "GET \"/foo\\bar\" \u00e4")
+							.add("app", "test")
+							.add("count", i),
+					documentsByName.get("request_count"));
+			assertEquals(
+					map("@timestamp", timestamp, Object.class)
+							.add("name", "other")
+							.add("app", "test")
+							.add("count", 42),
+					documentsByName.get("other"));
+		}
+	}
+
 	private Map<String, Object> asMap(ByteArrayOutputStream os) throws java.io.IOException {
 		return asMap(new String(os.toByteArray()).split("\n")[1]);
 	}
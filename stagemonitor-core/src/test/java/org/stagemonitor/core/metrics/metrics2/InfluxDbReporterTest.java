@@ -9,18 +9,28 @@ import com.codahale.metrics.Timer;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.util.HttpClient;
 
-import java.util.Collections;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
-import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Matchers.eq;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.counter;
@@ -37,11 +47,21 @@ public class InfluxDbReporterTest {
 
 	private InfluxDbReporter influxDbReporter;
 	private HttpClient httpClient;
+	private final List<String> requestBodies = new ArrayList<String>();
 	private long timestamp;
 
 	@Before
 	public void setUp() throws Exception {
 		httpClient = mock(HttpClient.class);
+		when(httpClient.send(anyString(), anyString(), any(), any(HttpClient.OutputStreamHandler.class))).thenAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				invocation.<HttpClient.OutputStreamHandler>getArgument(3).withHttpURLConnection(os);
+				requestBodies.add(os.toString("UTF-8"));
+				return 204;
+			}
+		});
 		Clock clock = mock(Clock.class);
 		timestamp = System.currentTimeMillis();
 		when(clock.getTime()).thenReturn(timestamp);
@@ -66,8 +86,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("cpu_usage,core=1,type=user,app=test value=3 %d", timestamp))));
+		assertEquals(format("cpu_usage,core=1,type=user,app=test value=3 %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -79,8 +98,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(Collections.emptyList()));
+		verify(httpClient, never()).send(anyString(), anyString(), any(), any(HttpClient.OutputStreamHandler.class));
 	}
 
 	@Test
@@ -92,8 +110,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("gauge,app=test value_boolean=true %d", timestamp))));
+		assertEquals(format("gauge,app=test value_boolean=true %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -105,8 +122,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("gauge,app=test value_string=\"foo\" %d", timestamp))));
+		assertEquals(format("gauge,app=test value_string=\"foo\" %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -118,8 +134,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("cpu_usage,core=1,type=user,app=test value=1.0e-8 %d", timestamp))));
+		assertEquals(format("cpu_usage,core=1,type=user,app=test value=1.0e-8 %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -131,8 +146,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("web_sessions,app=test count=123i %d", timestamp))));
+		assertEquals(format("web_sessions,app=test count=123i %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -144,8 +158,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("histogram,app=test count=1i,min=400,max=200,mean=400.0,p50=600.0,std=500.0,p25=0.0,p75=700.0,p95=800.0,p98=900.0,p99=1000.0,p999=1100.0 %d", timestamp))));
+		assertEquals(format("histogram,app=test count=1i,min=400,max=200,mean=400.0,p50=600.0,std=500.0,p25=0.0,p75=700.0,p95=800.0,p98=900.0,p99=1000.0,p999=1100.0 %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -157,8 +170,7 @@ public class InfluxDbReporterTest {
 				metricNameMap(name("meter").build(), meter(10)),
 				metricNameMap(Timer.class));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("meter,app=test count=10i,m1_rate=3.0,m5_rate=4.0,m15_rate=5.0,mean_rate=2.0 %d", timestamp))));
+		assertEquals(format("meter,app=test count=10i,m1_rate=3.0,m5_rate=4.0,m15_rate=5.0,mean_rate=2.0 %d", timestamp) + "\n", getRequestBody());
 	}
 
 	@Test
@@ -170,8 +182,39 @@ public class InfluxDbReporterTest {
 				metricNameMap(Meter.class),
 				metricNameMap(name("response_time").build(), timer(400)));
 
-		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"),
-				eq(singletonList(format("response_time,app=test count=1i,m1_rate=3.0,m5_rate=4.0,m15_rate=5.0,mean_rate=2.0,min=0.4,max=0.2,mean=0.4,p50=0.6,std=0.5,p25=0.0,p75=0.7000000000000001,p95=0.8,p98=0.9,p99=1.0,p999=1.1 %d", timestamp))));
+		assertEquals(format("response_time,app=test count=1i,m1_rate=3.0,m5_rate=4.0,m15_rate=5.0,mean_rate=2.0,min=0.4,max=0.2,mean=0.4,p50=0.6,std=0.5,p25=0.0,p75=0.7000000000000001,p95=0.8,p98=0.9,p99=1.0,p999=1.1 %d", timestamp) + "\n", getRequestBody());
+	}
+
+	@Test
+	public void testBatchesLines() throws Exception {
+		final Map<MetricName, Counter> counters = new HashMap<MetricName, Counter>();
+		for (int i = 0; i < 12000; i++) {
+			counters.put(name("counter").tag("i", Integer.toString(i)).build(), counter(i));
+		}
+		influxDbReporter.reportMetrics(metricNameMap(Gauge.class), counters, metricNameMap(Histogram.class),
+				metricNameMap(Meter.class), metricNameMap(Timer.class));
+
+		// 5000 lines per request
+		verify(httpClient, times(3)).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"), any(),
+				any(HttpClient.OutputStreamHandler.class));
+	}
+
+	@Test
+	public void testReportEscapedStringGauge() throws Exception {
+		influxDbReporter.reportMetrics(
+				metricNameMap(name("gauge").tag("k\u00fc y", "v\u00e4l,ue").build(), gauge("say \"h\u20acllo\"")),
+				metricNameMap(Counter.class),
+				metricNameMap(Histogram.class),
+				metricNameMap(Meter.class),
+				metricNameMap(Timer.class));
+
+		assertEquals(format("gauge,k\u00fc\\ y=v\u00e4l\\,ue,app=test value_string=\"say \\\"h\u20acllo\\\"\" %d\n", timestamp), getRequestBody());
+	}
+
+	private String getRequestBody() {
+		verify(httpClient).send(eq("POST"), eq("http://localhost:8086/write?precision=ms&db=stm"), any(),
+				any(HttpClient.OutputStreamHandler.class));
+		return requestBodies.get(0);
 	}
 
 	@Test
@@ -197,4 +240,10 @@ public class InfluxDbReporterTest {
 		assertEquals("\"measurement\\ with\\ quotes\",tag\\ key\\ with\\ spaces=tag\\,value\\,with\"commas\"",
 				InfluxDbReporter.getInfluxDbLineProtocolString(name("\"measurement with quotes\"").tag("tag key with spaces", "tag,value,with\"commas\"").build()));
 	}
+
+	@Test
+	public void testGetInfluxDbStringIsCached() throws Exception {
+		final String influxDbString = InfluxDbReporter.getInfluxDbLineProtocolString(name("cached").tag("foo", "bar").build());
+		assertSame(influxDbString, InfluxDbReporter.getInfluxDbLineProtocolString(name("cached").tag("foo", "bar").build()));
+	}
 }
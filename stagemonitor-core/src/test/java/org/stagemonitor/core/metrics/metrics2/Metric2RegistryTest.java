@@ -1,14 +1,22 @@
 package org.stagemonitor.core.metrics.metrics2;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metered;
 import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Timer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.stagemonitor.core.metrics.MetricNameFilter;
 
 public class Metric2RegistryTest {
 	
@@ -89,6 +97,75 @@ public class Metric2RegistryTest {
 		assertEquals(1, 		 stagemonitorEntry.getValue().getValue());
 	}
 
+	@Test
+	public void testWithoutDropwizardMirroring() {
+		MetricRegistry legacyRegistry = new MetricRegistry();
+		Metric2Registry registry = new Metric2Registry(legacyRegistry);
+		registry.setDropwizardMirroring(false);
+		MetricRegistryListener listener = Mockito.mock(MetricRegistryListener.class);
+		registry.getMetricRegistry().addListener(listener);
+
+		final Timer timer = registry.timer(MetricName.name("timer").tag("signature", "Foo#bar").build());
+		final Gauge gauge = registry.register(MetricName.name("test").build(), getGauge());
+
+		assertTrue(legacyRegistry.getMetrics().isEmpty());
+		Mockito.verify(listener).onTimerAdded("timer.Foo#bar", timer);
+		Mockito.verify(listener).onGaugeAdded("test", gauge);
+		assertEquals(Collections.singletonMap("timer.Foo#bar", timer), registry.getMetricRegistry().getTimers());
+		assertEquals(Collections.singletonMap("test", gauge), registry.getMetricRegistry().getGauges());
+		assertEquals(2, registry.getMetricRegistry().getMetrics().size());
+		assertEquals(Collections.singletonMap("test", gauge), registry.getMetricRegistry().getGauges(new MetricFilter() {
+			@Override
+			public boolean matches(String name, Metric metric) {
+				return name.startsWith("te");
+			}
+		}));
+		assertTrue(registry.getMetricRegistry().getTimers(new MetricFilter() {
+			@Override
+			public boolean matches(String name, Metric metric) {
+				return name.startsWith("te");
+			}
+		}).isEmpty());
+
+		registry.remove(MetricName.name("test").build());
+		Mockito.verify(listener).onGaugeRemoved("test");
+		assertTrue(registry.getMetricRegistry().getGauges().isEmpty());
+	}
+
+	@Test
+	public void testListenerIsNotifiedOfExistingMetricsWithoutDropwizardMirroring() {
+		Metric2Registry registry = new Metric2Registry();
+		registry.setDropwizardMirroring(false);
+		final Meter meter = registry.meter(MetricName.name("rate").build());
+
+		MetricRegistryListener listener = Mockito.mock(MetricRegistryListener.class);
+		registry.getMetricRegistry().addListener(listener);
+		Mockito.verify(listener).onMeterAdded("rate", meter);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testDropwizardViewIsReadOnly() {
+		Metric2Registry registry = new Metric2Registry();
+		registry.setDropwizardMirroring(false);
+		registry.getMetricRegistry().timer("timer");
+	}
+
+	@Test
+	public void testSwitchDropwizardMirroring() {
+		MetricRegistry legacyRegistry = new MetricRegistry();
+		Metric2Registry registry = new Metric2Registry(legacyRegistry);
+		final Timer timer = registry.timer(MetricName.name("timer").build());
+		final Counter foreignCounter = legacyRegistry.counter("foreign");
+
+		registry.setDropwizardMirroring(false);
+		assertEquals(Collections.singletonMap("foreign", foreignCounter), legacyRegistry.getMetrics());
+		assertEquals(Collections.singletonMap("timer", timer), registry.getMetricRegistry().getMetrics());
+
+		registry.setDropwizardMirroring(true);
+		assertSame(legacyRegistry, registry.getMetricRegistry());
+		assertSame(timer, legacyRegistry.getTimers().get("timer"));
+		assertSame(foreignCounter, legacyRegistry.getCounters().get("foreign"));
+	}
 	
 	//
 	// Helper ones
@@ -132,4 +209,33 @@ public class Metric2RegistryTest {
 		};
 	}
 	
-}
\ No newline at end of file
+
+	@Test
+	public void testAcceptVisitsEachMatchingMetricByType() {
+		Metric2Registry registry = new Metric2Registry();
+		final MetricName gaugeName = MetricName.name("gauge").build();
+		final Gauge<Integer> gauge = new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return 1;
+			}
+		};
+		registry.register(gaugeName, gauge);
+		final Counter counter = registry.counter(MetricName.name("counter").build());
+		final Histogram histogram = registry.histogram(MetricName.name("histogram").build());
+		final Meter meter = registry.meter(MetricName.name("meter").build());
+		final Timer timer = registry.timer(MetricName.name("timer").build());
+		registry.timer(MetricName.name("excluded").build());
+
+		Metric2Visitor visitor = Mockito.mock(Metric2Visitor.class);
+		registry.accept(MetricNameFilter.excludePatterns(MetricName.name("excluded").build()), visitor);
+
+		Mockito.verify(visitor).visitGauge(gaugeName, gauge);
+		Mockito.verify(visitor).visitCounter(MetricName.name("counter").build(), counter);
+		Mockito.verify(visitor).visitHistogram(MetricName.name("histogram").build(), histogram);
+		Mockito.verify(visitor).visitMeter(MetricName.name("meter").build(), meter);
+		Mockito.verify(visitor).visitTimer(MetricName.name("timer").build(), timer);
+		Mockito.verifyNoMoreInteractions(visitor);
+	}
+
+}
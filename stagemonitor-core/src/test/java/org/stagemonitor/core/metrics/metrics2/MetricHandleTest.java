@@ -0,0 +1,57 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.Timer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+public class MetricHandleTest {
+
+	private final MetricName timerName = name("timer").tag("signature", "MetricHandleTest#test").build();
+	private final MetricHandle handle = new MetricHandle(timerName);
+	private final Metric2Registry registry = new Metric2Registry();
+
+	@Test
+	public void testResolvesSameMetricAsRegistry() {
+		final Timer timer = handle.timer(registry);
+		assertSame(registry.timer(timerName), timer);
+		assertSame(timer, handle.timer(registry));
+	}
+
+	@Test
+	public void testResolvesAgainAfterRemoval() {
+		final Timer timer = handle.timer(registry);
+		registry.remove(timerName);
+
+		final Timer newTimer = handle.timer(registry);
+		assertNotSame(timer, newTimer);
+		assertSame(registry.getTimers().get(timerName), newTimer);
+	}
+
+	@Test
+	public void testResolvesAgainAfterRemoveMatching() {
+		handle.meter(registry).mark();
+		registry.removeMatching(MetricFilter.ALL);
+
+		handle.meter(registry).mark();
+		assertEquals(1, registry.getMeters().get(timerName).getCount());
+	}
+
+	@Test
+	public void testResolvesAgainForOtherRegistry() {
+		final Metric2Registry otherRegistry = new Metric2Registry();
+		handle.timer(registry);
+		assertSame(otherRegistry.timer(timerName), handle.timer(otherRegistry));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDifferentTypeOfMetric() {
+		registry.meter(timerName);
+		handle.timer(registry);
+	}
+}
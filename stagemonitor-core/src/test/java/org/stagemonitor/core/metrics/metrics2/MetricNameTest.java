@@ -91,4 +91,39 @@ public class MetricNameTest {
 		final MetricName.MetricNameTemplate metricNameTemplate = name("foo").tag("bar", "").tag("qux", "quux").templateFor("bar", "qux");
 		metricNameTemplate.build(null, null);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testTemplateMultipleValuesNullIsCached() {
+		final MetricName.MetricNameTemplate metricNameTemplate = name("foo").templateFor("bar", "qux");
+		assertEquals(name("foo").tag("bar", null).tag("qux", "q").build(), metricNameTemplate.build(null, "q"));
+		assertSame(metricNameTemplate.build(null, "q"), metricNameTemplate.build(null, "q"));
+		assertNotEquals(metricNameTemplate.build(null, "q"), metricNameTemplate.build("q", null));
+	}
+
+	@Test
+	public void testTemplateThreeValues() {
+		final MetricName.MetricNameTemplate metricNameTemplate = name("foo").templateFor("a", "b", "c");
+		assertEquals(name("foo").tag("a", "1").tag("b", "2").tag("c", "3").build(), metricNameTemplate.build("1", "2", "3"));
+		assertSame(metricNameTemplate.build("1", "2", "3"), metricNameTemplate.build("1", "2", "3"));
+		assertNotEquals(metricNameTemplate.build("1", "2", "3"), metricNameTemplate.build("1", "2", "4"));
+		assertNotEquals(metricNameTemplate.build("1", "2", "3"), metricNameTemplate.build("1", "3", "3"));
+	}
+
+	@Test
+	public void testTemplateVarargsAndFixedArityShareCache() {
+		final MetricName.MetricNameTemplate metricNameTemplate = name("foo").templateFor("a", "b", "c");
+		assertSame(metricNameTemplate.build(new String[]{"1", "2", "3"}), metricNameTemplate.build("1", "2", "3"));
+	}
+
+	@Test
+	public void testTemplateFourValues() {
+		final MetricName.MetricNameTemplate metricNameTemplate = name("foo").templateFor("a", "b", "c", "d");
+		assertEquals(name("foo").tag("a", "1").tag("b", "2").tag("c", "3").tag("d", "4").build(), metricNameTemplate.build("1", "2", "3", "4"));
+		assertSame(metricNameTemplate.build("1", "2", "3", "4"), metricNameTemplate.build("1", "2", "3", "4"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTemplateThreeValuesBuildTwoValues() {
+		name("foo").templateFor("a", "b", "c").build("1", "2");
+	}
+}
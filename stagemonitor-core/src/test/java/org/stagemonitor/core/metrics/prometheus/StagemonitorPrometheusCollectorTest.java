@@ -2,12 +2,18 @@ package org.stagemonitor.core.metrics.prometheus;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
@@ -16,6 +22,7 @@ import io.prometheus.client.CollectorRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
 
 public class StagemonitorPrometheusCollectorTest {
 
@@ -136,4 +143,36 @@ public class StagemonitorPrometheusCollectorTest {
 		assertNotNull("Metric timer_count should exist", registry.getSampleValue("timer_count", new String[]{"foo"}, new String[]{"bar"}));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testSnapshotInterval() {
+		final Clock clock = mock(Clock.class);
+		final CollectorRegistry registry = new CollectorRegistry();
+		new StagemonitorPrometheusCollector(metricRegistry, 1000, clock).register(registry);
+		final Counter counter = metricRegistry.counter(name("foo_bar").tag("baz", "qux").build());
+
+		when(clock.getTime()).thenReturn(0L);
+		counter.inc();
+		assertEquals(new Double(1), registry.getSampleValue("foo_bar", new String[]{"baz"}, new String[]{"qux"}));
+
+		when(clock.getTime()).thenReturn(999L);
+		counter.inc();
+		assertEquals(new Double(1), registry.getSampleValue("foo_bar", new String[]{"baz"}, new String[]{"qux"}));
+
+		when(clock.getTime()).thenReturn(1000L);
+		assertEquals(new Double(2), registry.getSampleValue("foo_bar", new String[]{"baz"}, new String[]{"qux"}));
+	}
+
+	@Test
+	public void testRemovedMetric() {
+		final MetricName metricName = name("timer").tag("foo", "bar").build();
+		metricRegistry.timer(metricName).update(1, TimeUnit.MILLISECONDS);
+		assertEquals(new Double(1), registry.getSampleValue("timer_count", new String[]{"foo"}, new String[]{"bar"}));
+
+		metricRegistry.remove(metricName);
+		assertNull(registry.getSampleValue("timer_count", new String[]{"foo"}, new String[]{"bar"}));
+
+		metricRegistry.meter(metricName).mark();
+		assertEquals(new Double(1), registry.getSampleValue("timer_total", new String[]{"foo"}, new String[]{"bar"}));
+	}
+
+}
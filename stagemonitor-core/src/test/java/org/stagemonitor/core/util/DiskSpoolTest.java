@@ -0,0 +1,252 @@
+package org.stagemonitor.core.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiskSpoolTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File file;
+	private DiskSpool spool;
+	private final RecordingSender sender = new RecordingSender();
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(temporaryFolder.getRoot(), "test.spool");
+		spool = new DiskSpool(file, 100, 10);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		spool.close();
+	}
+
+	@Test
+	public void testDrainsInOrder() throws Exception {
+		assertThat(spool.append(batch("foo"))).isTrue();
+		assertThat(spool.append(batch("bar"))).isTrue();
+		assertThat(spool.getBatches()).isEqualTo(2);
+		assertThat(spool.getUsedBytes()).isEqualTo(2 * (4 + 3));
+
+		assertThat(spool.drain(sender)).isEqualTo(2);
+
+		assertThat(sender.sent).containsExactly("foo", "bar");
+		assertThat(spool.getBatches()).isZero();
+		assertThat(spool.getUsedBytes()).isZero();
+	}
+
+	@Test
+	public void testKeepsBatchIfItCouldNotBeSent() throws Exception {
+		spool.append(batch("foo"));
+		spool.append(batch("bar"));
+
+		sender.available = false;
+		assertThat(spool.drain(sender)).isZero();
+		assertThat(spool.getBatches()).isEqualTo(2);
+
+		sender.available = true;
+		assertThat(spool.drain(sender)).isEqualTo(2);
+		assertThat(sender.sent).containsExactly("foo", "foo", "bar");
+	}
+
+	@Test
+	public void testLimitsBatchesPerDrain() throws Exception {
+		for (int i = 0; i < 15; i++) {
+			spool.append(batch(Integer.toString(i)));
+		}
+
+		assertThat(spool.drain(sender)).isEqualTo(10);
+		assertThat(spool.drain(sender)).isEqualTo(5);
+	}
+
+	@Test
+	public void testSendOrAppend() throws Exception {
+		sender.available = false;
+		assertThat(spool.sendOrAppend(sender, batch("foo"))).isTrue();
+		assertThat(spool.getBatches()).isEqualTo(1);
+
+		sender.available = true;
+		assertThat(spool.sendOrAppend(sender, batch("bar"))).isTrue();
+		assertThat(sender.sent).containsExactly("foo", "bar", "foo");
+		assertThat(spool.getBatches()).isZero();
+	}
+
+	@Test
+	public void testDropsBatchesIfFull() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			assertThat(spool.append(batch("123456"))).isTrue();
+		}
+		assertThat(spool.append(batch("123456"))).isFalse();
+		assertThat(spool.getDroppedBatches()).isEqualTo(1);
+		assertThat(spool.getBatches()).isEqualTo(10);
+
+		spool.drain(sender);
+		assertThat(sender.sent).hasSize(10);
+		assertThat(spool.append(batch("123456"))).isTrue();
+	}
+
+	@Test
+	public void testWrapsAround() throws Exception {
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			final String batch = "batch-" + i + "-" + "xxxxxxxxxxxxxxxxxxxxxxxxx".substring(i % 20);
+			expected.add(batch);
+			assertThat(spool.append(batch(batch))).isTrue();
+			if (i % 2 == 1) {
+				spool.drain(sender);
+			}
+		}
+		assertThat(sender.sent).isEqualTo(expected);
+	}
+
+	@Test
+	public void testSurvivesRestart() throws Exception {
+		final RecordingSender removeOneBatch = new RecordingSender() {
+			@Override
+			public boolean send(HttpClient.OutputStreamHandler batch) {
+				return sent.isEmpty() && super.send(batch);
+			}
+		};
+		for (int i = 0; i < 20; i++) {
+			spool.append(batch("b-" + i));
+			if (i % 2 == 0) {
+				removeOneBatch.sent.clear();
+				spool.drain(removeOneBatch);
+			}
+		}
+		assertThat(spool.getBatches()).isEqualTo(10);
+		spool.close();
+
+		spool = new DiskSpool(file, 100, 100);
+
+		assertThat(spool.getBatches()).isEqualTo(10);
+		spool.drain(sender);
+		assertThat(sender.sent).containsExactly("b-10", "b-11", "b-12", "b-13", "b-14", "b-15", "b-16", "b-17", "b-18", "b-19");
+	}
+
+	@Test
+	public void testIncompleteBatchIsDiscarded() throws Exception {
+		spool.append(batch("foo"));
+		try {
+			spool.append(new HttpClient.OutputStreamHandler() {
+				@Override
+				public void withHttpURLConnection(OutputStream os) throws IOException {
+					os.write("incomplete".getBytes("UTF-8"));
+					throw new IOException("serialisation failed");
+				}
+			});
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		spool.close();
+
+		spool = new DiskSpool(file, 100, 10);
+		spool.append(batch("bar"));
+		spool.drain(sender);
+		assertThat(sender.sent).containsExactly("foo", "bar");
+	}
+
+	@Test
+	public void testDiscardsSpoolIfCapacityChanged() throws Exception {
+		spool.append(batch("foo"));
+		spool.close();
+
+		spool = new DiskSpool(file, 200, 10);
+		assertThat(spool.getBatches()).isZero();
+	}
+
+	@Test
+	public void testAppendIsNotBlockedWhileDraining() throws Exception {
+		spool.append(batch("foo"));
+		final RecordingSender appendingSender = new RecordingSender() {
+			@Override
+			public boolean send(HttpClient.OutputStreamHandler batch) {
+				if (!sent.isEmpty()) {
+					return super.send(batch);
+				}
+				final ExecutorService executor = Executors.newSingleThreadExecutor();
+				try {
+					final Future<Boolean> appended = executor.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws Exception {
+							return spool.append(batch("bar"));
+						}
+					});
+					assertThat(appended.get(10, TimeUnit.SECONDS)).isTrue();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				} finally {
+					executor.shutdown();
+				}
+				return super.send(batch);
+			}
+		};
+
+		assertThat(spool.drain(appendingSender)).isEqualTo(2);
+		assertThat(appendingSender.sent).containsExactly("foo", "bar");
+	}
+
+	@Test
+	public void testSpoolFileCanOnlyBeUsedOnce() throws Exception {
+		spool.append(batch("foo"));
+		try {
+			new DiskSpool(file, 100, 10);
+			fail();
+		} catch (IOException e) {
+			assertThat(e.getMessage()).contains("already in use");
+		}
+		assertThat(spool.getBatches()).isEqualTo(1);
+
+		spool.close();
+		spool = new DiskSpool(file, 100, 10);
+		assertThat(spool.getBatches()).isEqualTo(1);
+	}
+
+	private static HttpClient.OutputStreamHandler batch(final String content) {
+		return new HttpClient.OutputStreamHandler() {
+			@Override
+			public void withHttpURLConnection(OutputStream os) throws IOException {
+				os.write(content.getBytes("UTF-8"));
+				os.close();
+			}
+		};
+	}
+
+	private static class RecordingSender implements DiskSpool.BatchSender {
+		final List<String> sent = new ArrayList<String>();
+		boolean available = true;
+
+		@Override
+		public boolean send(HttpClient.OutputStreamHandler batch) {
+			try {
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				batch.withHttpURLConnection(os);
+				sent.add(os.toString("UTF-8"));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return available;
+		}
+	}
+}
@@ -11,10 +11,13 @@ import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.util.ClassUtils;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
 import java.sql.Connection;
+import java.util.Collections;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -50,7 +53,7 @@ public class ReflectiveConnectionMonitoringTransformer extends ConnectionMonitor
 	 * Using a ThreadLocal ensures that each application invokes its own instance of the ConnectionMonitor and that
 	 * applications which are not monitored by stagemonitor are not influenced
 	 */
-	public static class ConnectionMonitorAddingSpanEventListener extends StatelessSpanEventListener {
+	public static class ConnectionMonitorAddingSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 		private final Method monitorGetConnectionMethod;
 
@@ -74,6 +77,11 @@ public class ReflectiveConnectionMonitoringTransformer extends ConnectionMonitor
 			}
 		}
 
+		@Override
+		public Set<String> getTagKeys() {
+			return Collections.emptySet();
+		}
+
 	}
 
 	private static void makeReflectionInvocationFaster(Method method) {
@@ -0,0 +1,271 @@
+package org.stagemonitor.tracing.elasticsearch;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.util.DiskSpool;
+import org.stagemonitor.core.util.ExecutorUtils;
+import org.stagemonitor.core.util.HttpClient;
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.tracing.reporter.ReadbackSpan;
+import org.stagemonitor.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Buffers spans in a bounded, lock-free queue and sends them to Elasticsearch in _bulk requests.
+ * <p/>
+ * A bulk request is sent as soon as the bulk size is reached or when the flush interval has elapsed, whatever comes
+ * first. The spans are serialized one by one while the request body is streamed to Elasticsearch, so that the bulk
+ * request never has to be materialized in memory. A span which can't be serialized, for example because of ambiguous
+ * tags like <code>a</code> and <code>a.b</code>, is dropped without affecting the other spans of the bulk. If the
+ * buffer is full, because Elasticsearch can't keep up with the spans, new spans are dropped.
+ * <p/>
+ * If a {@link DiskSpool} is configured, the bulk requests which could not be sent because Elasticsearch is unavailable
+ * are appended to the spool and sent once Elasticsearch is available again.
+ */
+class BulkSpanIndexer {
+
+	static final MetricName BUFFERED_SPANS = name("elasticsearch_spans_buffered").build();
+	static final MetricName DROPPED_SPANS = name("elasticsearch_spans_dropped").build();
+	static final MetricName BULK_REQUESTS = name("elasticsearch_spans_bulk_request").build();
+
+	private static final Logger logger = LoggerFactory.getLogger(BulkSpanIndexer.class);
+	private static final String SPANS_TYPE = "spans";
+
+	private final ElasticsearchClient elasticsearchClient;
+	private final int bulkSize;
+	private final int maxBufferedSpans;
+	private final Queue<ReadbackSpan> spans = new ConcurrentLinkedQueue<ReadbackSpan>();
+	private final AtomicInteger bufferedSpans = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final ScheduledExecutorService flushExecutor;
+	private final Meter droppedSpans;
+	private final Timer bulkRequests;
+	private final DiskSpool spool;
+	private final DiskSpool.BatchSender bulkSender = new DiskSpool.BatchSender() {
+		@Override
+		public boolean send(HttpClient.OutputStreamHandler batch) {
+			final Timer.Context time = bulkRequests.time();
+			try {
+				return elasticsearchClient.sendBulk("", batch);
+			} finally {
+				time.stop();
+			}
+		}
+	};
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled.set(false);
+			try {
+				flush();
+			} catch (Exception e) {
+				// don't cancel the scheduled flushes
+				logger.warn(e.getMessage() + " (this exception is ignored)", e);
+			}
+		}
+	};
+
+	/**
+	 * @param elasticsearchClient the client which is used to send the bulk requests
+	 * @param metricRegistry      the registry for the metrics of the indexer
+	 * @param bulkSize            the maximum number of spans per bulk request
+	 * @param flushIntervalMs     the maximum time a span is buffered
+	 * @param maxBufferedSpans    the maximum number of spans which are buffered
+	 * @param spool               the spool for the bulk requests which could not be sent or <code>null</code>, if the
+	 *                            spans should be dropped in that case
+	 */
+	BulkSpanIndexer(ElasticsearchClient elasticsearchClient, Metric2Registry metricRegistry, int bulkSize,
+					long flushIntervalMs, int maxBufferedSpans, DiskSpool spool) {
+		this.elasticsearchClient = elasticsearchClient;
+		this.spool = spool;
+		this.bulkSize = bulkSize;
+		this.maxBufferedSpans = maxBufferedSpans;
+		this.droppedSpans = metricRegistry.meter(DROPPED_SPANS);
+		this.bulkRequests = metricRegistry.timer(BULK_REQUESTS);
+		// replaces the gauge of a previous indexer
+		metricRegistry.remove(BUFFERED_SPANS);
+		metricRegistry.register(BUFFERED_SPANS, new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return bufferedSpans.get();
+			}
+		});
+		flushExecutor = new ScheduledThreadPoolExecutor(1, new ExecutorUtils.NamedThreadFactory("elasticsearch-bulk-span-indexer"));
+		flushExecutor.scheduleWithFixedDelay(flushTask, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds a span to the buffer
+	 *
+	 * @param span the span to index
+	 * @return <code>false</code>, if the span has been dropped because the buffer is full
+	 */
+	boolean add(ReadbackSpan span) {
+		final int buffered = bufferedSpans.incrementAndGet();
+		if (buffered > maxBufferedSpans) {
+			bufferedSpans.decrementAndGet();
+			droppedSpans.mark();
+			return false;
+		}
+		spans.offer(span);
+		if (buffered >= bulkSize) {
+			scheduleFlush();
+		}
+		return true;
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled.compareAndSet(false, true)) {
+			try {
+				flushExecutor.execute(flushTask);
+			} catch (RejectedExecutionException e) {
+				// the indexer has been closed
+				flushScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Sends all buffered spans to Elasticsearch
+	 * <p/>
+	 * Concurrent calls are executed one after another, so that a scheduled flush and the final flush of
+	 * {@link #close()} don't interfere.
+	 */
+	synchronized void flush() {
+		while (!spans.isEmpty()) {
+			final List<ReadbackSpan> bulk = pollBulk();
+			final BulkOutputStreamHandler batch = new BulkOutputStreamHandler(bulk);
+			if (sendOrSpool(batch)) {
+				droppedSpans.mark(batch.getUnserializableSpans());
+			} else {
+				droppedSpans.mark(bulk.size());
+			}
+		}
+	}
+
+	private boolean sendOrSpool(BulkOutputStreamHandler batch) {
+		if (spool == null) {
+			return elasticsearchClient.isElasticsearchAvailable() && bulkSender.send(batch);
+		}
+		try {
+			if (!elasticsearchClient.isElasticsearchAvailable()) {
+				return spool.append(batch);
+			}
+			return spool.sendOrAppend(bulkSender, batch);
+		} catch (IOException e) {
+			logger.warn(e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private List<ReadbackSpan> pollBulk() {
+		final List<ReadbackSpan> bulk = new ArrayList<ReadbackSpan>(Math.min(bulkSize, bufferedSpans.get()));
+		for (ReadbackSpan span = spans.poll(); span != null; span = bulk.size() < bulkSize ? spans.poll() : null) {
+			bulk.add(span);
+		}
+		bufferedSpans.addAndGet(-bulk.size());
+		return bulk;
+	}
+
+	/**
+	 * @return whether spans are appended to a spool if they can't be sent to Elasticsearch
+	 */
+	boolean isSpooling() {
+		return spool != null;
+	}
+
+	int getBufferedSpans() {
+		return bufferedSpans.get();
+	}
+
+	/**
+	 * Stops the scheduled flushes and sends the remaining spans
+	 */
+	void close() {
+		flushExecutor.shutdown();
+		try {
+			if (!flushExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+				logger.warn("The scheduled flush of the spans did not finish in time, waiting for it to complete");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// waits for a scheduled flush which is still running
+		flush();
+	}
+
+	private static class BulkOutputStreamHandler implements HttpClient.OutputStreamHandler {
+
+		private final List<ReadbackSpan> bulk;
+		/**
+		 * The handler may be invoked more than once, for example when the bulk is spooled after the request failed,
+		 * so this is the number of unserializable spans of the last invocation
+		 */
+		private int unserializableSpans;
+
+		private BulkOutputStreamHandler(List<ReadbackSpan> bulk) {
+			this.bulk = bulk;
+		}
+
+		@Override
+		public void withHttpURLConnection(OutputStream os) throws IOException {
+			unserializableSpans = 0;
+			final String spansIndex = "stagemonitor-spans-" + StringUtils.getLogstashStyleDate();
+			final byte[] bulkAction = ElasticsearchClient.getBulkHeader("index", spansIndex, SPANS_TYPE).getBytes("UTF-8");
+			// a span is serialized into a buffer first, so that a span which can't be serialized does not corrupt the bulk
+			final ByteArrayOutputStream spanBuffer = new ByteArrayOutputStream(1024);
+			JsonGenerator jg = createGenerator(spanBuffer);
+			for (ReadbackSpan span : bulk) {
+				spanBuffer.reset();
+				try {
+					// the span serializer nests dotted tag keys, so the span can be written without converting it to a tree first
+					jg.writeObject(span);
+					jg.flush();
+				} catch (Exception e) {
+					logger.warn("Dropping span " + span.getName() + " as it could not be serialized: " + e.getMessage());
+					unserializableSpans++;
+					// the state of the generator is undefined after an exception
+					jg = createGenerator(spanBuffer);
+					continue;
+				}
+				os.write(bulkAction);
+				spanBuffer.writeTo(os);
+				os.write('\n');
+			}
+			os.close();
+		}
+
+		private static JsonGenerator createGenerator(OutputStream os) throws IOException {
+			final JsonGenerator jg = JsonUtils.getMapper().getFactory().createGenerator(os);
+			jg.setRootValueSeparator(null);
+			return jg;
+		}
+
+		private int getUnserializableSpans() {
+			return unserializableSpans;
+		}
+	}
+}
@@ -19,6 +19,7 @@ public class ElasticsearchSpanReporter extends SpanReporter {
 	protected CorePlugin corePlugin;
 	protected ElasticsearchTracingPlugin elasticsearchTracingPlugin;
 	protected ElasticsearchClient elasticsearchClient;
+	private BulkSpanIndexer bulkSpanIndexer;
 	private static final String SPANS_TYPE = "spans";
 
 	public ElasticsearchSpanReporter() {
@@ -34,6 +35,14 @@ public class ElasticsearchSpanReporter extends SpanReporter {
 		corePlugin = configuration.getConfig(CorePlugin.class);
 		elasticsearchTracingPlugin = configuration.getConfig(ElasticsearchTracingPlugin.class);
 		elasticsearchClient = corePlugin.getElasticsearchClient();
+		// the reporter might be initialized more than once
+		close();
+		bulkSpanIndexer = null;
+		if (elasticsearchTracingPlugin.getBulkSize() > 0) {
+			bulkSpanIndexer = new BulkSpanIndexer(elasticsearchClient, corePlugin.getMetricRegistry(),
+					elasticsearchTracingPlugin.getBulkSize(), elasticsearchTracingPlugin.getBulkFlushIntervalMs(),
+					elasticsearchTracingPlugin.getMaxBufferedSpans(), corePlugin.getSpool("elasticsearch-spans"));
+		}
 	}
 
 	@Override
@@ -41,6 +50,8 @@ public class ElasticsearchSpanReporter extends SpanReporter {
 		final String spansIndex = "stagemonitor-spans-" + StringUtils.getLogstashStyleDate();
 		if (elasticsearchTracingPlugin.isOnlyLogElasticsearchSpanReports()) {
 			spanLogger.info(ElasticsearchClient.getBulkHeader("index", spansIndex, SPANS_TYPE) + JsonUtils.toJson(spanContext.getReadbackSpan()));
+		} else if (bulkSpanIndexer != null) {
+			bulkSpanIndexer.add(spanContext.getReadbackSpan());
 		} else {
 			elasticsearchClient.index(spansIndex, SPANS_TYPE, spanContext.getReadbackSpan());
 		}
@@ -49,7 +60,16 @@ public class ElasticsearchSpanReporter extends SpanReporter {
 	@Override
 	public boolean isActive(SpanContextInformation spanContext) {
 		final boolean logOnly = elasticsearchTracingPlugin.isOnlyLogElasticsearchSpanReports();
-		return elasticsearchClient.isElasticsearchAvailable() || logOnly;
+		// while Elasticsearch is not available, the spans are spooled
+		final boolean spooling = bulkSpanIndexer != null && bulkSpanIndexer.isSpooling();
+		return logOnly || spooling || elasticsearchClient.isElasticsearchAvailable();
+	}
+
+	@Override
+	public void close() {
+		if (bulkSpanIndexer != null) {
+			bulkSpanIndexer.close();
+		}
 	}
 
 }
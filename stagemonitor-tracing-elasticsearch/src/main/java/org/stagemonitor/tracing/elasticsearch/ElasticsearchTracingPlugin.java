@@ -19,6 +19,34 @@ public class ElasticsearchTracingPlugin extends StagemonitorPlugin {
 			.tags("reporting")
 			.configurationCategory(ELASTICSEARCH_TRACING_PLUGIN)
 			.buildWithDefault(false);
+	private final ConfigurationOption<Integer> bulkSize = ConfigurationOption.integerOption()
+			.key("stagemonitor.requestmonitor.elasticsearch.bulkSize")
+			.dynamic(false)
+			.label("Span bulk size")
+			.description("The spans are buffered and sent to Elasticsearch in _bulk requests which contain up to this " +
+					"number of spans. Set to 0 to send a request for every span.")
+			.tags("reporting")
+			.configurationCategory(ELASTICSEARCH_TRACING_PLUGIN)
+			.buildWithDefault(1000);
+	private final ConfigurationOption<Integer> bulkFlushIntervalMs = ConfigurationOption.integerOption()
+			.key("stagemonitor.requestmonitor.elasticsearch.bulkFlushIntervalMs")
+			.dynamic(false)
+			.label("Span bulk flush interval (ms)")
+			.description("The maximum amount of time a span is buffered before it is sent to Elasticsearch. " +
+					"Only applies if the bulk size is greater than 0.")
+			.tags("reporting")
+			.configurationCategory(ELASTICSEARCH_TRACING_PLUGIN)
+			.buildWithDefault(1000);
+	private final ConfigurationOption<Integer> maxBufferedSpans = ConfigurationOption.integerOption()
+			.key("stagemonitor.requestmonitor.elasticsearch.maxBufferedSpans")
+			.dynamic(false)
+			.label("Max buffered spans")
+			.description("The maximum number of spans which are buffered until they are sent to Elasticsearch. " +
+					"If Elasticsearch can't keep up, new spans are dropped. The number of dropped spans is tracked by the " +
+					"metric 'elasticsearch_spans_dropped'.")
+			.tags("reporting")
+			.configurationCategory(ELASTICSEARCH_TRACING_PLUGIN)
+			.buildWithDefault(10000);
 	/* Storage */
 	private final ConfigurationOption<String> spanIndexTemplate = ConfigurationOption.stringOption()
 			.key("stagemonitor.requestmonitor.elasticsearch.spanIndexTemplate")
@@ -61,4 +89,16 @@ public class ElasticsearchTracingPlugin extends StagemonitorPlugin {
 		return onlyLogElasticsearchSpanReports.getValue();
 	}
 
+	public int getBulkSize() {
+		return bulkSize.getValue();
+	}
+
+	public int getBulkFlushIntervalMs() {
+		return bulkFlushIntervalMs.getValue();
+	}
+
+	public int getMaxBufferedSpans() {
+		return maxBufferedSpans.getValue();
+	}
+
 }
@@ -41,6 +41,15 @@ public class JaegerTracerFactory extends TracerFactory {
 		return builder.build();
 	}
 
+	/**
+	 * The spans are reported by the {@link org.stagemonitor.tracing.elasticsearch.ElasticsearchSpanReporter}, Jaeger
+	 * is only used for the ids of the spans (see {@link NoopReporter})
+	 */
+	@Override
+	public boolean isReportingSpans() {
+		return false;
+	}
+
 	// TODO use jaeger-b3 module
 	/*
 	 * Copyright (c) 2016, Uber Technologies, Inc
@@ -0,0 +1,192 @@
+package org.stagemonitor.tracing.elasticsearch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.util.DiskSpool;
+import org.stagemonitor.core.util.HttpClient;
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.tracing.reporter.ReadbackSpan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkSpanIndexerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final AtomicInteger bulkRequests = new AtomicInteger();
+	private final List<JsonNode> indexedSpans = new CopyOnWriteArrayList<>();
+	private final Metric2Registry registry = new Metric2Registry();
+	private Server server;
+	private ElasticsearchClient elasticsearchClient;
+	private BulkSpanIndexer indexer;
+	private volatile boolean outage;
+
+	@Before
+	public void setUp() throws Exception {
+		JsonUtils.getMapper().registerModule(new ReadbackSpan.SpanJsonModule());
+		server = new Server(0);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+				baseRequest.setHandled(true);
+				bulkRequests.incrementAndGet();
+				if (outage) {
+					response.setStatus(503);
+					return;
+				}
+				final BufferedReader reader = request.getReader();
+				for (String action = reader.readLine(); action != null; action = reader.readLine()) {
+					assertThat(action).startsWith("{\"index\":{\"_index\":\"stagemonitor-spans-");
+					indexedSpans.add(JsonUtils.getMapper().readTree(reader.readLine()));
+				}
+				response.getWriter().print("{\"errors\":false}");
+			}
+		});
+		server.start();
+		final String url = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+		final CorePlugin corePlugin = mock(CorePlugin.class);
+		when(corePlugin.getElasticsearchUrl()).thenReturn(url);
+		when(corePlugin.getElasticsearchUrls()).thenReturn(Collections.singletonList(url));
+		when(corePlugin.getThreadPoolQueueCapacityLimit()).thenReturn(1000);
+		elasticsearchClient = new ElasticsearchClient(corePlugin, new HttpClient(), -1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (indexer != null) {
+			indexer.close();
+		}
+		elasticsearchClient.close();
+		server.stop();
+	}
+
+	@Test
+	public void testFlushesWhenBulkSizeIsReached() throws Exception {
+		indexer = new BulkSpanIndexer(elasticsearchClient, registry, 10, TimeUnit.HOURS.toMillis(1), 1000, null);
+		for (int i = 0; i < 10; i++) {
+			indexer.add(createSpan(i));
+		}
+		awaitIndexedSpans(10);
+		assertThat(bulkRequests.get()).isEqualTo(1);
+
+		for (int i = 10; i < 15; i++) {
+			indexer.add(createSpan(i));
+		}
+		assertThat(indexer.getBufferedSpans()).isEqualTo(5);
+
+		indexer.close();
+		assertThat(indexedSpans).hasSize(15);
+		assertThat(bulkRequests.get()).isEqualTo(2);
+		assertThat(indexedSpans.get(0).get("name").asText()).isEqualTo("span 0");
+		assertThat(indexedSpans.get(0).get("foo").get("bar").asText()).isEqualTo("baz");
+	}
+
+	@Test
+	public void testFlushesWhenFlushIntervalHasElapsed() throws Exception {
+		indexer = new BulkSpanIndexer(elasticsearchClient, registry, 1000, 10, 1000, null);
+		indexer.add(createSpan(0));
+		indexer.add(createSpan(1));
+
+		awaitIndexedSpans(2);
+		assertThat(bulkRequests.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void testDropsOnlyUnserializableSpans() throws Exception {
+		indexer = new BulkSpanIndexer(elasticsearchClient, registry, 1000, TimeUnit.HOURS.toMillis(1), 1000, null);
+		indexer.add(createSpan(0));
+		final ReadbackSpan ambiguousSpan = createSpan(1);
+		ambiguousSpan.setTag("a", "b");
+		ambiguousSpan.setTag("a.b", "c");
+		indexer.add(ambiguousSpan);
+		indexer.add(createSpan(2));
+
+		indexer.flush();
+
+		assertThat(indexedSpans).hasSize(2);
+		assertThat(indexedSpans.get(0).get("name").asText()).isEqualTo("span 0");
+		assertThat(indexedSpans.get(1).get("name").asText()).isEqualTo("span 2");
+		assertThat(registry.meter(BulkSpanIndexer.DROPPED_SPANS).getCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testDropsSpansWhenBufferIsFull() throws Exception {
+		indexer = new BulkSpanIndexer(elasticsearchClient, registry, 1000, TimeUnit.HOURS.toMillis(1), 5, null);
+		for (int i = 0; i < 8; i++) {
+			assertThat(indexer.add(createSpan(i))).isEqualTo(i < 5);
+		}
+
+		assertThat(registry.meter(BulkSpanIndexer.DROPPED_SPANS).getCount()).isEqualTo(3);
+		assertThat(registry.getGauges().get(BulkSpanIndexer.BUFFERED_SPANS).getValue()).isEqualTo(5);
+	}
+
+	@Test
+	public void testSpoolsBulkRequestsDuringOutage() throws Exception {
+		final DiskSpool spool = new DiskSpool(temporaryFolder.newFile(), 1024 * 1024, 10);
+		indexer = new BulkSpanIndexer(elasticsearchClient, registry, 100, TimeUnit.HOURS.toMillis(1), 1000, spool);
+		outage = true;
+		for (int i = 0; i < 10; i++) {
+			indexer.add(createSpan(i));
+		}
+		indexer.flush();
+		assertThat(spool.getBatches()).isEqualTo(1);
+		assertThat(indexedSpans).isEmpty();
+
+		outage = false;
+		for (int i = 10; i < 20; i++) {
+			indexer.add(createSpan(i));
+		}
+		indexer.flush();
+
+		assertThat(spool.getBatches()).isZero();
+		assertThat(indexedSpans).hasSize(20);
+		assertThat(indexedSpans.get(10).get("name").asText()).isEqualTo("span 0");
+		assertThat(registry.meter(BulkSpanIndexer.DROPPED_SPANS).getCount()).isZero();
+		spool.close();
+	}
+
+	private ReadbackSpan createSpan(int i) {
+		final ReadbackSpan span = new ReadbackSpan();
+		span.setId(Integer.toString(i));
+		span.setTraceId(Integer.toString(i));
+		span.setName("span " + i);
+		span.setDuration(42);
+		span.setTag("foo.bar", "baz");
+		return span;
+	}
+
+	private void awaitIndexedSpans(int count) throws InterruptedException {
+		final long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (indexedSpans.size() < count && System.currentTimeMillis() < timeout) {
+			Thread.sleep(5);
+		}
+		assertThat(indexedSpans.size()).isGreaterThanOrEqualTo(count);
+	}
+}
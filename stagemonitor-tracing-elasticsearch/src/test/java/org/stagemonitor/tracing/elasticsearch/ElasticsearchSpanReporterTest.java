@@ -6,6 +6,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.stagemonitor.core.util.DiskSpool;
 import org.stagemonitor.core.util.JsonUtils;
 import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.reporter.ReadbackSpan;
@@ -44,6 +45,23 @@ public class ElasticsearchSpanReporterTest extends AbstractElasticsearchSpanRepo
 		Assert.assertTrue(reporter.isActive(spanContext));
 	}
 
+	@Test
+	public void testActiveWhileSpoolingDuringOutage() throws Exception {
+		Mockito.when(elasticsearchClient.isElasticsearchAvailable()).thenReturn(false);
+		Mockito.when(elasticsearchTracingPlugin.getBulkSize()).thenReturn(100);
+		Mockito.when(elasticsearchTracingPlugin.getBulkFlushIntervalMs()).thenReturn(1000);
+		Mockito.when(elasticsearchTracingPlugin.getMaxBufferedSpans()).thenReturn(1000);
+		final SpanContextInformation spanContext = SpanContextInformation.forUnitTest(Mockito.mock(Span.class), "Report Me");
+
+		reporter.init(configuration);
+		Assert.assertFalse(reporter.isActive(spanContext));
+
+		Mockito.when(corePlugin.getSpool("elasticsearch-spans")).thenReturn(Mockito.mock(DiskSpool.class));
+		reporter.init(configuration);
+		Assert.assertTrue(reporter.isActive(spanContext));
+		reporter.close();
+	}
+
 	@Test
 	public void testLogReportSpan() throws Exception {
 		Mockito.when(elasticsearchTracingPlugin.isOnlyLogElasticsearchSpanReports()).thenReturn(true);
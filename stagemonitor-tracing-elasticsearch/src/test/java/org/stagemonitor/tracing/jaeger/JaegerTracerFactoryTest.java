@@ -0,0 +1,14 @@
+package org.stagemonitor.tracing.jaeger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+
+public class JaegerTracerFactoryTest {
+
+	@Test
+	public void testCallTreeIsNotAddedToJaegerSpans() throws Exception {
+		// the jaeger spans are not reported, so the call tree must not be serialized into their tags
+		assertFalse(new JaegerTracerFactory().isReportingSpans());
+	}
+}
@@ -4,14 +4,18 @@ import org.stagemonitor.configuration.ConfigurationRegistry;
 import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.tracing.sampling.AdaptiveSampler;
 import org.stagemonitor.tracing.utils.SpanUtils;
 
+import java.util.concurrent.TimeUnit;
+
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 public class RequestMonitor {
 
 	private final MetricName internalOverheadMetricName = name("internal_overhead_request_monitor").build();
+	private final AdaptiveSampler adaptiveSampler = new AdaptiveSampler(10, TimeUnit.SECONDS, 0.01);
 
 	private Metric2Registry metricRegistry;
 	private CorePlugin corePlugin;
@@ -41,7 +45,13 @@ public class RequestMonitor {
 		if (info != null) {
 			long overhead2 = System.nanoTime();
 			info.getSpan().finish();
-			trackOverhead(info.getOverhead1(), overhead2);
+			final long overhead = info.getOverhead1() + System.nanoTime() - overhead2;
+			trackOverhead(overhead);
+			final double overheadBudgetPercent = tracingPlugin.getOverheadBudgetPercent();
+			if (overheadBudgetPercent > 0) {
+				// the time spent starting and finishing the span includes processing the call tree but not profiling the calls
+				adaptiveSampler.recordRequest(info.getDurationNanos(), overhead + info.getProfilerOverheadNanos(), overheadBudgetPercent / 100);
+			}
 		}
 	}
 
@@ -62,11 +72,17 @@ public class RequestMonitor {
 		SpanUtils.setException(TracingPlugin.getSpan(), e, tracingPlugin.getIgnoreExceptions(), tracingPlugin.getUnnestExceptions());
 	}
 
-	private void trackOverhead(long overhead1, long overhead2) {
+	private void trackOverhead(long overhead) {
 		if (corePlugin.isInternalMonitoringActive()) {
-			overhead2 = System.nanoTime() - overhead2;
-			metricRegistry.timer(internalOverheadMetricName).update(overhead2 + overhead1, NANOSECONDS);
+			metricRegistry.timer(internalOverheadMetricName).update(overhead, NANOSECONDS);
 		}
 	}
 
+	/**
+	 * Returns the sampler which adapts the sampling rates to the overhead measured by this request monitor
+	 */
+	public AdaptiveSampler getAdaptiveSampler() {
+		return adaptiveSampler;
+	}
+
 }
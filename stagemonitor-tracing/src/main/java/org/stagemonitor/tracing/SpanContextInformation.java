@@ -13,12 +13,16 @@ import org.stagemonitor.tracing.sampling.PreExecutionInterceptorContext;
 import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.AbstractSpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
-import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import io.opentracing.Span;
@@ -31,15 +35,23 @@ public class SpanContextInformation {
 
 	private Span span;
 	private long overhead1;
+	private long profilerOverheadNanos;
 	private SpanContextInformation parent;
-	private Map<String, Object> requestAttributes = new HashMap<String, Object>();
+	/**
+	 * Lazily initialized as most spans don't have request attributes
+	 */
+	private Map<String, Object> requestAttributes;
 	private CallStackElement callTree;
+	private boolean callTreeIncluded;
 	private String operationName;
 	private long duration;
 	private boolean externalRequest;
 	private boolean serverRequest;
 	private Timer timerForThisRequest;
-	private Map<String, ExternalRequestStats> externalRequestStats = new HashMap<String, ExternalRequestStats>();
+	/**
+	 * Lazily initialized as most spans don't execute external requests
+	 */
+	private Map<String, ExternalRequestStats> externalRequestStats;
 	private PostExecutionInterceptorContext postExecutionInterceptorContext;
 	private boolean sampled = true;
 	private PreExecutionInterceptorContext preExecutionInterceptorContext;
@@ -56,9 +68,20 @@ public class SpanContextInformation {
 
 	/**
 	 * Gets or creates the {@link SpanContextInformation} for the provided span.
+	 * <p/>
+	 * The {@link SpanContextInformation} of a {@link SpanWrapper} is stored in the span itself. Only spans which are
+	 * not wrapped fall back to a global weak map.
 	 */
 	public static SpanContextInformation forSpan(Span span) {
-		if (span != null) {
+		if (span instanceof SpanWrapper) {
+			final SpanWrapper spanWrapper = (SpanWrapper) span;
+			SpanContextInformation spanContext = spanWrapper.getSpanContextInformation();
+			if (spanContext == null) {
+				// makes sure that concurrent callers get the same instance
+				spanContext = spanWrapper.setSpanContextInformationIfAbsent(forUnitTest(span));
+			}
+			return spanContext;
+		} else if (span != null) {
 			if (!spanContextMap.containsKey(span)) {
 				spanContextMap.putIfAbsent(span, SpanContextInformation.forUnitTest(span));
 			}
@@ -128,10 +151,16 @@ public class SpanContextInformation {
 	 * The attributes won't be reported
 	 */
 	public void addRequestAttribute(String key, Object value) {
+		if (requestAttributes == null) {
+			requestAttributes = new HashMap<String, Object>();
+		}
 		requestAttributes.put(key, value);
 	}
 
 	public Object getRequestAttribute(String key) {
+		if (requestAttributes == null) {
+			return null;
+		}
 		return requestAttributes.get(key);
 	}
 
@@ -174,7 +203,27 @@ public class SpanContextInformation {
 		this.callTree = callTree;
 	}
 
+	/**
+	 * Whether the call tree should be included in the reported span.
+	 * <p/>
+	 * The call tree is not converted into span tags right away but only when the span is reported. That's why an
+	 * included call tree is not recycled when this object is garbage collected.
+	 */
+	public boolean isCallTreeIncluded() {
+		return callTreeIncluded;
+	}
+
+	/**
+	 * Internal method, should only be called by stagemonitor itself
+	 */
+	public void setCallTreeIncluded(boolean callTreeIncluded) {
+		this.callTreeIncluded = callTreeIncluded;
+	}
+
 	public Map<String, Object> getRequestAttributes() {
+		if (requestAttributes == null) {
+			return Collections.emptyMap();
+		}
 		return requestAttributes;
 	}
 
@@ -195,7 +244,10 @@ public class SpanContextInformation {
 	}
 
 	public void addExternalRequest(String requestType, long executionTimeNanos) {
-		final ExternalRequestStats stats = this.externalRequestStats.get(requestType);
+		if (externalRequestStats == null) {
+			externalRequestStats = new HashMap<String, ExternalRequestStats>();
+		}
+		final ExternalRequestStats stats = externalRequestStats.get(requestType);
 		if (stats == null) {
 			externalRequestStats.put(requestType, new ExternalRequestStats(requestType, executionTimeNanos));
 		} else {
@@ -204,6 +256,9 @@ public class SpanContextInformation {
 	}
 
 	public Collection<ExternalRequestStats> getExternalRequestStats() {
+		if (externalRequestStats == null) {
+			return Collections.emptyList();
+		}
 		return externalRequestStats.values();
 	}
 
@@ -237,10 +292,26 @@ public class SpanContextInformation {
 		this.overhead1 = overhead1;
 	}
 
+	/**
+	 * Returns the estimated time the profiler has added to the method calls of this span
+	 * <p/>
+	 * Opposed to the overhead of starting and finishing the span, this overhead is spread over the execution of the
+	 * request, so it can't be measured directly.
+	 */
+	public long getProfilerOverheadNanos() {
+		return profilerOverheadNanos;
+	}
+
+	public void setProfilerOverheadNanos(long profilerOverheadNanos) {
+		this.profilerOverheadNanos = profilerOverheadNanos;
+	}
+
 	@Override
 	public void finalize() throws Throwable {
 		super.finalize();
-		if (callTree != null) {
+		// an included call tree is owned by the tags of the reported span (see CallTreeTagValue),
+		// which may outlive this object, for example in the buffer of a reporter
+		if (callTree != null && !callTreeIncluded) {
 			callTree.recycle();
 		}
 	}
@@ -303,7 +374,10 @@ public class SpanContextInformation {
 		}
 	}
 
-	static class SpanContextSpanEventListener extends AbstractSpanEventListener implements SpanEventListenerFactory {
+	static class SpanContextSpanEventListener extends AbstractSpanEventListener implements TagFilteringSpanEventListenerFactory {
+
+		private static final Set<String> TAG_KEYS = new HashSet<String>(Arrays.asList(
+				Tags.SPAN_KIND.getKey(), Tags.SAMPLING_PRIORITY.getKey(), SpanUtils.OPERATION_TYPE));
 
 		private SpanContextInformation info;
 		private String spanKind;
@@ -316,7 +390,7 @@ public class SpanContextInformation {
 			info.setParent(SpanContextInformation.getCurrent());
 
 			TracingUtils.getTraceContext().push(spanWrapper);
-			spanContextMap.put(spanWrapper, info);
+			spanWrapper.setSpanContextInformation(info);
 			info.setSpan(spanWrapper);
 			for (Map.Entry<String, String> entry : Stagemonitor.getMeasurementSession().asMap().entrySet()) {
 				spanWrapper.setTag(entry.getKey(), entry.getValue());
@@ -384,5 +458,10 @@ public class SpanContextInformation {
 		public SpanEventListener create() {
 			return new SpanContextSpanEventListener();
 		}
+
+		@Override
+		public Set<String> getTagKeys() {
+			return TAG_KEYS;
+		}
 	}
 }
@@ -10,4 +10,15 @@ import io.opentracing.Tracer;
  */
 public abstract class TracerFactory implements StagemonitorSPI {
 	public abstract Tracer getTracer(StagemonitorPlugin.InitArguments initArguments);
+
+	/**
+	 * Whether the {@link Tracer} reports its spans, including their tags.
+	 * <p/>
+	 * If <code>false</code>, the tracer is only used for creating and propagating the ids of the spans and tags which
+	 * are expensive to create, like the call tree, are not added to its spans. Those are only added to the spans
+	 * reported by the {@link org.stagemonitor.tracing.reporter.SpanReporter}s.
+	 */
+	public boolean isReportingSpans() {
+		return true;
+	}
 }
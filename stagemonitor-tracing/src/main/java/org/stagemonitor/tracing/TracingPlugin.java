@@ -142,6 +142,29 @@ public class TracingPlugin extends StagemonitorPlugin {
 			.tags("profiler", "experimental")
 			.configurationCategory(TRACING_PLUGIN)
 			.buildWithDefault(false);
+	private final ConfigurationOption<Boolean> profilerCallTreeArena = ConfigurationOption.booleanOption()
+			.key("stagemonitor.profiler.callTreeArena")
+			.dynamic(false)
+			.label("Activate Profiler Call Tree Arena")
+			.description("Activates the experimental call tree arena for the profiler. When enabled, the method calls " +
+					"are not recorded as CallStackElement objects but stored in primitive arrays which are reused for " +
+					"all call trees of a thread. CallStackElements are only created when a call tree is added to a span. " +
+					"This aims to avoid nearly all allocations while profiling without the contention of the object pool.")
+			.tags("profiler", "experimental")
+			.configurationCategory(TRACING_PLUGIN)
+			.buildWithDefault(false);
+	private final ConfigurationOption<Integer> maxCallTreeNodes = ConfigurationOption.integerOption()
+			.key("stagemonitor.profiler.maxCallTreeNodes")
+			.dynamic(false)
+			.label("Max call tree nodes")
+			.description("The maximum number of method calls a thread keeps in its call tree at the same time. " +
+					"Calls which are faster than the min execution time are removed as soon as they return and don't " +
+					"count towards this limit. When the limit is reached, further calls of the current request are " +
+					"not recorded, so that deeply recursive or loop-heavy code can't exhaust the heap while profiling. " +
+					"Set to 0 to record all calls.")
+			.tags("profiler")
+			.configurationCategory(TRACING_PLUGIN)
+			.buildWithDefault(100000);
 	private final ConfigurationOption<Double> profilerRateLimitPerMinute = ConfigurationOption.doubleOption()
 			.key("stagemonitor.profiler.sampling.rateLimitPerMinute")
 			.aliasKeys("stagemonitor.requestmonitor.onlyCollectNCallTreesPerMinute")
@@ -267,6 +290,18 @@ public class TracingPlugin extends StagemonitorPlugin {
 			.tags("external-requests", "sampling")
 			.configurationCategory(TRACING_PLUGIN)
 			.buildWithDefault(Collections.<String, Double>emptyMap());
+	private final ConfigurationOption<Double> overheadBudgetPercent = ConfigurationOption.doubleOption()
+			.key("stagemonitor.requestmonitor.sampling.overheadBudgetPercent")
+			.dynamic(true)
+			.label("Overhead budget (%)")
+			.description("If set to a value greater than 0, the sampling rates of server spans and call trees are " +
+					"adapted automatically so that the time spent monitoring requests stays below this percentage of " +
+					"the request time. The call tree rate is lowered before the span rate, as collecting call trees " +
+					"is more expensive. The overhead is measured by the request monitor. " +
+					"The rates are additionally limited by the other sampling settings.")
+			.tags("sampling")
+			.configurationCategory(TRACING_PLUGIN)
+			.buildWithDefault(0d);
 	private final ConfigurationOption<Double> excludeCallTreeFromReportWhenFasterThanXPercentOfRequests = ConfigurationOption.doubleOption()
 			.key("stagemonitor.requestmonitor.sampling.excludeCallTreeFromReportWhenFasterThanXPercentOfRequests")
 			.aliasKeys("stagemonitor.requestmonitor.elasticsearch.excludeCallTreeFromElasticsearchReportWhenFasterThanXPercentOfRequests")
@@ -307,6 +342,7 @@ public class TracingPlugin extends StagemonitorPlugin {
 	private SamplePriorityDeterminingSpanEventListener samplePriorityDeterminingSpanInterceptor;
 	private ReportingSpanEventListener reportingSpanEventListener;
 	private CorePlugin corePlugin;
+	private boolean tracerReportingSpans;
 
 	/**
 	 * @return the {@link Span} of the current request or a noop {@link Span} (never <code>null</code>)
@@ -350,7 +386,7 @@ public class TracingPlugin extends StagemonitorPlugin {
 
 		final Metric2Registry metricRegistry = initArguments.getMetricRegistry();
 		final Tracer tracer = getTracerImpl(initArguments);
-		reportingSpanEventListener = new ReportingSpanEventListener(initArguments.getConfiguration());
+		reportingSpanEventListener = new ReportingSpanEventListener(initArguments.getConfiguration(), metricRegistry);
 		for (SpanReporter spanReporter : ServiceLoader.load(SpanReporter.class, RequestMonitor.class.getClassLoader())) {
 			addReporter(spanReporter);
 		}
@@ -369,8 +405,10 @@ public class TracingPlugin extends StagemonitorPlugin {
 	private Tracer getTracerImpl(InitArguments initArguments) {
 		final Iterator<TracerFactory> tracerFactoryIterator = ServiceLoader.load(TracerFactory.class, RequestMonitor.class.getClassLoader()).iterator();
 		if (tracerFactoryIterator.hasNext()) {
-			final Tracer tracer = tracerFactoryIterator.next().getTracer(initArguments);
+			final TracerFactory tracerFactory = tracerFactoryIterator.next();
+			final Tracer tracer = tracerFactory.getTracer(initArguments);
 			assertIsSingleImplementation(initArguments, tracerFactoryIterator, tracer);
+			tracerReportingSpans = tracerFactory.isReportingSpans();
 			return tracer;
 		} else {
 			logger.info("No OpenTracing implementation found. Falling back to NoopTracer. " +
@@ -423,6 +461,14 @@ public class TracingPlugin extends StagemonitorPlugin {
 		return requestMonitor;
 	}
 
+	/**
+	 * @return whether the spans of the OpenTracing implementation are reported by the implementation itself
+	 * @see TracerFactory#isReportingSpans()
+	 */
+	public boolean isTracerReportingSpans() {
+		return tracerReportingSpans;
+	}
+
 	public boolean isCollectCpuTime() {
 		return collectCpuTime.getValue();
 	}
@@ -490,6 +536,10 @@ public class TracingPlugin extends StagemonitorPlugin {
 		return rateLimitServerSpansPerMinute;
 	}
 
+	public double getOverheadBudgetPercent() {
+		return overheadBudgetPercent.getValue();
+	}
+
 	public double getExcludeCallTreeFromReportWhenFasterThanXPercentOfRequests() {
 		return excludeCallTreeFromReportWhenFasterThanXPercentOfRequests.getValue();
 	}
@@ -502,6 +552,14 @@ public class TracingPlugin extends StagemonitorPlugin {
 		return profilerObjectPooling.getValue();
 	}
 
+	public int getMaxCallTreeNodes() {
+		return maxCallTreeNodes.getValue();
+	}
+
+	public boolean isProfilerCallTreeArenaActive() {
+		return profilerCallTreeArena.getValue();
+	}
+
 	public Collection<Pattern> getConfidentialParameters() {
 		return confidentialParameters.getValue();
 	}
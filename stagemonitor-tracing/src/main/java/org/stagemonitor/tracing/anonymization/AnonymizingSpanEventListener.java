@@ -5,10 +5,14 @@ import org.stagemonitor.tracing.utils.IPAnonymizationUtils;
 import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.AbstractSpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
-import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.util.StringUtils;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import io.opentracing.tag.Tags;
 
 public class AnonymizingSpanEventListener extends AbstractSpanEventListener {
@@ -61,7 +65,11 @@ public class AnonymizingSpanEventListener extends AbstractSpanEventListener {
 		}
 	}
 
-	public static class MySpanEventListenerFactory implements SpanEventListenerFactory {
+	public static class MySpanEventListenerFactory implements TagFilteringSpanEventListenerFactory {
+
+		private static final Set<String> TAG_KEYS = new HashSet<String>(Arrays.asList(
+				SpanUtils.USERNAME, SpanUtils.IPV4_STRING, Tags.PEER_HOST_IPV6.getKey()));
+
 		private final TracingPlugin tracingPlugin;
 
 		public MySpanEventListenerFactory(TracingPlugin tracingPlugin) {
@@ -72,5 +80,10 @@ public class AnonymizingSpanEventListener extends AbstractSpanEventListener {
 		public SpanEventListener create() {
 			return new AnonymizingSpanEventListener(tracingPlugin);
 		}
+
+		@Override
+		public Set<String> getTagKeys() {
+			return TAG_KEYS;
+		}
 	}
 }
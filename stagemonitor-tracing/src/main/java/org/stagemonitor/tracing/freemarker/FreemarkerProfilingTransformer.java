@@ -10,7 +10,6 @@ import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 
 import org.stagemonitor.core.instrument.StagemonitorByteBuddyTransformer;
-import org.stagemonitor.tracing.profiler.CallStackElement;
 import org.stagemonitor.tracing.profiler.Profiler;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -69,13 +68,6 @@ public class FreemarkerProfilingTransformer extends StagemonitorByteBuddyTransfo
 		Profiler.start(env.getCurrentTemplate().getName() + ':' + dot.getBeginLine() + '#' + dot.toString());
 	}
 
-	@Advice.OnMethodExit(inline = false, onThrowable = Throwable.class)
-	public static void onAfterEvaluate() {
-		final CallStackElement currentFreemarkerCall = Profiler.getMethodCallParent();
-		Profiler.stop();
-		removeCurrentNodeIfItHasNoChildren(currentFreemarkerCall);
-	}
-
 	/**
 	 * <pre>
 	 * </code>
@@ -87,12 +79,12 @@ public class FreemarkerProfilingTransformer extends StagemonitorByteBuddyTransfo
 	 *
 	 * We want to remove <code>templateModel.getFoo</code> as getFoo only returns the method reference, which is then
 	 * invoked by {@link freemarker.core.MethodCall#_eval(Environment)}.
-	 * Therefore, <code>getFoo</code> does not invoke the model and thus is not relevant for the call tree
+	 * Therefore, <code>getFoo</code> does not invoke the model and thus is not relevant for the call tree.
+	 * That's why nodes without children are removed.
 	 */
-	private static void removeCurrentNodeIfItHasNoChildren(CallStackElement currentFreemarkerCall) {
-		if (currentFreemarkerCall != null && currentFreemarkerCall.getChildren().isEmpty()) {
-			currentFreemarkerCall.remove();
-		}
+	@Advice.OnMethodExit(inline = false, onThrowable = Throwable.class)
+	public static void onAfterEvaluate() {
+		Profiler.stopAndRemoveIfNoChildren();
 	}
 
 	/**
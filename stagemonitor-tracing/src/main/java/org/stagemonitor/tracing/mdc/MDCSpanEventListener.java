@@ -8,6 +8,10 @@ import org.stagemonitor.tracing.B3HeaderFormat;
 import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
+
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * This class adds the {@link MDC} properties requestId, application, host and instance.
@@ -15,7 +19,7 @@ import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
  * If you are using logback or log4j, you can append this to your pattern to append the properties to each log entry:
  * <code>trace:[%X{traceId}] span:[%X{spanId}] A:[%X{application}] H:[%X{host}] I:[%X{instance}]</code>
  */
-public class MDCSpanEventListener extends StatelessSpanEventListener {
+public class MDCSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 	private final CorePlugin corePlugin;
 	private final TracingPlugin tracingPlugin;
@@ -71,4 +75,9 @@ public class MDCSpanEventListener extends StatelessSpanEventListener {
 			MDC.put(key, value);
 		}
 	}
+
+	@Override
+	public Set<String> getTagKeys() {
+		return Collections.emptySet();
+	}
 }
@@ -9,12 +9,17 @@ import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.ClientServerAwareSpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
-import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.util.StringUtils;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import io.opentracing.tag.Tags;
+
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 public class ExternalRequestMetricsSpanEventListener extends ClientServerAwareSpanEventListener {
@@ -33,7 +38,10 @@ public class ExternalRequestMetricsSpanEventListener extends ClientServerAwareSp
 		this.metricRegistry = metricRegistry;
 	}
 
-	public static class Factory implements SpanEventListenerFactory {
+	public static class Factory implements TagFilteringSpanEventListenerFactory {
+
+		private static final Set<String> TAG_KEYS = new HashSet<String>(Arrays.asList(
+				Tags.SPAN_KIND.getKey(), SpanUtils.OPERATION_TYPE, EXTERNAL_REQUEST_METHOD));
 
 		private final Metric2Registry metricRegistry;
 
@@ -49,6 +57,11 @@ public class ExternalRequestMetricsSpanEventListener extends ClientServerAwareSp
 		public SpanEventListener create() {
 			return new ExternalRequestMetricsSpanEventListener(metricRegistry);
 		}
+
+		@Override
+		public Set<String> getTagKeys() {
+			return TAG_KEYS;
+		}
 	}
 
 	@Override
@@ -9,10 +9,13 @@ import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.wrapper.ClientServerAwareSpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
-import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.util.StringUtils;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import io.opentracing.Span;
@@ -136,7 +139,11 @@ public class ServerRequestMetricsSpanEventListener extends ClientServerAwareSpan
 		return timerMetricNameTemplate.build(requestName);
 	}
 
-	public static class Factory implements SpanEventListenerFactory {
+	public static class Factory implements TagFilteringSpanEventListenerFactory {
+
+		private static final Set<String> TAG_KEYS = new HashSet<String>(Arrays.asList(
+				Tags.SPAN_KIND.getKey(), Tags.ERROR.getKey()));
+
 		private final Metric2Registry metricRegistry;
 		private final TracingPlugin tracingPlugin;
 
@@ -149,5 +156,10 @@ public class ServerRequestMetricsSpanEventListener extends ClientServerAwareSpan
 		public SpanEventListener create() {
 			return new ServerRequestMetricsSpanEventListener(metricRegistry, tracingPlugin);
 		}
+
+		@Override
+		public Set<String> getTagKeys() {
+			return TAG_KEYS;
+		}
 	}
 }
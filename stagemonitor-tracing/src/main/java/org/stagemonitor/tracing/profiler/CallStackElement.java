@@ -96,6 +96,20 @@ public class CallStackElement {
 		}
 	}
 
+	/**
+	 * @return the number of nodes of the subtree of this node, including this node
+	 */
+	int countNodes() {
+		if (children.isEmpty()) {
+			return 1;
+		}
+		int count = 1;
+		for (CallStackElement child : children) {
+			count += child.countNodes();
+		}
+		return count;
+	}
+
 	public boolean isIOQuery() {
 		// that might be a bit ugly, but it saves reference to a boolean and thus memory
 		return signature.charAt(signature.length() - 1) == ' ';
@@ -251,18 +265,69 @@ public class CallStackElement {
 	}
 
 	private void appendNumber(StringBuilder sb, long time) {
-		sb.append(String.format(Locale.US, "%09.2f", time / 1000000.0)).append("  ");
+		appendMillis(sb, time);
+		sb.append("  ");
 	}
 
 	private void appendPercent(StringBuilder sb, long time, long totalExecutionTimeNs, boolean asciiArt) {
 		final double percent = time / (double) totalExecutionTimeNs;
-		sb.append(String.format(Locale.US, "%03.0f", percent * 100)).append("% ").append(printPercentAsBar(percent, 10, asciiArt)).append(' ');
+		appendPercent(sb, percent * 100);
+		sb.append("% ");
+		appendPercentAsBar(sb, percent, 10, asciiArt);
+		sb.append(' ');
+	}
+
+	/**
+	 * Appends the nanoseconds as milliseconds like <code>String.format(Locale.US, "%09.2f", nanos / 1000000.0)</code>
+	 * without allocating intermediate objects.
+	 */
+	static void appendMillis(StringBuilder sb, long nanos) {
+		if (nanos < 0) {
+			sb.append('-');
+		}
+		// rounds half up like java.util.Formatter
+		final long hundredths = (Math.abs(nanos) + 5000) / 10000;
+		final long integerPart = hundredths / 100;
+		final long fraction = hundredths % 100;
+		appendZeroPadded(sb, integerPart, nanos < 0 ? 5 : 6);
+		sb.append('.');
+		appendZeroPadded(sb, fraction, 2);
+	}
+
+	/**
+	 * Appends the percentage like <code>String.format(Locale.US, "%03.0f", percent)</code>
+	 * without allocating intermediate objects.
+	 */
+	static void appendPercent(StringBuilder sb, double percent) {
+		if (Double.isNaN(percent) || Double.isInfinite(percent)) {
+			sb.append(String.format(Locale.US, "%03.0f", percent));
+			return;
+		}
+		if (percent < 0) {
+			sb.append('-');
+		}
+		final long rounded = Math.round(Math.abs(percent));
+		appendZeroPadded(sb, rounded, percent < 0 ? 2 : 3);
+	}
+
+	private static void appendZeroPadded(StringBuilder sb, long value, int minDigits) {
+		for (long threshold = 10, digits = 1; digits < minDigits; threshold *= 10, digits++) {
+			if (value < threshold) {
+				sb.append('0');
+			}
+		}
+		sb.append(value);
 	}
 
 	static String printPercentAsBar(double percent, int totalBars, boolean asciiArt) {
+		StringBuilder sb = new StringBuilder(totalBars);
+		appendPercentAsBar(sb, percent, totalBars, asciiArt);
+		return sb.toString();
+	}
+
+	private static void appendPercentAsBar(StringBuilder sb, double percent, int totalBars, boolean asciiArt) {
 		int actualBars = (int) (percent * totalBars);
 		boolean includeHalfBarAtEnd = actualBars * 2 != (int) (percent * totalBars * 2);
-		StringBuilder sb = new StringBuilder(totalBars);
 		for (int i = 0; i < totalBars; i++) {
 			if (i < actualBars) {
 				sb.append(asciiArt ? (char) 9608 : '|');
@@ -272,7 +337,6 @@ public class CallStackElement {
 				sb.append(asciiArt ? (char) 9617 : '-');
 			}
 		}
-		return sb.toString();
 	}
 
 	private void appendCallTree(Deque<String> indentationStack, StringBuilder sb, final boolean asciiArt) {
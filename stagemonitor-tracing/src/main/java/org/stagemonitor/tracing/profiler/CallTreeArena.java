@@ -0,0 +1,257 @@
+package org.stagemonitor.tracing.profiler;
+
+import java.util.Arrays;
+
+/**
+ * An array based call tree which is only ever accessed by the thread which records it.
+ * <p/>
+ * Instead of allocating a {@link CallStackElement} for each method call, the nodes are stored in parallel primitive
+ * arrays which are reused for all call trees of a thread. As there is no shared state, no locks are needed.
+ * <p/>
+ * The nodes are stored in pre-order. That means that the subtree of a node always occupies the indices from the node
+ * itself up to {@link #size}, as long as the node has not been stopped. That makes it possible to discard a call which
+ * was faster than the min execution time, including all its children, by just resetting {@link #size}.
+ * <p/>
+ * The nodes are only converted to {@link CallStackElement}s by {@link #materialize(CallStackElement)} if the call tree
+ * is actually needed, for example because it should be added to the span.
+ * <p/>
+ * Calls of instrumented methods are recorded with the id of their signature (see {@link SignatureRegistry}).
+ * Signatures which are not known in advance, like SQL statements, are stored as strings.
+ * Whether a call is a I/O call is recorded as a flag of the signature id.
+ * <p/>
+ * The number of nodes is limited by {@link #maxNodes}. Once the limit is reached, further calls are not recorded until
+ * enough nodes have been removed again.
+ */
+class CallTreeArena {
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int IO_CALL_FLAG = 1 << 31;
+	private static final int SIGNATURE_ID_MASK = ~IO_CALL_FLAG;
+	/**
+	 * The signature id of nodes whose signature is stored in {@link #signatures}
+	 */
+	private static final int UNREGISTERED_SIGNATURE = SIGNATURE_ID_MASK;
+
+	private int[] parents;
+	private int[] signatureIds;
+	private String[] signatures;
+	/**
+	 * Initially set to the start timestamp and set to the execution time when the call has been stopped,
+	 * just like {@link CallStackElement#getExecutionTime()}
+	 */
+	private long[] executionTimes;
+	private int size;
+	/**
+	 * The highest size since the last {@link #clear()}, as the size shrinks when calls are removed
+	 */
+	private int maxSize;
+	private int current = -1;
+	private CallStackElement root;
+	private final int maxNodes;
+	/**
+	 * The number of started calls which have not been recorded because the node limit has been reached
+	 */
+	private int skippedCalls;
+	/**
+	 * The number of calls which have been started since {@link #activate(CallStackElement)}, including the ones which
+	 * have been skipped or removed
+	 */
+	private int startedCalls;
+
+	CallTreeArena() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxNodes the maximum number of nodes, including the root
+	 */
+	CallTreeArena(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Starts recording a new call tree and discards the nodes of the previous one.
+	 *
+	 * @param root the root of the call tree which will receive the recorded nodes on
+	 *             {@link #materialize(CallStackElement)}
+	 */
+	void activate(CallStackElement root) {
+		if (parents == null) {
+			parents = new int[INITIAL_CAPACITY];
+			signatureIds = new int[INITIAL_CAPACITY];
+			signatures = new String[INITIAL_CAPACITY];
+			executionTimes = new long[INITIAL_CAPACITY];
+		}
+		clear();
+		startedCalls = 0;
+		this.root = root;
+		current = add(-1, UNREGISTERED_SIGNATURE, root.getSignature(), root.getExecutionTime());
+	}
+
+	boolean isActive() {
+		return current >= 0;
+	}
+
+	void start(int signatureId, long startTimestamp) {
+		startedCalls++;
+		if (isLimitReached()) {
+			skippedCalls++;
+			return;
+		}
+		current = add(current, signatureId, null, startTimestamp);
+	}
+
+	void start(String signature, long startTimestamp) {
+		startedCalls++;
+		if (isLimitReached()) {
+			skippedCalls++;
+			return;
+		}
+		current = add(current, UNREGISTERED_SIGNATURE, signature, startTimestamp);
+	}
+
+	int getStartedCalls() {
+		return startedCalls;
+	}
+
+	/**
+	 * Calls are not recorded if the limit is reached or if the current call has not been recorded either
+	 */
+	private boolean isLimitReached() {
+		return skippedCalls > 0 || size >= maxNodes;
+	}
+
+	/**
+	 * Adds a child to the current node which already has a known execution time
+	 *
+	 * @param ioCall whether the call is a I/O call like a SQL query, see {@link CallStackElement#isIOQuery()}
+	 */
+	void addCall(String signature, boolean ioCall, long executionTime) {
+		if (isLimitReached()) {
+			return;
+		}
+		add(current, ioCall ? UNREGISTERED_SIGNATURE | IO_CALL_FLAG : UNREGISTERED_SIGNATURE, signature, executionTime);
+	}
+
+	/**
+	 * Stops the current node and makes its parent the current node.
+	 * <p/>
+	 * If the call was faster than the min execution time, it is removed from the tree instantly, together with all
+	 * its children. The root is never removed.
+	 *
+	 * @param timestamp        the stop timestamp
+	 * @param minExecutionTime the threshold for the minimum execution time
+	 */
+	void stop(long timestamp, long minExecutionTime) {
+		if (skippedCalls > 0) {
+			skippedCalls--;
+			return;
+		}
+		final int node = current;
+		final long executionTime = timestamp - executionTimes[node];
+		executionTimes[node] = executionTime;
+		final int parent = parents[node];
+		if (parent < 0) {
+			root.setExecutionTime(executionTime);
+		} else if (executionTime < minExecutionTime) {
+			// the subtree of the node is stored from node to size
+			size = node;
+		}
+		current = parent;
+	}
+
+	/**
+	 * Stops the current node like {@link #stop(long, long)} and removes it from the call tree if it does not have any
+	 * children.
+	 */
+	void stopAndRemoveIfNoChildren(long timestamp, long minExecutionTime) {
+		if (skippedCalls > 0) {
+			skippedCalls--;
+			return;
+		}
+		final int node = current;
+		stop(timestamp, minExecutionTime);
+		if (node > 0 && size == node + 1) {
+			size = node;
+		}
+	}
+
+	/**
+	 * Converts the recorded nodes to {@link CallStackElement}s and adds them to the provided root.
+	 * <p/>
+	 * The nodes are only materialized once and only if the provided root is the root of the current call tree.
+	 *
+	 * @param root the root which has been provided by {@link #activate(CallStackElement)}
+	 * @return the root
+	 */
+	CallStackElement materialize(CallStackElement root) {
+		if (root == null || root != this.root) {
+			return root;
+		}
+		final CallStackElement[] elements = new CallStackElement[size];
+		elements[0] = root;
+		for (int i = 1; i < size; i++) {
+			elements[i] = CallStackElement.create(elements[parents[i]], getSignature(i), executionTimes[i]);
+		}
+		this.root = null;
+		return root;
+	}
+
+	/**
+	 * Discards the current call tree but keeps the arrays so that they can be reused by the next call tree.
+	 */
+	void clear() {
+		if (signatures != null) {
+			// don't keep references to signatures like SQL statements longer than needed
+			Arrays.fill(signatures, 0, maxSize, null);
+		}
+		size = 0;
+		maxSize = 0;
+		current = -1;
+		root = null;
+		skippedCalls = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private String getSignature(int node) {
+		final int signatureId = signatureIds[node] & SIGNATURE_ID_MASK;
+		final String signature;
+		if (signatureId == UNREGISTERED_SIGNATURE) {
+			signature = signatures[node];
+		} else {
+			signature = SignatureRegistry.getSignature(signatureId);
+		}
+		if ((signatureIds[node] & IO_CALL_FLAG) != 0) {
+			// CallStackElement marks I/O calls with a trailing space
+			return signature + ' ';
+		}
+		return signature;
+	}
+
+	private int add(int parent, int signatureId, String signature, long executionTime) {
+		if (size == parents.length) {
+			grow();
+		}
+		final int node = size++;
+		if (size > maxSize) {
+			maxSize = size;
+		}
+		parents[node] = parent;
+		signatureIds[node] = signatureId;
+		signatures[node] = signature;
+		executionTimes[node] = executionTime;
+		return node;
+	}
+
+	private void grow() {
+		final int newCapacity = parents.length * 2;
+		parents = Arrays.copyOf(parents, newCapacity);
+		signatureIds = Arrays.copyOf(signatureIds, newCapacity);
+		signatures = Arrays.copyOf(signatures, newCapacity);
+		executionTimes = Arrays.copyOf(executionTimes, newCapacity);
+	}
+
+}
@@ -1,8 +1,7 @@
 package org.stagemonitor.tracing.profiler;
 
 import org.stagemonitor.configuration.ConfigurationOption;
-import org.stagemonitor.core.metrics.MetricUtils;
-import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.core.metrics.PercentileThresholdTracker;
 import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.sampling.PreExecutionInterceptorContext;
@@ -11,13 +10,20 @@ import org.stagemonitor.tracing.utils.RateLimiter;
 import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.util.StringUtils;
 
+import io.opentracing.NoopSpan;
 import io.opentracing.Span;
 
-public class CallTreeSpanEventListener extends StatelessSpanEventListener {
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class CallTreeSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 	private final TracingPlugin tracingPlugin;
+	private final PercentileThresholdTracker percentileThresholdTracker = new PercentileThresholdTracker(10, TimeUnit.SECONDS);
 	private RateLimiter rateLimiter;
 
 	public CallTreeSpanEventListener(TracingPlugin tracingPlugin) {
@@ -64,6 +70,7 @@ public class CallTreeSpanEventListener extends StatelessSpanEventListener {
 		if (contextInfo.getCallTree() != null) {
 			try {
 				Profiler.stop();
+				contextInfo.setProfilerOverheadNanos(Profiler.getEstimatedOverheadNanos());
 				if (contextInfo.isSampled()) {
 					determineIfExcludeCallTree(contextInfo);
 					if (isAddCallTreeToSpan(contextInfo, operationName)) {
@@ -78,7 +85,7 @@ public class CallTreeSpanEventListener extends StatelessSpanEventListener {
 
 	private void determineIfExcludeCallTree(SpanContextInformation contextInfo) {
 		final double percentileLimit = tracingPlugin.getExcludeCallTreeFromReportWhenFasterThanXPercentOfRequests();
-		if (!MetricUtils.isFasterThanXPercentOfAllRequests(contextInfo.getDurationNanos(), percentileLimit, contextInfo.getTimerForThisRequest())) {
+		if (!percentileThresholdTracker.isFasterThanXPercentOfAllRequests(contextInfo.getDurationNanos(), percentileLimit, contextInfo.getTimerForThisRequest())) {
 			contextInfo.getPostExecutionInterceptorContext().excludeCallTree("the duration of this request is faster than the percentile limit");
 		}
 	}
@@ -90,14 +97,25 @@ public class CallTreeSpanEventListener extends StatelessSpanEventListener {
 				&& StringUtils.isNotEmpty(operationName);
 	}
 
-	private void addCallTreeToSpan(SpanContextInformation info, Span span, String operationName) {
-		final CallStackElement callTree = info.getCallTree();
+	private void addCallTreeToSpan(SpanContextInformation info, SpanWrapper spanWrapper, String operationName) {
+		final CallStackElement callTree = Profiler.materializeCallTree(info.getCallTree());
 		callTree.setSignature(operationName);
 		final double minExecutionTimeMultiplier = tracingPlugin.getMinExecutionTimePercent() / 100;
 		if (minExecutionTimeMultiplier > 0d) {
 			callTree.removeCallsFasterThan((long) (callTree.getExecutionTime() * minExecutionTimeMultiplier));
 		}
-		span.setTag(SpanUtils.CALL_TREE_JSON, JsonUtils.toJson(callTree));
-		span.setTag(SpanUtils.CALL_TREE_ASCII, callTree.toString(true));
+		// the call tree of the readback span is serialized by the reporter, see CallTreeTagValue
+		info.setCallTreeIncluded(true);
+		final Span span = spanWrapper.getDelegate();
+		if (tracingPlugin.isTracerReportingSpans() && !(span instanceof NoopSpan)) {
+			// tracers which report spans on their own, like Zipkin, need the call tree as String tags
+			span.setTag(SpanUtils.CALL_TREE_JSON, CallTreeTagValue.json(callTree).toString());
+			span.setTag(SpanUtils.CALL_TREE_ASCII, CallTreeTagValue.ascii(callTree).toString());
+		}
+	}
+
+	@Override
+	public Set<String> getTagKeys() {
+		return Collections.emptySet();
 	}
 }
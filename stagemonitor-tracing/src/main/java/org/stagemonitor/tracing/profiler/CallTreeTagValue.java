@@ -0,0 +1,230 @@
+package org.stagemonitor.tracing.profiler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.tracing.utils.SpanUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+/**
+ * The value of the {@link SpanUtils#CALL_TREE_JSON} and {@link SpanUtils#CALL_TREE_ASCII} tags of a
+ * {@link org.stagemonitor.tracing.reporter.ReadbackSpan}.
+ * <p/>
+ * Instead of converting the call tree to Strings in the thread which executes the request, the call tree is only
+ * serialized when the span is reported. The serializer streams the call tree into a buffer which is reused by the
+ * reporting thread and writes the buffer directly into the {@link JsonGenerator} of the reporter. That way, large call
+ * trees never exist as giant Strings.
+ * <p/>
+ * Both tags are still serialized as JSON strings, so the format of the reported span does not change.
+ */
+@JsonSerialize(using = CallTreeTagValue.Serializer.class)
+public class CallTreeTagValue {
+
+	/**
+	 * Buffers which have grown beyond this number of chars are not kept for the next call tree. This limits the memory
+	 * which is retained by each reporting thread to 256 KB (the buffer and its copy).
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<CharBuffer> buffers = new ThreadLocal<CharBuffer>() {
+		@Override
+		protected CharBuffer initialValue() {
+			return new CharBuffer();
+		}
+	};
+
+	private final CallStackElement callTree;
+	private final boolean json;
+
+	private CallTreeTagValue(CallStackElement callTree, boolean json) {
+		this.callTree = callTree;
+		this.json = json;
+	}
+
+	/**
+	 * Creates the value of the {@link SpanUtils#CALL_TREE_JSON} tag
+	 */
+	public static CallTreeTagValue json(CallStackElement callTree) {
+		return new CallTreeTagValue(callTree, true);
+	}
+
+	/**
+	 * Creates the value of the {@link SpanUtils#CALL_TREE_ASCII} tag
+	 */
+	public static CallTreeTagValue ascii(CallStackElement callTree) {
+		return new CallTreeTagValue(callTree, false);
+	}
+
+	public CallStackElement getCallTree() {
+		return callTree;
+	}
+
+	/**
+	 * Writes the call tree as JSON without creating intermediate objects like a tree model.
+	 * <p/>
+	 * The output is the same as the one of <code>JsonUtils.toJson(callTree)</code>.
+	 */
+	private static void writeJson(CallStackElement callTree, JsonGenerator gen, CharBuffer buffer) throws IOException {
+		gen.writeStartObject();
+		gen.writeStringField("signature", callTree.getSignature());
+		gen.writeNumberField("executionTime", callTree.getExecutionTime());
+		gen.writeArrayFieldStart("children");
+		for (CallStackElement child : callTree.getChildren()) {
+			writeJson(child, gen, buffer);
+		}
+		gen.writeEndArray();
+		gen.writeBooleanField("ioquery", callTree.isIOQuery());
+		gen.writeNumberField("netExecutionTime", callTree.getNetExecutionTime());
+		gen.writeFieldName("shortSignature");
+		writeShortSignature(callTree.getSignature(), gen, buffer);
+		gen.writeEndObject();
+	}
+
+	/**
+	 * Writes the same value as {@link CallStackElement#getShortSignature()} without creating the intermediate Strings
+	 */
+	private static void writeShortSignature(String signature, JsonGenerator gen, CharBuffer buffer) throws IOException {
+		final int parenthesis = signature.indexOf('(');
+		if (parenthesis == -1 || signature.indexOf(':') != -1) {
+			gen.writeNull();
+			return;
+		}
+		if (parenthesis == 0) {
+			gen.writeString("");
+			return;
+		}
+		// trailing empty segments are ignored, just like String#split does
+		int end = parenthesis;
+		while (end > 0 && signature.charAt(end - 1) == '.') {
+			end--;
+		}
+		if (end == 0) {
+			gen.writeString("null");
+			return;
+		}
+		final int lastDot = signature.lastIndexOf('.', end - 1);
+		if (lastDot == -1) {
+			gen.writeString(buffer.copy(signature, 0, end), 0, end);
+			return;
+		}
+		final int secondLastDot = signature.lastIndexOf('.', lastDot - 1);
+		final int start = secondLastDot + 1;
+		final char[] chars = buffer.copy(signature, start, end);
+		chars[lastDot - start] = '#';
+		gen.writeString(chars, 0, end - start);
+	}
+
+	/**
+	 * Writes the call tree as text into the buffer of the current thread
+	 */
+	private CharBuffer writeToBuffer() throws IOException {
+		final CharBuffer buffer = buffers.get();
+		buffer.reset();
+		if (json) {
+			final JsonGenerator gen = JsonUtils.getMapper().getFactory().createGenerator(buffer);
+			writeJson(callTree, gen, buffer);
+			gen.flush();
+		} else {
+			callTree.logStats(callTree.getExecutionTime(), new LinkedList<String>(), buffer.sb, true);
+		}
+		return buffer;
+	}
+
+	private static void releaseBuffer(CharBuffer buffer) {
+		if (buffer.sb.capacity() > MAX_RETAINED_BUFFER_SIZE || buffer.chars.length > MAX_RETAINED_BUFFER_SIZE) {
+			buffers.remove();
+		}
+	}
+
+	@Override
+	public String toString() {
+		try {
+			final CharBuffer buffer = writeToBuffer();
+			final String value = buffer.sb.toString();
+			releaseBuffer(buffer);
+			return value;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class Serializer extends StdSerializer<CallTreeTagValue> {
+
+		public Serializer() {
+			super(CallTreeTagValue.class);
+		}
+
+		@Override
+		public void serialize(CallTreeTagValue value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			final CharBuffer buffer = value.writeToBuffer();
+			gen.writeString(buffer.toCharArray(), 0, buffer.sb.length());
+			releaseBuffer(buffer);
+		}
+	}
+
+	/**
+	 * A {@link Writer} which appends to a reusable {@link StringBuilder}
+	 */
+	private static class CharBuffer extends Writer {
+
+		private final StringBuilder sb = new StringBuilder(4096);
+		private char[] chars = new char[0];
+		private char[] scratch = new char[256];
+
+		private void reset() {
+			sb.setLength(0);
+		}
+
+		/**
+		 * Returns an array which contains the current content of the buffer. The array might be larger than the
+		 * content and is reused.
+		 */
+		private char[] toCharArray() {
+			if (chars.length < sb.length()) {
+				chars = new char[sb.capacity()];
+			}
+			sb.getChars(0, sb.length(), chars, 0);
+			return chars;
+		}
+
+		/**
+		 * Copies a part of the string into a scratch array which is not related to the content of the buffer
+		 */
+		private char[] copy(String s, int start, int end) {
+			if (scratch.length < end - start) {
+				scratch = new char[end - start];
+			}
+			s.getChars(start, end, scratch, 0);
+			return scratch;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			sb.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			sb.append(str, off, off + len);
+		}
+
+		@Override
+		public void write(int c) {
+			sb.append((char) c);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
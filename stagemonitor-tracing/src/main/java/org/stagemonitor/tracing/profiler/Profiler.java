@@ -7,63 +7,314 @@ public final class Profiler {
 
 	public static final long MIN_EXECUTION_TIME_NANOS = Stagemonitor.getPlugin(TracingPlugin.class).getMinExecutionTimeNanos();
 
-	private static final ThreadLocal<CallStackElement> methodCallParent = new ThreadLocal<CallStackElement>();
+	/**
+	 * The maximum number of nodes of the call tree of a thread, including the root
+	 */
+	public static final int MAX_CALL_TREE_NODES = getMaxCallTreeNodes();
+
+	private static final boolean useCallTreeArena = Stagemonitor.getPlugin(TracingPlugin.class).isProfilerCallTreeArenaActive();
+
+	/**
+	 * A lower bound of the time the profiler adds to each profiled method call, which is dominated by the timestamps
+	 * taken when the call is started and stopped
+	 */
+	private static final long ESTIMATED_OVERHEAD_PER_CALL_NANOS = 2 * measureTimestampNanos();
+
+	private static final ThreadLocal<CallTreeState> callTreeState = new ThreadLocal<CallTreeState>() {
+		@Override
+		protected CallTreeState initialValue() {
+			return new CallTreeState();
+		}
+	};
+
+	private static final ThreadLocal<CallTreeArena> callTreeArena = new ThreadLocal<CallTreeArena>() {
+		@Override
+		protected CallTreeArena initialValue() {
+			return new CallTreeArena(MAX_CALL_TREE_NODES);
+		}
+	};
 
 	private Profiler() {
 	}
 
+	private static long measureTimestampNanos() {
+		final int timestamps = 1000;
+		long min = Long.MAX_VALUE;
+		long sum = 0;
+		for (int round = 0; round < 10; round++) {
+			final long start = System.nanoTime();
+			for (int i = 0; i < timestamps; i++) {
+				sum += System.nanoTime();
+			}
+			min = Math.min(min, (System.nanoTime() - start) / timestamps);
+		}
+		// makes sure the timestamps are not optimized away
+		return sum != 0 ? Math.max(min, 1) : 1;
+	}
+
+	private static int getMaxCallTreeNodes() {
+		final int maxCallTreeNodes = Stagemonitor.getPlugin(TracingPlugin.class).getMaxCallTreeNodes();
+		return maxCallTreeNodes > 0 ? maxCallTreeNodes : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Starts a method call whose signature has been registered at the {@link SignatureRegistry}
+	 *
+	 * @param signatureId the id returned by {@link SignatureRegistry#register(String)}
+	 */
+	public static void start(int signatureId) {
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.start(signatureId, System.nanoTime());
+			}
+			return;
+		}
+		final CallTreeState state = callTreeState.get();
+		if (state.methodCallParent != null && state.tryStart()) {
+			state.methodCallParent = CallStackElement.create(state.methodCallParent, SignatureRegistry.getSignature(signatureId));
+		}
+	}
+
 	public static void start(String signature) {
-		final CallStackElement parent = methodCallParent.get();
-		if (parent != null) {
-			methodCallParent.set(CallStackElement.create(parent, signature));
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.start(signature, System.nanoTime());
+			}
+			return;
+		}
+		final CallTreeState state = callTreeState.get();
+		if (state.methodCallParent != null && state.tryStart()) {
+			state.methodCallParent = CallStackElement.create(state.methodCallParent, signature);
 		}
 	}
 
 	public static void stop() {
-		final CallStackElement currentElement = methodCallParent.get();
-		if (currentElement != null) {
-			methodCallParent.set(currentElement.executionStopped(System.nanoTime(), MIN_EXECUTION_TIME_NANOS));
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.stop(System.nanoTime(), MIN_EXECUTION_TIME_NANOS);
+			}
+			return;
+		}
+		final CallTreeState state = callTreeState.get();
+		if (state.methodCallParent != null && !state.stopSkippedCall()) {
+			stop(state);
+		}
+	}
+
+	/**
+	 * Stops the current method call and instantly removes it from the call tree if it was faster than the min
+	 * execution time
+	 *
+	 * @return whether the method call has been removed
+	 */
+	private static boolean stop(CallTreeState state) {
+		final CallStackElement currentElement = state.methodCallParent;
+		final long timestamp = System.nanoTime();
+		// executionTime is initialized to start timestamp
+		final boolean remove = currentElement.getParent() != null
+				&& timestamp - currentElement.getExecutionTime() < MIN_EXECUTION_TIME_NANOS;
+		if (remove) {
+			// count before the subtree is recycled
+			state.liveNodes -= currentElement.countNodes();
+		}
+		state.methodCallParent = currentElement.executionStopped(timestamp, MIN_EXECUTION_TIME_NANOS);
+		return remove;
+	}
+
+	/**
+	 * Stops the current method call like {@link #stop()} and removes it from the call tree, if it does not have
+	 * any children.
+	 */
+	public static void stopAndRemoveIfNoChildren() {
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.stopAndRemoveIfNoChildren(System.nanoTime(), MIN_EXECUTION_TIME_NANOS);
+			}
+			return;
+		}
+		final CallTreeState state = callTreeState.get();
+		final CallStackElement currentElement = state.methodCallParent;
+		if (currentElement != null && !state.stopSkippedCall() && !stop(state) && currentElement.getChildren().isEmpty()) {
+			currentElement.remove();
+			state.liveNodes--;
 		}
 	}
 
 	public static void addIOCall(String signature, long executionTimeNanos) {
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.addCall(signature, true, executionTimeNanos);
+			}
+			return;
+		}
 		addCall(signature + ' ', executionTimeNanos);
 	}
 
 	public static void addCall(String signature, long executionTimeNanos) {
-		final CallStackElement currentCall = methodCallParent.get();
-		CallStackElement.create(currentCall, signature, executionTimeNanos);
+		if (useCallTreeArena) {
+			final CallTreeArena arena = callTreeArena.get();
+			if (arena.isActive()) {
+				arena.addCall(signature, false, executionTimeNanos);
+			}
+			return;
+		}
+		final CallTreeState state = callTreeState.get();
+		if (state.methodCallParent != null && state.tryAdd()) {
+			CallStackElement.create(state.methodCallParent, signature, executionTimeNanos);
+		}
 	}
 
 	public static boolean isProfilingActive() {
-		return methodCallParent.get() != null;
+		if (useCallTreeArena) {
+			return callTreeArena.get().isActive();
+		}
+		return callTreeState.get().methodCallParent != null;
 	}
 
 	/**
 	 * Activates the profiling for the current thread by setting the provided
 	 * {@link CallStackElement} as the root of the call stack
+	 * <p/>
+	 * If the call tree arena is active, the children of the root are only added by
+	 * {@link #materializeCallTree(CallStackElement)}.
 	 *
 	 * @return the root of the call stack
 	 */
 	public static CallStackElement activateProfiling(String signature) {
 		CallStackElement root = CallStackElement.createRoot(signature);
-		methodCallParent.set(root);
+		if (useCallTreeArena) {
+			callTreeArena.get().activate(root);
+		} else {
+			callTreeState.get().reset(root);
+		}
+		return root;
+	}
+
+	/**
+	 * Makes sure the children of the provided root have been added.
+	 * <p/>
+	 * If the call tree arena is active, the calls recorded by the current thread since
+	 * {@link #activateProfiling(String)} are converted into {@link CallStackElement}s and added to the root.
+	 * This has to be called before {@link #clearMethodCallParent()}.
+	 *
+	 * @param root the root returned by {@link #activateProfiling(String)}
+	 * @return the root
+	 */
+	public static CallStackElement materializeCallTree(CallStackElement root) {
+		if (useCallTreeArena) {
+			return callTreeArena.get().materialize(root);
+		}
 		return root;
 	}
 
+	/**
+	 * Estimates the time the profiler has added to the method calls of the current thread since
+	 * {@link #activateProfiling(String)}. This has to be called before {@link #clearMethodCallParent()}.
+	 *
+	 * @return the estimated overhead of the profiler in nanoseconds
+	 */
+	public static long getEstimatedOverheadNanos() {
+		final int startedCalls;
+		if (useCallTreeArena) {
+			startedCalls = callTreeArena.get().getStartedCalls();
+		} else {
+			startedCalls = callTreeState.get().startedCalls;
+		}
+		return startedCalls * ESTIMATED_OVERHEAD_PER_CALL_NANOS;
+	}
+
 	public static void deactivateProfiling() {
-		methodCallParent.set(null);
+		if (useCallTreeArena) {
+			callTreeArena.get().clear();
+		} else {
+			callTreeState.get().methodCallParent = null;
+		}
 	}
 
 	/**
-	 * Adds the current
-	 * @return
+	 * Returns the {@link CallStackElement} of the current method call.
+	 * <p/>
+	 * Always returns <code>null</code> if the call tree arena is active, as the calls are not represented by
+	 * {@link CallStackElement}s while profiling.
+	 *
+	 * @return the current {@link CallStackElement}
 	 */
 	public static CallStackElement getMethodCallParent() {
-		return methodCallParent.get();
+		if (useCallTreeArena) {
+			return null;
+		}
+		return callTreeState.get().methodCallParent;
 	}
 
 	public static void clearMethodCallParent() {
-		methodCallParent.remove();
+		if (useCallTreeArena) {
+			// keeps the arena for the next call tree of this thread
+			callTreeArena.get().clear();
+		} else {
+			callTreeState.get().methodCallParent = null;
+		}
+	}
+
+	/**
+	 * The call tree of a thread if the call tree arena is not active.
+	 * <p/>
+	 * Besides the current method call, the nodes of the call tree are counted, so that the number of nodes can be
+	 * limited to {@link #MAX_CALL_TREE_NODES}. Keeping both in the same object means that a method call only needs a
+	 * single {@link ThreadLocal} lookup.
+	 */
+	private static class CallTreeState {
+		private CallStackElement methodCallParent;
+		private int liveNodes;
+		/**
+		 * The number of started calls which have not been recorded because the limit has been reached
+		 */
+		private int skippedCalls;
+		/**
+		 * The number of calls which have been started since {@link #reset(CallStackElement)}, including the ones
+		 * which have been skipped or removed
+		 */
+		private int startedCalls;
+
+		private void reset(CallStackElement root) {
+			methodCallParent = root;
+			// the root
+			liveNodes = 1;
+			skippedCalls = 0;
+			startedCalls = 0;
+		}
+
+		private boolean tryStart() {
+			startedCalls++;
+			if (tryAdd()) {
+				return true;
+			}
+			skippedCalls++;
+			return false;
+		}
+
+		private boolean tryAdd() {
+			// no calls are recorded within a call which has not been recorded either
+			if (skippedCalls > 0 || liveNodes >= MAX_CALL_TREE_NODES) {
+				return false;
+			}
+			liveNodes++;
+			return true;
+		}
+
+		/**
+		 * @return <code>true</code> if the stopped call has not been recorded
+		 */
+		private boolean stopSkippedCall() {
+			if (skippedCalls > 0) {
+				skippedCalls--;
+				return true;
+			}
+			return false;
+		}
 	}
 }
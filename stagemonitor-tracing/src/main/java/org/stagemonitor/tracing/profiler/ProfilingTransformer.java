@@ -45,8 +45,8 @@ public class ProfilingTransformer extends StagemonitorByteBuddyTransformer {
 	}
 
 	@Advice.OnMethodEnter
-	public static void enter(@ProfilerSignature String signature) {
-		Profiler.start(signature);
+	public static void enter(@ProfilerSignature int signatureId) {
+		Profiler.start(signatureId);
 	}
 
 	@Advice.OnMethodExit(onThrowable = Throwable.class)
@@ -69,6 +69,10 @@ public class ProfilingTransformer extends StagemonitorByteBuddyTransformer {
 	public @interface ProfilerSignature {
 	}
 
+	/**
+	 * Registers the signature of the instrumented method at the {@link SignatureRegistry} and resolves to the id of
+	 * the signature
+	 */
 	public static class ProfilerDynamicValue extends StagemonitorDynamicValue<ProfilerSignature> {
 
 		@Override
@@ -84,7 +88,7 @@ public class ProfilingTransformer extends StagemonitorByteBuddyTransformer {
 								   Assigner assigner, boolean initialized) {
 			final String returnType = method.getReturnType().asErasure().getSimpleName();
 			final String className = method.getDeclaringType().getTypeName();
-			return String.format("%s %s.%s(%s)", returnType, className, method.getName(), getSignature(method));
+			return SignatureRegistry.register(String.format("%s %s.%s(%s)", returnType, className, method.getName(), getSignature(method)));
 		}
 
 		public String getSignature(MethodDescription instrumentedMethod) {
@@ -0,0 +1,66 @@
+package org.stagemonitor.tracing.profiler;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns a stable id to the signature of each profiled method.
+ * <p/>
+ * The ids are assigned when a method is instrumented by the {@link ProfilingTransformer} and are embedded as
+ * constants into the instrumented method. That way, the profiler only has to record an int per method call and the
+ * signature is only resolved when the call tree is serialized.
+ */
+public final class SignatureRegistry {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final ConcurrentMap<String, Integer> signatureIds = new ConcurrentHashMap<String, Integer>();
+	private static volatile String[] signatures = new String[INITIAL_CAPACITY];
+	private static int size;
+
+	private SignatureRegistry() {
+	}
+
+	/**
+	 * Returns the id of the signature and registers it if it is not registered yet.
+	 * <p/>
+	 * This method should only be called when a method is instrumented as registered signatures are never removed.
+	 *
+	 * @param signature the signature of the method
+	 * @return the id of the signature
+	 */
+	public static int register(String signature) {
+		final Integer signatureId = signatureIds.get(signature);
+		if (signatureId != null) {
+			return signatureId;
+		}
+		synchronized (SignatureRegistry.class) {
+			final Integer existingSignatureId = signatureIds.get(signature);
+			if (existingSignatureId != null) {
+				return existingSignatureId;
+			}
+			String[] currentSignatures = signatures;
+			if (size == currentSignatures.length) {
+				currentSignatures = Arrays.copyOf(currentSignatures, size * 2);
+			}
+			final int newSignatureId = size++;
+			currentSignatures[newSignatureId] = signature;
+			// the volatile write publishes the new entry to threads which resolve the signature
+			signatures = currentSignatures;
+			signatureIds.put(signature, newSignatureId);
+			return newSignatureId;
+		}
+	}
+
+	/**
+	 * Resolves the id which has been returned by {@link #register(String)}
+	 *
+	 * @param signatureId the id of the signature
+	 * @return the signature
+	 */
+	public static String getSignature(int signatureId) {
+		return signatures[signatureId];
+	}
+
+}
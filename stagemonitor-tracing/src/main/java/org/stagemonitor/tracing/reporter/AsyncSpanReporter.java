@@ -0,0 +1,168 @@
+package org.stagemonitor.tracing.reporter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.util.ExecutorUtils;
+import org.stagemonitor.tracing.SpanContextInformation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+/**
+ * Reports spans to a single {@link SpanReporter} in a dedicated worker thread.
+ * <p/>
+ * Each {@link SpanReporter} has its own worker and its own bounded queue. A slow reporter, for example Elasticsearch
+ * under load, can thus neither delay the other reporters nor make the queue grow indefinitely. If the queue is full,
+ * the span is dropped for this reporter only.
+ * <p/>
+ * The number of spans in the queue and the dropped spans are tracked per reporter in the metrics
+ * <code>span_reporter_queued</code> and <code>span_reporter_dropped</code>.
+ */
+class AsyncSpanReporter {
+
+	static final MetricName.MetricNameTemplate QUEUED_SPANS = name("span_reporter_queued").templateFor("reporter");
+	static final MetricName.MetricNameTemplate DROPPED_SPANS = name("span_reporter_dropped").templateFor("reporter");
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncSpanReporter.class);
+
+	private static final long DEFAULT_CLOSE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+
+	private final SpanReporter spanReporter;
+	private final long closeTimeoutMs;
+	private final ThreadPoolExecutor worker;
+	private final Metric2Registry metricRegistry;
+	private final MetricName queuedSpansMetricName;
+	private final Meter droppedSpans;
+	private final AtomicBoolean dropLogged = new AtomicBoolean();
+
+	/**
+	 * @param spanReporter   the reporter to report the spans to
+	 * @param metricRegistry the registry for the queue metrics
+	 * @param queueCapacity  the maximum number of spans which are queued for this reporter
+	 */
+	AsyncSpanReporter(SpanReporter spanReporter, Metric2Registry metricRegistry, int queueCapacity) {
+		this(spanReporter, metricRegistry, queueCapacity, DEFAULT_CLOSE_TIMEOUT_MS);
+	}
+
+	/**
+	 * @param closeTimeoutMs the time {@link #close()} waits for the queued spans to be reported
+	 */
+	AsyncSpanReporter(SpanReporter spanReporter, Metric2Registry metricRegistry, int queueCapacity, long closeTimeoutMs) {
+		this.spanReporter = spanReporter;
+		this.closeTimeoutMs = closeTimeoutMs;
+		this.metricRegistry = metricRegistry;
+		final String reporterName = getReporterName(spanReporter);
+		worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+				new ExecutorUtils.NamedThreadFactory("async-span-reporter-" + reporterName));
+		droppedSpans = metricRegistry.meter(DROPPED_SPANS.build(reporterName));
+		queuedSpansMetricName = QUEUED_SPANS.build(reporterName);
+		// replaces the gauge of a previous instance
+		metricRegistry.remove(queuedSpansMetricName);
+		metricRegistry.register(queuedSpansMetricName, new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return worker.getQueue().size();
+			}
+		});
+	}
+
+	private static String getReporterName(SpanReporter spanReporter) {
+		final String simpleName = spanReporter.getClass().getSimpleName();
+		if (simpleName.isEmpty()) {
+			// anonymous class
+			return spanReporter.getClass().getName();
+		}
+		return simpleName;
+	}
+
+	SpanReporter getSpanReporter() {
+		return spanReporter;
+	}
+
+	/**
+	 * Queues the span for this reporter, if the reporter is active
+	 */
+	void reportAsync(final SpanContextInformation spanContext) {
+		if (!spanReporter.isActive(spanContext)) {
+			return;
+		}
+		try {
+			worker.execute(new Runnable() {
+				@Override
+				public void run() {
+					doReport(spanContext);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			droppedSpans.mark();
+			if (!worker.isShutdown() && dropLogged.compareAndSet(false, true)) {
+				logger.warn("The queue of {} is full. This could be due to a unreachable service such as " +
+								"elasticsearch or due to a spike in incoming requests. Further spans which can't be " +
+								"queued are dropped and counted in the metric {}. Consider increasing the capacity " +
+								"limit with the configuration key '{}'", spanReporter.getClass().getName(),
+						DROPPED_SPANS.build(getReporterName(spanReporter)), CorePlugin.POOLS_QUEUE_CAPACITY_LIMIT_KEY);
+			}
+		}
+	}
+
+	/**
+	 * Reports the span in the current thread, if the reporter is active
+	 */
+	void report(SpanContextInformation spanContext) {
+		if (spanReporter.isActive(spanContext)) {
+			doReport(spanContext);
+		}
+	}
+
+	private void doReport(SpanContextInformation spanContext) {
+		try {
+			spanReporter.report(spanContext);
+		} catch (Exception e) {
+			logger.warn(e.getMessage() + " (this exception is ignored)", e);
+		}
+	}
+
+	/**
+	 * Shuts down the worker and closes the {@link SpanReporter}
+	 * <p/>
+	 * The spans which are already queued are reported before the {@link SpanReporter} is closed. Spans which could not
+	 * be reported within the close timeout are counted as dropped.
+	 */
+	void close() {
+		worker.shutdown();
+		try {
+			if (!worker.awaitTermination(closeTimeoutMs, TimeUnit.MILLISECONDS)) {
+				dropQueuedSpans();
+			}
+		} catch (InterruptedException e) {
+			dropQueuedSpans();
+			Thread.currentThread().interrupt();
+		}
+		metricRegistry.remove(queuedSpansMetricName);
+		try {
+			spanReporter.close();
+		} catch (Exception e) {
+			logger.warn(e.getMessage() + " (this exception is ignored)", e);
+		}
+	}
+
+	private void dropQueuedSpans() {
+		final int dropped = worker.shutdownNow().size();
+		if (dropped > 0) {
+			droppedSpans.mark(dropped);
+			logger.warn("{} did not report the queued spans within {} ms, dropping {} spans",
+					spanReporter.getClass().getName(), closeTimeoutMs, dropped);
+		}
+	}
+}
@@ -9,19 +9,25 @@ import com.fasterxml.jackson.databind.module.SimpleSerializers;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import org.stagemonitor.core.util.JsonUtils;
-import org.stagemonitor.util.StringUtils;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import io.opentracing.tag.Tags;
 
 /**
  * A span which supports readback of tags and meta data
+ * <p/>
+ * The tags are usually set by the thread which owns the span, but they may also be set by other threads, for example
+ * when the request is processed asynchronously. That's why accessing the tags is synchronized on the span. As long as
+ * only one thread accesses a span, the lock is uncontended and therefore cheap.
  */
 public class ReadbackSpan {
 
@@ -37,7 +43,7 @@ public class ReadbackSpan {
 	private long duration;
 	private String timestamp;
 
-	private Map<String, Object> tags = new HashMap<String, Object>();
+	private final ReadbackSpanTags tags = new ReadbackSpanTags();
 
 	public String getId() {
 		return id;
@@ -87,8 +93,19 @@ public class ReadbackSpan {
 		this.timestamp = timestamp;
 	}
 
+	/**
+	 * Returns a read-only view of the tags of this span, which reflects tags that are set later on
+	 * <p/>
+	 * Use {@link #setTag(String, Object)} to add tags. If you only need a single tag, use {@link #getTag(String)}.
+	 *
+	 * @return an unmodifiable view of the tags of this span
+	 */
 	public Map<String, Object> getTags() {
-		return tags;
+		return new TagsView();
+	}
+
+	public synchronized Object getTag(String key) {
+		return tags.get(key);
 	}
 
 	public void setTag(String key, Object value) {
@@ -99,6 +116,69 @@ public class ReadbackSpan {
 		}
 	}
 
+	private synchronized int getTagCount() {
+		return tags.size();
+	}
+
+	private synchronized Map.Entry<String, Object> getTagEntry(int index) {
+		return new AbstractMap.SimpleImmutableEntry<String, Object>(tags.getKey(index), tags.getValue(index));
+	}
+
+	private class TagsView extends AbstractMap<String, Object> {
+
+		@Override
+		public Object get(Object key) {
+			return key instanceof String ? getTag((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			// tags can't have null values
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return getTagCount();
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						// tags are never removed, so the indexes of the tags are stable
+						private int index;
+
+						@Override
+						public boolean hasNext() {
+							return index < getTagCount();
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							return getTagEntry(index++);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return getTagCount();
+				}
+			};
+		}
+	}
+
 	public static class SpanJsonModule extends Module {
 
 		private static final double MICROSECONDS_OF_MILLISECOND = TimeUnit.MILLISECONDS.toMicros(1);
@@ -120,20 +200,13 @@ public class ReadbackSpan {
 				@Override
 				public void serialize(ReadbackSpan span, JsonGenerator gen, SerializerProvider serializers) throws IOException {
 					gen.writeStartObject();
-					final Map<String, Object> nestedTags;
-					// synchronizing on the span avoids ConcurrentModificationExceptions
-					// in case other threads are for example adding tags while the span is converted to JSON
+					final boolean errorTagWritten;
+					// other threads might still be adding tags while the span is converted to JSON
 					synchronized (span) {
-						nestedTags = convertDottedKeysIntoNestedObject(span.getTags());
-					}
-					for (Map.Entry<String, Object> entry : nestedTags.entrySet()) {
-						final Object value = entry.getValue();
-						if (value != null) {
-							gen.writeObjectField(entry.getKey(), value);
-						}
+						errorTagWritten = writeNestedTags(span.tags, gen);
 					}
 					// always include error tag so we can have a successful/error filter in Kibana
-					if (!nestedTags.containsKey(Tags.ERROR.getKey())) {
+					if (!errorTagWritten) {
 						gen.writeBooleanField("error", false);
 					}
 
@@ -169,52 +242,127 @@ public class ReadbackSpan {
 		 *         }
 		 *     }
 		 * </pre>
+		 * <p/>
+		 * The nested objects are written directly, without building intermediate maps. To do that, the tags are sorted
+		 * by their path segments, so that the tags which share a common path are adjacent and a tag whose key is a
+		 * prefix of other tags comes right before them. The order of the segments itself does not matter, so they are
+		 * compared by their hash codes first.
 		 *
-		 * @param tags the span tags to convert
-		 * @return the span tags as nested objects
+		 * @param tags the span tags to write
+		 * @param gen  the generator to write the tags to
+		 * @return <code>true</code>, if a tag or an object with the name <code>error</code> has been written
+		 */
+		private static boolean writeNestedTags(ReadbackSpanTags tags, JsonGenerator gen) throws IOException {
+			final int size = tags.size();
+			final String[][] paths = new String[size][];
+			final int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				paths[i] = tags.getPath(i);
+				order[i] = i;
+			}
+			sortByPath(order, paths);
+
+			boolean errorTagWritten = false;
+			String[] openPath = null;
+			int depth = 0;
+			String[] previousPath = null;
+			for (int i = 0; i < size; i++) {
+				final String[] path = paths[order[i]];
+				if (path.length == 0) {
+					continue;
+				}
+				if (previousPath != null && isPrefix(previousPath, path)) {
+					if (previousPath.length == path.length) {
+						// keys like a..b and a.b have the same path
+						continue;
+					}
+					throw new IllegalArgumentException("Ambiguous mapping for " + tags.getKey(order[i]));
+				}
+				final int commonDepth = getCommonDepth(openPath, depth, path);
+				for (; depth > commonDepth; depth--) {
+					gen.writeEndObject();
+				}
+				for (; depth < path.length - 1; depth++) {
+					gen.writeObjectFieldStart(path[depth]);
+				}
+				openPath = path;
+				writeTagField(gen, path[path.length - 1], tags.getValue(order[i]));
+				errorTagWritten |= Tags.ERROR.getKey().equals(path[0]);
+				previousPath = path;
+			}
+			for (; depth > 0; depth--) {
+				gen.writeEndObject();
+			}
+			return errorTagWritten;
+		}
+
+		private static void writeTagField(JsonGenerator gen, String fieldName, Object value) throws IOException {
+			if (value instanceof String) {
+				gen.writeStringField(fieldName, (String) value);
+			} else if (value instanceof Boolean) {
+				gen.writeBooleanField(fieldName, (Boolean) value);
+			} else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+				gen.writeNumberField(fieldName, ((Number) value).longValue());
+			} else if (value instanceof Double) {
+				gen.writeNumberField(fieldName, (Double) value);
+			} else {
+				gen.writeObjectField(fieldName, value);
+			}
+		}
+
+		/**
+		 * Insertion sort, as spans usually only have a few dozen tags
 		 */
-		private Map<String, Object> convertDottedKeysIntoNestedObject(Map<String, Object> tags) {
-			Map<String, Object> nestedTags = new HashMap<String, Object>();
-			for (Map.Entry<String, Object> entry : tags.entrySet()) {
-				if (entry.getKey().indexOf('.') >= 0) {
-					doConvertDots(nestedTags, entry.getKey(), entry.getValue());
-				} else {
-					nestedTags.put(entry.getKey(), entry.getValue());
+		private static void sortByPath(int[] order, String[][] paths) {
+			for (int i = 1; i < order.length; i++) {
+				final int current = order[i];
+				int j = i - 1;
+				for (; j >= 0 && comparePaths(paths[order[j]], paths[current]) > 0; j--) {
+					order[j + 1] = order[j];
 				}
+				order[j + 1] = current;
 			}
+		}
 
-			return nestedTags;
+		private static int comparePaths(String[] path1, String[] path2) {
+			final int length = Math.min(path1.length, path2.length);
+			for (int i = 0; i < length; i++) {
+				final String segment1 = path1[i];
+				final String segment2 = path2[i];
+				if (segment1.hashCode() != segment2.hashCode()) {
+					return segment1.hashCode() < segment2.hashCode() ? -1 : 1;
+				}
+				final int result = segment1.compareTo(segment2);
+				if (result != 0) {
+					return result;
+				}
+			}
+			return path1.length - path2.length;
 		}
 
-		private void doConvertDots(Map<String, Object> nestedTags, String key, Object value) {
-			final String[] pathSegments = StringUtils.split(key, '.');
-			Map<String, Object> path = nestedTags;
-			for (int i = 0; i < pathSegments.length; i++) {
-				String pathSegment = pathSegments[i];
-				if (i + 1 < pathSegments.length) {
-					// starting.segments
-					path = getNewNestedPath(path, pathSegment, key);
-				} else {
-					// last.segment
-					path.put(pathSegment, value);
+		private static boolean isPrefix(String[] prefix, String[] path) {
+			if (prefix.length > path.length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length; i++) {
+				if (!prefix[i].equals(path[i])) {
+					return false;
 				}
 			}
+			return true;
 		}
 
-		private Map<String, Object> getNewNestedPath(Map<String, Object> path, String pathSegment, String fullPath) {
-			final Map<String, Object> newPath;
-			final Object existingPath = path.get(pathSegment);
-			if (existingPath != null) {
-				if (existingPath instanceof Map) {
-					newPath = (Map<String, Object>) existingPath;
-				} else {
-					throw new IllegalArgumentException("Ambiguous mapping for " + fullPath);
+		/**
+		 * @return the number of currently open objects which are also parents of the path
+		 */
+		private static int getCommonDepth(String[] openPath, int depth, String[] path) {
+			final int maxDepth = Math.min(depth, path.length - 1);
+			for (int i = 0; i < maxDepth; i++) {
+				if (!openPath[i].equals(path[i])) {
+					return i;
 				}
-			} else {
-				newPath = new LinkedHashMap<String, Object>();
-				path.put(pathSegment, newPath);
 			}
-			return newPath;
+			return maxDepth;
 		}
 	}
 }
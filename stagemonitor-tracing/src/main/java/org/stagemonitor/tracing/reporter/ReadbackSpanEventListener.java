@@ -3,6 +3,8 @@ package org.stagemonitor.tracing.reporter;
 import org.stagemonitor.tracing.B3HeaderFormat;
 import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.TracingPlugin;
+import org.stagemonitor.tracing.profiler.CallTreeTagValue;
+import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
@@ -95,7 +97,12 @@ public class ReadbackSpanEventListener implements SpanEventListener {
 			readbackSpan.setDuration(durationNanos);
 			final String timestamp = StringUtils.timestampAsIsoString(spanWrapper.getStartTimestampMillis());
 			readbackSpan.setTimestamp(timestamp);
-			SpanContextInformation.forSpan(spanWrapper).setReadbackSpan(readbackSpan);
+			final SpanContextInformation contextInfo = SpanContextInformation.forSpan(spanWrapper);
+			if (contextInfo.isCallTreeIncluded()) {
+				readbackSpan.setTag(SpanUtils.CALL_TREE_JSON, CallTreeTagValue.json(contextInfo.getCallTree()));
+				readbackSpan.setTag(SpanUtils.CALL_TREE_ASCII, CallTreeTagValue.ascii(contextInfo.getCallTree()));
+			}
+			contextInfo.setReadbackSpan(readbackSpan);
 		}
 	}
 
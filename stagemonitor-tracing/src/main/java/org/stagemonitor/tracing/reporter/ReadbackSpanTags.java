@@ -0,0 +1,195 @@
+package org.stagemonitor.tracing.reporter;
+
+import org.stagemonitor.tracing.utils.SpanUtils;
+import org.stagemonitor.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.opentracing.tag.Tags;
+
+/**
+ * Stores the tags of a {@link ReadbackSpan} in parallel arrays.
+ * <p/>
+ * The index of a tag is found via a small open addressing hash table instead of a {@link java.util.HashMap}, so that
+ * setting a tag does not allocate an entry object.
+ * <p/>
+ * The path segments of the dotted keys, which are needed for the JSON serialization, are cached across spans, as
+ * most spans have the same tag keys. Well known tag keys like <code>http.url</code> or <code>method</code> are
+ * pre-registered. Other keys are registered when they are first serialized, until {@link #MAX_REGISTERED_KEYS} is
+ * reached, which protects against keys of unbounded cardinality like request parameters.
+ * <p/>
+ * This class is not thread safe, the {@link ReadbackSpan} synchronizes the access to its tags.
+ */
+final class ReadbackSpanTags {
+
+	private static final int INITIAL_CAPACITY = 16;
+	static final int MAX_REGISTERED_KEYS = 1000;
+
+	private static final String[] WELL_KNOWN_KEYS = {
+			Tags.SPAN_KIND.getKey(),
+			Tags.ERROR.getKey(),
+			Tags.COMPONENT.getKey(),
+			Tags.SAMPLING_PRIORITY.getKey(),
+			Tags.HTTP_URL.getKey(),
+			Tags.HTTP_METHOD.getKey(),
+			Tags.HTTP_STATUS.getKey(),
+			Tags.PEER_SERVICE.getKey(),
+			Tags.PEER_HOSTNAME.getKey(),
+			Tags.PEER_HOST_IPV4.getKey(),
+			Tags.PEER_HOST_IPV6.getKey(),
+			Tags.PEER_PORT.getKey(),
+			Tags.DB_TYPE.getKey(),
+			Tags.DB_INSTANCE.getKey(),
+			Tags.DB_USER.getKey(),
+			Tags.DB_STATEMENT.getKey(),
+			SpanUtils.OPERATION_TYPE,
+			SpanUtils.USERNAME,
+			SpanUtils.IPV4_STRING,
+			SpanUtils.CALL_TREE_JSON,
+			SpanUtils.CALL_TREE_ASCII,
+			"method",
+			"duration_cpu",
+			"duration_cpu_ms",
+			"exception.message",
+			"exception.class",
+			"exception.stack_trace",
+			"http.referring_site",
+			"bytes_written",
+			"session_id",
+			"tracking.unique_visitor_id"
+	};
+	private static final ConcurrentMap<String, String[]> registeredPaths = new ConcurrentHashMap<String, String[]>();
+
+	static {
+		for (String key : WELL_KNOWN_KEYS) {
+			registeredPaths.put(key, splitPath(key));
+		}
+	}
+
+	private String[] keys;
+	private Object[] values;
+	private int size;
+	/**
+	 * An open addressing hash table which maps the hash code of a key to its index + 1 in the parallel arrays
+	 */
+	private int[] hashTable;
+
+	/**
+	 * Sets a tag, replacing the previous value of the tag
+	 */
+	void put(String key, Object value) {
+		if (keys == null) {
+			allocate(INITIAL_CAPACITY);
+		}
+		int bucket = getBucket(key);
+		for (int index = hashTable[bucket] - 1; index >= 0; index = hashTable[bucket] - 1) {
+			if (key.equals(keys[index])) {
+				values[index] = value;
+				return;
+			}
+			bucket = (bucket + 1) & (hashTable.length - 1);
+		}
+		keys[size] = key;
+		values[size] = value;
+		hashTable[bucket] = ++size;
+		if (size == keys.length) {
+			allocate(size * 2);
+		}
+	}
+
+	Object get(String key) {
+		if (keys == null) {
+			return null;
+		}
+		int bucket = getBucket(key);
+		for (int index = hashTable[bucket] - 1; index >= 0; index = hashTable[bucket] - 1) {
+			if (key.equals(keys[index])) {
+				return values[index];
+			}
+			bucket = (bucket + 1) & (hashTable.length - 1);
+		}
+		return null;
+	}
+
+	int size() {
+		return size;
+	}
+
+	String getKey(int index) {
+		return keys[index];
+	}
+
+	Object getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return the segments of the dotted key of the tag, for example <code>[http, url]</code> for
+	 * <code>http.url</code>
+	 */
+	String[] getPath(int index) {
+		final String key = keys[index];
+		String[] path = registeredPaths.get(key);
+		if (path == null) {
+			path = splitPath(key);
+			if (registeredPaths.size() < MAX_REGISTERED_KEYS) {
+				registeredPaths.putIfAbsent(key, path);
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Like {@link StringUtils#split(String, char)}, but without an intermediate list
+	 */
+	static String[] splitPath(String key) {
+		int segments = 0;
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != '.' && (i == 0 || key.charAt(i - 1) == '.')) {
+				segments++;
+			}
+		}
+		if (segments == 1 && key.charAt(0) != '.' && key.charAt(key.length() - 1) != '.') {
+			return new String[]{key};
+		}
+		final String[] path = new String[segments];
+		int segment = 0;
+		int start = 0;
+		for (int i = 0; i <= key.length(); i++) {
+			if (i == key.length() || key.charAt(i) == '.') {
+				if (i > start) {
+					path[segment++] = key.substring(start, i);
+				}
+				start = i + 1;
+			}
+		}
+		return path;
+	}
+
+	private int getBucket(String key) {
+		final int hashCode = key.hashCode();
+		// spreads the higher bits of the hash code, just like HashMap
+		return (hashCode ^ (hashCode >>> 16)) & (hashTable.length - 1);
+	}
+
+	private void allocate(int capacity) {
+		if (keys == null) {
+			keys = new String[capacity];
+			values = new Object[capacity];
+		} else {
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		// the load factor of the hash table is at most 0.5
+		hashTable = new int[capacity * 2];
+		for (int index = 0; index < size; index++) {
+			int bucket = getBucket(keys[index]);
+			while (hashTable[bucket] != 0) {
+				bucket = (bucket + 1) & (hashTable.length - 1);
+			}
+			hashTable[bucket] = index + 1;
+		}
+	}
+}
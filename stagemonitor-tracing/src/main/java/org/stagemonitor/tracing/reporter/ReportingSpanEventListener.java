@@ -4,34 +4,48 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.configuration.ConfigurationRegistry;
 import org.stagemonitor.core.CorePlugin;
-import org.stagemonitor.core.util.CompletedFuture;
-import org.stagemonitor.core.util.ExecutorUtils;
+import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.RejectedExecutionException;
 
-public class ReportingSpanEventListener extends StatelessSpanEventListener {
+/**
+ * Reports sampled spans to the registered {@link SpanReporter}s.
+ * <p/>
+ * If spans are reported asynchronously, each {@link SpanReporter} has its own worker thread and bounded queue (see
+ * {@link AsyncSpanReporter}), so that a slow reporter does not delay the other ones.
+ */
+public class ReportingSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 	private static final Logger logger = LoggerFactory.getLogger(ReportingSpanEventListener.class);
 
 	private final TracingPlugin tracingPlugin;
-	private final ExecutorService asyncSpanReporterPool;
-	private final List<SpanReporter> spanReporters = new CopyOnWriteArrayList<SpanReporter>();
+	private final List<AsyncSpanReporter> spanReporters = new CopyOnWriteArrayList<AsyncSpanReporter>();
 	private final ConfigurationRegistry configuration;
+	private final Metric2Registry metricRegistry;
+	private final int queueCapacity;
 
 	public ReportingSpanEventListener(ConfigurationRegistry configuration) {
+		this(configuration, Stagemonitor.getMetric2Registry());
+	}
+
+	/**
+	 * @param configuration  the configuration
+	 * @param metricRegistry the registry for the queue depths and the dropped spans of the {@link SpanReporter}s
+	 */
+	public ReportingSpanEventListener(ConfigurationRegistry configuration, Metric2Registry metricRegistry) {
 		this.configuration = configuration;
+		this.metricRegistry = metricRegistry;
 		this.tracingPlugin = configuration.getConfig(TracingPlugin.class);
-		final int threadPoolQueueCapacityLimit = configuration.getConfig(CorePlugin.class).getThreadPoolQueueCapacityLimit();
-		this.asyncSpanReporterPool = ExecutorUtils
-				.createSingleThreadDeamonPool("async-request-reporter", threadPoolQueueCapacityLimit);
+		this.queueCapacity = configuration.getConfig(CorePlugin.class).getThreadPoolQueueCapacityLimit();
 	}
 
 	@Override
@@ -46,42 +60,24 @@ public class ReportingSpanEventListener extends StatelessSpanEventListener {
 		}
 	}
 
-	private Future<?> report(final SpanContextInformation spanContext) {
-		try {
-			if (tracingPlugin.isReportAsync()) {
-				return asyncSpanReporterPool.submit(new Runnable() {
-					@Override
-					public void run() {
-						doReport(spanContext);
-					}
-				});
+	private void report(SpanContextInformation spanContext) {
+		final boolean reportAsync = tracingPlugin.isReportAsync();
+		for (AsyncSpanReporter spanReporter : spanReporters) {
+			if (reportAsync) {
+				spanReporter.reportAsync(spanContext);
 			} else {
-				doReport(spanContext);
-				return new CompletedFuture<Object>(null);
-			}
-		} catch (RejectedExecutionException e) {
-			ExecutorUtils.logRejectionWarning(e);
-			return new CompletedFuture<Object>(null);
-		}
-	}
-
-	private void doReport(SpanContextInformation spanContext) {
-		for (SpanReporter spanReporter : spanReporters) {
-			if (spanReporter.isActive(spanContext)) {
-				try {
-					spanReporter.report(spanContext);
-				} catch (Exception e) {
-					logger.warn(e.getMessage() + " (this exception is ignored)", e);
-				}
+				spanReporter.report(spanContext);
 			}
 		}
 	}
 
 	/**
-	 * Shuts down the internal thread pool
+	 * Shuts down the workers and closes all {@link SpanReporter}s
 	 */
 	public void close() {
-		asyncSpanReporterPool.shutdown();
+		for (AsyncSpanReporter spanReporter : spanReporters) {
+			spanReporter.close();
+		}
 	}
 
 	/**
@@ -90,16 +86,21 @@ public class ReportingSpanEventListener extends StatelessSpanEventListener {
 	 * @param spanReporter the {@link SpanReporter} to add
 	 */
 	public void addReporter(SpanReporter spanReporter) {
-		spanReporters.add(0, spanReporter);
+		spanReporters.add(0, new AsyncSpanReporter(spanReporter, metricRegistry, queueCapacity));
 		spanReporter.init(configuration);
 	}
 
 	boolean isAnyReporterActive(SpanContextInformation spanContext) {
-		for (SpanReporter spanReporter : spanReporters) {
-			if (spanReporter.isActive(spanContext)) {
+		for (AsyncSpanReporter spanReporter : spanReporters) {
+			if (spanReporter.getSpanReporter().isActive(spanContext)) {
 				return true;
 			}
 		}
 		return false;
 	}
+
+	@Override
+	public Set<String> getTagKeys() {
+		return Collections.emptySet();
+	}
 }
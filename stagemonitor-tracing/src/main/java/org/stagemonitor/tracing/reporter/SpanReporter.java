@@ -26,4 +26,12 @@ public abstract class SpanReporter implements StagemonitorSPI {
 	 */
 	public abstract boolean isActive(SpanContextInformation spanContext);
 
+	/**
+	 * Callback method that is called when stagemonitor shuts down.
+	 * <p/>
+	 * Reporters which buffer spans should report the buffered spans here.
+	 */
+	public void close() {
+	}
+
 }
@@ -0,0 +1,123 @@
+package org.stagemonitor.tracing.sampling;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adapts the sampling rates of spans and call trees so that the time spent monitoring requests stays below a
+ * configurable fraction of the request time (the overhead budget).
+ * <p/>
+ * The measured overhead and duration of each request is recorded by {@link #recordRequest(long, long, double)}.
+ * Once per adjustment interval, the overhead of the interval is compared with the budget and the rates are lowered or
+ * raised proportionally. As collecting call trees is more expensive than collecting spans, the call tree rate is
+ * lowered first and raised last.
+ */
+public class AdaptiveSampler {
+
+	/**
+	 * The rates are at most halved or doubled per adjustment which avoids oscillating rates
+	 */
+	private static final double MAX_ADJUSTMENT_FACTOR = 2;
+	/**
+	 * The rates are only raised if the overhead is clearly below the budget
+	 */
+	private static final double RAISE_THRESHOLD = 1.1;
+
+	private final long adjustmentIntervalNanos;
+	private final double minSamplingRate;
+	private final LongAdder durationNanos = new LongAdder();
+	private final LongAdder overheadNanos = new LongAdder();
+	private final AtomicBoolean adjusting = new AtomicBoolean();
+	private volatile long lastAdjustment = System.nanoTime();
+	private volatile double spanSamplingRate = 1;
+	private volatile double callTreeSamplingRate = 1;
+
+	/**
+	 * @param adjustmentInterval the interval in which the rates are adjusted
+	 * @param timeUnit           the unit of the adjustment interval
+	 * @param minSamplingRate    the rates are never lowered below this rate, so that the sampler is able to notice
+	 *                           when the overhead declines
+	 */
+	public AdaptiveSampler(long adjustmentInterval, TimeUnit timeUnit, double minSamplingRate) {
+		this.adjustmentIntervalNanos = timeUnit.toNanos(adjustmentInterval);
+		this.minSamplingRate = minSamplingRate;
+	}
+
+	public boolean isSampleSpan() {
+		return isSampled(spanSamplingRate);
+	}
+
+	public boolean isCollectCallTree() {
+		return isSampled(callTreeSamplingRate);
+	}
+
+	private static boolean isSampled(double samplingRate) {
+		return samplingRate >= 1 || ThreadLocalRandom.current().nextDouble() < samplingRate;
+	}
+
+	/**
+	 * Records the overhead of a request and adjusts the rates if the adjustment interval has elapsed
+	 *
+	 * @param durationNanos  the duration of the request
+	 * @param overheadNanos  the time spent monitoring the request
+	 * @param overheadBudget the maximum fraction of the request time which should be spent monitoring requests
+	 */
+	public void recordRequest(long durationNanos, long overheadNanos, double overheadBudget) {
+		this.durationNanos.add(durationNanos);
+		this.overheadNanos.add(overheadNanos);
+		if (System.nanoTime() - lastAdjustment >= adjustmentIntervalNanos && adjusting.compareAndSet(false, true)) {
+			try {
+				adjust(overheadBudget);
+			} finally {
+				adjusting.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Adjusts the rates based on the overhead which has been recorded since the last adjustment
+	 *
+	 * @param overheadBudget the maximum fraction of the request time which should be spent monitoring requests
+	 */
+	void adjust(double overheadBudget) {
+		lastAdjustment = System.nanoTime();
+		final long duration = durationNanos.sumThenReset();
+		final long overhead = overheadNanos.sumThenReset();
+		if (duration <= 0 || overheadBudget <= 0) {
+			return;
+		}
+		final double overheadRatio = overhead / (double) duration;
+		final double factor = overheadRatio > 0 ? overheadBudget / overheadRatio : MAX_ADJUSTMENT_FACTOR;
+		if (factor < 1) {
+			lowerRates(Math.max(factor, 1 / MAX_ADJUSTMENT_FACTOR));
+		} else if (factor > RAISE_THRESHOLD) {
+			raiseRates(Math.min(factor, MAX_ADJUSTMENT_FACTOR));
+		}
+	}
+
+	private void lowerRates(double factor) {
+		if (callTreeSamplingRate > minSamplingRate) {
+			callTreeSamplingRate = Math.max(callTreeSamplingRate * factor, minSamplingRate);
+		} else {
+			spanSamplingRate = Math.max(spanSamplingRate * factor, minSamplingRate);
+		}
+	}
+
+	private void raiseRates(double factor) {
+		if (spanSamplingRate < 1) {
+			spanSamplingRate = Math.min(spanSamplingRate * factor, 1);
+		} else {
+			callTreeSamplingRate = Math.min(callTreeSamplingRate * factor, 1);
+		}
+	}
+
+	public double getSpanSamplingRate() {
+		return spanSamplingRate;
+	}
+
+	public double getCallTreeSamplingRate() {
+		return callTreeSamplingRate;
+	}
+}
@@ -0,0 +1,32 @@
+package org.stagemonitor.tracing.sampling;
+
+import org.stagemonitor.configuration.ConfigurationRegistry;
+import org.stagemonitor.tracing.TracingPlugin;
+
+/**
+ * Samples server spans and call trees with the rates of the {@link AdaptiveSampler} of the
+ * {@link org.stagemonitor.tracing.RequestMonitor}, if a overhead budget is configured.
+ */
+public class AdaptiveSamplingPreExecutionInterceptor extends PreExecutionSpanInterceptor {
+
+	private TracingPlugin tracingPlugin;
+
+	@Override
+	public void init(ConfigurationRegistry configuration) {
+		tracingPlugin = configuration.getConfig(TracingPlugin.class);
+	}
+
+	@Override
+	public void interceptReport(PreExecutionInterceptorContext context) {
+		if (!context.getSpanContext().isServerRequest() || tracingPlugin.getOverheadBudgetPercent() <= 0) {
+			return;
+		}
+		final AdaptiveSampler adaptiveSampler = tracingPlugin.getRequestMonitor().getAdaptiveSampler();
+		if (!adaptiveSampler.isSampleSpan()) {
+			context.shouldNotReport(getClass());
+		} else if (!adaptiveSampler.isCollectCallTree()) {
+			context.shouldNotCollectCallTree("the overhead budget is exhausted");
+		}
+	}
+
+}
@@ -3,13 +3,14 @@ package org.stagemonitor.tracing.sampling;
 import com.codahale.metrics.Timer;
 
 import org.stagemonitor.configuration.ConfigurationRegistry;
-import org.stagemonitor.core.metrics.MetricUtils;
+import org.stagemonitor.core.metrics.PercentileThresholdTracker;
 import org.stagemonitor.tracing.TracingPlugin;
 
 import java.util.concurrent.TimeUnit;
 
 public class FastExternalSpanExcludingPostExecutionInterceptor extends PostExecutionSpanInterceptor {
 
+	private final PercentileThresholdTracker percentileThresholdTracker = new PercentileThresholdTracker(10, TimeUnit.SECONDS);
 	private TracingPlugin tracingPlugin;
 
 	@Override
@@ -30,7 +31,7 @@ public class FastExternalSpanExcludingPostExecutionInterceptor extends PostExecu
 
 			Timer timer = context.getSpanContext().getTimerForThisRequest();
 			final double percentageThreshold = tracingPlugin.getExcludeExternalRequestsWhenFasterThanXPercent();
-			if (!MetricUtils.isFasterThanXPercentOfAllRequests(durationNs, percentageThreshold, timer)) {
+			if (!percentileThresholdTracker.isFasterThanXPercentOfAllRequests(durationNs, percentageThreshold, timer)) {
 //			logger.debug("Exclude external request {} because was faster than {}% of all requests",
 //					externalRequest.getExecutedBy(), percentageThreshold * 100);
 				context.shouldNotReport(getClass());
@@ -6,14 +6,17 @@ import org.stagemonitor.configuration.ConfigurationRegistry;
 import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.opentracing.tag.Tags;
 
-public class SamplePriorityDeterminingSpanEventListener extends StatelessSpanEventListener {
+public class SamplePriorityDeterminingSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 	private static final Logger logger = LoggerFactory.getLogger(SamplePriorityDeterminingSpanEventListener.class);
 	private final Collection<PreExecutionSpanInterceptor> preInterceptors =
@@ -101,4 +104,9 @@ public class SamplePriorityDeterminingSpanEventListener extends StatelessSpanEve
 		interceptor.init(configuration);
 		postInterceptors.add(interceptor);
 	}
+
+	@Override
+	public Set<String> getTagKeys() {
+		return Collections.emptySet();
+	}
 }
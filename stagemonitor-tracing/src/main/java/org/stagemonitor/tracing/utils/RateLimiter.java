@@ -1,5 +1,6 @@
 package org.stagemonitor.tracing.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * Copyright (c) 2016, Uber Technologies, Inc
@@ -22,30 +23,56 @@ package org.stagemonitor.tracing.utils;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
+/**
+ * A token bucket which can be used by many threads concurrently.
+ * <p/>
+ * Instead of the balance, only the point in time at which the bucket will be full again is stored in a single
+ * {@link AtomicLong}. Checking a credit is a compare-and-set of that timestamp, so no locks are needed and the
+ * balance can't be corrupted by concurrent updates, which would otherwise admit more items than the configured rate.
+ */
 public class RateLimiter {
 	private final double creditsPerNanosecond;
-	private double balance;
-	private double maxBalance;
-	private long lastTick;
+	private final double maxBalance;
+	private final long maxBalanceNanos;
+	/**
+	 * The {@link System#nanoTime()} at which the balance is back at the max balance
+	 */
+	private final AtomicLong fullAt;
 
 	public RateLimiter(double creditsPerSecond, double maxBalance) {
-		this.balance = maxBalance;
 		this.maxBalance = maxBalance;
 		this.creditsPerNanosecond = creditsPerSecond / 1.0e9;
+		this.maxBalanceNanos = toNanos(maxBalance);
+		// the bucket is initially full
+		this.fullAt = new AtomicLong(System.nanoTime());
 	}
 
 	public boolean checkCredit(double itemCost) {
-		long currentTime = System.nanoTime();
-		double elapsedTime = currentTime - lastTick;
-		lastTick = currentTime;
-		balance += elapsedTime * creditsPerNanosecond;
-		if (balance > maxBalance) {
-			balance = maxBalance;
+		if (itemCost > maxBalance) {
+			return false;
+		}
+		final long costNanos = toNanos(itemCost);
+		while (true) {
+			final long currentTime = System.nanoTime();
+			final long currentFullAt = fullAt.get();
+			final long missingNanos = Math.max(currentFullAt - currentTime, 0);
+			if (costNanos > maxBalanceNanos - missingNanos) {
+				// the balance is lower than the item cost
+				return false;
+			}
+			if (fullAt.compareAndSet(currentFullAt, currentTime + missingNanos + costNanos)) {
+				return true;
+			}
 		}
-		if (balance >= itemCost) {
-			balance -= itemCost;
-			return true;
+	}
+
+	/**
+	 * Returns the time it takes to earn the provided credits
+	 */
+	private long toNanos(double credits) {
+		if (creditsPerNanosecond <= 0) {
+			return credits > 0 ? Long.MAX_VALUE : 0;
 		}
-		return false;
+		return (long) Math.min(credits / creditsPerNanosecond, Long.MAX_VALUE);
 	}
 }
@@ -0,0 +1,129 @@
+package org.stagemonitor.tracing.wrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The setup of the {@link SpanEventListener}s which is computed once and shared by all spans of a
+ * {@link SpanWrappingTracer}.
+ * <p/>
+ * Each span holds an array of {@link SpanEventListener}s with one slot per {@link SpanEventListenerFactory}.
+ * {@link StatelessSpanEventListener}s are shared by all spans, so only the slots of stateful listeners have to be
+ * created for each new span.
+ * <p/>
+ * The dispatch chains for the <code>onSetTag</code> callbacks are precomputed as well. When a tag is set, only the
+ * slots of the listeners which are interested in the tag key are invoked
+ * (see {@link TagFilteringSpanEventListenerFactory}).
+ */
+class SpanEventListenerPipeline {
+
+	private final SpanEventListenerFactory[] factories;
+	private final SpanEventListener[] sharedListeners;
+	private final int[] statefulSlots;
+	private final int[] unfilteredTagSlots;
+	private final Map<String, int[]> tagSlotsByKey;
+
+	private SpanEventListenerPipeline(SpanEventListenerFactory[] factories, SpanEventListener[] sharedListeners,
+									  int[] statefulSlots, int[] unfilteredTagSlots, Map<String, int[]> tagSlotsByKey) {
+		this.factories = factories;
+		this.sharedListeners = sharedListeners;
+		this.statefulSlots = statefulSlots;
+		this.unfilteredTagSlots = unfilteredTagSlots;
+		this.tagSlotsByKey = tagSlotsByKey;
+	}
+
+	static SpanEventListenerPipeline of(Collection<SpanEventListenerFactory> spanEventListenerFactories) {
+		final SpanEventListenerFactory[] factories = spanEventListenerFactories
+				.toArray(new SpanEventListenerFactory[spanEventListenerFactories.size()]);
+		final SpanEventListener[] sharedListeners = new SpanEventListener[factories.length];
+		final List<Integer> statefulSlots = new ArrayList<Integer>();
+		final Set<String> tagKeys = new LinkedHashSet<String>();
+		for (int slot = 0; slot < factories.length; slot++) {
+			if (factories[slot] instanceof StatelessSpanEventListener) {
+				sharedListeners[slot] = factories[slot].create();
+			} else {
+				statefulSlots.add(slot);
+			}
+			if (factories[slot] instanceof TagFilteringSpanEventListenerFactory) {
+				tagKeys.addAll(((TagFilteringSpanEventListenerFactory) factories[slot]).getTagKeys());
+			}
+		}
+
+		final Map<String, int[]> tagSlotsByKey = new HashMap<String, int[]>();
+		for (String tagKey : tagKeys) {
+			tagSlotsByKey.put(tagKey, getTagSlots(factories, tagKey));
+		}
+		return new SpanEventListenerPipeline(factories, sharedListeners, toArray(statefulSlots),
+				getTagSlots(factories, null), tagSlotsByKey);
+	}
+
+	/**
+	 * Creates a pipeline for {@link SpanEventListener}s which have already been created. All listeners are notified
+	 * about all tags.
+	 */
+	static SpanEventListenerPipeline unfiltered(int size) {
+		final int[] allSlots = new int[size];
+		for (int slot = 0; slot < size; slot++) {
+			allSlots[slot] = slot;
+		}
+		return new SpanEventListenerPipeline(new SpanEventListenerFactory[0], new SpanEventListener[0], new int[0],
+				allSlots, new HashMap<String, int[]>());
+	}
+
+	/**
+	 * Returns the slots of the listeners which are interested in the provided tag key in the order in which the
+	 * factories have been registered.
+	 */
+	private static int[] getTagSlots(SpanEventListenerFactory[] factories, String tagKey) {
+		final List<Integer> slots = new ArrayList<Integer>();
+		for (int slot = 0; slot < factories.length; slot++) {
+			if (!(factories[slot] instanceof TagFilteringSpanEventListenerFactory)
+					|| ((TagFilteringSpanEventListenerFactory) factories[slot]).getTagKeys().contains(tagKey)) {
+				slots.add(slot);
+			}
+		}
+		return toArray(slots);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Creates the listener slots of a new span
+	 */
+	SpanEventListener[] createListeners() {
+		final SpanEventListener[] listeners = sharedListeners.clone();
+		for (int slot : statefulSlots) {
+			listeners[slot] = factories[slot].create();
+		}
+		return listeners;
+	}
+
+	/**
+	 * @return the slots of the listeners which have to be notified when a tag with the provided key is set
+	 */
+	int[] getTagSlots(String key) {
+		final int[] slots = tagSlotsByKey.get(key);
+		if (slots == null) {
+			return unfilteredTagSlots;
+		}
+		return slots;
+	}
+
+	/**
+	 * @return the number of {@link SpanEventListenerFactory}s this pipeline has been created from
+	 */
+	int size() {
+		return factories.length;
+	}
+}
@@ -2,9 +2,12 @@ package org.stagemonitor.tracing.wrapper;
 
 import com.fasterxml.jackson.annotation.JsonValue;
 
+import org.stagemonitor.tracing.SpanContextInformation;
+
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
@@ -15,6 +18,9 @@ import io.opentracing.SpanContext;
  */
 public class SpanWrapper implements Span {
 
+	private static final AtomicReferenceFieldUpdater<SpanWrapper, SpanContextInformation> spanContextInformationUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(SpanWrapper.class, SpanContextInformation.class, "spanContextInformation");
+
 	/**
 	 * The actual span to be invoked
 	 */
@@ -22,13 +28,28 @@ public class SpanWrapper implements Span {
 	private String operationName;
 	private final long startTimestampNanos;
 	private final long startTimestampMillis;
-	private final List<SpanEventListener> spanEventListeners;
+	private final SpanEventListenerPipeline pipeline;
+	private final SpanEventListener[] spanEventListeners;
+	/**
+	 * The stagemonitor specific information about this span.
+	 * <p/>
+	 * Storing it directly in the span avoids to look it up in a global map each time it is accessed.
+	 */
+	private volatile SpanContextInformation spanContextInformation;
 
 	public SpanWrapper(Span delegate, String operationName, long startTimestampNanos, long startTimestampMillis, List<SpanEventListener> spanEventListeners) {
+		this(delegate, operationName, startTimestampNanos, startTimestampMillis,
+				SpanEventListenerPipeline.unfiltered(spanEventListeners.size()),
+				spanEventListeners.toArray(new SpanEventListener[spanEventListeners.size()]));
+	}
+
+	SpanWrapper(Span delegate, String operationName, long startTimestampNanos, long startTimestampMillis,
+				SpanEventListenerPipeline pipeline, SpanEventListener[] spanEventListeners) {
 		this.delegate = delegate;
 		this.operationName = operationName;
 		this.startTimestampNanos = startTimestampNanos;
 		this.startTimestampMillis = startTimestampMillis;
+		this.pipeline = pipeline;
 		this.spanEventListeners = spanEventListeners;
 	}
 
@@ -61,8 +82,8 @@ public class SpanWrapper implements Span {
 	}
 
 	public Span setTag(String key, String value) {
-		for (SpanEventListener spanEventListener : spanEventListeners) {
-			value = spanEventListener.onSetTag(key, value);
+		for (int slot : pipeline.getTagSlots(key)) {
+			value = spanEventListeners[slot].onSetTag(key, value);
 		}
 		if (value != null) {
 			delegate = delegate.setTag(key, value);
@@ -71,16 +92,16 @@ public class SpanWrapper implements Span {
 	}
 
 	public Span setTag(String key, boolean value) {
-		for (SpanEventListener spanEventListener : spanEventListeners) {
-			value = spanEventListener.onSetTag(key, value);
+		for (int slot : pipeline.getTagSlots(key)) {
+			value = spanEventListeners[slot].onSetTag(key, value);
 		}
 		delegate = delegate.setTag(key, value);
 		return this;
 	}
 
 	public Span setTag(String key, Number value) {
-		for (SpanEventListener spanEventListener : spanEventListeners) {
-			value = spanEventListener.onSetTag(key, value);
+		for (int slot : pipeline.getTagSlots(key)) {
+			value = spanEventListeners[slot].onSetTag(key, value);
 		}
 		if (value != null) {
 			delegate = delegate.setTag(key, value);
@@ -150,6 +171,32 @@ public class SpanWrapper implements Span {
 		return startTimestampMillis;
 	}
 
+	/**
+	 * Internal method, use {@link SpanContextInformation#forSpan(Span)} instead
+	 */
+	public final SpanContextInformation getSpanContextInformation() {
+		return spanContextInformation;
+	}
+
+	/**
+	 * Internal method, should only be called by stagemonitor itself
+	 */
+	public final void setSpanContextInformation(SpanContextInformation spanContextInformation) {
+		this.spanContextInformation = spanContextInformation;
+	}
+
+	/**
+	 * Internal method, should only be called by stagemonitor itself
+	 *
+	 * @return the {@link SpanContextInformation} which has been set before or the provided one, if there was none
+	 */
+	public final SpanContextInformation setSpanContextInformationIfAbsent(SpanContextInformation spanContextInformation) {
+		if (spanContextInformationUpdater.compareAndSet(this, null, spanContextInformation)) {
+			return spanContextInformation;
+		}
+		return this.spanContextInformation;
+	}
+
 	public <T extends Span> T unwrap(Class<T> delegateClass) {
 		if (delegateClass.isInstance(delegate)) {
 			return (T) delegate;
@@ -1,8 +1,6 @@
 package org.stagemonitor.tracing.wrapper;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +19,7 @@ public class SpanWrappingTracer implements Tracer {
 
 	private final Tracer delegate;
 	private final Collection<SpanEventListenerFactory> spanInterceptorFactories;
+	private volatile SpanEventListenerPipeline pipeline;
 
 	public SpanWrappingTracer(Tracer delegate) {
 		this(delegate, new CopyOnWriteArrayList<SpanEventListenerFactory>());
@@ -33,7 +32,8 @@ public class SpanWrappingTracer implements Tracer {
 
 	@Override
 	public SpanBuilder buildSpan(String operationName) {
-		return new SpanWrappingSpanBuilder(delegate.buildSpan(operationName), operationName, createSpanInterceptors());
+		final SpanEventListenerPipeline pipeline = getPipeline();
+		return new SpanWrappingSpanBuilder(delegate.buildSpan(operationName), operationName, pipeline, pipeline.createListeners());
 	}
 
 	@Override
@@ -46,29 +46,38 @@ public class SpanWrappingTracer implements Tracer {
 		return delegate.extract(format, carrier);
 	}
 
-	protected List<SpanEventListener> createSpanInterceptors() {
-		List<SpanEventListener> spanEventListeners = new ArrayList<SpanEventListener>(spanInterceptorFactories.size());
-		for (SpanEventListenerFactory spanEventListenerFactory : spanInterceptorFactories) {
-			spanEventListeners.add(spanEventListenerFactory.create());
+	/**
+	 * Returns the {@link SpanEventListenerPipeline} which is only recomputed when a {@link SpanEventListenerFactory} has
+	 * been added.
+	 */
+	private SpanEventListenerPipeline getPipeline() {
+		SpanEventListenerPipeline pipeline = this.pipeline;
+		if (pipeline == null || pipeline.size() != spanInterceptorFactories.size()) {
+			pipeline = SpanEventListenerPipeline.of(spanInterceptorFactories);
+			this.pipeline = pipeline;
 		}
-		return spanEventListeners;
+		return pipeline;
 	}
 
 	public void addSpanInterceptor(SpanEventListenerFactory spanEventListenerFactory) {
 		spanInterceptorFactories.add(spanEventListenerFactory);
+		pipeline = null;
 	}
 
 	class SpanWrappingSpanBuilder implements SpanBuilder {
 
 		private final String operationName;
-		private final List<SpanEventListener> spanEventListeners;
+		private final SpanEventListenerPipeline pipeline;
+		private final SpanEventListener[] spanEventListeners;
 		private SpanBuilder delegate;
 		private long startTimestampNanos;
 		private long startTimestampMillis;
 
-		SpanWrappingSpanBuilder(SpanBuilder delegate, String operationName, List<SpanEventListener> spanEventListeners) {
+		SpanWrappingSpanBuilder(SpanBuilder delegate, String operationName, SpanEventListenerPipeline pipeline,
+								SpanEventListener[] spanEventListeners) {
 			this.operationName = operationName;
 			this.delegate = delegate;
+			this.pipeline = pipeline;
 			this.spanEventListeners = spanEventListeners;
 		}
 
@@ -92,8 +101,8 @@ public class SpanWrappingTracer implements Tracer {
 		}
 
 		public SpanBuilder withTag(String key, String value) {
-			for (SpanEventListener spanEventListener : spanEventListeners) {
-				value = spanEventListener.onSetTag(key, value);
+			for (int slot : pipeline.getTagSlots(key)) {
+				value = spanEventListeners[slot].onSetTag(key, value);
 			}
 			if (value != null) {
 				delegate = delegate.withTag(key, value);
@@ -102,16 +111,16 @@ public class SpanWrappingTracer implements Tracer {
 		}
 
 		public SpanBuilder withTag(String key, boolean value) {
-			for (SpanEventListener spanEventListener : spanEventListeners) {
-				value = spanEventListener.onSetTag(key, value);
+			for (int slot : pipeline.getTagSlots(key)) {
+				value = spanEventListeners[slot].onSetTag(key, value);
 			}
 			delegate = delegate.withTag(key, value);
 			return this;
 		}
 
 		public SpanBuilder withTag(String key, Number value) {
-			for (SpanEventListener spanEventListener : spanEventListeners) {
-				value = spanEventListener.onSetTag(key, value);
+			for (int slot : pipeline.getTagSlots(key)) {
+				value = spanEventListeners[slot].onSetTag(key, value);
 			}
 			if (value != null) {
 				delegate = delegate.withTag(key, value);
@@ -131,7 +140,7 @@ public class SpanWrappingTracer implements Tracer {
 				startTimestampNanos = System.nanoTime();
 				startTimestampMillis = System.currentTimeMillis();
 			}
-			final SpanWrapper spanWrapper = new SpanWrapper(delegate.start(), operationName, startTimestampNanos, startTimestampMillis, spanEventListeners);
+			final SpanWrapper spanWrapper = new SpanWrapper(delegate.start(), operationName, startTimestampNanos, startTimestampMillis, pipeline, spanEventListeners);
 			for (SpanEventListener spanEventListener : spanEventListeners) {
 				spanEventListener.onStart(spanWrapper);
 			}
@@ -0,0 +1,25 @@
+package org.stagemonitor.tracing.wrapper;
+
+import java.util.Set;
+
+/**
+ * A {@link SpanEventListenerFactory} whose {@link SpanEventListener}s are only interested in the tags with certain keys.
+ * <p/>
+ * The <code>onSetTag</code> methods of the {@link SpanEventListener}s are only called for tags with one of the keys
+ * returned by {@link #getTagKeys()}. Listeners which don't implement <code>onSetTag</code> at all should return an
+ * empty set, so that they are skipped entirely when a tag is set.
+ * <p/>
+ * If your {@link SpanEventListener} is stateless, you can implement this interface in your
+ * {@link StatelessSpanEventListener} directly.
+ */
+public interface TagFilteringSpanEventListenerFactory extends SpanEventListenerFactory {
+
+	/**
+	 * Returns the keys of the tags the {@link SpanEventListener}s created by this factory are interested in.
+	 * <p/>
+	 * This method is called only once, when the {@link SpanWrappingTracer} sets up its listeners.
+	 *
+	 * @return the tag keys
+	 */
+	Set<String> getTagKeys();
+}
@@ -3,6 +3,8 @@ package org.stagemonitor.tracing.profiler;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Locale;
+
 public class CallStackElementTest {
 
 	@Test
@@ -24,4 +26,24 @@ public class CallStackElementTest {
 		CallStackElement callStackElement = CallStackElement.createRoot("total");
 		Assert.assertNull(callStackElement.getShortSignature());
 	}
+
+	@Test
+	public void testAppendMillisIsEqualToStringFormat() {
+		final long[] values = {0, 1, 4999, 5000, 5001, 14999, 15000, 999994999, 999995000, 123456789, 1000000000000L, -1, -5000, -1234567};
+		for (long value : values) {
+			final StringBuilder sb = new StringBuilder();
+			CallStackElement.appendMillis(sb, value);
+			Assert.assertEquals(String.format(Locale.US, "%09.2f", value / 1000000.0), sb.toString());
+		}
+	}
+
+	@Test
+	public void testAppendPercentIsEqualToStringFormat() {
+		final double[] values = {0, 0.4, 0.5, 1.5, 2.5, 28.999999999999996, 99.5, 100, 1234.5, -0.6, -12.5, Double.NaN};
+		for (double value : values) {
+			final StringBuilder sb = new StringBuilder();
+			CallStackElement.appendPercent(sb, value);
+			Assert.assertEquals(String.format(Locale.US, "%03.0f", value), sb.toString());
+		}
+	}
 }
@@ -0,0 +1,229 @@
+package org.stagemonitor.tracing.profiler;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CallTreeArenaTest {
+
+	private final CallTreeArena arena = new CallTreeArena();
+
+	private CallStackElement recordCallTree(long minExecutionTime) {
+		final CallStackElement root = CallStackElement.create(null, "method0()", 0);
+		arena.activate(root);
+		arena.start("method1()", ms(0));
+		arena.start("method1_1()", ms(0));
+		arena.start("method1_1_1()", ms(0));
+		arena.stop(ms(200), minExecutionTime);
+		arena.start("method1_1_2()", ms(200));
+		arena.start("method1_1_2_1()", ms(200));
+		arena.stop(ms(250), minExecutionTime);
+		arena.stop(ms(450), minExecutionTime);
+		arena.stop(ms(500), minExecutionTime);
+		arena.start("method1_2()", ms(500));
+		arena.addCall("select * from user", true, ms(50));
+		arena.addCall("select * from address", true, ms(50));
+		arena.start("method1_2_1()", ms(600));
+		arena.stop(ms(850), minExecutionTime);
+		arena.stop(ms(1000), minExecutionTime);
+		arena.stop(ms(1000), minExecutionTime);
+		arena.stop(ms(1000), minExecutionTime);
+		return root;
+	}
+
+	@Test
+	public void testMaterialize() {
+		final CallStackElement root = recordCallTree(0);
+		assertFalse(arena.isActive());
+		assertEquals(ms(1000), root.getExecutionTime());
+		assertTrue(root.getChildren().isEmpty());
+
+		assertSame(root, arena.materialize(root));
+		assertEquals(
+						"----------------------------------------------------------------------\n" +
+						"Selftime (ms)              Total (ms)                 Method signature\n" +
+						"----------------------------------------------------------------------\n" +
+						"000000.00  000% ---------- 001000.00  100% |||||||||| method0()\n" +
+						"000000.00  000% ---------- 001000.00  100% |||||||||| `-- method1()\n" +
+						"000050.00  005% :--------- 000500.00  050% |||||-----     |-- method1_1()\n" +
+						"000200.00  020% ||-------- 000200.00  020% ||--------     |   |-- method1_1_1()\n" +
+						"000200.00  020% ||-------- 000250.00  025% ||:-------     |   `-- method1_1_2()\n" +
+						"000050.00  005% :--------- 000050.00  005% :---------     |       `-- method1_1_2_1()\n" +
+						"000150.00  015% |:-------- 000500.00  050% |||||-----     `-- method1_2()\n" +
+						"000050.00  005% :--------- 000050.00  005% :---------         |-- select * from user \n" +
+						"000050.00  005% :--------- 000050.00  005% :---------         |-- select * from address \n" +
+						"000250.00  025% ||:------- 000250.00  025% ||:-------         `-- method1_2_1()\n", root.toString());
+	}
+
+	@Test
+	public void testRemoveCallsFasterThanMinExecutionTimeOnStop() {
+		final CallStackElement root = recordCallTree(ms(51));
+		// method1_1_2_1 is removed and io queries are never removed by the min execution time
+		assertEquals(9, arena.size());
+		arena.materialize(root);
+		assertEquals(
+						"----------------------------------------------------------------------\n" +
+						"Selftime (ms)              Total (ms)                 Method signature\n" +
+						"----------------------------------------------------------------------\n" +
+						"000000.00  000% ---------- 001000.00  100% |||||||||| method0()\n" +
+						"000000.00  000% ---------- 001000.00  100% |||||||||| `-- method1()\n" +
+						"000050.00  005% :--------- 000500.00  050% |||||-----     |-- method1_1()\n" +
+						"000200.00  020% ||-------- 000200.00  020% ||--------     |   |-- method1_1_1()\n" +
+						"000250.00  025% ||:------- 000250.00  025% ||:-------     |   `-- method1_1_2()\n" +
+						"000150.00  015% |:-------- 000500.00  050% |||||-----     `-- method1_2()\n" +
+						"000050.00  005% :--------- 000050.00  005% :---------         |-- select * from user \n" +
+						"000050.00  005% :--------- 000050.00  005% :---------         |-- select * from address \n" +
+						"000250.00  025% ||:------- 000250.00  025% ||:-------         `-- method1_2_1()\n", root.toString());
+	}
+
+	@Test
+	public void testRemoveSubtreeOfFastCall() {
+		final CallStackElement root = CallStackElement.create(null, "root", 0);
+		arena.activate(root);
+		arena.start("fast", 0);
+		arena.start("fastChild", 0);
+		arena.stop(1, 0);
+		arena.stop(2, 10);
+		arena.start("slow", 2);
+		arena.stop(20, 10);
+		arena.stop(20, 10);
+
+		arena.materialize(root);
+		assertEquals(1, root.getChildren().size());
+		assertEquals("slow", root.getChildren().get(0).getSignature());
+		assertEquals(18, root.getChildren().get(0).getExecutionTime());
+	}
+
+	@Test
+	public void testStopAndRemoveIfNoChildren() {
+		final CallStackElement root = CallStackElement.create(null, "root", 0);
+		arena.activate(root);
+		arena.start("withChild", 0);
+		arena.start("leaf", 0);
+		arena.stopAndRemoveIfNoChildren(1, 0);
+		arena.start("child", 1);
+		arena.stop(2, 0);
+		arena.stopAndRemoveIfNoChildren(3, 0);
+		arena.stop(3, 0);
+
+		arena.materialize(root);
+		assertEquals(1, root.getChildren().size());
+		assertEquals("withChild", root.getChildren().get(0).getSignature());
+		assertEquals(1, root.getChildren().get(0).getChildren().size());
+		assertEquals("child", root.getChildren().get(0).getChildren().get(0).getSignature());
+	}
+
+	@Test
+	public void testGrowAndReuse() {
+		for (int run = 0; run < 2; run++) {
+			final CallStackElement root = CallStackElement.create(null, "root", 0);
+			arena.activate(root);
+			for (int i = 0; i < 1000; i++) {
+				arena.start("method" + i, i);
+			}
+			for (int i = 999; i >= 0; i--) {
+				arena.stop(1000, 0);
+			}
+			arena.stop(1000, 0);
+			assertFalse(arena.isActive());
+			assertEquals(1001, arena.size());
+
+			arena.materialize(root);
+			CallStackElement deepest = root;
+			int depth = 0;
+			while (!deepest.getChildren().isEmpty()) {
+				deepest = deepest.getChildren().get(0);
+				depth++;
+			}
+			assertEquals(1000, depth);
+			assertEquals("method999", deepest.getSignature());
+			arena.clear();
+		}
+	}
+
+	@Test
+	public void testRegisteredSignatures() {
+		final CallStackElement root = CallStackElement.create(null, "root", 0);
+		arena.activate(root);
+		arena.start(SignatureRegistry.register("void CallTreeArenaTest.registered()"), 0);
+		arena.addCall("select * from user", true, 1);
+		arena.addCall("manual", false, 1);
+		arena.stop(2, 0);
+		arena.stop(2, 0);
+
+		arena.materialize(root);
+		final CallStackElement registered = root.getChildren().get(0);
+		assertEquals("void CallTreeArenaTest.registered()", registered.getSignature());
+		assertFalse(registered.isIOQuery());
+		assertEquals("select * from user ", registered.getChildren().get(0).getSignature());
+		assertTrue(registered.getChildren().get(0).isIOQuery());
+		assertEquals("manual", registered.getChildren().get(1).getSignature());
+		assertFalse(registered.getChildren().get(1).isIOQuery());
+	}
+
+	@Test
+	public void testMaxNodes() {
+		final CallTreeArena arena = new CallTreeArena(3);
+		final CallStackElement root = CallStackElement.create(null, "root", 0);
+		arena.activate(root);
+		arena.start("recorded", 0);
+		arena.start("recordedChild", 0);
+		// the limit is reached
+		arena.start("skipped", 0);
+		arena.start("skippedChild", 0);
+		arena.addCall("select * from skipped", true, 1);
+		arena.stop(1, 0);
+		arena.stopAndRemoveIfNoChildren(1, 0);
+		arena.addCall("select * from skipped", true, 1);
+		arena.stop(2, 0);
+		arena.stop(3, 0);
+		assertEquals(3, arena.size());
+		arena.stop(4, 0);
+		assertFalse(arena.isActive());
+
+		arena.materialize(root);
+		assertEquals(4, root.getExecutionTime());
+		final CallStackElement recorded = root.getChildren().get(0);
+		assertEquals("recorded", recorded.getSignature());
+		assertEquals(3, recorded.getExecutionTime());
+		assertEquals(1, recorded.getChildren().size());
+		assertEquals("recordedChild", recorded.getChildren().get(0).getSignature());
+		assertEquals(2, recorded.getChildren().get(0).getExecutionTime());
+		assertTrue(recorded.getChildren().get(0).getChildren().isEmpty());
+	}
+
+	@Test
+	public void testFastCallsDoNotCountTowardsMaxNodes() {
+		final CallTreeArena arena = new CallTreeArena(2);
+		final CallStackElement root = CallStackElement.create(null, "root", 0);
+		arena.activate(root);
+		for (int i = 0; i < 1000; i++) {
+			arena.start("fast" + i, i);
+			arena.stop(i, 10);
+		}
+		arena.start("slow", 1000);
+		arena.stop(2000, 10);
+		arena.stop(2000, 10);
+
+		arena.materialize(root);
+		assertEquals(1, root.getChildren().size());
+		assertEquals("slow", root.getChildren().get(0).getSignature());
+	}
+
+	@Test
+	public void testMaterializeOnlyOnce() {
+		final CallStackElement root = recordCallTree(0);
+		arena.materialize(root);
+		arena.materialize(root);
+		assertEquals(1, root.getChildren().size());
+	}
+
+	private static long ms(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -8,12 +8,22 @@ import org.stagemonitor.tracing.SpanContextInformation;
 import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.sampling.PostExecutionInterceptorContext;
 import org.stagemonitor.tracing.sampling.PreExecutionInterceptorContext;
+import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 
+import io.opentracing.Span;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CallTreeSpanEventListenerTest {
@@ -51,19 +61,60 @@ public class CallTreeSpanEventListenerTest {
 		assertNull(spanContext.getCallTree());
 	}
 
+	@Test
+	public void testCallTreeIsAddedToDelegateSpanOfReportingTracer() throws Exception {
+		doReturn(1000000d).when(tracingPlugin).getProfilerRateLimitPerMinute();
+		doReturn(true).when(tracingPlugin).isTracerReportingSpans();
+		final Span delegate = mock(Span.class);
+		final SpanContextInformation spanContext = invokeEventListener(true, delegate, "GET /index");
+		assertTrue(spanContext.isCallTreeIncluded());
+		verify(delegate).setTag(eq(SpanUtils.CALL_TREE_JSON), contains("GET /index"));
+		verify(delegate).setTag(eq(SpanUtils.CALL_TREE_ASCII), contains("GET /index"));
+	}
+
+	@Test
+	public void testCallTreeIsNotSerializedWhenTracerDoesNotReportSpans() throws Exception {
+		doReturn(1000000d).when(tracingPlugin).getProfilerRateLimitPerMinute();
+		doReturn(false).when(tracingPlugin).isTracerReportingSpans();
+		final Span delegate = mock(Span.class);
+		final SpanContextInformation spanContext = invokeEventListener(true, delegate, "GET /index");
+		assertTrue(spanContext.isCallTreeIncluded());
+		verify(delegate, never()).setTag(anyString(), anyString());
+	}
+
 	private SpanContextInformation invokeEventListener() {
 		return invokeEventListener(true);
 	}
 
 	private SpanContextInformation invokeEventListener(boolean sampled) {
+		return invokeEventListener(sampled, null, "");
+	}
+
+	@Test
+	public void testEstimatesProfilerOverhead() throws Exception {
+		doReturn(1000000d).when(tracingPlugin).getProfilerRateLimitPerMinute();
+		assertEquals(0, invokeEventListener(true, null, "GET /index", 0).getProfilerOverheadNanos());
+		assertTrue(invokeEventListener(true, null, "GET /index", 100).getProfilerOverheadNanos() > 0);
+	}
+
+	private SpanContextInformation invokeEventListener(boolean sampled, Span delegate, String operationName) {
+		return invokeEventListener(sampled, delegate, operationName, 0);
+	}
+
+	private SpanContextInformation invokeEventListener(boolean sampled, Span delegate, String operationName, int profiledCalls) {
 		CallTreeSpanEventListener eventListener = new CallTreeSpanEventListener(tracingPlugin);
 		final SpanWrapper span = mock(SpanWrapper.class);
+		when(span.getDelegate()).thenReturn(delegate);
 		final SpanContextInformation contextInformation = SpanContextInformation.forSpan(span);
 		contextInformation.setSampled(sampled);
 		contextInformation.setPreExecutionInterceptorContext(new PreExecutionInterceptorContext(contextInformation));
 		contextInformation.setPostExecutionInterceptorContext(new PostExecutionInterceptorContext(contextInformation));
 		eventListener.onStart(span);
-		eventListener.onFinish(span, "", 0);
+		for (int i = 0; i < profiledCalls; i++) {
+			Profiler.start("call" + i);
+			Profiler.stop();
+		}
+		eventListener.onFinish(span, operationName, 0);
 		return contextInformation;
 	}
 
@@ -0,0 +1,68 @@
+package org.stagemonitor.tracing.profiler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.Test;
+import org.stagemonitor.core.util.JsonUtils;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallTreeTagValueTest {
+
+	private CallStackElement createCallTree() {
+		final CallStackElement root = CallStackElement.create(null, "GET /foo", 0);
+		final CallStackElement method = CallStackElement.create(root, "public void org.example.Foo.bar()", 0);
+		CallStackElement.create(method, "select * from \"user\"\nwhere name = 'foo' ", 1500000);
+		method.setExecutionTime(4000000);
+		CallStackElement.create(root, "public void org.example.Foo.baz()", 2000000);
+		root.setExecutionTime(10000000);
+		return root;
+	}
+
+	@Test
+	public void testJsonIsEqualToDatabind() throws Exception {
+		final CallStackElement callTree = createCallTree();
+		// the order of the properties serialized by databind is not defined
+		assertEquals(JsonUtils.getMapper().readTree(JsonUtils.toJson(callTree)),
+				JsonUtils.getMapper().readTree(CallTreeTagValue.json(callTree).toString()));
+	}
+
+	@Test
+	public void testAsciiIsEqualToToString() throws Exception {
+		final CallStackElement callTree = createCallTree();
+		assertEquals(callTree.toString(true), CallTreeTagValue.ascii(callTree).toString());
+	}
+
+	@Test
+	public void testSerializedAsString() throws Exception {
+		final CallStackElement callTree = createCallTree();
+		final JsonNode jsonNode = JsonUtils.toObjectNode(Collections.singletonMap("call_tree_json", CallTreeTagValue.json(callTree)));
+		assertEquals(CallTreeTagValue.json(callTree).toString(), jsonNode.get("call_tree_json").asText());
+
+		final String json = JsonUtils.toJson(Collections.singletonMap("call_tree_ascii", CallTreeTagValue.ascii(callTree)));
+		assertEquals(callTree.toString(true), JsonUtils.getMapper().readTree(json).get("call_tree_ascii").asText());
+	}
+
+	@Test
+	public void testReuseBuffer() throws Exception {
+		final CallStackElement callTree = createCallTree();
+		final CallStackElement smallCallTree = CallStackElement.create(null, "small", 0);
+		final String json = JsonUtils.toJson(CallTreeTagValue.json(callTree));
+		JsonUtils.toJson(CallTreeTagValue.json(smallCallTree));
+		assertEquals(json, JsonUtils.toJson(CallTreeTagValue.json(callTree)));
+	}
+
+	@Test
+	public void testShortSignatureIsEqualToGetShortSignature() throws Exception {
+		final String[] signatures = {"total", "foo()", "Foo.bar()", "public void org.example.Foo.bar(java.lang.String)",
+				"a..b()", "foo.()", "...()", "(", "http://example.com/foo()", "select foo() from bar "};
+		for (String signature : signatures) {
+			final CallStackElement callTree = CallStackElement.create(null, signature, 0);
+			final JsonNode json = JsonUtils.getMapper().readTree(CallTreeTagValue.json(callTree).toString());
+			final String shortSignature = json.get("shortSignature").isNull() ? null : json.get("shortSignature").asText();
+			assertEquals(signature, callTree.getShortSignature(), shortSignature);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package org.stagemonitor.tracing.profiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SignatureRegistryTest {
+
+	@Test
+	public void testRegister() {
+		final int id = SignatureRegistry.register("void SignatureRegistryTest.testRegister()");
+		assertEquals(id, SignatureRegistry.register("void SignatureRegistryTest.testRegister()"));
+		assertNotEquals(id, SignatureRegistry.register("void SignatureRegistryTest.other()"));
+		assertEquals("void SignatureRegistryTest.testRegister()", SignatureRegistry.getSignature(id));
+	}
+
+	@Test
+	public void testRegisterMoreThanInitialCapacity() {
+		final int[] ids = new int[5000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = SignatureRegistry.register("void SignatureRegistryTest.method" + i + "()");
+		}
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals("void SignatureRegistryTest.method" + i + "()", SignatureRegistry.getSignature(ids[i]));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package org.stagemonitor.tracing.reporter;
+
+import org.junit.Test;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.tracing.NoopSpan;
+import org.stagemonitor.tracing.SpanContextInformation;
+import org.stagemonitor.tracing.wrapper.SpanEventListener;
+import org.stagemonitor.tracing.wrapper.SpanWrapper;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncSpanReporterTest {
+
+	private final Metric2Registry metricRegistry = new Metric2Registry();
+
+	@Test
+	public void testQueuedSpansAreReportedBeforeClose() throws Exception {
+		final BlockingSpanReporter reporter = new BlockingSpanReporter();
+		final AsyncSpanReporter asyncSpanReporter = new AsyncSpanReporter(reporter, metricRegistry, 10, TimeUnit.SECONDS.toMillis(10));
+		for (int i = 0; i < 3; i++) {
+			asyncSpanReporter.reportAsync(createSpanContext());
+		}
+		assertTrue(reporter.started.await(10, TimeUnit.SECONDS));
+		reporter.release.countDown();
+
+		asyncSpanReporter.close();
+
+		assertEquals(Integer.valueOf(3), reporter.reportedSpansOnClose);
+		assertEquals(0, metricRegistry.getMeters().get(AsyncSpanReporter.DROPPED_SPANS.build("BlockingSpanReporter")).getCount());
+	}
+
+	@Test
+	public void testSpansWhichAreStillQueuedAfterCloseTimeoutAreDropped() throws Exception {
+		final BlockingSpanReporter reporter = new BlockingSpanReporter();
+		final AsyncSpanReporter asyncSpanReporter = new AsyncSpanReporter(reporter, metricRegistry, 10, 100);
+		for (int i = 0; i < 3; i++) {
+			asyncSpanReporter.reportAsync(createSpanContext());
+		}
+		assertTrue(reporter.started.await(10, TimeUnit.SECONDS));
+
+		asyncSpanReporter.close();
+
+		// the first span blocks the worker, the other two are still queued
+		assertEquals(2, metricRegistry.getMeters().get(AsyncSpanReporter.DROPPED_SPANS.build("BlockingSpanReporter")).getCount());
+		assertNotNull(reporter.reportedSpansOnClose);
+	}
+
+	private SpanContextInformation createSpanContext() {
+		final SpanWrapper spanWrapper = new SpanWrapper(NoopSpan.INSTANCE, "test", 0, 0, Collections.<SpanEventListener>emptyList());
+		return SpanContextInformation.forSpan(spanWrapper);
+	}
+
+	private static class BlockingSpanReporter extends SpanReporter {
+
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private volatile int reportedSpans;
+		private volatile Integer reportedSpansOnClose;
+
+		@Override
+		public void report(SpanContextInformation spanContext) throws Exception {
+			started.countDown();
+			release.await();
+			reportedSpans++;
+		}
+
+		@Override
+		public boolean isActive(SpanContextInformation spanContext) {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			reportedSpansOnClose = reportedSpans;
+		}
+	}
+}
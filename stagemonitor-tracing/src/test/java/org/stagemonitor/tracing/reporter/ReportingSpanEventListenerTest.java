@@ -0,0 +1,127 @@
+package org.stagemonitor.tracing.reporter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.stagemonitor.configuration.ConfigurationRegistry;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.tracing.NoopSpan;
+import org.stagemonitor.tracing.SpanContextInformation;
+import org.stagemonitor.tracing.TracingPlugin;
+import org.stagemonitor.tracing.wrapper.SpanEventListener;
+import org.stagemonitor.tracing.wrapper.SpanWrapper;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReportingSpanEventListenerTest {
+
+	private final Metric2Registry metricRegistry = new Metric2Registry();
+	private ReportingSpanEventListener reportingSpanEventListener;
+	private TracingPlugin tracingPlugin;
+
+	@Before
+	public void setUp() throws Exception {
+		final ConfigurationRegistry configuration = mock(ConfigurationRegistry.class);
+		final CorePlugin corePlugin = mock(CorePlugin.class);
+		tracingPlugin = mock(TracingPlugin.class);
+		when(configuration.getConfig(CorePlugin.class)).thenReturn(corePlugin);
+		when(configuration.getConfig(TracingPlugin.class)).thenReturn(tracingPlugin);
+		when(corePlugin.getThreadPoolQueueCapacityLimit()).thenReturn(1);
+		when(tracingPlugin.isReportAsync()).thenReturn(true);
+		reportingSpanEventListener = new ReportingSpanEventListener(configuration, metricRegistry);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		reportingSpanEventListener.close();
+	}
+
+	@Test
+	public void testSlowReporterDoesNotDelayOtherReporters() throws Exception {
+		final BlockingSpanReporter slowReporter = new BlockingSpanReporter();
+		final RecordingSpanReporter fastReporter = new RecordingSpanReporter();
+		reportingSpanEventListener.addReporter(slowReporter);
+		reportingSpanEventListener.addReporter(fastReporter);
+
+		for (int i = 0; i < 5; i++) {
+			reportSpan();
+			assertNotNull(fastReporter.reportedSpans.poll(10, TimeUnit.SECONDS));
+		}
+		assertTrue(slowReporter.started.await(10, TimeUnit.SECONDS));
+		// one span is reported, one is queued and the other ones are dropped
+		assertEquals(3, metricRegistry.getMeters().get(AsyncSpanReporter.DROPPED_SPANS.build("BlockingSpanReporter")).getCount());
+		assertEquals(0, metricRegistry.getMeters().get(AsyncSpanReporter.DROPPED_SPANS.build("RecordingSpanReporter")).getCount());
+		assertEquals(1, metricRegistry.getGauges().get(AsyncSpanReporter.QUEUED_SPANS.build("BlockingSpanReporter")).getValue());
+		slowReporter.release.countDown();
+	}
+
+	@Test
+	public void testReportSynchronously() throws Exception {
+		when(tracingPlugin.isReportAsync()).thenReturn(false);
+		final RecordingSpanReporter reporter = new RecordingSpanReporter();
+		reportingSpanEventListener.addReporter(reporter);
+
+		reportSpan();
+
+		assertEquals(1, reporter.reportedSpans.size());
+	}
+
+	@Test
+	public void testCloseRemovesQueueGauge() throws Exception {
+		reportingSpanEventListener.addReporter(new RecordingSpanReporter());
+		assertNotNull(metricRegistry.getGauges().get(AsyncSpanReporter.QUEUED_SPANS.build("RecordingSpanReporter")));
+
+		reportingSpanEventListener.close();
+
+		assertEquals(0, metricRegistry.getGauges().size());
+	}
+
+	private void reportSpan() {
+		final SpanWrapper spanWrapper = new SpanWrapper(NoopSpan.INSTANCE, "test", 0, 0, Collections.<SpanEventListener>emptyList());
+		SpanContextInformation.forSpan(spanWrapper).setReadbackSpan(new ReadbackSpan());
+		reportingSpanEventListener.onFinish(spanWrapper, "test", 0);
+	}
+
+	private static class RecordingSpanReporter extends SpanReporter {
+
+		private final BlockingQueue<SpanContextInformation> reportedSpans = new LinkedBlockingQueue<SpanContextInformation>();
+
+		@Override
+		public void report(SpanContextInformation spanContext) {
+			reportedSpans.add(spanContext);
+		}
+
+		@Override
+		public boolean isActive(SpanContextInformation spanContext) {
+			return true;
+		}
+	}
+
+	private static class BlockingSpanReporter extends SpanReporter {
+
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void report(SpanContextInformation spanContext) throws Exception {
+			started.countDown();
+			release.await();
+		}
+
+		@Override
+		public boolean isActive(SpanContextInformation spanContext) {
+			return true;
+		}
+	}
+}
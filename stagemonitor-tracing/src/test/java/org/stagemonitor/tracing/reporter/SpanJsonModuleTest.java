@@ -6,9 +6,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.stagemonitor.core.util.JsonUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -53,6 +60,102 @@ public class SpanJsonModuleTest {
 		}
 	}
 
+	@Test
+	public void testAmbiguousMappingIndependentOfTagOrder() {
+		final ReadbackSpan span = createTestSpan(1);
+		span.setTag("a.b", "2");
+		span.setTag("a", "1");
+		try {
+			JsonUtils.toObjectNode(span);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Ambiguous mapping for"));
+		}
+	}
+
+	@Test
+	public void testNestInterleavedTagKeys() {
+		final ReadbackSpan span = createTestSpan(1);
+		span.setTag("http.url", "/index");
+		span.setTag("a.b.c", 1);
+		span.setTag("http-method", "GET");
+		span.setTag("a.x", true);
+		span.setTag("a.b.d", 2.5);
+		span.setTag("http.status_code", 200);
+		span.setTag("a.b-c", "foo");
+		final ObjectNode jsonSpan = JsonUtils.toObjectNode(span);
+		assertEquals("/index", jsonSpan.get("http").get("url").asText());
+		assertEquals(200, jsonSpan.get("http").get("status_code").intValue());
+		assertEquals("GET", jsonSpan.get("http-method").asText());
+		assertEquals(1, jsonSpan.get("a").get("b").get("c").intValue());
+		assertEquals(2.5, jsonSpan.get("a").get("b").get("d").doubleValue(), 0);
+		assertEquals("foo", jsonSpan.get("a").get("b-c").asText());
+		assertTrue(jsonSpan.get("a").get("x").booleanValue());
+		assertFalse(jsonSpan.get("error").booleanValue());
+	}
+
+	@Test
+	public void testErrorTag() {
+		final ReadbackSpan span = createTestSpan(1);
+		span.setTag("error", true);
+		assertTrue(JsonUtils.toObjectNode(span).get("error").booleanValue());
+	}
+
+	@Test
+	public void testReplaceTag() {
+		final ReadbackSpan span = createTestSpan(1);
+		span.setTag("http.url", "/foo");
+		span.setTag("foo", "bar");
+		span.setTag("http.url", "/bar");
+		span.setTag("foo", "baz");
+		assertEquals(2, span.getTags().size());
+		assertEquals("/bar", span.getTag("http.url"));
+		assertEquals("baz", span.getTag("foo"));
+	}
+
+	@Test
+	public void testGetTagsIsReadOnlyView() {
+		final ReadbackSpan span = createTestSpan(1);
+		span.setTag("foo", "bar");
+		final Map<String, Object> tags = span.getTags();
+		span.setTag("bar", "baz");
+		assertEquals(2, tags.size());
+		assertEquals("baz", tags.get("bar"));
+		assertEquals("bar", tags.entrySet().iterator().next().getValue());
+		try {
+			tags.put("baz", "qux");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSetTagsConcurrently() throws Exception {
+		final ReadbackSpan span = createTestSpan(1);
+		final ExecutorService executorService = Executors.newFixedThreadPool(4);
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int thread = 0; thread < 4; thread++) {
+			final int offset = thread * 1000;
+			futures.add(executorService.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = offset; i < offset + 1000; i++) {
+						span.setTag("tag_" + i, i);
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executorService.shutdown();
+		assertEquals(4000, span.getTags().size());
+		for (int i = 0; i < 4000; i++) {
+			assertEquals(i, span.getTag("tag_" + i));
+		}
+	}
+
 	private ReadbackSpan createTestSpan(int durationMs) {
 		final ReadbackSpan readbackSpan = new ReadbackSpan();
 		readbackSpan.setDuration(TimeUnit.MILLISECONDS.toMicros(durationMs));
@@ -0,0 +1,143 @@
+package org.stagemonitor.tracing.sampling;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AdaptiveSamplerTest {
+
+	private static final double BUDGET = 0.05;
+	private static final double MIN_SAMPLING_RATE = 0.01;
+
+	private final AdaptiveSampler sampler = new AdaptiveSampler(1, TimeUnit.DAYS, MIN_SAMPLING_RATE);
+
+	@Test
+	public void testDoesNotSampleWhenOverheadIsBelowBudget() throws Exception {
+		final SyntheticLoad load = new SyntheticLoad(1000, 10, 10, 10);
+		for (int i = 0; i < 10; i++) {
+			load.runInterval();
+		}
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(1);
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(1);
+	}
+
+	@Test
+	public void testLowersCallTreeRateFirst() throws Exception {
+		// call trees are expensive, spans are cheap: lowering the call tree rate suffices
+		final SyntheticLoad load = new SyntheticLoad(1000, 5, 10, 500);
+		for (int i = 0; i < 30; i++) {
+			load.runInterval();
+		}
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(1);
+		assertThat(sampler.getCallTreeSamplingRate()).isLessThan(0.2).isGreaterThanOrEqualTo(MIN_SAMPLING_RATE);
+		assertThat(load.runInterval()).isLessThan(BUDGET * 1.15);
+	}
+
+	@Test
+	public void testLowersSpanRateWhenCallTreeRateIsExhausted() throws Exception {
+		final SyntheticLoad load = new SyntheticLoad(1000, 5, 300, 1000);
+		for (int i = 0; i < 30; i++) {
+			load.runInterval();
+		}
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(MIN_SAMPLING_RATE);
+		assertThat(sampler.getSpanSamplingRate()).isLessThan(0.3).isGreaterThanOrEqualTo(MIN_SAMPLING_RATE);
+		assertThat(load.runInterval()).isLessThan(BUDGET * 1.15);
+	}
+
+	@Test
+	public void testNeverLowersRatesBelowMinimum() throws Exception {
+		// even the unavoidable base overhead exceeds the budget
+		final SyntheticLoad load = new SyntheticLoad(1000, 100, 300, 1000);
+		for (int i = 0; i < 30; i++) {
+			load.runInterval();
+		}
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(MIN_SAMPLING_RATE);
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(MIN_SAMPLING_RATE);
+	}
+
+	@Test
+	public void testRaisesRatesWhenOverheadDeclines() throws Exception {
+		final SyntheticLoad expensive = new SyntheticLoad(1000, 5, 300, 1000);
+		for (int i = 0; i < 30; i++) {
+			expensive.runInterval();
+		}
+		assertThat(sampler.getSpanSamplingRate()).isLessThan(1);
+
+		final SyntheticLoad cheap = new SyntheticLoad(1000, 5, 10, 10);
+		for (int i = 0; i < 30; i++) {
+			cheap.runInterval();
+		}
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(1);
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(1);
+	}
+
+	@Test
+	public void testIgnoresIntervalsWithoutRequests() throws Exception {
+		sampler.adjust(BUDGET);
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(1);
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(1);
+	}
+
+	@Test
+	public void testAdjustsAutomaticallyAfterInterval() throws Exception {
+		final AdaptiveSampler sampler = new AdaptiveSampler(0, TimeUnit.NANOSECONDS, MIN_SAMPLING_RATE);
+		sampler.recordRequest(1000, 500, BUDGET);
+		assertThat(sampler.getCallTreeSamplingRate()).isEqualTo(0.5, within(0.0001));
+	}
+
+	/**
+	 * Drives the sampler with synthetic requests whose monitoring overhead depends on the sampling decisions,
+	 * just like the overhead measured by the {@link org.stagemonitor.tracing.RequestMonitor}
+	 */
+	private class SyntheticLoad {
+
+		private static final int REQUESTS_PER_INTERVAL = 10000;
+
+		private final long workNanos;
+		private final long baseOverheadNanos;
+		private final long spanOverheadNanos;
+		private final long callTreeOverheadNanos;
+
+		/**
+		 * @param workNanos             the time the request spends in the application
+		 * @param baseOverheadNanos     the overhead of every request, even if it is not sampled
+		 * @param spanOverheadNanos     the additional overhead of a sampled span
+		 * @param callTreeOverheadNanos the additional overhead of collecting a call tree
+		 */
+		private SyntheticLoad(long workNanos, long baseOverheadNanos, long spanOverheadNanos, long callTreeOverheadNanos) {
+			this.workNanos = workNanos;
+			this.baseOverheadNanos = baseOverheadNanos;
+			this.spanOverheadNanos = spanOverheadNanos;
+			this.callTreeOverheadNanos = callTreeOverheadNanos;
+		}
+
+		/**
+		 * Executes the requests of one adjustment interval and adjusts the rates afterwards
+		 *
+		 * @return the overhead ratio of the interval
+		 */
+		private double runInterval() {
+			long totalDuration = 0;
+			long totalOverhead = 0;
+			for (int i = 0; i < REQUESTS_PER_INTERVAL; i++) {
+				long overhead = baseOverheadNanos;
+				if (sampler.isSampleSpan()) {
+					overhead += spanOverheadNanos;
+					if (sampler.isCollectCallTree()) {
+						overhead += callTreeOverheadNanos;
+					}
+				}
+				final long duration = workNanos + overhead;
+				sampler.recordRequest(duration, overhead, BUDGET);
+				totalDuration += duration;
+				totalOverhead += overhead;
+			}
+			sampler.adjust(BUDGET);
+			return totalOverhead / (double) totalDuration;
+		}
+	}
+
+}
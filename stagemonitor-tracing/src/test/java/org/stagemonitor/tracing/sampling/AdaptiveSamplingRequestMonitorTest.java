@@ -0,0 +1,29 @@
+package org.stagemonitor.tracing.sampling;
+
+import org.junit.Test;
+import org.stagemonitor.tracing.AbstractRequestMonitorTest;
+import org.stagemonitor.tracing.MonitoredMethodRequest;
+import org.stagemonitor.tracing.SpanContextInformation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+
+public class AdaptiveSamplingRequestMonitorTest extends AbstractRequestMonitorTest {
+
+	@Test
+	public void testProfilerOverheadLowersCallTreeSamplingRate() throws Exception {
+		doReturn(5d).when(tracingPlugin).getOverheadBudgetPercent();
+		final AdaptiveSampler sampler = requestMonitor.getAdaptiveSampler();
+
+		for (int i = 0; i < 10; i++) {
+			requestMonitor.monitor(new MonitoredMethodRequest(configuration, "test", () -> {
+				// the profiler has added a lot of time to the method calls of this request
+				SpanContextInformation.getCurrent().setProfilerOverheadNanos(1_000_000_000);
+			}));
+		}
+		sampler.adjust(0.05);
+
+		assertThat(sampler.getCallTreeSamplingRate()).isLessThan(1);
+		assertThat(sampler.getSpanSamplingRate()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,87 @@
+package org.stagemonitor.tracing.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testInitialBalance() {
+		final RateLimiter rateLimiter = new RateLimiter(1.0 / 60, 2);
+		assertTrue(rateLimiter.checkCredit(1));
+		assertTrue(rateLimiter.checkCredit(1));
+		assertFalse(rateLimiter.checkCredit(1));
+	}
+
+	@Test
+	public void testItemCostHigherThanMaxBalance() {
+		assertFalse(new RateLimiter(1000, 1).checkCredit(2));
+	}
+
+	@Test
+	public void testZeroRate() {
+		assertFalse(new RateLimiter(0, 0).checkCredit(1));
+	}
+
+	@Test
+	public void testRefill() throws Exception {
+		final RateLimiter rateLimiter = new RateLimiter(100, 1);
+		assertTrue(rateLimiter.checkCredit(1));
+		assertFalse(rateLimiter.checkCredit(1));
+		Thread.sleep(20);
+		assertTrue(rateLimiter.checkCredit(1));
+	}
+
+	@Test
+	public void testAdmittedRateWith64Threads() throws Exception {
+		final int threads = 64;
+		final double creditsPerSecond = 10000;
+		final double maxBalance = 100;
+		final RateLimiter rateLimiter = new RateLimiter(creditsPerSecond, maxBalance);
+		final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final long durationNanos = TimeUnit.SECONDS.toNanos(1);
+		final List<Future<Long>> admitted = new ArrayList<Future<Long>>();
+		for (int i = 0; i < threads; i++) {
+			admitted.add(executorService.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					start.await();
+					final long end = System.nanoTime() + durationNanos;
+					long count = 0;
+					while (System.nanoTime() < end) {
+						if (rateLimiter.checkCredit(1)) {
+							count++;
+						}
+					}
+					return count;
+				}
+			}));
+		}
+		final long startTime = System.nanoTime();
+		start.countDown();
+		long total = 0;
+		for (Future<Long> future : admitted) {
+			total += future.get();
+		}
+		final double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+		executorService.shutdown();
+
+		final double maxAdmitted = maxBalance + creditsPerSecond * elapsedSeconds;
+		assertTrue(total + " > " + maxAdmitted, total <= maxAdmitted);
+		// the threads finish at slightly different times, so the elapsed time is a bit longer than the duration
+		final double minAdmitted = 0.95 * creditsPerSecond * durationNanos / 1e9;
+		assertTrue(total + " < " + minAdmitted, total >= minAdmitted);
+	}
+}
@@ -0,0 +1,156 @@
+package org.stagemonitor.tracing.wrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stagemonitor.tracing.NoopTracer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import io.opentracing.Span;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class SpanWrappingTracerTest {
+
+	private SpanWrappingTracer tracer;
+	private List<String> events;
+	private List<SpanEventListener> createdListeners;
+
+	@Before
+	public void setUp() throws Exception {
+		events = new ArrayList<String>();
+		createdListeners = new ArrayList<SpanEventListener>();
+		tracer = new SpanWrappingTracer(NoopTracer.INSTANCE);
+	}
+
+	@Test
+	public void testTagsAreOnlyDispatchedToInterestedListeners() throws Exception {
+		tracer.addSpanInterceptor(new RecordingListenerFactory("all"));
+		tracer.addSpanInterceptor(new TagFilteringRecordingListenerFactory("foo", Collections.singleton("foo")));
+		tracer.addSpanInterceptor(new TagFilteringRecordingListenerFactory("none", Collections.<String>emptySet()));
+
+		final Span span = tracer.buildSpan("test").withTag("foo", "bar").start();
+		span.setTag("baz", 42);
+		span.setTag("foo", true);
+		span.finish();
+
+		assertEquals("all foo=bar, foo foo=bar, " +
+				"all start, foo start, none start, " +
+				"all baz=42, " +
+				"all foo=true, foo foo=true, " +
+				"all finish, foo finish, none finish", join(events));
+	}
+
+	@Test
+	public void testModifiedTagValueIsPassedToNextListener() throws Exception {
+		tracer.addSpanInterceptor(new StatelessSpanEventListener() {
+			@Override
+			public String onSetTag(String key, String value) {
+				return value + "!";
+			}
+		});
+		tracer.addSpanInterceptor(new TagFilteringRecordingListenerFactory("foo", Collections.singleton("foo")));
+
+		tracer.buildSpan("test").start().setTag("foo", "bar");
+
+		assertEquals("foo start, foo foo=bar!", join(events));
+	}
+
+	@Test
+	public void testStatefulListenersAreCreatedPerSpan() throws Exception {
+		final StatelessSpanEventListener statelessListener = new StatelessSpanEventListener() {
+		};
+		tracer.addSpanInterceptor(statelessListener);
+		tracer.addSpanInterceptor(new RecordingListenerFactory("stateful"));
+
+		tracer.buildSpan("test1").start().finish();
+		tracer.buildSpan("test2").start().finish();
+
+		assertEquals(2, createdListeners.size());
+		assertNotSame(createdListeners.get(0), createdListeners.get(1));
+	}
+
+	@Test
+	public void testAddListenerAfterSpansHaveBeenCreated() throws Exception {
+		tracer.addSpanInterceptor(new RecordingListenerFactory("first"));
+		tracer.buildSpan("test1").start().finish();
+		tracer.addSpanInterceptor(new TagFilteringRecordingListenerFactory("second", Collections.singleton("foo")));
+		tracer.buildSpan("test2").withTag("foo", "bar").start();
+
+		assertEquals("first start, first finish, first foo=bar, second foo=bar, first start, second start", join(events));
+	}
+
+	private static String join(List<String> events) {
+		final StringBuilder sb = new StringBuilder();
+		for (String event : events) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(event);
+		}
+		return sb.toString();
+	}
+
+	private class RecordingListenerFactory implements SpanEventListenerFactory {
+
+		private final String name;
+
+		private RecordingListenerFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public SpanEventListener create() {
+			final SpanEventListener listener = new AbstractSpanEventListener() {
+				@Override
+				public void onStart(SpanWrapper spanWrapper) {
+					events.add(name + " start");
+				}
+
+				@Override
+				public String onSetTag(String key, String value) {
+					events.add(name + " " + key + "=" + value);
+					return value;
+				}
+
+				@Override
+				public boolean onSetTag(String key, boolean value) {
+					events.add(name + " " + key + "=" + value);
+					return value;
+				}
+
+				@Override
+				public Number onSetTag(String key, Number value) {
+					events.add(name + " " + key + "=" + value);
+					return value;
+				}
+
+				@Override
+				public void onFinish(SpanWrapper spanWrapper, String operationName, long durationNanos) {
+					events.add(name + " finish");
+				}
+			};
+			createdListeners.add(listener);
+			return listener;
+		}
+	}
+
+	private class TagFilteringRecordingListenerFactory extends RecordingListenerFactory implements TagFilteringSpanEventListenerFactory {
+
+		private final Set<String> tagKeys;
+
+		private TagFilteringRecordingListenerFactory(String name, Set<String> tagKeys) {
+			super(name);
+			this.tagKeys = tagKeys;
+		}
+
+		@Override
+		public Set<String> getTagKeys() {
+			return tagKeys;
+		}
+	}
+}
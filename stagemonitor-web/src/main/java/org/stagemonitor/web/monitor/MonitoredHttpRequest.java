@@ -10,6 +10,7 @@ import org.stagemonitor.tracing.TracingPlugin;
 import org.stagemonitor.tracing.utils.SpanUtils;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
 import org.stagemonitor.tracing.wrapper.StatelessSpanEventListener;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.util.StringUtils;
 import org.stagemonitor.web.WebPlugin;
 import org.stagemonitor.web.monitor.filter.StatusExposingByteCountingServletResponse;
@@ -20,6 +21,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -151,11 +153,8 @@ public class MonitoredHttpRequest extends MonitoredRequest {
 	}
 
 	public static String getRequestNameByRequest(HttpServletRequest request, WebPlugin webPlugin) {
-		String requestURI = removeSemicolonContent(request.getRequestURI().substring(request.getContextPath().length()));
-		for (Map.Entry<Pattern, String> entry : webPlugin.getGroupUrls().entrySet()) {
-			requestURI = entry.getKey().matcher(requestURI).replaceAll(entry.getValue());
-		}
-		return request.getMethod() + " " + requestURI;
+		final String requestURI = removeSemicolonContent(request.getRequestURI().substring(request.getContextPath().length()));
+		return request.getMethod() + " " + UrlGrouping.forGroupUrls(webPlugin.getGroupUrls()).group(requestURI);
 	}
 
 	private static String removeSemicolonContent(String requestUri) {
@@ -187,7 +186,7 @@ public class MonitoredHttpRequest extends MonitoredRequest {
 		filterChain.doFilter(httpServletRequest, responseWrapper);
 	}
 
-	public static class HttpSpanEventListener extends StatelessSpanEventListener {
+	public static class HttpSpanEventListener extends StatelessSpanEventListener implements TagFilteringSpanEventListenerFactory {
 
 		private final WebPlugin webPlugin;
 		private final TracingPlugin tracingPlugin;
@@ -293,6 +292,11 @@ public class MonitoredHttpRequest extends MonitoredRequest {
 			return userPrincipal != null ? userPrincipal.getName() : null;
 		}
 
+		@Override
+		public Set<String> getTagKeys() {
+			return Collections.emptySet();
+		}
+
 	}
 
 }
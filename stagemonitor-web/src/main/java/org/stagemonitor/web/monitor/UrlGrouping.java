@@ -0,0 +1,176 @@
+package org.stagemonitor.web.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Groups request URIs by the regular expressions of the configuration option <code>stagemonitor.groupUrls</code>
+ * (see {@link org.stagemonitor.web.WebPlugin#getGroupUrls()}).
+ * <p/>
+ * The patterns are applied one after another via {@link java.util.regex.Matcher#replaceAll(String)}, so the
+ * replacement of a pattern may be the input of the next one. In order to not evaluate every pattern for every URI,
+ * the literal anchors of the patterns are extracted when the configuration is loaded. For example, the pattern
+ * <code>^/users/\d+</code> can only match URIs starting with <code>/users/</code> and <code>(.*).js$</code> can only
+ * match URIs ending with <code>js</code>. A pattern is only evaluated if the URI has the anchors of the pattern.
+ * <p/>
+ * The grouped URIs are cached, as most applications only have a limited number of hot URIs. If the cache reaches its
+ * maximum size, it is cleared, so that URIs with unbounded cardinality, like URIs containing ids, don't exhaust the
+ * memory.
+ */
+public class UrlGrouping {
+
+	public static final int DEFAULT_MAX_CACHED_URIS = 1000;
+
+	/**
+	 * Matches constructs which change the meaning of the anchors, like alternations, inline flags and quotations
+	 */
+	private static final Pattern ANCHORS_NOT_EXTRACTABLE = Pattern.compile("\\||\\(\\?[idmsuxU-]|\\\\Q");
+
+	private static volatile UrlGrouping current;
+
+	private final Map<Pattern, String> groupUrls;
+	private final Pattern[] patterns;
+	private final String[] replacements;
+	private final String[] prefixes;
+	private final String[] suffixes;
+	private final int maxCachedUris;
+	private final ConcurrentMap<String, String> groupedUris = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Returns the {@link UrlGrouping} for the provided <code>groupUrls</code>.
+	 * <p/>
+	 * The patterns are only analyzed again if the instance of the map changes, which is the case when the
+	 * configuration is reloaded.
+	 *
+	 * @param groupUrls the value of <code>stagemonitor.groupUrls</code>
+	 * @return the {@link UrlGrouping} for the <code>groupUrls</code>
+	 */
+	public static UrlGrouping forGroupUrls(Map<Pattern, String> groupUrls) {
+		UrlGrouping urlGrouping = current;
+		if (urlGrouping == null || urlGrouping.groupUrls != groupUrls) {
+			urlGrouping = new UrlGrouping(groupUrls, DEFAULT_MAX_CACHED_URIS);
+			current = urlGrouping;
+		}
+		return urlGrouping;
+	}
+
+	/**
+	 * @param groupUrls     the patterns and their replacements, which are applied in iteration order
+	 * @param maxCachedUris the maximum number of grouped URIs to cache. Set to <code>0</code> to disable the cache.
+	 */
+	public UrlGrouping(Map<Pattern, String> groupUrls, int maxCachedUris) {
+		this.groupUrls = groupUrls;
+		this.maxCachedUris = maxCachedUris;
+		patterns = new Pattern[groupUrls.size()];
+		replacements = new String[groupUrls.size()];
+		prefixes = new String[groupUrls.size()];
+		suffixes = new String[groupUrls.size()];
+		int i = 0;
+		for (Map.Entry<Pattern, String> entry : groupUrls.entrySet()) {
+			final Pattern pattern = entry.getKey();
+			patterns[i] = pattern;
+			replacements[i] = entry.getValue();
+			if (pattern.flags() == 0 && !ANCHORS_NOT_EXTRACTABLE.matcher(pattern.pattern()).find()) {
+				prefixes[i] = getLiteralPrefix(pattern.pattern());
+				suffixes[i] = getLiteralSuffix(pattern.pattern());
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * @return the literal a URI has to start with to be matched by a pattern like <code>^/users/\d+</code> or
+	 * <code>null</code>, if the pattern has no such prefix
+	 */
+	static String getLiteralPrefix(String regex) {
+		if (!regex.startsWith("^")) {
+			return null;
+		}
+		int end = 1;
+		while (end < regex.length() && isLiteral(regex.charAt(end))) {
+			end++;
+		}
+		if (end < regex.length() && isQuantifier(regex.charAt(end))) {
+			// the last literal char is optional or repeated like in ^/users?
+			end--;
+		}
+		return end > 1 ? regex.substring(1, end) : null;
+	}
+
+	/**
+	 * @return the literal a URI has to end with to be matched by a pattern like <code>(.*).js$</code> or
+	 * <code>null</code>, if the pattern has no such suffix
+	 */
+	static String getLiteralSuffix(String regex) {
+		if (!regex.endsWith("$") || regex.endsWith("\\$")) {
+			return null;
+		}
+		final int end = regex.length() - 1;
+		int start = end;
+		while (start > 0 && isLiteral(regex.charAt(start - 1))) {
+			start--;
+		}
+		if (start > 0 && regex.charAt(start - 1) == '\\') {
+			// the chars are part of an escape sequence like \d, \x41 or \0101, which may not match the chars themselves
+			return null;
+		}
+		return start < end ? regex.substring(start, end) : null;
+	}
+
+	private static boolean isLiteral(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '/' || c == '_' || c == '-';
+	}
+
+	private static boolean isQuantifier(char c) {
+		return c == '?' || c == '*' || c == '+' || c == '{';
+	}
+
+	/**
+	 * Applies all patterns to the URI
+	 *
+	 * @param uri the request URI
+	 * @return the grouped URI
+	 */
+	public String group(String uri) {
+		String groupedUri = groupedUris.get(uri);
+		if (groupedUri == null) {
+			groupedUri = doGroup(uri);
+			if (maxCachedUris > 0) {
+				if (groupedUris.size() >= maxCachedUris) {
+					groupedUris.clear();
+				}
+				groupedUris.put(uri, groupedUri);
+			}
+		}
+		return groupedUri;
+	}
+
+	private String doGroup(String uri) {
+		String groupedUri = uri;
+		for (int i = 0; i < patterns.length; i++) {
+			if (hasAnchors(groupedUri, i)) {
+				groupedUri = patterns[i].matcher(groupedUri).replaceAll(replacements[i]);
+			}
+		}
+		return groupedUri;
+	}
+
+	private boolean hasAnchors(String uri, int i) {
+		if (prefixes[i] != null && !uri.startsWith(prefixes[i])) {
+			return false;
+		}
+		// $ also matches before a final line terminator
+		return suffixes[i] == null || uri.endsWith(suffixes[i]) || endsWithLineTerminator(uri);
+	}
+
+	private static boolean endsWithLineTerminator(String uri) {
+		if (uri.isEmpty()) {
+			return false;
+		}
+		final char last = uri.charAt(uri.length() - 1);
+		return last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029';
+	}
+
+}
@@ -9,14 +9,16 @@ import org.stagemonitor.tracing.reporter.ReadbackSpan;
 import org.stagemonitor.tracing.reporter.SpanReporter;
 import org.stagemonitor.tracing.wrapper.AbstractSpanEventListener;
 import org.stagemonitor.tracing.wrapper.SpanEventListener;
-import org.stagemonitor.tracing.wrapper.SpanEventListenerFactory;
 import org.stagemonitor.tracing.wrapper.SpanWrapper;
+import org.stagemonitor.tracing.wrapper.TagFilteringSpanEventListenerFactory;
 import org.stagemonitor.web.monitor.MonitoredHttpRequest;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
@@ -181,11 +183,16 @@ public class WidgetAjaxSpanReporter extends SpanReporter {
 			return value;
 		}
 
-		public static class Factory implements SpanEventListenerFactory {
+		public static class Factory implements TagFilteringSpanEventListenerFactory {
 			@Override
 			public SpanEventListener create() {
 				return new WidgetAllowedEventListener();
 			}
+
+			@Override
+			public Set<String> getTagKeys() {
+				return Collections.singleton(WIDGET_ALLOWED_ATTRIBUTE);
+			}
 		}
 	}
 }
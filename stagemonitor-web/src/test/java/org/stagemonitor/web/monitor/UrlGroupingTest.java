@@ -0,0 +1,127 @@
+package org.stagemonitor.web.monitor;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class UrlGroupingTest {
+
+	@Test
+	public void testGroupUrls() throws Exception {
+		final UrlGrouping urlGrouping = new UrlGrouping(createGroupUrls(), UrlGrouping.DEFAULT_MAX_CACHED_URIS);
+
+		assertEquals("*.js", urlGrouping.group("/static/app.js"));
+		assertEquals("/users/{id}", urlGrouping.group("/users/42"));
+		assertEquals("/users/{id}/edit", urlGrouping.group("/users/42/edit"));
+		assertEquals("/index", urlGrouping.group("/index"));
+		// cached
+		assertEquals("*.js", urlGrouping.group("/static/app.js"));
+	}
+
+	@Test
+	public void testPatternsAreAppliedInOrder() throws Exception {
+		final Map<Pattern, String> groupUrls = new LinkedHashMap<Pattern, String>();
+		groupUrls.put(Pattern.compile("/\\d+"), "/id");
+		groupUrls.put(Pattern.compile("^/users/id$"), "/user");
+		final UrlGrouping urlGrouping = new UrlGrouping(groupUrls, 0);
+
+		assertEquals("/user", urlGrouping.group("/users/42"));
+		assertEquals("/orders/id", urlGrouping.group("/orders/42"));
+	}
+
+	@Test
+	public void testPatternsWithoutExtractableAnchors() throws Exception {
+		final Map<Pattern, String> groupUrls = new LinkedHashMap<Pattern, String>();
+		groupUrls.put(Pattern.compile("^/a|/b$"), "/ab");
+		groupUrls.put(Pattern.compile("\\Qjson$"), "js");
+		groupUrls.put(Pattern.compile("(?i)^/ADMIN"), "/admin");
+		groupUrls.put(Pattern.compile("^/SHOP", Pattern.CASE_INSENSITIVE), "/shop");
+		final UrlGrouping urlGrouping = new UrlGrouping(groupUrls, 0);
+
+		assertEquals("/c/ab", urlGrouping.group("/c/b"));
+		assertEquals("/data.js/x", urlGrouping.group("/data.json$/x"));
+		assertEquals("/admin/users", urlGrouping.group("/Admin/users"));
+		assertEquals("/shop/products", urlGrouping.group("/Shop/products"));
+		assertEquals("/index", urlGrouping.group("/index"));
+	}
+
+	@Test
+	public void testGetLiteralPrefix() throws Exception {
+		assertEquals("/users/", UrlGrouping.getLiteralPrefix("^/users/\\d+"));
+		assertEquals("/user", UrlGrouping.getLiteralPrefix("^/users?/\\d+"));
+		assertEquals("/api", UrlGrouping.getLiteralPrefix("^/api(/v1)?"));
+		assertNull(UrlGrouping.getLiteralPrefix("^\\d+"));
+		assertNull(UrlGrouping.getLiteralPrefix("/users/\\d+"));
+	}
+
+	@Test
+	public void testGetLiteralSuffix() throws Exception {
+		assertEquals("js", UrlGrouping.getLiteralSuffix("(.*).js$"));
+		assertEquals("/edit", UrlGrouping.getLiteralSuffix("/\\d+/edit$"));
+		assertNull(UrlGrouping.getLiteralSuffix("/\\d$"));
+		assertNull(UrlGrouping.getLiteralSuffix("/\\d/edit$"));
+		assertNull(UrlGrouping.getLiteralSuffix("^/files/.*\\x41$"));
+		assertNull(UrlGrouping.getLiteralSuffix("^/files/.*\\u0041$"));
+		assertNull(UrlGrouping.getLiteralSuffix("^/files/.*\\0101$"));
+		assertNull(UrlGrouping.getLiteralSuffix("/js?$"));
+		assertNull(UrlGrouping.getLiteralSuffix("/js\\$"));
+		assertNull(UrlGrouping.getLiteralSuffix("(.*).js"));
+	}
+
+	@Test
+	public void testEscapeSequencesInSuffix() throws Exception {
+		final Map<Pattern, String> groupUrls = new LinkedHashMap<Pattern, String>();
+		groupUrls.put(Pattern.compile("^/files/.*\\x41$"), "/files/A");
+		groupUrls.put(Pattern.compile("^/docs/.*\\u0042$"), "/docs/B");
+		final UrlGrouping urlGrouping = new UrlGrouping(groupUrls, 0);
+
+		assertEquals("/files/A", urlGrouping.group("/files/xA"));
+		assertEquals("/docs/B", urlGrouping.group("/docs/xB"));
+		assertEquals("/files/x41", urlGrouping.group("/files/x41"));
+	}
+
+	@Test
+	public void testDollarMatchesBeforeFinalLineTerminator() throws Exception {
+		final UrlGrouping urlGrouping = new UrlGrouping(Collections.singletonMap(Pattern.compile("(.*).js$"), "*.js"), 0);
+		assertEquals("*.js\n", urlGrouping.group("/app.js\n"));
+	}
+
+	@Test
+	public void testCacheIsBounded() throws Exception {
+		final UrlGrouping urlGrouping = new UrlGrouping(createGroupUrls(), 2);
+
+		assertEquals("/users/{id}", urlGrouping.group("/users/1"));
+		assertEquals("/users/{id}", urlGrouping.group("/users/2"));
+		assertEquals("/users/{id}", urlGrouping.group("/users/3"));
+		assertEquals("/users/{id}", urlGrouping.group("/users/1"));
+	}
+
+	@Test
+	public void testNoPatterns() throws Exception {
+		assertEquals("/index", new UrlGrouping(Collections.<Pattern, String>emptyMap(), 0).group("/index"));
+	}
+
+	@Test
+	public void testForGroupUrlsIsOnlyCompiledWhenChanged() throws Exception {
+		final Map<Pattern, String> groupUrls = createGroupUrls();
+		final UrlGrouping urlGrouping = UrlGrouping.forGroupUrls(groupUrls);
+
+		assertSame(urlGrouping, UrlGrouping.forGroupUrls(groupUrls));
+		assertNotSame(urlGrouping, UrlGrouping.forGroupUrls(createGroupUrls()));
+	}
+
+	private static Map<Pattern, String> createGroupUrls() {
+		final Map<Pattern, String> groupUrls = new LinkedHashMap<Pattern, String>();
+		groupUrls.put(Pattern.compile("(.*).js$"), "*.js");
+		groupUrls.put(Pattern.compile("^/users/\\d+"), "/users/{id}");
+		return groupUrls;
+	}
+}